@@ -50,7 +50,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 @SpringBootTest(
         classes = {ApplicationConfiguration.class, DefaultConfiguration.class, CacheAutoConfiguration.class},
         webEnvironment = WebEnvironment.NONE,
-        properties = {"spring.cache.redis.timeToLive=3s", "spring.cache.redis.keyPrefix=test:"}
+        properties = {"spring.cache.redis.timeToLive=3s", "spring.cache.redis.keyPrefix=test:", "policy.changes=kafka"}
 )
 @EnableCaching
 @ContextConfiguration(initializers = {RedisInitializer.class})
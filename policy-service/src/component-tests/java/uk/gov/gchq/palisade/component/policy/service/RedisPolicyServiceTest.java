@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.component.policy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import uk.gov.gchq.palisade.contract.policy.common.PolicyTestCommon;
+import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.cache.TieredCacheConfiguration;
+import uk.gov.gchq.palisade.service.policy.config.ApplicationConfiguration;
+import uk.gov.gchq.palisade.service.policy.config.DefaultConfiguration;
+import uk.gov.gchq.palisade.service.policy.rule.PassThroughRule;
+import uk.gov.gchq.palisade.service.policy.service.IndexedPolicyService;
+import uk.gov.gchq.palisade.service.policy.service.RedisPolicyService;
+
+import java.io.Serializable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(
+        classes = {ApplicationConfiguration.class, DefaultConfiguration.class, TieredCacheConfiguration.class, CacheAutoConfiguration.class},
+        webEnvironment = WebEnvironment.NONE,
+        properties = {"policy.implementation=redis", "policy.changes=local", "policy.redis.keyPrefix=test:"}
+)
+@ContextConfiguration(initializers = {RedisInitializer.class})
+@Import(RedisAutoConfiguration.class)
+@ActiveProfiles({"tiered", "testcontainers"})
+class RedisPolicyServiceTest extends PolicyTestCommon {
+
+    @Autowired
+    private IndexedPolicyService indexedService;
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.getConnection().flushAll();
+    }
+
+    @Test
+    void testRulesSetByAnotherInstanceAreFound() {
+        // Given - another instance over the same Redis, whose changes are not shared with this instance
+        IndexedPolicyService otherInstance = new IndexedPolicyService(new RedisPolicyService(connectionFactory, "test:"), true);
+        otherInstance.warm();
+
+        // When - rules are set through the other instance, after this instance's index was warmed
+        otherInstance.setResourceRules(JSON_DIRECTORY.getId(), JSON_POLICY);
+        otherInstance.setRecordRules(JSON_DIRECTORY.getId(), new Rules<Serializable>().addRule("Does nothing", new PassThroughRule<>()));
+
+        // Then - this instance still finds them in Redis
+        assertThat(indexedService.getResourceRules(JSON_DIRECTORY.getId()))
+                .as("Check that resource rules set by another instance are returned")
+                .get()
+                .usingRecursiveComparison()
+                .isEqualTo(JSON_POLICY);
+        assertThat(indexedService.getRecordRules(JSON_DIRECTORY.getId()))
+                .as("Check that record rules set by another instance are returned")
+                .isPresent();
+    }
+
+    @Test
+    void testRulesAreWarmedFromRedis() {
+        // Given - rules have been set through this instance
+        indexedService.setResourceRules(SECRET_DIRECTORY.getId(), SECRET_POLICY);
+
+        // When - a new instance is started over the same Redis, and only reads from its index
+        IndexedPolicyService newInstance = new IndexedPolicyService(new RedisPolicyService(connectionFactory, "test:"));
+        newInstance.warm();
+
+        // Then - the rules are indexed and read back from Redis
+        assertThat(newInstance.getResourceRules(SECRET_DIRECTORY.getId()))
+                .as("Check that rules stored in Redis are returned by a newly-warmed instance")
+                .get()
+                .usingRecursiveComparison()
+                .isEqualTo(SECRET_POLICY);
+        assertThat(newInstance.getResourceRules("does not exist"))
+                .as("Check that resources without rules are not found")
+                .isEmpty();
+    }
+}
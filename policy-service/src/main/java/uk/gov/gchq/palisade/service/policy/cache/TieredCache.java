@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A two-tier {@link org.springframework.cache.Cache}, with a small in-process Caffeine L1 in front of a shared L2 (such as Redis).
+ * Reads are served from L1 where possible, falling back to L2 and populating L1 on an L2 hit.
+ * Writes go through to L2 and L1, and the {@link TieredCacheManager} tells every other instance to drop the key from its L1.
+ * Hits and misses are counted for each tier.
+ */
+public class TieredCache extends AbstractValueAdaptingCache {
+    private final String name;
+    private final Cache<Object, Object> l1;
+    private final org.springframework.cache.Cache l2;
+    private final TieredCacheManager manager;
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a new two-tier cache
+     *
+     * @param name    the name of the cache
+     * @param l1      the in-process Caffeine cache, holding values in their stored form (with nulls as {@link org.springframework.cache.support.NullValue})
+     * @param l2      the shared cache
+     * @param manager the {@link TieredCacheManager} used to publish invalidations to other instances
+     */
+    public TieredCache(final String name, final Cache<Object, Object> l1, final org.springframework.cache.Cache l2, final TieredCacheManager manager) {
+        super(true);
+        this.name = name;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.manager = manager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    @Override
+    protected Object lookup(final Object key) {
+        Object stored = l1.getIfPresent(key);
+        if (stored != null) {
+            l1Hits.increment();
+            return stored;
+        }
+        ValueWrapper wrapper = l2.get(key);
+        if (wrapper == null) {
+            misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        stored = toStoreValue(wrapper.get());
+        l1.put(key, stored);
+        return stored;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(final Object key, final Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(final Object key, final Object value) {
+        l2.put(key, value);
+        l1.put(key, toStoreValue(value));
+        manager.publishEvict(name, key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(final Object key, final Object value) {
+        ValueWrapper existing = l2.putIfAbsent(key, value);
+        // Either way, L2 now holds the authoritative value, so let the next read repopulate L1
+        l1.invalidate(key);
+        if (existing == null) {
+            manager.publishEvict(name, key);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(final Object key) {
+        l2.evict(key);
+        l1.invalidate(key);
+        manager.publishEvict(name, key);
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        l1.invalidateAll();
+        manager.publishClear(name);
+    }
+
+    /**
+     * Drop a key from this instance's L1 only, after it was changed by another instance
+     *
+     * @param key the key to drop
+     */
+    void evictLocal(final Object key) {
+        l1.invalidate(key);
+    }
+
+    /**
+     * Drop every key from this instance's L1 only, after the cache was cleared by another instance
+     */
+    void clearLocal() {
+        l1.invalidateAll();
+    }
+
+    long getL1Hits() {
+        return l1Hits.sum();
+    }
+
+    long getL2Hits() {
+        return l2Hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+}
@@ -16,23 +16,37 @@
 package uk.gov.gchq.palisade.service.policy.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import uk.gov.gchq.palisade.service.policy.cache.TieredCacheManager;
 import uk.gov.gchq.palisade.service.policy.exception.ApplicationAsyncExceptionHandler;
+import uk.gov.gchq.palisade.service.policy.service.LocalPolicyChangeService;
+import uk.gov.gchq.palisade.service.policy.service.PolicyFileLoader;
 import uk.gov.gchq.palisade.service.policy.service.PolicyService;
 import uk.gov.gchq.palisade.service.policy.service.PolicyServiceAsyncProxy;
 import uk.gov.gchq.palisade.service.policy.service.PolicyServiceCachingProxy;
 import uk.gov.gchq.palisade.service.policy.service.PolicyServiceHierarchyProxy;
+import uk.gov.gchq.palisade.service.policy.service.ResourceRuleEvaluator;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Bean configuration and dependency injection graph
@@ -45,12 +59,13 @@ public class ApplicationConfiguration implements AsyncConfigurer {
     /**
      * An implementation of the Policy Service that allows caching to take place, either using Redis or Caffeine
      *
-     * @param service the service to be implemented
+     * @param service      the service to be implemented
+     * @param cacheManager the {@link CacheManager} of the policy cache, if caching is enabled, to which batches of rules are written
      * @return a new instance of the PolicyServiceCachingProxy
      */
     @Bean
-    public PolicyServiceCachingProxy cachedPolicyService(final PolicyService service) {
-        var policyServiceCachingProxy = new PolicyServiceCachingProxy(service);
+    public PolicyServiceCachingProxy cachedPolicyService(final PolicyService service, final ObjectProvider<CacheManager> cacheManager) {
+        var policyServiceCachingProxy = new PolicyServiceCachingProxy(service, cacheManager.getIfAvailable());
         LOGGER.debug("Instantiated CachedPolicyService");
         return policyServiceCachingProxy;
     }
@@ -58,16 +73,69 @@ public class ApplicationConfiguration implements AsyncConfigurer {
     /**
      * An implementation of the Policy Service that contains java code used to apply, get and set rules against resources
      *
-     * @param cache the cache layer that this service will implement
+     * @param cache      the cache layer that this service will implement
+     * @param properties the {@link PolicyServiceConfigProperties}, containing the size and expiry of the cached merged rules,
+     *                   which should not exceed the policy cache TTL
      * @return a new instance of the PolicyServiceHierarchyProxy
      */
     @Bean
-    public PolicyServiceHierarchyProxy hierarchicalPolicyService(final PolicyServiceCachingProxy cache) {
-        var policyServiceHierarchyProxy = new PolicyServiceHierarchyProxy(cache);
+    public PolicyServiceHierarchyProxy hierarchicalPolicyService(final PolicyServiceCachingProxy cache, final PolicyServiceConfigProperties properties) {
+        var policyServiceHierarchyProxy = new PolicyServiceHierarchyProxy(cache, properties.getHierarchy().getMaximumSize(), properties.getHierarchy().getExpireAfterWrite());
         LOGGER.debug("Instantiated HierarchicalPolicyService");
         return policyServiceHierarchyProxy;
     }
 
+    /**
+     * Changes to rules at runtime are applied only to this instance's caches, suitable for a single instance of the service.
+     * With the tiered cache, writes by other instances are also published to this instance, invalidating its cached merges.
+     * A plain Redis cache has no such invalidations, so other instances would keep serving stale merges, and changes must be sent through kafka instead.
+     *
+     * @param hierarchy    the {@link PolicyServiceHierarchyProxy} through which changes are applied
+     * @param cacheManager the {@link CacheManager} of the policy cache, if caching is enabled
+     * @return a new instance of the LocalPolicyChangeService
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "policy", name = "changes", havingValue = "local", matchIfMissing = true)
+    public LocalPolicyChangeService localPolicyChangeService(final PolicyServiceHierarchyProxy hierarchy, final ObjectProvider<CacheManager> cacheManager) {
+        CacheManager manager = cacheManager.getIfAvailable();
+        if (manager instanceof TieredCacheManager) {
+            TieredCacheManager tieredManager = (TieredCacheManager) manager;
+            tieredManager.onRemoteEvict((String cacheName, String resourceId) -> hierarchy.invalidate(resourceId));
+            tieredManager.onRemoteClear((String cacheName) -> hierarchy.invalidateAll());
+        } else if (manager instanceof RedisCacheManager) {
+            throw new IllegalStateException("policy.changes must be 'kafka' for a policy cache shared between instances, or use the tiered profile");
+        }
+        return new LocalPolicyChangeService(hierarchy);
+    }
+
+    /**
+     * An optional bulk loader of policies from a file, loading the file before the service starts processing requests,
+     * and reloading it whenever it changes if {@code population.watchPolicyFile} is set
+     *
+     * @param hierarchy  the {@link PolicyServiceHierarchyProxy} to apply the loaded policies to
+     * @param properties the {@link PolicyFileConfigProperties}, containing the path to the file of policies and whether to watch it for changes
+     * @return a {@link PolicyFileLoader} for the configured file, started and stopped with the application context
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "population", name = "policyFile")
+    public PolicyFileLoader policyFileLoader(final PolicyServiceHierarchyProxy hierarchy, final PolicyFileConfigProperties properties) {
+        LOGGER.debug("Instantiated PolicyFileLoader for {}", properties.getPolicyFile());
+        return new PolicyFileLoader(hierarchy, properties.getPolicyFile(), properties.isWatchPolicyFile());
+    }
+
+    /**
+     * Applies resource rules to each resource, evaluating any leaf-independent rules only once per user, context and rules
+     *
+     * @param properties the {@link PolicyServiceConfigProperties}, containing the maximum number of leaf-independent rule decisions to cache,
+     *                   and the time after which an unused decision is discarded
+     * @return a new instance of the ResourceRuleEvaluator
+     */
+    @Bean
+    public ResourceRuleEvaluator resourceRuleEvaluator(final PolicyServiceConfigProperties properties) {
+        LOGGER.debug("Instantiated ResourceRuleEvaluator");
+        return new ResourceRuleEvaluator(properties.getDecisions().getMaximumSize(), properties.getDecisions().getExpireAfterAccess());
+    }
+
     /**
      * AsyncPolicyServiceProxy sits between akka, and a caching layer,
      * allowing akka to make async calls to a service and not have to wait for a response
@@ -75,14 +143,41 @@ public class ApplicationConfiguration implements AsyncConfigurer {
      * @param hierarchy {@link PolicyServiceHierarchyProxy} as the service performing the majority of the code manipulation
      * @param executor  {@link Executor} This interface provides a way of decoupling task submission from the mechanics of how
      *                  each task will be run, including details of thread use, scheduling, etc.
+     * @param evaluator {@link ResourceRuleEvaluator} used to apply the resource rules to each resource
      * @return a new instance of a PolicyServiceAsyncProxy
      */
     @Bean
     public PolicyServiceAsyncProxy asyncPolicyServiceProxy(
             final PolicyServiceHierarchyProxy hierarchy,
-            final @Qualifier("threadPoolTaskExecutor") Executor executor) {
+            final @Qualifier("policyRulesExecutor") Executor executor,
+            final ResourceRuleEvaluator evaluator) {
         LOGGER.debug("Instantiated asyncUserServiceProxy");
-        return new PolicyServiceAsyncProxy(hierarchy, executor);
+        return new PolicyServiceAsyncProxy(hierarchy, executor, evaluator);
+    }
+
+    /**
+     * A dedicated executor for resolving the rules for each request, so that rule lookups (which may block on the cache
+     * or backing store) are kept apart from any other asynchronous work in the service
+     *
+     * @param properties the {@link PolicyServiceConfigProperties}, containing the number of threads in the pool
+     * @return a fixed-size {@link ExecutorService}
+     */
+    @Bean("policyRulesExecutor")
+    public ExecutorService policyRulesExecutor(final PolicyServiceConfigProperties properties) {
+        int threads = properties.getRules().getThreads();
+        LOGGER.info("Starting policyRulesExecutor with [{}] threads", threads);
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("PolicyRules-"));
+    }
+
+    /**
+     * Metrics for the policy rules executor, reporting its pool size, active and queued tasks
+     *
+     * @param policyRulesExecutor the executor to report metrics for
+     * @return a {@link MeterBinder} for the executor
+     */
+    @Bean
+    public MeterBinder policyRulesExecutorMetrics(final @Qualifier("policyRulesExecutor") ExecutorService policyRulesExecutor) {
+        return new ExecutorServiceMetrics(policyRulesExecutor, "policyRulesExecutor", Tags.empty());
     }
 
     /**
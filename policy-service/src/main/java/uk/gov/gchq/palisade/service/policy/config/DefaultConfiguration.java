@@ -18,19 +18,24 @@ package uk.gov.gchq.palisade.service.policy.config;
 
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 
 import uk.gov.gchq.palisade.resource.Resource;
 import uk.gov.gchq.palisade.rule.Rule;
 import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.service.IndexedPolicyService;
 import uk.gov.gchq.palisade.service.policy.service.NullPolicyService;
 import uk.gov.gchq.palisade.service.policy.service.PolicyService;
+import uk.gov.gchq.palisade.service.policy.service.RedisPolicyService;
 
 /**
  * The default configuration beans for the Policy Service
  */
 @Configuration
+@EnableConfigurationProperties({PolicyServiceConfigProperties.class, PolicyFileConfigProperties.class})
 public class DefaultConfiguration {
 
     /**
@@ -44,6 +49,26 @@ public class DefaultConfiguration {
         return new NullPolicyService();
     }
 
+    /**
+     * A durable Policy service, storing all rules in Redis without expiry, with an in-memory index of policied resource ids
+     * warmed from Redis at startup.
+     * Unless rule changes are published to every instance ({@code policy.changes: kafka}), the index of this instance will not
+     * see rules set through other instances, so any id missing from the index is still looked up in Redis.
+     * Requires a Redis connection to be configured, so is not compatible with the caffeine profile's exclusion of Redis auto-configuration.
+     *
+     * @param connectionFactory the {@link RedisConnectionFactory} for the Redis instance to store rules in
+     * @param properties        the {@link PolicyServiceConfigProperties}, containing the Redis key prefix and how changes are shared
+     * @return a new instance of the {@link IndexedPolicyService} over a {@link RedisPolicyService}
+     */
+    @Bean(initMethod = "warm")
+    @ConditionalOnProperty(prefix = "policy", name = "implementation", havingValue = "redis")
+    public IndexedPolicyService redisPolicyService(final RedisConnectionFactory connectionFactory,
+                                                   final PolicyServiceConfigProperties properties) {
+        return new IndexedPolicyService(
+                new RedisPolicyService(connectionFactory, properties.getRedis().getKeyPrefix()),
+                !properties.isChangesShared());
+    }
+
     /**
      * A container for a number of {@link StdPolicyPrepopulationFactory} builders used for creating Policies
      * These wil be populated further using a UserConfiguration and ResourceConfiguration
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import uk.gov.gchq.palisade.Generated;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+/**
+ * PolicyService class containing config properties about bulk-loading policies from a file, see {@link uk.gov.gchq.palisade.service.policy.service.PolicyFileLoader}
+ */
+@ConfigurationProperties(prefix = "population")
+public class PolicyFileConfigProperties {
+    private String policyFile;
+    private boolean watchPolicyFile = true;
+
+    @Generated
+    public String getPolicyFile() {
+        return policyFile;
+    }
+
+    @Generated
+    public void setPolicyFile(final String policyFile) {
+        this.policyFile = Optional.ofNullable(policyFile)
+                .orElseThrow(() -> new IllegalArgumentException("policyFile cannot be null"));
+    }
+
+    @Generated
+    public boolean isWatchPolicyFile() {
+        return watchPolicyFile;
+    }
+
+    @Generated
+    public void setWatchPolicyFile(final boolean watchPolicyFile) {
+        this.watchPolicyFile = watchPolicyFile;
+    }
+
+    @Override
+    @Generated
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PolicyFileConfigProperties)) {
+            return false;
+        }
+        final PolicyFileConfigProperties that = (PolicyFileConfigProperties) o;
+        return watchPolicyFile == that.watchPolicyFile &&
+                Objects.equals(policyFile, that.policyFile);
+    }
+
+    @Override
+    @Generated
+    public int hashCode() {
+        return Objects.hash(policyFile, watchPolicyFile);
+    }
+
+    @Override
+    @Generated
+    public String toString() {
+        return new StringJoiner(", ", PolicyFileConfigProperties.class.getSimpleName() + "[", "]")
+                .add("policyFile='" + policyFile + "'")
+                .add("watchPolicyFile=" + watchPolicyFile)
+                .add(super.toString())
+                .toString();
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import uk.gov.gchq.palisade.Generated;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+/**
+ * PolicyService class containing config properties about how the policy service stores, shares, caches and evaluates rules
+ */
+@ConfigurationProperties(prefix = "policy")
+public class PolicyServiceConfigProperties {
+    /**
+     * The value of {@code policy.changes} publishing rule changes to every instance of the service
+     */
+    public static final String KAFKA_CHANGES = "kafka";
+
+    private String implementation = "null";
+    private String changes = "local";
+    private String instanceName = "policy-service";
+    private Redis redis = new Redis();
+    private Hierarchy hierarchy = new Hierarchy();
+    private RuleLookup rules = new RuleLookup();
+    private Stream stream = new Stream();
+    private Decisions decisions = new Decisions();
+
+    /**
+     * Config properties for the Redis-backed policy store
+     */
+    public static class Redis {
+        private String keyPrefix = "policy:";
+
+        @Generated
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+
+        @Generated
+        public void setKeyPrefix(final String keyPrefix) {
+            this.keyPrefix = Optional.ofNullable(keyPrefix)
+                    .orElseThrow(() -> new IllegalArgumentException("keyPrefix cannot be null"));
+        }
+
+        @Override
+        @Generated
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Redis)) {
+                return false;
+            }
+            final Redis that = (Redis) o;
+            return Objects.equals(keyPrefix, that.keyPrefix);
+        }
+
+        @Override
+        @Generated
+        public int hashCode() {
+            return Objects.hash(keyPrefix);
+        }
+
+        @Override
+        @Generated
+        public String toString() {
+            return new StringJoiner(", ", Redis.class.getSimpleName() + "[", "]")
+                    .add("keyPrefix='" + keyPrefix + "'")
+                    .toString();
+        }
+    }
+
+    /**
+     * Config properties for the cached merged rules of parent resources, which should expire no later than the policy cache
+     */
+    public static class Hierarchy {
+        private long maximumSize = 10_000L;
+        private Duration expireAfterWrite = Duration.ofHours(12);
+
+        @Generated
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        @Generated
+        public void setMaximumSize(final long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        @Generated
+        public Duration getExpireAfterWrite() {
+            return expireAfterWrite;
+        }
+
+        @Generated
+        public void setExpireAfterWrite(final Duration expireAfterWrite) {
+            this.expireAfterWrite = Optional.ofNullable(expireAfterWrite)
+                    .orElseThrow(() -> new IllegalArgumentException("expireAfterWrite cannot be null"));
+        }
+
+        @Override
+        @Generated
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Hierarchy)) {
+                return false;
+            }
+            final Hierarchy that = (Hierarchy) o;
+            return maximumSize == that.maximumSize &&
+                    Objects.equals(expireAfterWrite, that.expireAfterWrite);
+        }
+
+        @Override
+        @Generated
+        public int hashCode() {
+            return Objects.hash(maximumSize, expireAfterWrite);
+        }
+
+        @Override
+        @Generated
+        public String toString() {
+            return new StringJoiner(", ", Hierarchy.class.getSimpleName() + "[", "]")
+                    .add("maximumSize=" + maximumSize)
+                    .add("expireAfterWrite=" + expireAfterWrite)
+                    .toString();
+        }
+    }
+
+    /**
+     * Config properties for the pool of threads resolving the resource and record rules for each request
+     */
+    public static class RuleLookup {
+        private int threads = 6;
+
+        @Generated
+        public int getThreads() {
+            return threads;
+        }
+
+        @Generated
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        @Generated
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RuleLookup)) {
+                return false;
+            }
+            final RuleLookup that = (RuleLookup) o;
+            return threads == that.threads;
+        }
+
+        @Override
+        @Generated
+        public int hashCode() {
+            return Objects.hash(threads);
+        }
+
+        @Override
+        @Generated
+        public String toString() {
+            return new StringJoiner(", ", RuleLookup.class.getSimpleName() + "[", "]")
+                    .add("threads=" + threads)
+                    .toString();
+        }
+    }
+
+    /**
+     * Config properties for the stream of requests from the input topic
+     */
+    public static class Stream {
+        private int parallelism = 0;
+
+        @Generated
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        @Generated
+        public void setParallelism(final int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        @Generated
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Stream)) {
+                return false;
+            }
+            final Stream that = (Stream) o;
+            return parallelism == that.parallelism;
+        }
+
+        @Override
+        @Generated
+        public int hashCode() {
+            return Objects.hash(parallelism);
+        }
+
+        @Override
+        @Generated
+        public String toString() {
+            return new StringJoiner(", ", Stream.class.getSimpleName() + "[", "]")
+                    .add("parallelism=" + parallelism)
+                    .toString();
+        }
+    }
+
+    /**
+     * Config properties for the cached decisions of leaf-independent resource rules
+     */
+    public static class Decisions {
+        private long maximumSize = 10_000L;
+        private Duration expireAfterAccess = Duration.ofMinutes(5);
+
+        @Generated
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        @Generated
+        public void setMaximumSize(final long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        @Generated
+        public Duration getExpireAfterAccess() {
+            return expireAfterAccess;
+        }
+
+        @Generated
+        public void setExpireAfterAccess(final Duration expireAfterAccess) {
+            this.expireAfterAccess = Optional.ofNullable(expireAfterAccess)
+                    .orElseThrow(() -> new IllegalArgumentException("expireAfterAccess cannot be null"));
+        }
+
+        @Override
+        @Generated
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Decisions)) {
+                return false;
+            }
+            final Decisions that = (Decisions) o;
+            return maximumSize == that.maximumSize &&
+                    Objects.equals(expireAfterAccess, that.expireAfterAccess);
+        }
+
+        @Override
+        @Generated
+        public int hashCode() {
+            return Objects.hash(maximumSize, expireAfterAccess);
+        }
+
+        @Override
+        @Generated
+        public String toString() {
+            return new StringJoiner(", ", Decisions.class.getSimpleName() + "[", "]")
+                    .add("maximumSize=" + maximumSize)
+                    .add("expireAfterAccess=" + expireAfterAccess)
+                    .toString();
+        }
+    }
+
+    @Generated
+    public String getImplementation() {
+        return implementation;
+    }
+
+    @Generated
+    public void setImplementation(final String implementation) {
+        this.implementation = Optional.ofNullable(implementation)
+                .orElseThrow(() -> new IllegalArgumentException("implementation cannot be null"));
+    }
+
+    @Generated
+    public String getChanges() {
+        return changes;
+    }
+
+    @Generated
+    public void setChanges(final String changes) {
+        this.changes = Optional.ofNullable(changes)
+                .orElseThrow(() -> new IllegalArgumentException("changes cannot be null"));
+    }
+
+    @Generated
+    public String getInstanceName() {
+        return instanceName;
+    }
+
+    @Generated
+    public void setInstanceName(final String instanceName) {
+        this.instanceName = Optional.ofNullable(instanceName)
+                .orElseThrow(() -> new IllegalArgumentException("instanceName cannot be null"));
+    }
+
+    /**
+     * Whether rule changes are published to every instance of the service, rather than applied only to the instance receiving them
+     *
+     * @return true if every instance applies every rule change
+     */
+    public boolean isChangesShared() {
+        return KAFKA_CHANGES.equals(changes);
+    }
+
+    @Generated
+    public Redis getRedis() {
+        return redis;
+    }
+
+    @Generated
+    public void setRedis(final Redis redis) {
+        this.redis = Optional.ofNullable(redis)
+                .orElseThrow(() -> new IllegalArgumentException("redis cannot be null"));
+    }
+
+    @Generated
+    public Hierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    @Generated
+    public void setHierarchy(final Hierarchy hierarchy) {
+        this.hierarchy = Optional.ofNullable(hierarchy)
+                .orElseThrow(() -> new IllegalArgumentException("hierarchy cannot be null"));
+    }
+
+    @Generated
+    public RuleLookup getRules() {
+        return rules;
+    }
+
+    @Generated
+    public void setRules(final RuleLookup rules) {
+        this.rules = Optional.ofNullable(rules)
+                .orElseThrow(() -> new IllegalArgumentException("rules cannot be null"));
+    }
+
+    @Generated
+    public Stream getStream() {
+        return stream;
+    }
+
+    @Generated
+    public void setStream(final Stream stream) {
+        this.stream = Optional.ofNullable(stream)
+                .orElseThrow(() -> new IllegalArgumentException("stream cannot be null"));
+    }
+
+    @Generated
+    public Decisions getDecisions() {
+        return decisions;
+    }
+
+    @Generated
+    public void setDecisions(final Decisions decisions) {
+        this.decisions = Optional.ofNullable(decisions)
+                .orElseThrow(() -> new IllegalArgumentException("decisions cannot be null"));
+    }
+
+    @Override
+    @Generated
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PolicyServiceConfigProperties)) {
+            return false;
+        }
+        final PolicyServiceConfigProperties that = (PolicyServiceConfigProperties) o;
+        return Objects.equals(implementation, that.implementation) &&
+                Objects.equals(changes, that.changes) &&
+                Objects.equals(instanceName, that.instanceName) &&
+                Objects.equals(redis, that.redis) &&
+                Objects.equals(hierarchy, that.hierarchy) &&
+                Objects.equals(rules, that.rules) &&
+                Objects.equals(stream, that.stream) &&
+                Objects.equals(decisions, that.decisions);
+    }
+
+    @Override
+    @Generated
+    public int hashCode() {
+        return Objects.hash(implementation, changes, instanceName, redis, hierarchy, rules, stream, decisions);
+    }
+
+    @Override
+    @Generated
+    public String toString() {
+        return new StringJoiner(", ", PolicyServiceConfigProperties.class.getSimpleName() + "[", "]")
+                .add("implementation='" + implementation + "'")
+                .add("changes='" + changes + "'")
+                .add("instanceName='" + instanceName + "'")
+                .add("redis=" + redis)
+                .add("hierarchy=" + hierarchy)
+                .add("rules=" + rules)
+                .add("stream=" + stream)
+                .add("decisions=" + decisions)
+                .add(super.toString())
+                .toString();
+    }
+}
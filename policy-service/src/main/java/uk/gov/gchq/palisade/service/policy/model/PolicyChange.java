@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.model;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import uk.gov.gchq.palisade.Generated;
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+/**
+ * A change to the rules held against a resource id, published to the policy-change topic so that every instance
+ * of the Policy Service can update its local caches.
+ * The topic is compacted on the {@link PolicyChange#getKey()}, so only the latest change of each rule type for each
+ * resource id is kept, and replaying the topic rebuilds the full set of rules.
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+public final class PolicyChange {
+
+    /**
+     * The type of rules being changed
+     */
+    public enum RuleType {
+        RESOURCE,
+        RECORD
+    }
+
+    private final String resourceId;
+    private final RuleType ruleType;
+    private final Rules rules;
+
+    @JsonCreator
+    private PolicyChange(
+            final @JsonProperty("resourceId") String resourceId,
+            final @JsonProperty("ruleType") RuleType ruleType,
+            final @JsonProperty("rules") Rules rules) {
+        this.resourceId = Optional.ofNullable(resourceId).orElseThrow(() -> new IllegalArgumentException("ResourceId cannot be null"));
+        this.ruleType = Optional.ofNullable(ruleType).orElseThrow(() -> new IllegalArgumentException("RuleType cannot be null"));
+        this.rules = Optional.ofNullable(rules).orElseThrow(() -> new IllegalArgumentException("Rules cannot be null"));
+    }
+
+    @Generated
+    public String getResourceId() {
+        return resourceId;
+    }
+
+    @Generated
+    public RuleType getRuleType() {
+        return ruleType;
+    }
+
+    @Generated
+    public Rules<?> getRules() {
+        return rules;
+    }
+
+    /**
+     * The key of this change on the policy-change topic, unique to the resource id and rule type
+     *
+     * @return the kafka key for this change
+     */
+    @JsonIgnore
+    public String getKey() {
+        return ruleType + ":" + resourceId;
+    }
+
+    /**
+     * Builder class for the creation of instances of the PolicyChange.
+     * This is a variant of the Fluent Builder.
+     */
+    public static class Builder {
+
+        /**
+         * Starter method for the Builder class. This method is called to start the process of creating the
+         * PolicyChange class.
+         *
+         * @return public interface {@link IResourceId} for the next step in the build.
+         */
+        public static IResourceId create() {
+            return resourceId -> ruleType -> rules -> new PolicyChange(resourceId, ruleType, rules);
+        }
+
+        /**
+         * Adds the resource id to the message.
+         */
+        public interface IResourceId {
+            /**
+             * Adds the resource id to the message.
+             *
+             * @param resourceId the id of the resource whose rules have changed
+             * @return interface {@link IRuleType} for the next step in the build
+             */
+            IRuleType withResourceId(String resourceId);
+        }
+
+        /**
+         * Adds the rule type and {@link Rules} to the message.
+         */
+        public interface IRuleType {
+            /**
+             * Adds the rule type to the message.
+             *
+             * @param ruleType the type of rules that have changed
+             * @return interface {@link IRules} for the next step in the build
+             */
+            IRules withRuleType(RuleType ruleType);
+
+            /**
+             * Adds new resource rules to the message.
+             *
+             * @param rules the new resource rules for the resource
+             * @return class {@link PolicyChange} for the completed class from the builder.
+             */
+            default PolicyChange withResourceRules(final Rules<LeafResource> rules) {
+                return withRuleType(RuleType.RESOURCE).withRules(rules);
+            }
+
+            /**
+             * Adds new record rules to the message.
+             *
+             * @param rules the new record rules for the resource
+             * @return class {@link PolicyChange} for the completed class from the builder.
+             */
+            default PolicyChange withRecordRules(final Rules<Serializable> rules) {
+                return withRuleType(RuleType.RECORD).withRules(rules);
+            }
+        }
+
+        /**
+         * Adds the {@link Rules} to the message.
+         */
+        public interface IRules {
+            /**
+             * Adds the {@link Rules} to the message.
+             *
+             * @param rules the new rules for the resource
+             * @return class {@link PolicyChange} for the completed class from the builder.
+             */
+            PolicyChange withRules(Rules<?> rules);
+        }
+    }
+
+    @Override
+    @Generated
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PolicyChange)) {
+            return false;
+        }
+        PolicyChange that = (PolicyChange) o;
+        return resourceId.equals(that.resourceId) &&
+                ruleType == that.ruleType &&
+                rules.equals(that.rules);
+    }
+
+    @Override
+    @Generated
+    public int hashCode() {
+        return Objects.hash(resourceId, ruleType, rules);
+    }
+
+    @Override
+    @Generated
+    public String toString() {
+        return new StringJoiner(", ", PolicyChange.class.getSimpleName() + "[", "]")
+                .add("resourceId=" + resourceId)
+                .add("ruleType=" + ruleType)
+                .add("rules=" + rules)
+                .toString();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.rule;
+
+import uk.gov.gchq.palisade.Context;
+import uk.gov.gchq.palisade.rule.Rule;
+import uk.gov.gchq.palisade.user.User;
+
+import java.io.Serializable;
+
+/**
+ * A {@link LeafIndependentRule} is a coarse-grained {@link Rule} whose decision depends only on the user and the context
+ * of a request (such as the user's auths and roles, or the purpose), and never on the item it is applied to.
+ * The item is either kept unchanged or fully redacted.
+ * <p>
+ * As the decision is the same for every resource in a request, the policy-service will only evaluate these rules once
+ * per user, context and set of rules, rather than once per resource.
+ * Implementations should therefore be free of side effects, and should implement {@code equals} and {@code hashCode}
+ * so that equal rules deserialised from a policy store share a cached decision.
+ *
+ * @param <T> The type of the item the rule is applied to, normally a {@link uk.gov.gchq.palisade.resource.LeafResource}
+ */
+public interface LeafIndependentRule<T extends Serializable> extends Rule<T> {
+
+    /**
+     * Tests whether items should be kept for this user and context.
+     *
+     * @param user    the user requesting access to the data
+     * @param context the query context
+     * @return true if items should be kept, false if they should be redacted
+     */
+    boolean test(final User user, final Context context);
+
+    @Override
+    default T apply(final T obj, final User user, final Context context) {
+        if (test(user, context)) {
+            return obj;
+        } else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link PolicyService} holding an in-memory index of which resource ids have rules set against them, in front of a
+ * durable {@link PersistentPolicyService}.
+ * Most resources in a hierarchy (and most parents of a resource) have no rules of their own, so the {@link PolicyServiceHierarchyProxy}
+ * asks for many resource ids that will never be found. These are answered from the index without querying the store,
+ * while the rules themselves are only ever held by the store (and the cache), so the number of policies is not bounded by memory.
+ * The index is warmed from the store at startup, and updated after every write to the store.
+ * <p>
+ * The index only sees writes made through this instance, so it is only complete if every instance applies every change
+ * (such as with the {@link KafkaPolicyChangeService}). Otherwise the index should read through, so that an id missing from
+ * the index is still looked up in the store (and added to the index if found), at the cost of a query for every resource without rules.
+ */
+public class IndexedPolicyService implements PolicyService, MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedPolicyService.class);
+    private static final String METRIC_NAME = "policy.index.size";
+
+    private final PersistentPolicyService delegate;
+    private final Set<String> resourceRulesIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> recordRulesIds = ConcurrentHashMap.newKeySet();
+    private final boolean readThrough;
+
+    /**
+     * Create a new index over the given policy store, answering any id missing from the index without querying the store
+     *
+     * @param delegate the {@link PersistentPolicyService} to index, which remains the source of truth for all rules
+     */
+    public IndexedPolicyService(final PersistentPolicyService delegate) {
+        this(delegate, false);
+    }
+
+    /**
+     * Create a new index over the given policy store
+     *
+     * @param delegate    the {@link PersistentPolicyService} to index, which remains the source of truth for all rules
+     * @param readThrough whether an id missing from the index is still looked up in the store, for when rules may be set
+     *                    in the store without passing through this index
+     */
+    public IndexedPolicyService(final PersistentPolicyService delegate, final boolean readThrough) {
+        this.delegate = requireNonNull(delegate, "PersistentPolicyService cannot be null");
+        this.readThrough = readThrough;
+    }
+
+    /**
+     * Warm the index with the ids of every resource with rules in the store
+     */
+    public void warm() {
+        resourceRulesIds.addAll(delegate.getResourceRulesIds());
+        recordRulesIds.addAll(delegate.getRecordRulesIds());
+        LOGGER.info("Warmed policy index with {} resource rules ids and {} record rules ids", resourceRulesIds.size(), recordRulesIds.size());
+    }
+
+    @Override
+    public Optional<Rules<LeafResource>> getResourceRules(final String resourceId) {
+        if (resourceRulesIds.contains(resourceId)) {
+            return delegate.getResourceRules(resourceId);
+        }
+        if (!readThrough) {
+            LOGGER.debug("No resource rules indexed for resourceId {}", resourceId);
+            return Optional.empty();
+        }
+        Optional<Rules<LeafResource>> rules = delegate.getResourceRules(resourceId);
+        rules.ifPresent(found -> resourceRulesIds.add(resourceId));
+        return rules;
+    }
+
+    @Override
+    public Optional<Rules<Serializable>> getRecordRules(final String resourceId) {
+        if (recordRulesIds.contains(resourceId)) {
+            return delegate.getRecordRules(resourceId);
+        }
+        if (!readThrough) {
+            LOGGER.debug("No record rules indexed for resourceId {}", resourceId);
+            return Optional.empty();
+        }
+        Optional<Rules<Serializable>> rules = delegate.getRecordRules(resourceId);
+        rules.ifPresent(found -> recordRulesIds.add(resourceId));
+        return rules;
+    }
+
+    @Override
+    public Optional<Rules<LeafResource>> setResourceRules(final String resourceId, final Rules<LeafResource> rules) {
+        Optional<Rules<LeafResource>> setRules = delegate.setResourceRules(resourceId, rules);
+        resourceRulesIds.add(resourceId);
+        return setRules;
+    }
+
+    @Override
+    public Optional<Rules<Serializable>> setRecordRules(final String resourceId, final Rules<Serializable> rules) {
+        Optional<Rules<Serializable>> setRules = delegate.setRecordRules(resourceId, rules);
+        recordRulesIds.add(resourceId);
+        return setRules;
+    }
+
+    @Override
+    public void setAllResourceRules(final Map<String, Rules<LeafResource>> resourceRules) {
+        delegate.setAllResourceRules(resourceRules);
+        resourceRulesIds.addAll(resourceRules.keySet());
+    }
+
+    @Override
+    public void setAllRecordRules(final Map<String, Rules<Serializable>> recordRules) {
+        delegate.setAllRecordRules(recordRules);
+        recordRulesIds.addAll(recordRules.keySet());
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder(METRIC_NAME, resourceRulesIds, Set::size)
+                .tag("rules", "resource")
+                .description("The number of resource ids with resource rules in the policy store")
+                .register(registry);
+        Gauge.builder(METRIC_NAME, recordRulesIds, Set::size)
+                .tag("rules", "record")
+                .description("The number of resource ids with record rules in the policy store")
+                .register(registry);
+    }
+}
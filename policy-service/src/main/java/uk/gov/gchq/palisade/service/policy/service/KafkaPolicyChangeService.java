@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import akka.Done;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.model.PolicyChange;
+import uk.gov.gchq.palisade.service.policy.stream.ProducerTopicConfiguration;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link PolicyChangeService} for many instances of the Policy Service, publishing each change to a compacted
+ * policy-change topic.
+ * Every instance (including this one) consumes the topic and applies each change to its own caches with {@link #apply(PolicyChange)},
+ * so all instances converge on the same rules, and a new instance replays the topic to build its caches at startup.
+ */
+public class KafkaPolicyChangeService implements PolicyChangeService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(KafkaPolicyChangeService.class);
+
+    private final Sink<ProducerRecord<String, PolicyChange>, CompletionStage<Done>> changeSink;
+    private final ProducerTopicConfiguration topicConfiguration;
+    private final Materializer materialiser;
+    private final PolicyServiceHierarchyProxy hierarchy;
+
+    /**
+     * Create a new KafkaPolicyChangeService
+     *
+     * @param changeSink         the {@link Sink} for publishing changes to the policy-change topic
+     * @param topicConfiguration the producer topic configuration, containing the policy-change topic
+     * @param materialiser       the Akka {@link Materializer} used to publish changes
+     * @param hierarchy          the {@link PolicyServiceHierarchyProxy} through which consumed changes are applied
+     */
+    public KafkaPolicyChangeService(
+            final Sink<ProducerRecord<String, PolicyChange>, CompletionStage<Done>> changeSink,
+            final ProducerTopicConfiguration topicConfiguration,
+            final Materializer materialiser,
+            final PolicyServiceHierarchyProxy hierarchy) {
+        this.changeSink = changeSink;
+        this.topicConfiguration = topicConfiguration;
+        this.materialiser = materialiser;
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public CompletableFuture<Void> setResourceRules(final String resourceId, final Rules<LeafResource> rules) {
+        return publish(PolicyChange.Builder.create().withResourceId(resourceId).withResourceRules(rules));
+    }
+
+    @Override
+    public CompletableFuture<Void> setRecordRules(final String resourceId, final Rules<Serializable> rules) {
+        return publish(PolicyChange.Builder.create().withResourceId(resourceId).withRecordRules(rules));
+    }
+
+    /**
+     * Apply a change consumed from the policy-change topic to the caches of this instance
+     *
+     * @param change the {@link PolicyChange} to apply
+     */
+    @SuppressWarnings("unchecked")
+    public void apply(final PolicyChange change) {
+        LOGGER.debug("Applying policy change {}", change);
+        if (change.getRuleType() == PolicyChange.RuleType.RESOURCE) {
+            hierarchy.setResourceRules(change.getResourceId(), (Rules<LeafResource>) change.getRules());
+        } else {
+            hierarchy.setRecordRules(change.getResourceId(), (Rules<Serializable>) change.getRules());
+        }
+    }
+
+    private CompletableFuture<Void> publish(final PolicyChange change) {
+        var topic = topicConfiguration.getTopics().get("policy-change-topic");
+        return Source.single(new ProducerRecord<>(topic.getName(), change.getKey(), change))
+                .runWith(changeSink, materialiser)
+                .toCompletableFuture()
+                .thenApply(done -> null);
+    }
+}
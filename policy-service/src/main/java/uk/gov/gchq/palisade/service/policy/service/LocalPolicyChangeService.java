@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link PolicyChangeService} for a single instance of the Policy Service, applying changes directly to its own caches.
+ * With many instances, each using the caffeine profile, other instances will not see these changes, see {@link KafkaPolicyChangeService}.
+ * With the tiered profile, other instances see these changes through the shared cache, and invalidate their cached merges when told of the write.
+ */
+public class LocalPolicyChangeService implements PolicyChangeService {
+    private final PolicyServiceHierarchyProxy hierarchy;
+
+    /**
+     * Create a new LocalPolicyChangeService
+     *
+     * @param hierarchy the {@link PolicyServiceHierarchyProxy} through which changes are applied, invalidating its cached merges
+     */
+    public LocalPolicyChangeService(final PolicyServiceHierarchyProxy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public CompletableFuture<Void> setResourceRules(final String resourceId, final Rules<LeafResource> rules) {
+        hierarchy.setResourceRules(resourceId, rules);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> setRecordRules(final String resourceId, final Rules<Serializable> rules) {
+        hierarchy.setRecordRules(resourceId, rules);
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import java.util.Set;
+
+/**
+ * A {@link PolicyService} backed by a durable store, which can list every resource id it holds rules for.
+ * This allows an in-memory index of policied resource ids to be built over the store, see {@link IndexedPolicyService}.
+ */
+public interface PersistentPolicyService extends PolicyService {
+
+    /**
+     * Get the ids of every resource that has resource rules set against it
+     *
+     * @return the set of resource ids with resource rules
+     */
+    Set<String> getResourceRulesIds();
+
+    /**
+     * Get the ids of every resource that has record rules set against it
+     *
+     * @return the set of resource ids with record rules
+     */
+    Set<String> getRecordRulesIds();
+}
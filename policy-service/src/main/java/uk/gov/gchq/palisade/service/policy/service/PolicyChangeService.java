@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Makes changes to the rules held by the Policy Service at runtime, such that every cache of those rules
+ * (including any cached hierarchy merges) is updated.
+ */
+public interface PolicyChangeService {
+
+    /**
+     * Set the resource rules against a resource id
+     *
+     * @param resourceId the id of the resource to apply rules to
+     * @param rules      the new resource rules for the resource
+     * @return a {@link CompletableFuture} completing once the change has been accepted
+     */
+    CompletableFuture<Void> setResourceRules(String resourceId, Rules<LeafResource> rules);
+
+    /**
+     * Set the record rules against a resource id
+     *
+     * @param resourceId the id of the resource to apply rules to
+     * @param rules      the new record rules for the resource
+     * @return a {@link CompletableFuture} completing once the change has been accepted
+     */
+    CompletableFuture<Void> setRecordRules(String resourceId, Rules<Serializable> rules);
+}
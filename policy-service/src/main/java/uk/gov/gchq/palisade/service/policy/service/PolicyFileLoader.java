@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.config.StdPolicyPrepopulationFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Loads policies in bulk from a file, and optionally watches the file to reload the policies whenever it changes.
+ * The file has one policy per line, each a JSON object with the same fields as a {@link StdPolicyPrepopulationFactory}, eg.
+ * <pre>{@code {"resourceId": "/data/", "resourceRules": {"1": "my.ResourceRule"}, "recordRules": {"2": "my.RecordRule"}}}</pre>
+ * As each line is also a YAML flow mapping, the file may equally be treated as YAML.
+ * Blank lines and lines starting with {@code #} are ignored, and if a resource id appears more than once, the last line wins.
+ * <p>
+ * Lines are parsed and their rules built in parallel, then every policy in the file is applied to the
+ * {@link PolicyServiceHierarchyProxy} as a single batch, so lookups never see a partially-loaded file.
+ * Any policy loaded from a previous version of the file but no longer in it is replaced with empty rules.
+ * If the file cannot be read or parsed, the previously-loaded policies are left in place.
+ * Files should be replaced atomically (eg. written elsewhere then moved into place), so a partially-written file is never loaded.
+ */
+public class PolicyFileLoader implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PolicyFileLoader.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final PolicyServiceHierarchyProxy service;
+    private final Path policyFile;
+    private final boolean watch;
+    private Set<String> loadedResourceIds = new HashSet<>();
+    private WatchService watchService;
+
+    private static final class LoadedPolicy {
+        private final Entry<String, Rules<LeafResource>> resourceRules;
+        private final Entry<String, Rules<Serializable>> recordRules;
+
+        private LoadedPolicy(final StdPolicyPrepopulationFactory factory) {
+            this.resourceRules = factory.buildResourceRules();
+            this.recordRules = factory.buildRecordRules();
+        }
+    }
+
+    /**
+     * Create a new loader for the given policy file
+     *
+     * @param service    the {@link PolicyServiceHierarchyProxy} to apply the loaded policies to
+     * @param policyFile the path to the file of policies
+     * @param watch      whether to watch the file for changes, reloading the policies each time it changes
+     */
+    public PolicyFileLoader(final PolicyServiceHierarchyProxy service, final String policyFile, final boolean watch) {
+        this.service = requireNonNull(service, "PolicyServiceHierarchyProxy cannot be null");
+        this.policyFile = Path.of(requireNonNull(policyFile, "Policy file cannot be null")).toAbsolutePath().normalize();
+        this.watch = watch;
+    }
+
+    /**
+     * Load the policy file, then begin watching it for changes on a background thread if configured to do so.
+     * A missing file is not an error if the file is being watched, as the policies will be loaded once it is created.
+     *
+     * @throws IOException if the file could not be loaded, or the watch service could not be created
+     */
+    public void start() throws IOException {
+        try {
+            load();
+        } catch (NoSuchFileException ex) {
+            if (!watch) {
+                throw ex;
+            }
+            LOGGER.warn("Policy file {} does not exist yet, waiting for it to be created", policyFile);
+        }
+        if (watch) {
+            watchService = FileSystems.getDefault().newWatchService();
+            policyFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Thread watchThread = new Thread(this::processEvents, "policy-file-watcher");
+            watchThread.setDaemon(true);
+            watchThread.start();
+            LOGGER.info("Watching {} for policy changes", policyFile);
+        }
+    }
+
+    /**
+     * Stop watching the policy file, any policies already loaded are left in place
+     *
+     * @throws IOException if the underlying {@link WatchService} could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Read every policy from the file and apply them to the service as a single batch
+     *
+     * @return the number of policies loaded
+     * @throws IOException if the file could not be read, or a line could not be parsed
+     */
+    public synchronized int load() throws IOException {
+        long start = System.nanoTime();
+        List<String> lines = Files.readAllLines(policyFile, StandardCharsets.UTF_8);
+        List<LoadedPolicy> policies;
+        try {
+            policies = lines.parallelStream()
+                    .map(String::strip)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(PolicyFileLoader::parse)
+                    .map(LoadedPolicy::new)
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        // Collect in order of the file, so that the last line for a resource id wins
+        Map<String, Rules<LeafResource>> resourceRules = new LinkedHashMap<>();
+        Map<String, Rules<Serializable>> recordRules = new LinkedHashMap<>();
+        for (LoadedPolicy policy : policies) {
+            resourceRules.put(policy.resourceRules.getKey(), policy.resourceRules.getValue());
+            recordRules.put(policy.recordRules.getKey(), policy.recordRules.getValue());
+        }
+        // Clear any policies that were in the last version of the file, but have since been removed
+        Set<String> resourceIds = new HashSet<>(resourceRules.keySet());
+        loadedResourceIds.stream()
+                .filter(resourceId -> !resourceIds.contains(resourceId))
+                .forEach((String resourceId) -> {
+                    resourceRules.put(resourceId, new Rules<>());
+                    recordRules.put(resourceId, new Rules<>());
+                });
+
+        service.setAllRules(resourceRules, recordRules);
+        loadedResourceIds = resourceIds;
+        LOGGER.info("Loaded {} policies from {} in {}ms", resourceIds.size(), policyFile, (System.nanoTime() - start) / 1_000_000);
+        return resourceIds.size();
+    }
+
+    private static StdPolicyPrepopulationFactory parse(final String line) {
+        try {
+            return MAPPER.readValue(line, StdPolicyPrepopulationFactory.class);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to parse policy: " + line, ex);
+        }
+    }
+
+    private void processEvents() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                // Many events may be raised for a single change to the file, but only one reload is needed
+                boolean changed = key.pollEvents().stream()
+                        .anyMatch(event -> event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || policyFile.getFileName().equals(event.context()));
+                if (changed) {
+                    reload();
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException ex) {
+            LOGGER.info("Stopped watching {} for policy changes", policyFile);
+        } catch (InterruptedException ex) {
+            LOGGER.warn("Interrupted while watching {} for policy changes", policyFile);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload() {
+        try {
+            load();
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Failed to reload policies from {}, keeping the previously-loaded policies", policyFile, ex);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import uk.gov.gchq.palisade.resource.Resource;
 import uk.gov.gchq.palisade.rule.Rules;
 
 import java.io.Serializable;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -66,4 +67,24 @@ public interface PolicyService {
      * @return an Optional Serializable rules object that contains the returned map of record rules for each resource.
      */
     Optional<Rules<Serializable>> setRecordRules(final String resourceId, final Rules<Serializable> rules);
+
+    /**
+     * Set the resource rules for many resources at once.
+     * Stores able to write in bulk should override this, rather than setting the rules of each resource in turn.
+     *
+     * @param resourceRules the resource rules to set, keyed by resource id
+     */
+    default void setAllResourceRules(final Map<String, Rules<LeafResource>> resourceRules) {
+        resourceRules.forEach(this::setResourceRules);
+    }
+
+    /**
+     * Set the record rules for many resources at once.
+     * Stores able to write in bulk should override this, rather than setting the rules of each resource in turn.
+     *
+     * @param recordRules the record rules to set, keyed by resource id
+     */
+    default void setAllRecordRules(final Map<String, Rules<Serializable>> recordRules) {
+        recordRules.forEach(this::setRecordRules);
+    }
 }
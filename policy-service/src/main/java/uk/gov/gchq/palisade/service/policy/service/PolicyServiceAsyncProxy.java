@@ -42,8 +42,11 @@ import java.util.concurrent.Executor;
 public class PolicyServiceAsyncProxy {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PolicyServiceAsyncProxy.class);
+    // Run on the calling thread, for work following on from a task already running on the executor
+    private static final Executor SAME_THREAD = Runnable::run;
     private final PolicyServiceHierarchyProxy service;
     private final Executor executor;
+    private final ResourceRuleEvaluator evaluator;
 
     /**
      * Constructor for instantiating the {@link PolicyServiceAsyncProxy}
@@ -52,9 +55,21 @@ public class PolicyServiceAsyncProxy {
      * @param executor an executor for any {@link CompletableFuture}s
      */
     public PolicyServiceAsyncProxy(final PolicyServiceHierarchyProxy service, final Executor executor) {
+        this(service, executor, new ResourceRuleEvaluator());
+    }
+
+    /**
+     * Constructor for instantiating the {@link PolicyServiceAsyncProxy}
+     *
+     * @param service   the PolicyServiceCachingProxy
+     * @param executor  an executor for any {@link CompletableFuture}s
+     * @param evaluator the {@link ResourceRuleEvaluator} used to apply resource rules, caching the decisions of any leaf-independent rules
+     */
+    public PolicyServiceAsyncProxy(final PolicyServiceHierarchyProxy service, final Executor executor, final ResourceRuleEvaluator evaluator) {
         LOGGER.debug("Initialised the PolicyServiceAsyncProxy");
         this.service = service;
         this.executor = executor;
+        this.evaluator = evaluator;
     }
 
     /**
@@ -100,11 +115,49 @@ public class PolicyServiceAsyncProxy {
      * @return the record rules for the LeafResource, if null then an exception will be thrown
      */
     public CompletableFuture<AuditablePolicyRecordResponse> getRecordRules(final AuditablePolicyResourceResponse modifiedAuditable) {
+        return getRecordRules(modifiedAuditable, executor);
+    }
+
+    /**
+     * Given a nullable request, get both the resource rules and record rules for the resource in a single task on the executor.
+     * The resource rules are applied to the resource, and the record rules are only looked up if the resource was not coarse grain filtered,
+     * or if there were no resource rules found, in which case the record rules would never be used.
+     *
+     * @param nullableRequest the resource the user wants access to
+     * @return the record rules for the LeafResource, or an {@link AuditErrorMessage} if there were no rules,
+     * or an empty {@link Optional} if the resource was filtered out by the resource rules and nothing should be returned to the user
+     */
+    public CompletableFuture<Optional<AuditablePolicyRecordResponse>> getRules(final @Nullable PolicyRequest nullableRequest) {
+        return getResourceRules(nullableRequest)
+                // Apply coarse-grained resource-level rules
+                .thenApply(this::applyRulesToResource)
+                // Get the record level rules on the same thread, if they are needed
+                .thenCompose((AuditablePolicyResourceResponse modifiedAuditable) -> {
+                    var request = modifiedAuditable.getPolicyRequest();
+                    if (request == null) {
+                        return getRecordRules(modifiedAuditable, SAME_THREAD).thenApply(Optional::of);
+                    }
+                    if (modifiedAuditable.getAuditErrorMessage() != null) {
+                        LOGGER.debug("No resource rules found for resource {}, skipping record rules", request.getResourceId());
+                        return CompletableFuture.completedFuture(Optional.of(AuditablePolicyRecordResponse.Builder.create()
+                                .withPolicyResponse(PolicyResponse.Builder.create(request)
+                                        .withRules(new Rules<>()))
+                                .withAuditErrorMessage(modifiedAuditable.getAuditErrorMessage())));
+                    }
+                    if (modifiedAuditable.getModifiedResource() == null) {
+                        LOGGER.debug("Resource {} was filtered out by its resource rules, skipping record rules", request.getResourceId());
+                        return CompletableFuture.completedFuture(Optional.empty());
+                    }
+                    return getRecordRules(modifiedAuditable, SAME_THREAD).thenApply(Optional::of);
+                });
+    }
+
+    private CompletableFuture<AuditablePolicyRecordResponse> getRecordRules(final AuditablePolicyResourceResponse modifiedAuditable, final Executor recordExecutor) {
         var nullableRequest = modifiedAuditable.getPolicyRequest();
         return Optional.ofNullable(nullableRequest)
                 .map(request ->
                         // Find the record rules for this resource
-                        CompletableFuture.supplyAsync(() -> service.getRecordRules(request.getResource()))
+                        CompletableFuture.supplyAsync(() -> service.getRecordRules(request.getResource()), recordExecutor)
                                 // Then build a AuditablePolicyRecordResponse message, with no errors
                                 .thenApply(rules -> AuditablePolicyRecordResponse.Builder.create()
                                         .withPolicyResponse(PolicyResponse.Builder.create(request)
@@ -127,17 +180,19 @@ public class PolicyServiceAsyncProxy {
 
     /**
      * Applies the {@link Rules} to the {@link Resource}.
+     * Any {@link uk.gov.gchq.palisade.service.policy.rule.LeafIndependentRule}s are only evaluated once per user, context and rules,
+     * rather than for every resource in the request.
      *
      * @param auditablePolicyResourceRules container for holding the {@code PolicyRequest}, {@code Rules} and the {@code AuditErrorMessage}
      * @return an instance of {@code AuditablePolicyResourceResponse} with the rules applied to the {@code Resource}
      */
-    public static AuditablePolicyResourceResponse applyRulesToResource(final AuditablePolicyResourceRules auditablePolicyResourceRules) {
+    public AuditablePolicyResourceResponse applyRulesToResource(final AuditablePolicyResourceRules auditablePolicyResourceRules) {
         Rules<LeafResource> rules = auditablePolicyResourceRules.getRules();
         var policyRequest = auditablePolicyResourceRules.getPolicyRequest();
         if (!Objects.isNull(rules)) {
             LOGGER.debug("Applying rules {} to resource {}", rules, policyRequest.getResource());
             // Apply the rules to the resource - a coarse grain filtering
-            var resource = PolicyServiceHierarchyProxy.applyRulesToResource(policyRequest.getUser(), policyRequest.getResource(), policyRequest.getContext(), rules);
+            var resource = evaluator.applyRulesToResource(policyRequest.getUser(), policyRequest.getResource(), policyRequest.getContext(), rules);
             return AuditablePolicyResourceResponse.Builder.create(auditablePolicyResourceRules).withModifiedResource(resource);
         } else {
             // do nothing and return
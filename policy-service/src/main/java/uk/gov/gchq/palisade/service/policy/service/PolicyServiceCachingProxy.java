@@ -18,6 +18,7 @@ package uk.gov.gchq.palisade.service.policy.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
@@ -26,6 +27,7 @@ import uk.gov.gchq.palisade.resource.LeafResource;
 import uk.gov.gchq.palisade.rule.Rules;
 
 import java.io.Serializable;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -36,7 +38,10 @@ import java.util.Optional;
 @CacheConfig(cacheNames = {"resourceRules, recordRules"})
 public class PolicyServiceCachingProxy {
     private static final Logger LOGGER = LoggerFactory.getLogger(PolicyServiceCachingProxy.class);
+    private static final String RESOURCE_RULES = "resourceRules";
+    private static final String RECORD_RULES = "recordRules";
     private final PolicyService service;
+    private final CacheManager cacheManager;
 
     /**
      * Default constructor used to create the PolicyServiceCachingProxy
@@ -44,7 +49,18 @@ public class PolicyServiceCachingProxy {
      * @param service {@link PolicyService} this service calls
      */
     public PolicyServiceCachingProxy(final PolicyService service) {
+        this(service, null);
+    }
+
+    /**
+     * Create a PolicyServiceCachingProxy which can also write many rules to the cache at once, see {@link #setAllRules(Map, Map)}
+     *
+     * @param service      {@link PolicyService} this service calls
+     * @param cacheManager the {@link CacheManager} holding the caches used by the {@link Cacheable} and {@link CachePut} methods, or null if caching is disabled
+     */
+    public PolicyServiceCachingProxy(final PolicyService service, final CacheManager cacheManager) {
         this.service = service;
+        this.cacheManager = cacheManager;
     }
 
     /**
@@ -100,4 +116,26 @@ public class PolicyServiceCachingProxy {
         LOGGER.debug("RecordRules {} added to cache", rules);
         return service.setRecordRules(resourceId, rules);
     }
+
+    /**
+     * Set the resource and record rules for many resources at once, writing them to the store in bulk,
+     * then adding each to the cache as the {@link CachePut} methods would.
+     *
+     * @param resourceRules the resource rules to set, keyed by resource id
+     * @param recordRules   the record rules to set, keyed by resource id
+     */
+    public void setAllRules(final Map<String, Rules<LeafResource>> resourceRules, final Map<String, Rules<Serializable>> recordRules) {
+        service.setAllResourceRules(resourceRules);
+        service.setAllRecordRules(recordRules);
+        putAll(RESOURCE_RULES, resourceRules);
+        putAll(RECORD_RULES, recordRules);
+        LOGGER.debug("Cache add of {} resource rules and {} record rules", resourceRules.size(), recordRules.size());
+    }
+
+    private <T extends Serializable> void putAll(final String cacheName, final Map<String, Rules<T>> rules) {
+        // The CachePut methods cache the value of the returned Optional, rather than the Optional itself
+        Optional.ofNullable(cacheManager)
+                .map(manager -> manager.getCache(cacheName))
+                .ifPresent(cache -> rules.forEach(cache::put));
+    }
 }
@@ -15,6 +15,11 @@
  */
 package uk.gov.gchq.palisade.service.policy.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,8 +34,12 @@ import uk.gov.gchq.palisade.user.User;
 import uk.gov.gchq.palisade.util.RulesUtil;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 
 /**
@@ -41,10 +50,15 @@ import java.util.function.Function;
  * If there are any negation rules then all rules inherited from up the
  * chain should be checked to see if any rules need removing due to the negation rule.
  */
-public class PolicyServiceHierarchyProxy {
+public class PolicyServiceHierarchyProxy implements MeterBinder {
     private static final Logger LOGGER = LoggerFactory.getLogger(PolicyServiceHierarchyProxy.class);
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+    private static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.ofHours(12);
 
     private final PolicyServiceCachingProxy service;
+    private final Cache<String, Optional<Rules<LeafResource>>> mergedResourceRules;
+    private final Cache<String, Optional<Rules<Serializable>>> mergedRecordRules;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     /**
      * Instantiates a new Policy Service hierarchy proxy taking a PolicyService implementation as an argument.
@@ -52,7 +66,21 @@ public class PolicyServiceHierarchyProxy {
      * @param service {@link PolicyService} used to instantiate this class
      */
     public PolicyServiceHierarchyProxy(final PolicyServiceCachingProxy service) {
+        this(service, DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_WRITE);
+    }
+
+    /**
+     * Instantiates a new Policy Service hierarchy proxy, caching the merged rules of up to the given number of parent resources.
+     * Cached merged rules should expire no later than the underlying policy cache, so that rules expired from there are not still applied.
+     *
+     * @param service           {@link PolicyService} used to instantiate this class
+     * @param maximumSize       the maximum number of parent resources to cache merged rules for, for each of resource and record rules
+     * @param expireAfterWrite  the time after which cached merged rules are discarded and recalculated
+     */
+    public PolicyServiceHierarchyProxy(final PolicyServiceCachingProxy service, final long maximumSize, final Duration expireAfterWrite) {
         this.service = service;
+        this.mergedResourceRules = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite).recordStats().build();
+        this.mergedRecordRules = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite).recordStats().build();
     }
 
     private static <T extends Serializable> Rules<T> mergeRules(final Rules<T> inheritedRules, final Rules<T> newRules) {
@@ -99,20 +127,23 @@ public class PolicyServiceHierarchyProxy {
     /**
      * This method is used to recursively go up the resource hierarchy ending with the original
      * data type to extract and merge the policies at each stage of the hierarchy.
+     * The merged rules of each parent are cached, so the resources under a parent only ever need to look up their own rules.
      *
      * @param resource       A {@link Resource} to get the applicable rules for.
-     * @param <R>            the type of resource (which may be a supertype)
      * @param rulesExtractor The rule type to extract from each policy
+     * @param mergedRules    The cache of merged rules for parent resources, for this rule type
+     * @param <T>            the type of item the rules apply to
      * @return An optional {@link Rules} object, which contains the list of rules found
      * that need to be applied to the resource.
      */
-    private <R extends Resource> Optional<Rules<Serializable>> getRecordRules(final R resource, final Function<Resource, Optional<Rules<Serializable>>> rulesExtractor) {
+    private <T extends Serializable> Optional<Rules<T>> getMergedRules(final Resource resource, final Function<Resource, Optional<Rules<T>>> rulesExtractor,
+                                                                       final Cache<String, Optional<Rules<T>>> mergedRules) {
         LOGGER.debug("Getting the applicable rules: {}", resource);
-        Optional<Rules<Serializable>> inheritedRules;
+        Optional<Rules<T>> inheritedRules;
         if (resource instanceof ChildResource) {
             // We will also need the policy applied to the parent resource
             LOGGER.debug("resource {} an instance of ChildResource", resource);
-            inheritedRules = getRecordRules(((ChildResource) resource).getParent(), rulesExtractor);
+            inheritedRules = getParentRules(((ChildResource) resource).getParent(), rulesExtractor, mergedRules);
             LOGGER.debug("Inherited rules {} for resource {}", inheritedRules, resource);
         } else {
             // We are at top of hierarchy
@@ -120,7 +151,7 @@ public class PolicyServiceHierarchyProxy {
             inheritedRules = Optional.empty();
         }
 
-        Optional<Rules<Serializable>> newRules = rulesExtractor.apply(resource);
+        Optional<Rules<T>> newRules = rulesExtractor.apply(resource);
 
         // If both present, merge both
         // If either present, return present
@@ -128,36 +159,76 @@ public class PolicyServiceHierarchyProxy {
         return inheritedRules.map(iRules -> newRules.map(nRules -> mergeRules(iRules, nRules)).or(() -> inheritedRules)).orElse(newRules);
     }
 
+    private <T extends Serializable> Optional<Rules<T>> getParentRules(final Resource parent, final Function<Resource, Optional<Rules<T>>> rulesExtractor,
+                                                                       final Cache<String, Optional<Rules<T>>> mergedRules) {
+        Optional<Rules<T>> cachedRules = mergedRules.getIfPresent(parent.getId());
+        if (cachedRules != null) {
+            LOGGER.debug("Found cached merged rules {} for parent {}", cachedRules, parent.getId());
+            return cachedRules;
+        }
+        Optional<Rules<T>> parentRules = getMergedRules(parent, rulesExtractor, mergedRules);
+        mergedRules.put(parent.getId(), parentRules);
+        return parentRules;
+    }
+
+    private <T extends Serializable> Optional<Rules<T>> getLeafRules(final LeafResource resource, final Function<Resource, Optional<Rules<T>>> rulesExtractor,
+                                                                     final Cache<String, Optional<Rules<T>>> mergedRules) {
+        // Lookups may run concurrently with each other, but not with a change to the rules, so that merged rules from before a change are never cached after it
+        lock.readLock().lock();
+        try {
+            return getMergedRules(resource, rulesExtractor, mergedRules);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void setRules(final String resourceId, final Runnable setter) {
+        lock.writeLock().lock();
+        try {
+            setter.run();
+            invalidate(resourceId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     /**
-     * This method is used to recursively go up the resource hierarchy ending with the original
-     * data type to extract and merge the policies at each stage of the hierarchy.
+     * Invalidate the cached merged rules for a resource and every resource under it,
+     * for use when the rules for this resource have been changed other than through this proxy (such as by another instance).
+     * Waits for any lookups in progress, so that merged rules read from before the change are not cached after it.
      *
-     * @param resource       A {@link Resource} to get the applicable rules for.
-     * @param rulesExtractor The rule type to extract from each policy
-     * @param <R>            the type of resource (which may be a supertype)
-     * @return An optional {@link Rules} object, which contains the list of rules found
-     * that need to be applied to the resource.
+     * @param resourceId the id of the resource whose rules have changed
      */
-    private <R extends Resource> Optional<Rules<LeafResource>> getResourceRules(final R resource, final Function<Resource, Optional<Rules<LeafResource>>> rulesExtractor) {
-        LOGGER.debug("Getting the applicable rules: {}", resource);
-        Optional<Rules<LeafResource>> inheritedRules;
-        if (resource instanceof ChildResource) {
-            // We will also need the policy applied to the parent resource
-            LOGGER.debug("resource {} an instance of ChildResource", resource);
-            inheritedRules = getResourceRules(((ChildResource) resource).getParent(), rulesExtractor);
-            LOGGER.debug("Inherited rules {} for resource {}", inheritedRules, resource);
-        } else {
-            // We are at top of hierarchy
-            LOGGER.debug("resource {} NOT an instance of ChildResource (top of hierarchy)", resource);
-            inheritedRules = Optional.empty();
+    public void invalidate(final String resourceId) {
+        lock.writeLock().lock();
+        try {
+            // Any resource under this one has an id starting with this id, an unrelated resource sharing a prefix is merely recalculated
+            mergedResourceRules.asMap().keySet().removeIf(id -> id.startsWith(resourceId));
+            mergedRecordRules.asMap().keySet().removeIf(id -> id.startsWith(resourceId));
+            LOGGER.debug("Invalidated cached merged rules under resourceId {}", resourceId);
+        } finally {
+            lock.writeLock().unlock();
         }
+    }
 
-        Optional<Rules<LeafResource>> newRules = rulesExtractor.apply(resource);
+    /**
+     * Invalidate all cached merged rules, for use when any number of rules may have been changed other than through this proxy.
+     */
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            mergedResourceRules.invalidateAll();
+            mergedRecordRules.invalidateAll();
+            LOGGER.debug("Invalidated all cached merged rules");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        // If both present, merge both
-        // If either present, return present
-        // If none present, return Optional.empty()
-        return inheritedRules.map(iRules -> newRules.map(nRules -> mergeRules(iRules, nRules)).or(() -> inheritedRules)).orElse(newRules);
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, mergedResourceRules, "mergedResourceRules");
+        CaffeineCacheMetrics.monitor(registry, mergedRecordRules, "mergedRecordRules");
     }
 
     /**
@@ -168,7 +239,7 @@ public class PolicyServiceHierarchyProxy {
      * @return the record rules that apply to the LeafResource
      */
     public Rules<Serializable> getRecordRules(final LeafResource resource) {
-        Optional<Rules<Serializable>> optionalRules = getRecordRules(resource, rulesResource -> service.getRecordRules(rulesResource.getId()));
+        Optional<Rules<Serializable>> optionalRules = getLeafRules(resource, rulesResource -> service.getRecordRules(rulesResource.getId()), mergedRecordRules);
 
         return optionalRules
                 .filter(rules -> !rules.getRules().isEmpty())
@@ -184,7 +255,7 @@ public class PolicyServiceHierarchyProxy {
      * @return rules {@link Rules} object, which contains the list of rules found that need to be applied to the resource
      */
     public Rules<LeafResource> getResourceRules(final LeafResource resource) {
-        Optional<Rules<LeafResource>> optionalRules = getResourceRules(resource, ruleResource -> service.getResourceRules(ruleResource.getId()));
+        Optional<Rules<LeafResource>> optionalRules = getLeafRules(resource, ruleResource -> service.getResourceRules(ruleResource.getId()), mergedResourceRules);
 
         return optionalRules
                 .filter(rules -> !rules.getRules().isEmpty())
@@ -198,7 +269,17 @@ public class PolicyServiceHierarchyProxy {
      * @param rules    {@link Rules} object, which contains the list of rules to be applied to the resource.
      */
     public void setRecordRules(final Resource resource, final Rules<Serializable> rules) {
-        this.service.setRecordRules(resource.getId(), rules);
+        setRecordRules(resource.getId(), rules);
+    }
+
+    /**
+     * This method sets the record rules against the resource id for which the user will eventually request
+     *
+     * @param resourceId the id of the resource which the user wants to apply rules against
+     * @param rules      {@link Rules} object, which contains the list of rules to be applied to the resource.
+     */
+    public void setRecordRules(final String resourceId, final Rules<Serializable> rules) {
+        setRules(resourceId, () -> this.service.setRecordRules(resourceId, rules));
     }
 
     /**
@@ -208,6 +289,36 @@ public class PolicyServiceHierarchyProxy {
      * @param rules    {@link Rules} object, which contains the list of rules to be applied to the resource.
      */
     public void setResourceRules(final Resource resource, final Rules<LeafResource> rules) {
-        this.service.setResourceRules(resource.getId(), rules);
+        setResourceRules(resource.getId(), rules);
+    }
+
+    /**
+     * This method sets the resource rules against the resource id for which the user will eventually request
+     *
+     * @param resourceId the id of the resource the user wants access to, this could be a Directory, stream, system resource or file
+     * @param rules      {@link Rules} object, which contains the list of rules to be applied to the resource.
+     */
+    public void setResourceRules(final String resourceId, final Rules<LeafResource> rules) {
+        setRules(resourceId, () -> this.service.setResourceRules(resourceId, rules));
+    }
+
+    /**
+     * Set the resource and record rules for many resources as a single batch, written to the store in bulk.
+     * No lookups are made while the batch is being applied, so every lookup sees either all or none of the batch,
+     * and all cached merged rules are then discarded at once, rather than searched for each resource in turn.
+     * They are discarded even if the batch fails part-way, as any of its rules may already have been applied.
+     *
+     * @param resourceRules the resource rules to set, keyed by resource id
+     * @param recordRules   the record rules to set, keyed by resource id
+     */
+    public void setAllRules(final Map<String, Rules<LeafResource>> resourceRules, final Map<String, Rules<Serializable>> recordRules) {
+        lock.writeLock().lock();
+        try {
+            this.service.setAllRules(resourceRules, recordRules);
+            LOGGER.debug("Set {} resource rules and {} record rules", resourceRules.size(), recordRules.size());
+        } finally {
+            invalidateAll();
+            lock.writeLock().unlock();
+        }
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A durable {@link PolicyService} storing rules in Redis, without any expiry.
+ * Resource rules and record rules are each stored in a single Redis hash, keyed by resource id, with the {@link Rules}
+ * java-serialised in the same way as the Redis cache.
+ * Unlike the {@link NullPolicyService}, rules evicted from (or expired out of) the cache are still found here.
+ */
+public class RedisPolicyService implements PersistentPolicyService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisPolicyService.class);
+    private static final String RESOURCE_RULES = "resourceRules";
+    private static final String RECORD_RULES = "recordRules";
+
+    private final HashOperations<String, String, Rules<?>> hashOps;
+    private final String resourceRulesKey;
+    private final String recordRulesKey;
+
+    /**
+     * Create a new Redis-backed policy service
+     *
+     * @param connectionFactory the {@link RedisConnectionFactory} for the Redis instance or cluster to store rules in
+     * @param keyPrefix         a prefix for the keys of the Redis hashes, to keep them apart from any cache entries
+     */
+    public RedisPolicyService(final RedisConnectionFactory connectionFactory, final String keyPrefix) {
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashValueSerializer(RedisSerializer.java());
+        redisTemplate.afterPropertiesSet();
+        this.hashOps = redisTemplate.opsForHash();
+        this.resourceRulesKey = keyPrefix + RESOURCE_RULES;
+        this.recordRulesKey = keyPrefix + RECORD_RULES;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<Rules<LeafResource>> getResourceRules(final String resourceId) {
+        LOGGER.debug("Getting resource rules for resourceId {} from redis", resourceId);
+        return Optional.ofNullable((Rules<LeafResource>) hashOps.get(resourceRulesKey, resourceId));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<Rules<Serializable>> getRecordRules(final String resourceId) {
+        LOGGER.debug("Getting record rules for resourceId {} from redis", resourceId);
+        return Optional.ofNullable((Rules<Serializable>) hashOps.get(recordRulesKey, resourceId));
+    }
+
+    @Override
+    public Optional<Rules<LeafResource>> setResourceRules(final String resourceId, final Rules<LeafResource> rules) {
+        LOGGER.debug("Setting resource rules for resourceId {} in redis", resourceId);
+        hashOps.put(resourceRulesKey, resourceId, rules);
+        return Optional.of(rules);
+    }
+
+    @Override
+    public Optional<Rules<Serializable>> setRecordRules(final String resourceId, final Rules<Serializable> rules) {
+        LOGGER.debug("Setting record rules for resourceId {} in redis", resourceId);
+        hashOps.put(recordRulesKey, resourceId, rules);
+        return Optional.of(rules);
+    }
+
+    @Override
+    public void setAllResourceRules(final Map<String, Rules<LeafResource>> resourceRules) {
+        if (!resourceRules.isEmpty()) {
+            LOGGER.debug("Setting resource rules for {} resourceIds in redis", resourceRules.size());
+            // A single HMSET, rather than a round-trip for each resource
+            hashOps.putAll(resourceRulesKey, resourceRules);
+        }
+    }
+
+    @Override
+    public void setAllRecordRules(final Map<String, Rules<Serializable>> recordRules) {
+        if (!recordRules.isEmpty()) {
+            LOGGER.debug("Setting record rules for {} resourceIds in redis", recordRules.size());
+            hashOps.putAll(recordRulesKey, recordRules);
+        }
+    }
+
+    @Override
+    public Set<String> getResourceRulesIds() {
+        return hashOps.keys(resourceRulesKey);
+    }
+
+    @Override
+    public Set<String> getRecordRulesIds() {
+        return hashOps.keys(recordRulesKey);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.Context;
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rule;
+import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.rule.LeafIndependentRule;
+import uk.gov.gchq.palisade.user.User;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Applies coarse-grained resource rules to each {@link LeafResource} of a request.
+ * Any {@link LeafIndependentRule}s are evaluated once per user, context and set of leaf-independent rules, and the
+ * decision is cached for every other resource in the request (and any later request with the same user and context).
+ * Only the remaining, genuinely per-resource, rules are then applied to each resource in turn.
+ * <p>
+ * Applying the leaf-independent rules ahead of the others does not change the result, as they never inspect the resource
+ * and will redact it regardless of any changes made by the other rules.
+ */
+public class ResourceRuleEvaluator implements MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceRuleEvaluator.class);
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+    private static final Duration DEFAULT_EXPIRE_AFTER_ACCESS = Duration.ofMinutes(5);
+
+    private final Cache<DecisionKey, Boolean> decisions;
+
+    private static final class DecisionKey {
+        private final User user;
+        private final Context context;
+        private final Map<String, Rule<LeafResource>> rules;
+
+        private DecisionKey(final User user, final Context context, final Map<String, Rule<LeafResource>> rules) {
+            this.user = user;
+            this.context = context;
+            this.rules = rules;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey that = (DecisionKey) o;
+            return Objects.equals(user, that.user) &&
+                    Objects.equals(context, that.context) &&
+                    Objects.equals(rules, that.rules);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(user, context, rules);
+        }
+    }
+
+    /**
+     * Instantiates a new evaluator, caching the decisions of leaf-independent rules with the default bounds.
+     */
+    public ResourceRuleEvaluator() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_ACCESS);
+    }
+
+    /**
+     * Instantiates a new evaluator, caching up to the given number of decisions of leaf-independent rules.
+     * Decisions should expire soon after a request has finished, as a user's auths or roles may change between requests.
+     *
+     * @param maximumSize       the maximum number of (user, context, rules) decisions to cache
+     * @param expireAfterAccess the time after which an unused decision is discarded
+     */
+    public ResourceRuleEvaluator(final long maximumSize, final Duration expireAfterAccess) {
+        this.decisions = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterAccess(expireAfterAccess).recordStats().build();
+    }
+
+    /**
+     * Apply the resource rules to a resource, a coarse grain filtering.
+     *
+     * @param user     the {@link User} requesting the data
+     * @param resource the {@link LeafResource} being queried for access
+     * @param context  the query time {@link Context} containing environmental variables such as why they want the data
+     * @param rules    the {@link Rules} that will be applied to the resource
+     * @return the (possibly modified) resource, or null if the resource is not accessible
+     */
+    public LeafResource applyRulesToResource(final User user, final LeafResource resource, final Context context, final Rules<LeafResource> rules) {
+        Map<String, Rule<LeafResource>> leafIndependentRules = new LinkedHashMap<>();
+        LinkedHashMap<String, Rule<LeafResource>> perLeafRules = new LinkedHashMap<>();
+        rules.getRules().forEach((String name, Rule<LeafResource> rule) -> {
+            if (rule instanceof LeafIndependentRule) {
+                leafIndependentRules.put(name, rule);
+            } else {
+                perLeafRules.put(name, rule);
+            }
+        });
+
+        if (leafIndependentRules.isEmpty()) {
+            return PolicyServiceHierarchyProxy.applyRulesToResource(user, resource, context, rules);
+        }
+
+        boolean permitted = decisions.get(new DecisionKey(user, context, leafIndependentRules),
+                key -> testLeafIndependentRules(key.user, key.context, key.rules));
+        if (!permitted) {
+            LOGGER.debug("Resource {} redacted by leaf-independent rules {}", resource.getId(), leafIndependentRules.keySet());
+            return null;
+        }
+        if (perLeafRules.isEmpty()) {
+            return resource;
+        }
+        Rules<LeafResource> remainingRules = new Rules<>();
+        remainingRules.message(rules.getMessage());
+        remainingRules.addRules(perLeafRules);
+        return PolicyServiceHierarchyProxy.applyRulesToResource(user, resource, context, remainingRules);
+    }
+
+    private static boolean testLeafIndependentRules(final User user, final Context context, final Map<String, Rule<LeafResource>> rules) {
+        LOGGER.debug("Evaluating leaf-independent rules {} for user {}", rules.keySet(), user.getUserId());
+        return rules.values().stream()
+                .allMatch(rule -> ((LeafIndependentRule<LeafResource>) rule).test(user, context));
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, decisions, "leafIndependentDecisions");
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import uk.gov.gchq.palisade.rule.Rules;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A Jackson serialiser for {@link Rules} which caches the serialised JSON for each set of rules, and splices the cached
+ * (pre-encoded) bytes into the output rather than re-encoding the rules every time they are serialised.
+ * <p>
+ * The resources under a directory with no rules of their own all share the same merged {@link Rules} instance from the
+ * policy hierarchy, so rules are cached by identity, and are released once that instance is no longer in use.
+ * As rules are never modified once set (a change to the rules replaces them), the cached JSON never goes stale.
+ */
+@SuppressWarnings({"java:S3740", "rawtypes"}) //Suppress parameterised type for generic class code smell
+public class CachingRulesSerialiser extends StdSerializer<Rules> {
+    private static final long serialVersionUID = 1L;
+    private static final long MAXIMUM_SIZE = 10_000L;
+
+    private final transient ObjectMapper mapper;
+    // Caffeine's weak keys are compared by identity
+    private final transient Cache<Rules, SerializedString> serialisedRules = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(MAXIMUM_SIZE)
+            .build();
+
+    /**
+     * Create a new serialiser, caching the rules as serialised by the given {@link ObjectMapper}
+     *
+     * @param mapper the mapper used to serialise each set of rules the first time they are seen,
+     *               which must not itself use this serialiser
+     */
+    public CachingRulesSerialiser(final ObjectMapper mapper) {
+        super(Rules.class);
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void serialize(final Rules rules, final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+        gen.writeRawValue(getSerialisedRules(rules));
+    }
+
+    @Override
+    public void serializeWithType(final Rules rules, final JsonGenerator gen, final SerializerProvider provider, final TypeSerializer typeSer) throws IOException {
+        // The cached value was serialised as a root value, so already includes any type information
+        serialize(rules, gen, provider);
+    }
+
+    private SerializedString getSerialisedRules(final Rules rules) throws JsonProcessingException {
+        try {
+            return serialisedRules.get(rules, (Rules key) -> {
+                try {
+                    return new SerializedString(mapper.writeValueAsString(key));
+                } catch (JsonProcessingException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw (JsonProcessingException) e.getCause();
+        }
+    }
+}
@@ -18,13 +18,16 @@ package uk.gov.gchq.palisade.service.policy.stream;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.core.serializer.support.SerializationFailedException;
 
+import uk.gov.gchq.palisade.rule.Rules;
 import uk.gov.gchq.palisade.service.policy.model.AuditErrorMessage;
+import uk.gov.gchq.palisade.service.policy.model.PolicyChange;
 import uk.gov.gchq.palisade.service.policy.model.PolicyRequest;
 import uk.gov.gchq.palisade.service.policy.model.PolicyResponse;
 
@@ -39,6 +42,9 @@ import java.nio.charset.Charset;
  */
 public final class SerDesConfig {
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    // Many resources share the same rules, so the serialised rules are cached and spliced into each response
+    private static final ObjectMapper RULES_CACHING_MAPPER = new ObjectMapper()
+            .registerModule(new SimpleModule().addSerializer(Rules.class, new CachingRulesSerialiser(MAPPER)));
     private static final String SERIALISATION_FAILED_MESSAGE = "Failed to serialise ";
     private static final String DESERIALISATION_FAILED_MESSAGE = "Failed to deserialise ";
 
@@ -113,7 +119,7 @@ public final class SerDesConfig {
     public static Serializer<PolicyResponse> ruleValueSerialiser() {
         return (String ignored, PolicyResponse policyResponse) -> {
             try {
-                return MAPPER.writeValueAsBytes(policyResponse);
+                return RULES_CACHING_MAPPER.writeValueAsBytes(policyResponse);
             } catch (JsonProcessingException e) {
                 throw new SerializationFailedException(SERIALISATION_FAILED_MESSAGE + policyResponse.toString(), e);
             }
@@ -143,4 +149,52 @@ public final class SerDesConfig {
             }
         };
     }
+
+    /**
+     * Kafka key serialiser for policy changes
+     *
+     * @return an appropriate key serialiser for the topic's message content
+     */
+    public static Serializer<String> policyChangeKeySerialiser() {
+        return new StringSerializer();
+    }
+
+    /**
+     * Kafka value serialiser for policy changes going out to every instance of the service
+     *
+     * @return an appropriate value serialiser for the topic's message content (PolicyChange)
+     */
+    public static Serializer<PolicyChange> policyChangeValueSerialiser() {
+        return (String ignored, PolicyChange policyChange) -> {
+            try {
+                return MAPPER.writeValueAsBytes(policyChange);
+            } catch (JsonProcessingException e) {
+                throw new SerializationFailedException(SERIALISATION_FAILED_MESSAGE + policyChange.toString(), e);
+            }
+        };
+    }
+
+    /**
+     * Kafka key deserialiser for policy changes
+     *
+     * @return an appropriate key deserialiser for the topic's message content
+     */
+    public static Deserializer<String> policyChangeKeyDeserialiser() {
+        return new StringDeserializer();
+    }
+
+    /**
+     * Kafka value deserialiser for policy changes coming in from any instance of the service
+     *
+     * @return an appropriate value deserialiser for the topic's message content (PolicyChange)
+     */
+    public static Deserializer<PolicyChange> policyChangeValueDeserialiser() {
+        return (String ignored, byte[] policyChange) -> {
+            try {
+                return MAPPER.readValue(policyChange, PolicyChange.class);
+            } catch (IOException e) {
+                throw new SerializationFailedException(DESERIALISATION_FAILED_MESSAGE + new String(policyChange, Charset.defaultCharset()), e);
+            }
+        };
+    }
 }
@@ -30,6 +30,7 @@ import akka.kafka.javadsl.Producer;
 import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
@@ -109,6 +110,33 @@ public class StreamComponents<K, V> {
         return Producer.plainSink(producerSettings);
     }
 
+    /**
+     * Construct a Kafka Plain Sink for Akka streams (no control over Kafka commits), sending through a shared Kafka producer.
+     * The producer is not closed when the sink completes, so many short-lived streams may share it, and it must be closed by the caller.
+     *
+     * @param producerSettings the producer settings for kafka
+     * @param producer         the Kafka producer shared by every materialisation of the sink
+     * @return a Kafka-connected Sink for Akka streams
+     */
+    public Sink<ProducerRecord<K, V>, CompletionStage<Done>> plainProducer(
+            final ProducerSettings<K, V> producerSettings,
+            final org.apache.kafka.clients.producer.Producer<K, V> producer) {
+        return Producer.plainSink(producerSettings.withProducer(producer));
+    }
+
+    /**
+     * Construct a Kafka Plain Source for Akka streams, for topics which are read without committing offsets
+     *
+     * @param consumerSettings the consumer settings for kafka
+     * @param subscription     the topic name (and partitions) to subscribe to
+     * @return a Kafka-connected Source for Akka streams
+     */
+    public Source<ConsumerRecord<K, V>, Consumer.Control> plainConsumer(
+            final ConsumerSettings<K, V> consumerSettings,
+            final Subscription subscription) {
+        return Consumer.plainSource(consumerSettings, subscription);
+    }
+
     /**
      * Construct a Kafka Committable Source for Akka streams (no need for committer settings)
      *
@@ -30,11 +30,17 @@ import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
 import com.typesafe.config.Config;
 import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import uk.gov.gchq.palisade.service.policy.config.PolicyServiceConfigProperties;
+import uk.gov.gchq.palisade.service.policy.model.PolicyChange;
 import uk.gov.gchq.palisade.service.policy.model.PolicyRequest;
 import uk.gov.gchq.palisade.service.policy.stream.ConsumerTopicConfiguration;
 import uk.gov.gchq.palisade.service.policy.stream.SerDesConfig;
@@ -55,6 +61,7 @@ import static org.apache.kafka.clients.admin.AdminClientConfig.BOOTSTRAP_SERVERS
 public class AkkaComponentsConfig {
     private static final StreamComponents<String, PolicyRequest> INPUT_COMPONENTS = new StreamComponents<>();
     private static final StreamComponents<String, byte[]> OUTPUT_COMPONENTS = new StreamComponents<>();
+    private static final StreamComponents<String, PolicyChange> CHANGE_COMPONENTS = new StreamComponents<>();
 
     @Bean
     Source<CommittableMessage<String, PolicyRequest>, Control> committableRequestSource(final ActorSystem actorSystem, final ConsumerTopicConfiguration configuration) {
@@ -92,6 +99,50 @@ public class AkkaComponentsConfig {
         return OUTPUT_COMPONENTS.committableProducer(producerSettings, committerSettings);
     }
 
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "policy", name = "changes", havingValue = "kafka")
+    Producer<String, PolicyChange> policyChangeProducer(final ActorSystem actorSystem) {
+        // Changes are published one at a time, so share one producer (and its connections) between them, closed on shutdown
+        return policyChangeProducerSettings(actorSystem)
+                .createKafkaProducerCompletionStage(actorSystem.dispatcher())
+                .toCompletableFuture()
+                .join();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "policy", name = "changes", havingValue = "kafka")
+    Sink<ProducerRecord<String, PolicyChange>, CompletionStage<Done>> plainPolicyChangeSink(
+            final ActorSystem actorSystem,
+            final Producer<String, PolicyChange> policyChangeProducer) {
+        return CHANGE_COMPONENTS.plainProducer(policyChangeProducerSettings(actorSystem), policyChangeProducer);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "policy", name = "changes", havingValue = "kafka")
+    Source<ConsumerRecord<String, PolicyChange>, Control> plainPolicyChangeSource(
+            final ActorSystem actorSystem,
+            final ConsumerTopicConfiguration configuration,
+            final PolicyServiceConfigProperties policyProperties) {
+        // Every instance must see every change, so each uses its own consumer group, reading the compacted topic from the beginning
+        // The group is named after the instance, so a restarted instance rejoins its own group rather than leaving another behind
+        ConsumerSettings<String, PolicyChange> consumerSettings = CHANGE_COMPONENTS.consumerSettings(
+                actorSystem,
+                SerDesConfig.policyChangeKeyDeserialiser(),
+                SerDesConfig.policyChangeValueDeserialiser())
+                .withGroupId("policy-service-changes-" + policyProperties.getInstanceName())
+                .withProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+
+        var topic = configuration.getTopics().get("policy-change-topic");
+        return CHANGE_COMPONENTS.plainConsumer(consumerSettings, Subscriptions.topics(topic.getName()));
+    }
+
+    private static ProducerSettings<String, PolicyChange> policyChangeProducerSettings(final ActorSystem actorSystem) {
+        return CHANGE_COMPONENTS.producerSettings(
+                actorSystem,
+                SerDesConfig.policyChangeKeySerialiser(),
+                SerDesConfig.policyChangeValueSerialiser());
+    }
+
     @Bean
     AdminClient adminClient(final ActorSystem actorSystem) {
         final List<? extends Config> servers = actorSystem.settings().config().getConfigList("akka.discovery.config.services.kafka.endpoints");
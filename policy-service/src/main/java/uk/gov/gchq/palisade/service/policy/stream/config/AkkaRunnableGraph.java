@@ -17,6 +17,7 @@
 package uk.gov.gchq.palisade.service.policy.stream.config;
 
 import akka.Done;
+import akka.NotUsed;
 import akka.japi.Pair;
 import akka.kafka.ConsumerMessage.Committable;
 import akka.kafka.ConsumerMessage.CommittableMessage;
@@ -29,6 +30,8 @@ import akka.stream.ActorAttributes;
 import akka.stream.Materializer;
 import akka.stream.Supervision;
 import akka.stream.Supervision.Directive;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Keep;
 import akka.stream.javadsl.RunnableGraph;
 import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
@@ -36,15 +39,20 @@ import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import scala.Function1;
 
 import uk.gov.gchq.palisade.service.policy.PolicyApplication;
+import uk.gov.gchq.palisade.service.policy.config.PolicyServiceConfigProperties;
 import uk.gov.gchq.palisade.service.policy.model.AuditablePolicyRecordResponse;
+import uk.gov.gchq.palisade.service.policy.model.PolicyChange;
 import uk.gov.gchq.palisade.service.policy.model.PolicyRequest;
+import uk.gov.gchq.palisade.service.policy.service.KafkaPolicyChangeService;
 import uk.gov.gchq.palisade.service.policy.service.KafkaProducerService;
 import uk.gov.gchq.palisade.service.policy.service.PolicyServiceAsyncProxy;
+import uk.gov.gchq.palisade.service.policy.service.PolicyServiceHierarchyProxy;
 import uk.gov.gchq.palisade.service.policy.stream.ConsumerTopicConfiguration;
 import uk.gov.gchq.palisade.service.policy.stream.ProducerTopicConfiguration;
 import uk.gov.gchq.palisade.service.policy.stream.SerDesConfig;
@@ -58,7 +66,6 @@ import java.util.concurrent.CompletionStage;
  */
 @Configuration
 public class AkkaRunnableGraph {
-    private static final int PARALLELISM = 1;
     private static final Logger LOGGER = LoggerFactory.getLogger(AkkaRunnableGraph.class);
 
     @Bean
@@ -83,45 +90,43 @@ public class AkkaRunnableGraph {
             final Sink<Envelope<String, byte[], Committable>, CompletionStage<Done>> sink,
             final Function1<Throwable, Directive> supervisionStrategy,
             final ProducerTopicConfiguration topicConfiguration,
-            final PolicyServiceAsyncProxy service) {
+            final PolicyServiceAsyncProxy service,
+            final PolicyServiceConfigProperties properties) {
         // Get output topic from config
         var outputTopic = topicConfiguration.getTopics().get("output-topic");
         var errorTopic = topicConfiguration.getTopics().get("error-topic");
+        // By default, process as many requests concurrently as there are cores
+        int configuredParallelism = properties.getStream().getParallelism();
+        int parallelism = configuredParallelism > 0 ? configuredParallelism : Runtime.getRuntime().availableProcessors();
+        LOGGER.info("Processing up to [{}] requests concurrently", parallelism);
 
         // Read messages from the stream source
         // return source
         return source
                 .map(committableMessage -> new Pair<>(committableMessage, committableMessage.record().value()))
 
-                // Apply coarse-grained resource-level rules
-                .mapAsync(PARALLELISM, messageAndRequest -> service.getResourceRules(messageAndRequest.second())
-                        .thenApply(PolicyServiceAsyncProxy::applyRulesToResource)
-                        .thenApply(modifiedAuditable -> Pair.create(messageAndRequest.first(), modifiedAuditable)))
-
-                // Get the record level rules for all resources that weren't course grain filtered
-                .mapAsync(PARALLELISM, messageAndModifiedRequest ->
-                        service.getRecordRules(messageAndModifiedRequest.second())
-                                // Check to see if the first service request threw an exception, and if so deal with it
-                                .thenApply(modifiedResource -> modifiedResource.chain(messageAndModifiedRequest.second().getAuditErrorMessage()))
-                                .thenApply(response -> Pair.create(messageAndModifiedRequest.first(), response))
-                )
+                // Apply coarse-grained resource-level rules, then get the record level rules for all resources that weren't coarse grain filtered
+                .via(applyRules(parallelism, service))
 
                 // Build producer message, copying the partition, keeping track of original message
-                .map((Pair<CommittableMessage<String, PolicyRequest>, AuditablePolicyRecordResponse> messageAndResponse) -> {
+                .map((Pair<CommittableMessage<String, PolicyRequest>, Optional<AuditablePolicyRecordResponse>> messageAndResponse) -> {
                     ConsumerRecord<String, PolicyRequest> requestRecord = messageAndResponse.first().record();
                     Committable committable = messageAndResponse.first().committableOffset();
-                    return Optional.ofNullable(messageAndResponse.second().getAuditErrorMessage())
-
-                            // Found an application error, produce an error message to be sent to the Audit Service
-                            .map(audit -> ProducerMessage.single(
-                                    new ProducerRecord<>(errorTopic.getName(), requestRecord.partition(), requestRecord.key(),
-                                            SerDesConfig.errorValueSerialiser().serialize(null, audit), requestRecord.headers()),
-                                    committable))
-                            // Found a response message, produce a policy message to be sent to the output topic
-                            .orElse(ProducerMessage.single(
-                                    new ProducerRecord<>(outputTopic.getName(), requestRecord.partition(), requestRecord.key(),
-                                            SerDesConfig.ruleValueSerialiser().serialize(null, messageAndResponse.second().getPolicyResponse()), requestRecord.headers()),
-                                    committable));
+                    return messageAndResponse.second()
+                            .map((AuditablePolicyRecordResponse response) -> Optional.ofNullable(response.getAuditErrorMessage())
+
+                                    // Found an application error, produce an error message to be sent to the Audit Service
+                                    .map(audit -> ProducerMessage.single(
+                                            new ProducerRecord<>(errorTopic.getName(), requestRecord.partition(), requestRecord.key(),
+                                                    SerDesConfig.errorValueSerialiser().serialize(null, audit), requestRecord.headers()),
+                                            committable))
+                                    // Found a response message, produce a policy message to be sent to the output topic
+                                    .orElse(ProducerMessage.single(
+                                            new ProducerRecord<>(outputTopic.getName(), requestRecord.partition(), requestRecord.key(),
+                                                    SerDesConfig.ruleValueSerialiser().serialize(null, response.getPolicyResponse()), requestRecord.headers()),
+                                            committable)))
+                            // The resource was filtered out by its resource rules, so nothing is produced, but the request is still committed
+                            .orElseGet(() -> ProducerMessage.passThrough(committable));
 
                 })
                 // Send system errors to supervisor
@@ -130,4 +135,52 @@ public class AkkaRunnableGraph {
                 // Materialise the stream, sending messages to the sink
                 .toMat(sink, Consumer::createDrainingControl);
     }
+
+    /**
+     * Create a {@link Flow} getting the rules for each request, with up to the given number of requests in-flight at once.
+     * Requests are processed concurrently whether or not they share a token, but responses are emitted in the order their
+     * requests were received, so the messages of each token (including START and END markers) stay in order and offsets are committed in order.
+     *
+     * @param parallelism the maximum number of requests in-flight at once
+     * @param service     the {@link PolicyServiceAsyncProxy} to get the rules for each request from
+     * @param <T>         the type of the message each request was read from, kept alongside its response
+     * @return a {@link Flow} from each message and request to the message and its response
+     */
+    static <T> Flow<Pair<T, PolicyRequest>, Pair<T, Optional<AuditablePolicyRecordResponse>>, NotUsed> applyRules(
+            final int parallelism, final PolicyServiceAsyncProxy service) {
+        return Flow.<Pair<T, PolicyRequest>>create()
+                .mapAsync(parallelism, (Pair<T, PolicyRequest> messageAndRequest) -> service.getRules(messageAndRequest.second())
+                        .thenApply(response -> Pair.create(messageAndRequest.first(), response)));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "policy", name = "changes", havingValue = "kafka")
+    KafkaPolicyChangeService kafkaPolicyChangeService(
+            final Sink<ProducerRecord<String, PolicyChange>, CompletionStage<Done>> policyChangeSink,
+            final ProducerTopicConfiguration topicConfiguration,
+            final Materializer materializer,
+            final PolicyServiceHierarchyProxy hierarchy) {
+        return new KafkaPolicyChangeService(policyChangeSink, topicConfiguration, materializer, hierarchy);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "policy", name = "changes", havingValue = "kafka")
+    RunnableGraph<Control> policyChangeRunner(
+            final Source<ConsumerRecord<String, PolicyChange>, Control> policyChangeSource,
+            final Function1<Throwable, Directive> supervisionStrategy,
+            final KafkaPolicyChangeService changeService) {
+        return policyChangeSource
+                // Ignore any tombstones, rules are only ever replaced
+                .filter(changeRecord -> changeRecord.value() != null)
+
+                // Apply each change to this instance's caches
+                .map((ConsumerRecord<String, PolicyChange> changeRecord) -> {
+                    changeService.apply(changeRecord.value());
+                    return Done.done();
+                })
+                // Send system errors to supervisor
+                .withAttributes(ActorAttributes.supervisionStrategy(supervisionStrategy))
+
+                .toMat(Sink.ignore(), Keep.left());
+    }
 }
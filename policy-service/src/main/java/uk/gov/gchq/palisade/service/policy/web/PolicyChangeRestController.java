@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.model.PolicyChange;
+import uk.gov.gchq.palisade.service.policy.model.PolicyChange.RuleType;
+import uk.gov.gchq.palisade.service.policy.service.PolicyChangeService;
+
+import java.io.Serializable;
+
+/**
+ * A REST interface for changing the rules held by the Policy Service at runtime
+ */
+@RestController
+@RequestMapping(path = "/api")
+public class PolicyChangeRestController {
+
+    /**
+     * The policy change service, applying changes either locally or to every instance of the service
+     */
+    private final PolicyChangeService policyChangeService;
+
+    /**
+     * Autowired constructor for the rest controller
+     *
+     * @param policyChangeService an instance of a PolicyChangeService
+     */
+    public PolicyChangeRestController(final PolicyChangeService policyChangeService) {
+        this.policyChangeService = policyChangeService;
+    }
+
+    /**
+     * REST endpoint for setting the resource or record rules against a resource id.
+     *
+     * @param change the {@link PolicyChange} containing the resource id, type of rules and new rules
+     * @return accepted once the change has been applied (or published to every instance)
+     */
+    @PostMapping(value = "/policy/rules", consumes = "application/json", produces = "application/json")
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<Void> setRules(final @RequestBody PolicyChange change) {
+        if (change.getRuleType() == RuleType.RESOURCE) {
+            this.policyChangeService.setResourceRules(change.getResourceId(), (Rules<LeafResource>) change.getRules())
+                    .join();
+        } else {
+            this.policyChangeService.setRecordRules(change.getResourceId(), (Rules<Serializable>) change.getRules())
+                    .join();
+        }
+
+        // Return result
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    }
+}
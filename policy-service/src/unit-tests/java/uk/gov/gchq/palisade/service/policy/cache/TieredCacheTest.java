@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredCacheTest {
+
+    private final ConcurrentMapCacheManager l2Manager = new ConcurrentMapCacheManager();
+    private final StringRedisTemplate mockTemplate = Mockito.mock(StringRedisTemplate.class);
+    private final TieredCacheManager cacheManager = new TieredCacheManager(l2Manager, Caffeine.newBuilder(), mockTemplate, "channel");
+
+    @Test
+    void testReadsAreServedFromEachTier() {
+        // Given - a value has been written by another instance, directly into the shared L2
+        TieredCache cache = (TieredCache) cacheManager.getCache("resourceRules");
+        ((ConcurrentMapCache) l2Manager.getCache("resourceRules")).put("file:/data", "rules");
+
+        // When - the value is read twice, and a missing value read once
+        cache.get("file:/data");
+        cache.get("file:/data");
+        cache.get("file:/missing");
+
+        // Then - the first read was served by L2, the second by L1
+        assertThat(new long[]{cache.getL1Hits(), cache.getL2Hits(), cache.getMisses()})
+                .as("Check that one read was served by each tier, and one missed")
+                .containsExactly(1L, 1L, 1L);
+    }
+
+    @Test
+    void testWritesByOtherInstancesAreEvictedFromL1() {
+        // Given - a value is in both tiers
+        TieredCache cache = (TieredCache) cacheManager.getCache("resourceRules");
+        cache.put("file:/data", "old rules");
+        Mockito.verify(mockTemplate).convertAndSend(Mockito.eq("channel"), Mockito.anyString());
+
+        // When - another instance writes a new value, and publishes an invalidation
+        l2Manager.getCache("resourceRules").put("file:/data", "new rules");
+        cacheManager.onMessage(new DefaultMessage("channel".getBytes(StandardCharsets.UTF_8),
+                "other-instance\nresourceRules\nfile:/data".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then - the new value is read from L2
+        assertThat(cache.get("file:/data").get())
+                .as("Check that the value written by the other instance is returned")
+                .isEqualTo("new rules");
+    }
+
+    @Test
+    void testWritesByOtherInstancesAreReportedToListeners() {
+        // Given - a listener for writes by other instances
+        List<String> evicted = new ArrayList<>();
+        cacheManager.onRemoteEvict((String cacheName, String key) -> evicted.add(cacheName + " " + key));
+        cacheManager.getCache("resourceRules").put("file:/data", "rules");
+
+        // When - this instance's own write is echoed back, then another instance writes
+        String ownMessage = Mockito.mockingDetails(mockTemplate).getInvocations().iterator().next().getArgument(1);
+        cacheManager.onMessage(new DefaultMessage("channel".getBytes(StandardCharsets.UTF_8), ownMessage.getBytes(StandardCharsets.UTF_8)), null);
+        cacheManager.onMessage(new DefaultMessage("channel".getBytes(StandardCharsets.UTF_8),
+                "other-instance\nresourceRules\nfile:/data/".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then - only the other instance's write is reported
+        assertThat(evicted)
+                .as("Check that only writes by other instances are reported to listeners")
+                .containsExactly("resourceRules file:/data/");
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.PolicyTestCommon;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexedPolicyServiceTest extends PolicyTestCommon {
+
+    private final PersistentPolicyService mockStore = Mockito.mock(PersistentPolicyService.class);
+    private final IndexedPolicyService indexedService = new IndexedPolicyService(mockStore);
+
+    @Test
+    void testWarmedIdsAreReadFromStore() {
+        // Given - the store already holds rules for a resource
+        Mockito.when(mockStore.getResourceRulesIds()).thenReturn(Set.of(SECRET_TXT_FILE.getId()));
+        Mockito.when(mockStore.getRecordRulesIds()).thenReturn(Set.of(SECRET_TXT_FILE.getId()));
+        Mockito.when(mockStore.getResourceRules(SECRET_TXT_FILE.getId())).thenReturn(Optional.of(PASS_THROUGH_POLICY));
+
+        // When - the index is warmed and the rules are requested
+        indexedService.warm();
+        Optional<Rules<LeafResource>> resourceRules = indexedService.getResourceRules(SECRET_TXT_FILE.getId());
+
+        // Then - the rules are read from the store
+        assertThat(resourceRules)
+                .as("Check that the rules held in the store are returned")
+                .contains(PASS_THROUGH_POLICY);
+    }
+
+    @Test
+    void testUnindexedIdsAreNotReadFromStore() {
+        // Given - the store holds no rules
+        Mockito.when(mockStore.getResourceRulesIds()).thenReturn(Set.of());
+        Mockito.when(mockStore.getRecordRulesIds()).thenReturn(Set.of());
+        indexedService.warm();
+
+        // When - rules are requested for a resource
+        Optional<Rules<LeafResource>> resourceRules = indexedService.getResourceRules(SECRET_DIRECTORY.getId());
+
+        // Then - nothing is returned, without querying the store
+        assertThat(resourceRules)
+                .as("Check that no rules are returned for an unindexed resource")
+                .isEmpty();
+        Mockito.verify(mockStore, Mockito.never()).getResourceRules(Mockito.anyString());
+    }
+
+    @Test
+    void testSetRulesAreIndexed() {
+        // Given - the store holds no rules
+        Mockito.when(mockStore.getResourceRulesIds()).thenReturn(Set.of());
+        Mockito.when(mockStore.getRecordRulesIds()).thenReturn(Set.of());
+        indexedService.warm();
+
+        // When - rules are set for a resource
+        Mockito.when(mockStore.setResourceRules(SECRET_DIRECTORY.getId(), SECRET_POLICY)).thenReturn(Optional.of(SECRET_POLICY));
+        Mockito.when(mockStore.getResourceRules(SECRET_DIRECTORY.getId())).thenReturn(Optional.of(SECRET_POLICY));
+        indexedService.setResourceRules(SECRET_DIRECTORY.getId(), SECRET_POLICY);
+
+        // Then - the rules are written to the store, and subsequently read back from it
+        Mockito.verify(mockStore).setResourceRules(SECRET_DIRECTORY.getId(), SECRET_POLICY);
+        assertThat(indexedService.getResourceRules(SECRET_DIRECTORY.getId()))
+                .as("Check that the newly-set rules are returned")
+                .contains(SECRET_POLICY);
+    }
+
+    @Test
+    void testReadThroughIndexesIdsSetElsewhere() {
+        // Given - the index reads through, and another instance has set rules in the store since this index was warmed
+        IndexedPolicyService readThroughService = new IndexedPolicyService(mockStore, true);
+        Mockito.when(mockStore.getResourceRulesIds()).thenReturn(Set.of());
+        Mockito.when(mockStore.getRecordRulesIds()).thenReturn(Set.of());
+        readThroughService.warm();
+        Mockito.when(mockStore.getResourceRules(SECRET_DIRECTORY.getId())).thenReturn(Optional.of(SECRET_POLICY));
+
+        // When - rules are requested for that resource
+        Optional<Rules<LeafResource>> resourceRules = readThroughService.getResourceRules(SECRET_DIRECTORY.getId());
+
+        // Then - the rules are read from the store, and the resource id is now indexed
+        assertThat(resourceRules)
+                .as("Check that rules missing from the index are read from the store")
+                .contains(SECRET_POLICY);
+        assertThat(readThroughService.getResourceRules(SECRET_DIRECTORY.getId()))
+                .as("Check that the rules are still returned once indexed")
+                .contains(SECRET_POLICY);
+    }
+
+    @Test
+    void testBatchesAreWrittenInBulkAndIndexed() {
+        // Given - the store holds no rules
+        Mockito.when(mockStore.getResourceRulesIds()).thenReturn(Set.of());
+        Mockito.when(mockStore.getRecordRulesIds()).thenReturn(Set.of());
+        indexedService.warm();
+
+        // When - a batch of rules is set
+        Map<String, Rules<LeafResource>> batch = Map.of(SECRET_DIRECTORY.getId(), SECRET_POLICY, JSON_DIRECTORY.getId(), JSON_POLICY);
+        indexedService.setAllResourceRules(batch);
+        Mockito.when(mockStore.getResourceRules(SECRET_DIRECTORY.getId())).thenReturn(Optional.of(SECRET_POLICY));
+
+        // Then - the batch is written to the store at once, and its ids are indexed
+        Mockito.verify(mockStore).setAllResourceRules(batch);
+        Mockito.verify(mockStore, Mockito.never()).setResourceRules(Mockito.anyString(), Mockito.any());
+        assertThat(indexedService.getResourceRules(SECRET_DIRECTORY.getId()))
+                .as("Check that rules set in a batch are returned")
+                .contains(SECRET_POLICY);
+    }
+}
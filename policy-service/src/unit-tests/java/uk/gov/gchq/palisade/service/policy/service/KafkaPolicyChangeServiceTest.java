@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import uk.gov.gchq.palisade.service.policy.model.PolicyChange;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static uk.gov.gchq.palisade.service.policy.ApplicationTestData.RESOURCE_RULES;
+import static uk.gov.gchq.palisade.service.policy.ApplicationTestData.RULES;
+
+class KafkaPolicyChangeServiceTest {
+
+    private final PolicyServiceHierarchyProxy hierarchyProxy = Mockito.mock(PolicyServiceHierarchyProxy.class);
+    private final KafkaPolicyChangeService changeService = new KafkaPolicyChangeService(null, null, null, hierarchyProxy);
+
+    @Test
+    void testConsumedChangesAreAppliedByRuleType() {
+        // Given - a change to each type of rules has been consumed from the topic
+        PolicyChange resourceChange = PolicyChange.Builder.create().withResourceId("file:/resource").withResourceRules(RESOURCE_RULES);
+        PolicyChange recordChange = PolicyChange.Builder.create().withResourceId("file:/record").withRecordRules(RULES);
+
+        // When - the changes are applied
+        changeService.apply(resourceChange);
+        changeService.apply(recordChange);
+
+        // Then - each change is set through the hierarchy proxy, so that any cached merges are invalidated
+        verify(hierarchyProxy, times(1)).setResourceRules("file:/resource", RESOURCE_RULES);
+        verify(hierarchyProxy, times(1)).setRecordRules("file:/record", RULES);
+    }
+}
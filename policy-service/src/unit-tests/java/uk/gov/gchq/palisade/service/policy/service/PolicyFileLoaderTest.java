@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PolicyFileLoaderTest {
+    private static final String PASS_THROUGH_RULE = "uk.gov.gchq.palisade.service.policy.rule.PassThroughRule";
+
+    @TempDir
+    Path tempDir;
+    Path policyFile;
+    PolicyServiceHierarchyProxy hierarchyProxy;
+    PolicyFileLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        policyFile = tempDir.resolve("policies.jsonl");
+        hierarchyProxy = Mockito.mock(PolicyServiceHierarchyProxy.class);
+        loader = new PolicyFileLoader(hierarchyProxy, policyFile.toString(), false);
+    }
+
+    private static String policy(final String resourceId) {
+        return String.format("{\"resourceId\": \"%s\", \"resourceRules\": {\"1\": \"%s\"}, \"recordRules\": {\"1\": \"%s\"}}",
+                resourceId, PASS_THROUGH_RULE, PASS_THROUGH_RULE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Rules<LeafResource>> lastResourceRules(final int loads) {
+        ArgumentCaptor<Map<String, Rules<LeafResource>>> resourceRules = ArgumentCaptor.forClass(Map.class);
+        verify(hierarchyProxy, times(loads)).setAllRules(resourceRules.capture(), anyMap());
+        return resourceRules.getValue();
+    }
+
+    @Test
+    void testPoliciesAreLoadedAsOneBatch() throws IOException {
+        // Given a file of policies, with comments and blank lines
+        Files.write(policyFile, List.of("# Test policies", policy("file:/test/a/"), "", policy("file:/test/b/")));
+
+        // When the file is loaded
+        int loaded = loader.load();
+
+        // Then every policy is set in a single batch
+        assertThat(loaded)
+                .as("Check that both policies were loaded")
+                .isEqualTo(2);
+        assertThat(lastResourceRules(1))
+                .as("Check that the resource rules for both resources were set together")
+                .containsOnlyKeys("file:/test/a/", "file:/test/b/")
+                .allSatisfy((id, rules) -> assertThat(rules.getRules()).hasSize(1));
+    }
+
+    @Test
+    void testRemovedPoliciesAreCleared() throws IOException {
+        // Given a file of policies that has been loaded
+        Files.write(policyFile, List.of(policy("file:/test/a/"), policy("file:/test/b/")));
+        loader.load();
+
+        // When a policy is removed from the file, and the file reloaded
+        Files.write(policyFile, List.of(policy("file:/test/a/")));
+        loader.load();
+
+        // Then the removed policy is replaced with empty rules
+        Map<String, Rules<LeafResource>> resourceRules = lastResourceRules(2);
+        assertThat(resourceRules.get("file:/test/a/").getRules())
+                .as("Check that the remaining policy is still set")
+                .hasSize(1);
+        assertThat(resourceRules.get("file:/test/b/").getRules())
+                .as("Check that the removed policy has been cleared")
+                .isEmpty();
+    }
+
+    @Test
+    void testInvalidFileLeavesPoliciesUnchanged() throws IOException {
+        // Given a file with an invalid line
+        Files.write(policyFile, List.of(policy("file:/test/a/"), "{not valid json"));
+
+        // When the file is loaded
+        // Then loading fails, and no policies are set
+        assertThatThrownBy(() -> loader.load())
+                .as("Check that loading an invalid file fails")
+                .isInstanceOf(IOException.class);
+        verify(hierarchyProxy, times(0)).setAllRules(any(), any());
+    }
+}
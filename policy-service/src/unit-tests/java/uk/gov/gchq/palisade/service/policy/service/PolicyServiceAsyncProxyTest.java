@@ -26,6 +26,7 @@ import uk.gov.gchq.palisade.service.policy.model.AuditErrorMessage;
 import uk.gov.gchq.palisade.service.policy.model.AuditablePolicyRecordResponse;
 import uk.gov.gchq.palisade.service.policy.model.AuditablePolicyResourceResponse;
 import uk.gov.gchq.palisade.service.policy.model.PolicyResponse;
+import uk.gov.gchq.palisade.service.policy.rule.PredicateRule;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -183,4 +184,41 @@ class PolicyServiceAsyncProxyTest {
                 .extracting(Throwable::getMessage)
                 .isEqualTo("No rules found for the resource");
     }
+
+    /**
+     * Test for getting both resource and record rules in one stage, for a resource which is not filtered by its resource rules.
+     * This should produce an {@link AuditablePolicyRecordResponse} with a {@link PolicyResponse} and no {@link AuditErrorMessage}.
+     */
+    @Test
+    void testGetRulesForAccessibleResource() {
+        // When
+        when(hierarchyProxy.getResourceRules(any())).thenReturn(RESOURCE_RULES);
+        when(hierarchyProxy.getRecordRules(any())).thenReturn(RULES);
+        var response = asyncProxy.getRules(REQUEST).join();
+
+        // Then
+        assertThat(response)
+                .as("Recursively check the returned AuditablePolicyRecordResponse object")
+                .get()
+                .usingRecursiveComparison()
+                .isEqualTo(AUDITABLE_POLICY_RECORD_RESPONSE_NO_ERROR);
+    }
+
+    /**
+     * Test for getting both resource and record rules in one stage, for a resource which is filtered by its resource rules.
+     * This should produce nothing, without looking up the record rules.
+     */
+    @Test
+    void testGetRulesForFilteredResourceSkipsRecordRules() {
+        // When
+        Rules<LeafResource> redactingRules = new Rules<LeafResource>().addRule("Redact everything", (PredicateRule<LeafResource>) (resource, user, context) -> false);
+        when(hierarchyProxy.getResourceRules(any())).thenReturn(redactingRules);
+        var response = asyncProxy.getRules(REQUEST).join();
+
+        // Then
+        assertThat(response)
+                .as("Check that nothing is returned for a filtered resource")
+                .isEmpty();
+        verify(hierarchyProxy, times(0)).getRecordRules(any());
+    }
 }
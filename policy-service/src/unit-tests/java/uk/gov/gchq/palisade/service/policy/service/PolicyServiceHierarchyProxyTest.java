@@ -30,6 +30,7 @@ import uk.gov.gchq.palisade.user.User;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -199,4 +200,56 @@ class PolicyServiceHierarchyProxyTest extends PolicyTestCommon {
                     .isNull();
         }
     }
+
+    @Test
+    void testMergedParentRulesAreCachedUntilAncestorRulesAreSet() {
+        // Given - a hierarchy proxy where the directory and system have rules, but the files have none of their own
+        PolicyServiceCachingProxy mockService = Mockito.spy(new PolicyServiceCachingProxy(new NullPolicyService()));
+        PolicyServiceHierarchyProxy hierarchyPolicy = new PolicyServiceHierarchyProxy(mockService);
+        Mockito.doReturn(Optional.of(TXT_POLICY)).when(mockService).getResourceRules(TXT_SYSTEM.getId());
+        Mockito.doReturn(Optional.of(JSON_POLICY)).when(mockService).getResourceRules(JSON_DIRECTORY.getId());
+
+        // When - rules are requested for many files in the same directory
+        for (FileResource fileResource : Arrays.asList(ACCESSIBLE_JSON_TXT_FILE, INACCESSIBLE_JSON_AVRO_FILE, INACCESSIBLE_PICKLE_TXT_FILE)) {
+            assertThat(hierarchyPolicy.getResourceRules(fileResource).getRules())
+                    .as("Check that the rules of the directory and system are merged")
+                    .containsOnlyKeys("Resource serialised format is txt", "Resource type is json");
+        }
+
+        // Then - the rules of each parent were only looked up once
+        Mockito.verify(mockService, Mockito.times(1)).getResourceRules(JSON_DIRECTORY.getId());
+        Mockito.verify(mockService, Mockito.times(1)).getResourceRules(TXT_SYSTEM.getId());
+
+        // When - the rules of an ancestor are changed
+        hierarchyPolicy.setResourceRules(TXT_SYSTEM, PASS_THROUGH_POLICY);
+        Mockito.doReturn(Optional.of(PASS_THROUGH_POLICY)).when(mockService).getResourceRules(TXT_SYSTEM.getId());
+
+        // Then - the merged rules are recalculated with the new rules
+        assertThat(hierarchyPolicy.getResourceRules(ACCESSIBLE_JSON_TXT_FILE).getRules())
+                .as("Check that the changed rules of the system are merged")
+                .containsOnlyKeys("Does nothing", "Resource type is json");
+    }
+
+    @Test
+    void testFailedBatchStillInvalidatesMergedRules() {
+        // Given - merged rules of the directory and system have been cached
+        PolicyServiceCachingProxy mockService = Mockito.spy(new PolicyServiceCachingProxy(new NullPolicyService()));
+        PolicyServiceHierarchyProxy hierarchyPolicy = new PolicyServiceHierarchyProxy(mockService);
+        Mockito.doReturn(Optional.of(TXT_POLICY)).when(mockService).getResourceRules(TXT_SYSTEM.getId());
+        Mockito.doReturn(Optional.of(JSON_POLICY)).when(mockService).getResourceRules(JSON_DIRECTORY.getId());
+        hierarchyPolicy.getResourceRules(ACCESSIBLE_JSON_TXT_FILE);
+
+        // When - a batch fails part-way, after the rules of the system have been written
+        Mockito.doAnswer((invocation) -> {
+            Mockito.doReturn(Optional.of(PASS_THROUGH_POLICY)).when(mockService).getResourceRules(TXT_SYSTEM.getId());
+            throw new IllegalStateException("Store unavailable");
+        }).when(mockService).setAllRules(Mockito.anyMap(), Mockito.anyMap());
+        Map<String, Rules<LeafResource>> batch = Map.of(TXT_SYSTEM.getId(), PASS_THROUGH_POLICY);
+        assertThrows(IllegalStateException.class, () -> hierarchyPolicy.setAllRules(batch, Map.of()), "The failure of the batch should be thrown");
+
+        // Then - the merged rules are recalculated with the rules that were written
+        assertThat(hierarchyPolicy.getResourceRules(ACCESSIBLE_JSON_TXT_FILE).getRules())
+                .as("Check that the rules written before the failure are merged")
+                .containsOnlyKeys("Does nothing", "Resource type is json");
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.service;
+
+import org.junit.jupiter.api.Test;
+
+import uk.gov.gchq.palisade.Context;
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.rule.IsTextResourceRule;
+import uk.gov.gchq.palisade.service.policy.rule.LeafIndependentRule;
+import uk.gov.gchq.palisade.user.User;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.gchq.palisade.service.policy.PolicyTestCommon.ACCESSIBLE_JSON_TXT_FILE;
+import static uk.gov.gchq.palisade.service.policy.PolicyTestCommon.CONTEXT;
+import static uk.gov.gchq.palisade.service.policy.PolicyTestCommon.INACCESSIBLE_JSON_AVRO_FILE;
+import static uk.gov.gchq.palisade.service.policy.PolicyTestCommon.INACCESSIBLE_PICKLE_TXT_FILE;
+import static uk.gov.gchq.palisade.service.policy.PolicyTestCommon.SENSITIVE_USER;
+import static uk.gov.gchq.palisade.service.policy.PolicyTestCommon.USER;
+
+class ResourceRuleEvaluatorTest {
+    private static final List<LeafResource> RESOURCES = List.of(ACCESSIBLE_JSON_TXT_FILE, INACCESSIBLE_JSON_AVRO_FILE, INACCESSIBLE_PICKLE_TXT_FILE);
+
+    private final ResourceRuleEvaluator evaluator = new ResourceRuleEvaluator();
+
+    private static class CountingSensitiveAuthRule implements LeafIndependentRule<LeafResource> {
+        private final AtomicInteger evaluations = new AtomicInteger();
+
+        @Override
+        public boolean test(final User user, final Context context) {
+            evaluations.incrementAndGet();
+            return user.getAuths().contains("Sensitive");
+        }
+    }
+
+    @Test
+    void testLeafIndependentRulesAreEvaluatedOncePerUserAndContext() {
+        // Given a leaf-independent rule followed by a per-leaf rule
+        var sensitiveRule = new CountingSensitiveAuthRule();
+        var rules = new Rules<LeafResource>()
+                .addRule("Sensitive users only", sensitiveRule)
+                .addRule("Text resources only", new IsTextResourceRule());
+
+        // When the rules are applied to every resource in a request
+        var accessible = RESOURCES.stream()
+                .map(resource -> evaluator.applyRulesToResource(SENSITIVE_USER, resource, CONTEXT, rules))
+                .filter(resource -> resource != null)
+                .collect(Collectors.toList());
+
+        // Then the per-leaf rule has still been applied to each resource
+        assertThat(accessible)
+                .as("Check that only the text resources are returned")
+                .containsExactly(ACCESSIBLE_JSON_TXT_FILE, INACCESSIBLE_PICKLE_TXT_FILE);
+        // Then the leaf-independent rule was only evaluated once
+        assertThat(sensitiveRule.evaluations)
+                .as("Check that the leaf-independent rule was only evaluated for the first resource")
+                .hasValue(1);
+    }
+
+    @Test
+    void testLeafIndependentDecisionsAreCachedPerUser() {
+        // Given a leaf-independent rule followed by a per-leaf rule
+        var sensitiveRule = new CountingSensitiveAuthRule();
+        var rules = new Rules<LeafResource>()
+                .addRule("Sensitive users only", sensitiveRule)
+                .addRule("Text resources only", new IsTextResourceRule());
+
+        // When the rules are applied for a user without the required auths, then a user with them
+        var denied = RESOURCES.stream()
+                .map(resource -> evaluator.applyRulesToResource(USER, resource, CONTEXT, rules))
+                .filter(resource -> resource != null)
+                .collect(Collectors.toList());
+        var permitted = evaluator.applyRulesToResource(SENSITIVE_USER, ACCESSIBLE_JSON_TXT_FILE, CONTEXT, rules);
+
+        // Then each user gets their own decision
+        assertThat(denied)
+                .as("Check that every resource is redacted for the user without the auths")
+                .isEmpty();
+        assertThat(permitted)
+                .as("Check that the resource is returned for the user with the auths")
+                .isEqualTo(ACCESSIBLE_JSON_TXT_FILE);
+        assertThat(sensitiveRule.evaluations)
+                .as("Check that the leaf-independent rule was evaluated once for each user")
+                .hasValue(2);
+    }
+}
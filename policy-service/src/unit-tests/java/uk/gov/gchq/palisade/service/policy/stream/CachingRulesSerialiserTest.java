@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import uk.gov.gchq.palisade.rule.Rules;
+import uk.gov.gchq.palisade.service.policy.model.PolicyResponse;
+import uk.gov.gchq.palisade.service.policy.rule.PassThroughRule;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.gchq.palisade.service.policy.ApplicationTestData.REQUEST;
+import static uk.gov.gchq.palisade.service.policy.ApplicationTestData.RESPONSE;
+import static uk.gov.gchq.palisade.service.policy.ApplicationTestData.RULES;
+
+class CachingRulesSerialiserTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void testCachedRulesAreSerialisedAsNormal() throws IOException {
+        // Given a response sharing its rules with another response
+        var sharedRulesResponse = PolicyResponse.Builder.create(REQUEST).withRules(RULES);
+
+        // When both responses are serialised
+        var serialiser = SerDesConfig.ruleValueSerialiser();
+        var first = serialiser.serialize("test-topic", RESPONSE);
+        var second = serialiser.serialize("test-topic", sharedRulesResponse);
+
+        // Then each is the same as if the rules had not been cached
+        assertThat(MAPPER.readTree(first))
+                .as("Check that the first response is serialised as normal")
+                .isEqualTo(MAPPER.readTree(MAPPER.writeValueAsBytes(RESPONSE)));
+        assertThat(MAPPER.readTree(second))
+                .as("Check that the response reusing the cached rules is serialised as normal")
+                .isEqualTo(MAPPER.readTree(MAPPER.writeValueAsBytes(sharedRulesResponse)));
+    }
+
+    @Test
+    void testReplacedRulesAreSerialisedAgain() throws IOException {
+        // Given a response which has had its rules serialised
+        var serialiser = SerDesConfig.ruleValueSerialiser();
+        serialiser.serialize("test-topic", RESPONSE);
+
+        // When the rules are replaced with a different set of rules
+        var newRules = new Rules<Serializable>()
+                .addRule("test-rule", new PassThroughRule<>())
+                .addRule("another-test-rule", new PassThroughRule<>());
+        var newRulesResponse = PolicyResponse.Builder.create(REQUEST).withRules(newRules);
+        var serialised = serialiser.serialize("test-topic", newRulesResponse);
+
+        // Then the new rules are serialised, rather than the cached rules
+        assertThat(MAPPER.readTree(serialised).get("rules"))
+                .as("Check that the new rules are serialised")
+                .isEqualTo(MAPPER.readTree(MAPPER.writeValueAsBytes(newRules)));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.policy.stream.config;
+
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.testkit.javadsl.TestKit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import uk.gov.gchq.palisade.service.policy.model.AuditablePolicyRecordResponse;
+import uk.gov.gchq.palisade.service.policy.service.PolicyServiceAsyncProxy;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.gchq.palisade.service.policy.ApplicationTestData.AUDITABLE_POLICY_RECORD_RESPONSE_NO_ERROR;
+import static uk.gov.gchq.palisade.service.policy.ApplicationTestData.REQUEST;
+
+class AkkaRunnableGraphTest {
+    private static final ActorSystem SYSTEM = ActorSystem.create("AkkaRunnableGraphTest");
+    private static final Materializer MATERIALIZER = Materializer.createMaterializer(SYSTEM);
+
+    private final PolicyServiceAsyncProxy service = Mockito.mock(PolicyServiceAsyncProxy.class);
+
+    @AfterAll
+    static void tearDown() {
+        TestKit.shutdownActorSystem(SYSTEM);
+    }
+
+    @Test
+    void testRequestsForTheSameTokenOverlap() throws Exception {
+        // Given - a service that only answers once every request has been started
+        int requestCount = 4;
+        List<CompletableFuture<Optional<AuditablePolicyRecordResponse>>> responses = new CopyOnWriteArrayList<>();
+        Mockito.when(service.getRules(Mockito.any())).thenAnswer(invocation -> {
+            CompletableFuture<Optional<AuditablePolicyRecordResponse>> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        });
+
+        // When - several requests for the same token are processed
+        var results = Source.range(1, requestCount)
+                .map(index -> Pair.create(index, REQUEST))
+                .via(AkkaRunnableGraph.<Integer>applyRules(requestCount, service))
+                .map(Pair::first)
+                .runWith(Sink.seq(), MATERIALIZER)
+                .toCompletableFuture();
+
+        // Then - every request is in-flight at once, rather than waiting for the request before it
+        new TestKit(SYSTEM).awaitCond(() -> responses.size() == requestCount);
+        assertThat(results)
+                .as("Check that no result is emitted while the requests are in-flight")
+                .isNotDone();
+
+        // When - the requests complete in reverse order
+        for (int i = requestCount - 1; i >= 0; i--) {
+            responses.get(i).complete(Optional.of(AUDITABLE_POLICY_RECORD_RESPONSE_NO_ERROR));
+        }
+
+        // Then - the results are still emitted in the order the requests were received
+        assertThat(results.get(1, TimeUnit.SECONDS))
+                .as("Check that results are emitted in the order their requests were received")
+                .isEqualTo(IntStream.rangeClosed(1, requestCount).boxed().collect(Collectors.toList()));
+    }
+}
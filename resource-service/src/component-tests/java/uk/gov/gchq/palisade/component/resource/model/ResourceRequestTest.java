@@ -45,4 +45,27 @@ class ResourceRequestTest {
                 .usingRecursiveComparison()
                 .isEqualTo(resourceRequest);
     }
+
+    @Test
+    void testPagedResourceRequestSerializingAndDeseralising() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ResourceRequest resourceRequest = ResourceRequest.Builder.create()
+                .withUserId("originalUserId")
+                .withResourceId("testResourceId")
+                .withContext(new Context().purpose("testContext"))
+                .withUser(new User().userId("testUserId"))
+                .withLimit(100)
+                .withResumeAfter("testResourceId/lastResource");
+
+        var actualJson = mapper.writeValueAsString(resourceRequest);
+        var actualInstance = mapper.readValue(actualJson, resourceRequest.getClass());
+
+        assertThat(actualInstance)
+                .as("Using recursion, check that the paged %s object has been deserialised successfully", resourceRequest.getClass().getSimpleName())
+                .usingRecursiveComparison()
+                .isEqualTo(resourceRequest);
+        assertThat(actualInstance.isPaged())
+                .as("Check that the deserialised request is still paged")
+                .isTrue();
+    }
 }
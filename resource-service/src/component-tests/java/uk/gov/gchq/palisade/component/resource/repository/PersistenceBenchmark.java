@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.component.resource.repository;
+
+import akka.NotUsed;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.resource.impl.FileResource;
+import uk.gov.gchq.palisade.resource.impl.SimpleConnectionDetail;
+import uk.gov.gchq.palisade.service.resource.repository.PersistenceLayer;
+import uk.gov.gchq.palisade.util.AbstractResourceBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * A repeatable benchmark of a {@link PersistenceLayer} backend, driven by a backend-specific test (such as an H2 component test
+ * or a Redis contract test) which supplies the persistence layer from its Spring context.
+ * For each iteration, a synthetic tree of directories of the configured depth and fan-out is written under a fresh root, then read back.
+ * <ul>
+ *     <li>{@code write} - persisting every leaf through {@code withPersistenceById}, {@code ByType} and {@code BySerialisedFormat}</li>
+ *     <li>{@code getById} - reading every leaf back through {@code getResourcesById} on the root, with the time to the first leaf</li>
+ *     <li>{@code getByType} and {@code getBySerialisedFormat} - reading every leaf back by its (per-iteration) type and format</li>
+ * </ul>
+ * Each measurement is appended as a line of JSON to {@code <output>/<backend>.jsonl}, labelled so that results from
+ * different versions can be compared.
+ * The benchmark is configured with system properties:
+ * {@code benchmark.depth}, {@code benchmark.fanOut}, {@code benchmark.iterations}, {@code benchmark.warmups},
+ * {@code benchmark.label} and {@code benchmark.output}.
+ */
+public class PersistenceBenchmark {
+    /**
+     * System property which must be set to true for the benchmarks to run, they are skipped as part of a normal build
+     */
+    public static final String ENABLED_PROPERTY = "benchmark";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceBenchmark.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final String backend;
+    private final PersistenceLayer persistenceLayer;
+    private final Materializer materialiser;
+    private final int depth = Integer.getInteger("benchmark.depth", 2);
+    private final int fanOut = Integer.getInteger("benchmark.fanOut", 10);
+    private final int iterations = Integer.getInteger("benchmark.iterations", 5);
+    private final int warmups = Integer.getInteger("benchmark.warmups", 1);
+    private final String label = System.getProperty("benchmark.label", "unlabelled");
+    private final Path output = Path.of(System.getProperty("benchmark.output", "target/benchmarks"));
+
+    /**
+     * Create a new benchmark of a persistence layer
+     *
+     * @param backend          the name of the backend being benchmarked, used to name the results file
+     * @param persistenceLayer the {@link PersistenceLayer} to benchmark
+     * @param materialiser     the Akka {@link Materializer} used to run reads and writes
+     */
+    public PersistenceBenchmark(final String backend, final PersistenceLayer persistenceLayer, final Materializer materialiser) {
+        this.backend = backend;
+        this.persistenceLayer = persistenceLayer;
+        this.materialiser = materialiser;
+    }
+
+    /**
+     * Run all warmup and measured iterations, writing the measured results to the results file
+     *
+     * @return the measured results, one map per measurement as written to the results file
+     */
+    public List<Map<String, Object>> run() {
+        LOGGER.info("Benchmarking {} with depth {} and fan-out {} ({} leaves), {} warmups and {} iterations",
+                backend, depth, fanOut, leafCount(), warmups, iterations);
+        for (int i = 0; i < warmups; i++) {
+            runIteration("warmup-" + i);
+        }
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            results.addAll(runIteration("iteration-" + i));
+        }
+        writeResults(results);
+        return results;
+    }
+
+    private List<Map<String, Object>> runIteration(final String iteration) {
+        // Each iteration uses a fresh root, type and format, so nothing is already persisted
+        String rootId = String.format("file:/benchmark/%s/%s/", backend, iteration);
+        String type = String.format("benchmark-type-%s", iteration);
+        String serialisedFormat = String.format("benchmark-format-%s", iteration);
+        List<LeafResource> leaves = createTree(rootId, type, serialisedFormat);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        Source.from(leaves)
+                .via(persistenceLayer.withPersistenceById(rootId))
+                .via(persistenceLayer.withPersistenceByType(type))
+                .via(persistenceLayer.withPersistenceBySerialisedFormat(serialisedFormat))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+        results.add(result(iteration, "write", System.nanoTime() - start, null, leaves.size()));
+
+        results.add(timeRead(iteration, "getById", persistenceLayer.getResourcesById(rootId)));
+        results.add(timeRead(iteration, "getByType", persistenceLayer.getResourcesByType(type)));
+        results.add(timeRead(iteration, "getBySerialisedFormat", persistenceLayer.getResourcesBySerialisedFormat(serialisedFormat)));
+        results.forEach(result -> LOGGER.info("{}", result));
+        return results;
+    }
+
+    private Map<String, Object> timeRead(final String iteration, final String operation,
+                                         final CompletableFuture<Optional<Source<LeafResource, NotUsed>>> read) {
+        // The read has already been started, but nothing is read from the repositories until the source is run
+        long start = System.nanoTime();
+        AtomicLong firstLeaf = new AtomicLong();
+        long count = read.join()
+                .orElseThrow(() -> new IllegalStateException(String.format("Persistence miss for %s in %s", operation, iteration)))
+                .map((LeafResource leafResource) -> {
+                    firstLeaf.compareAndSet(0L, System.nanoTime());
+                    return leafResource;
+                })
+                .runWith(Sink.fold(0L, (Long total, LeafResource leafResource) -> total + 1), materialiser)
+                .toCompletableFuture().join();
+        long end = System.nanoTime();
+        if (count != leafCount()) {
+            throw new IllegalStateException(String.format("Expected %d leaves for %s in %s but got %d", leafCount(), operation, iteration, count));
+        }
+        return result(iteration, operation, end - start, firstLeaf.get() == 0L ? null : firstLeaf.get() - start, count);
+    }
+
+    private Map<String, Object> result(final String iteration, final String operation, final long totalNanos, final Long firstLeafNanos, final long leaves) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", Instant.now().toString());
+        result.put("label", label);
+        result.put("backend", backend);
+        result.put("depth", depth);
+        result.put("fanOut", fanOut);
+        result.put("iteration", iteration);
+        result.put("operation", operation);
+        result.put("leaves", leaves);
+        result.put("totalNanos", totalNanos);
+        result.put("firstLeafNanos", firstLeafNanos);
+        result.put("leavesPerSecond", leaves * NANOS_PER_SECOND / totalNanos);
+        return result;
+    }
+
+    private List<LeafResource> createTree(final String rootId, final String type, final String serialisedFormat) {
+        List<String> directories = List.of(rootId);
+        for (int level = 0; level < depth; level++) {
+            final int currentLevel = level;
+            directories = directories.stream()
+                    .flatMap(directory -> childNames(currentLevel).stream().map(child -> directory + child + "/"))
+                    .collect(Collectors.toList());
+        }
+        return directories.stream()
+                .flatMap(directory -> childNames(depth).stream().map(child -> directory + child + ".txt"))
+                .map(id -> (LeafResource) ((FileResource) AbstractResourceBuilder.create(id))
+                        .type(type)
+                        .serialisedFormat(serialisedFormat)
+                        .connectionDetail(new SimpleConnectionDetail().serviceName("data-service")))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> childNames(final int level) {
+        List<String> names = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            names.add(String.format("level-%d-%d", level, i));
+        }
+        return names;
+    }
+
+    private long leafCount() {
+        return (long) Math.pow(fanOut, depth + 1.0);
+    }
+
+    private void writeResults(final List<Map<String, Object>> results) {
+        Path file = output.resolve(backend + ".jsonl");
+        try {
+            Files.createDirectories(output);
+            List<String> lines = new ArrayList<>(results.size());
+            for (Map<String, Object> result : results) {
+                lines.add(MAPPER.writeValueAsString(result));
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            LOGGER.info("Wrote {} benchmark results to {}", results.size(), file);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to serialise benchmark results", ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write benchmark results to " + file, ex);
+        }
+    }
+}
@@ -40,6 +40,11 @@ import uk.gov.gchq.palisade.service.resource.repository.ReactivePersistenceLayer
 import uk.gov.gchq.palisade.service.resource.stream.config.AkkaSystemConfig;
 import uk.gov.gchq.palisade.util.AbstractResourceBuilder;
 
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataR2dbcTest
@@ -142,4 +147,207 @@ class ReactivePersistenceLayerTest {
                 .as("Check that when getting the resource by its format, the correct resource is returned")
                 .containsOnly(resource);
     }
+
+    @Test
+    void testPutAndRemoveUpdatesCompleteParent() {
+        // Given the parent directory of the setup resource is complete
+        String parentId = "file:/root/";
+        Source.single(resource)
+                .via(persistenceLayer.withPersistenceById(parentId))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+        LeafResource newResource = ((FileResource) AbstractResourceBuilder.create("file:/root/new-file-id"))
+                .type("test-type")
+                .serialisedFormat("test-format")
+                .connectionDetail(new SimpleConnectionDetail().serviceName("data-service"));
+
+        // When a new resource is put under the complete parent
+        persistenceLayer.putResource(newResource).join();
+        var putResult = persistenceLayer.getResourcesById(parentId)
+                .join().orElseThrow()
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+        // Then the parent is still complete and now includes the new resource
+        assertThat(putResult)
+                .as("Check that a resource put under a complete parent is returned with the parent")
+                .containsOnly(resource, newResource);
+
+        // When the new resource is removed
+        persistenceLayer.removeResourceById(newResource.getId()).join();
+        var removeResult = persistenceLayer.getResourcesById(parentId)
+                .join().orElseThrow()
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+        // Then the parent no longer includes the removed resource
+        assertThat(removeResult)
+                .as("Check that a removed resource is no longer returned with its parent")
+                .containsOnly(resource);
+        assertThat(persistenceLayer.getResourcesById(newResource.getId()).join())
+                .as("Check that a removed resource is no longer complete")
+                .isEmpty();
+    }
+
+    @Test
+    void testLeavesShareParentInstances() {
+        // Given two resources in the same directory
+        String parentId = "file:/shared/";
+        LeafResource first = ((FileResource) AbstractResourceBuilder.create("file:/shared/first-file-id"))
+                .type("test-type")
+                .serialisedFormat("test-format")
+                .connectionDetail(new SimpleConnectionDetail().serviceName("data-service"));
+        LeafResource second = ((FileResource) AbstractResourceBuilder.create("file:/shared/second-file-id"))
+                .type("test-type")
+                .serialisedFormat("test-format")
+                .connectionDetail(new SimpleConnectionDetail().serviceName("data-service"));
+        Source.from(List.of(first, second))
+                .via(persistenceLayer.withPersistenceById(parentId))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+
+        // When getting the directory from the persistence layer
+        var result = persistenceLayer.getResourcesById(parentId)
+                .join().orElseThrow()
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+
+        // Then the parents are rebuilt, and shared between both resources
+        assertThat(result)
+                .as("Check that both resources are returned with their parents")
+                .containsOnly(first, second);
+        assertThat(result.get(0).getParent())
+                .as("Check that resources in the same directory share a single parent instance")
+                .isSameAs(result.get(1).getParent());
+    }
+
+    @Test
+    void testResumedGetReturnsLeavesInOrderAfterResumePoint() {
+        // Given resources across nested directories, persisted out of order
+        String rootId = "file:/paged/";
+        List<String> ids = List.of("file:/paged/b/2", "file:/paged/a-file", "file:/paged/b/1", "file:/paged/a/2", "file:/paged/a/1", "file:/paged/c");
+        List<LeafResource> resources = ids.stream()
+                .map(id -> (LeafResource) ((FileResource) AbstractResourceBuilder.create(id))
+                        .type("test-type")
+                        .serialisedFormat("test-format")
+                        .connectionDetail(new SimpleConnectionDetail().serviceName("data-service")))
+                .collect(Collectors.toList());
+        Source.from(resources)
+                .via(persistenceLayer.withPersistenceById(rootId))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+
+        // When getting the directory from the persistence layer, resuming after a resource in a subdirectory
+        var result = persistenceLayer.getResourcesById(rootId, "file:/paged/a/2")
+                .join().orElseThrow()
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+
+        // Then only the resources after the resume point are returned, ordered by id
+        assertThat(result)
+                .as("Check that resources after the resume point are returned in order of id")
+                .extracting(LeafResource::getId)
+                .containsExactly("file:/paged/b/1", "file:/paged/b/2", "file:/paged/c");
+    }
+
+    @Test
+    void testResumedGetReadsChildrenAcrossPages() {
+        // Given a directory with more children than are read from the repository at once
+        String rootId = "file:/many/";
+        List<LeafResource> resources = IntStream.range(0, 600)
+                .mapToObj(i -> createResource(String.format("file:/many/%04d", i)))
+                .collect(Collectors.toList());
+        Source.from(resources)
+                .via(persistenceLayer.withPersistenceById(rootId))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+
+        // When getting the directory from the persistence layer, resuming part-way through
+        var result = persistenceLayer.getResourcesById(rootId, "file:/many/0099")
+                .join().orElseThrow()
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+
+        // Then every resource after the resume point is returned, ordered by id
+        assertThat(result)
+                .as("Check that resources after the resume point are returned in order of id, across pages of children")
+                .extracting(LeafResource::getId)
+                .hasSize(500)
+                .isSorted()
+                .startsWith("file:/many/0100")
+                .endsWith("file:/many/0599");
+    }
+
+    @Test
+    void testReplaceSwapsResourcesAndKeepsIdComplete() {
+        // Given a directory with nested resources is complete
+        String rootId = "file:/refreshed/";
+        List<LeafResource> oldResources = Stream.of("file:/refreshed/kept", "file:/refreshed/deleted", "file:/refreshed/deleted-dir/file")
+                .map(ReactivePersistenceLayerTest::createResource)
+                .collect(Collectors.toList());
+        Source.from(oldResources)
+                .via(persistenceLayer.withPersistenceById(rootId))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+
+        // When the directory is replaced by a fresh set of resources
+        List<LeafResource> freshResources = Stream.of("file:/refreshed/kept", "file:/refreshed/created", "file:/refreshed/created-dir/file")
+                .map(ReactivePersistenceLayerTest::createResource)
+                .collect(Collectors.toList());
+        persistenceLayer.replaceResourcesById(rootId, freshResources).join();
+        var result = persistenceLayer.getResourcesById(rootId)
+                .join().orElseThrow()
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+
+        // Then the directory is still complete, and returns only the fresh resources
+        assertThat(result)
+                .as("Check that a replaced directory returns only the fresh resources")
+                .extracting(LeafResource::getId)
+                .containsExactlyInAnyOrder("file:/refreshed/kept", "file:/refreshed/created", "file:/refreshed/created-dir/file");
+        assertThat(persistenceLayer.getResourcesById("file:/refreshed/deleted-dir/").join())
+                .as("Check that a directory no longer found by the fresh walk is removed")
+                .isEmpty();
+        assertThat(persistenceLayer.getResourcesById("file:/refreshed/created-dir/").join())
+                .as("Check that a directory found by the fresh walk is complete")
+                .isPresent();
+    }
+
+    @Test
+    void testRootIsOnlyCompleteOnceEveryBatchIsPersisted() {
+        // Given a directory persisted as a number of separate batches
+        String rootId = "file:/batched/";
+        Source.single(createResource("file:/batched/first"))
+                .via(persistenceLayer.withPartialPersistenceById(rootId))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+
+        // When only some of the batches have been persisted
+        // Then the directory is not yet complete
+        assertThat(persistenceLayer.getResourcesById(rootId).join())
+                .as("Check that a directory is not complete while its batches are still being persisted")
+                .isEmpty();
+
+        // When the remaining batches have been persisted, and the directory marked complete
+        Source.single(createResource("file:/batched/second"))
+                .via(persistenceLayer.withPartialPersistenceById(rootId))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+        persistenceLayer.completeResourceById(rootId).join();
+        var result = persistenceLayer.getResourcesById(rootId)
+                .join().orElseThrow()
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+
+        // Then the directory is complete, and returns the resources from every batch
+        assertThat(result)
+                .as("Check that a directory marked complete after all of its batches returns every resource")
+                .extracting(LeafResource::getId)
+                .containsExactlyInAnyOrder("file:/batched/first", "file:/batched/second");
+    }
+
+    private static LeafResource createResource(final String resourceId) {
+        return ((FileResource) AbstractResourceBuilder.create(resourceId))
+                .type("test-type")
+                .serialisedFormat("test-format")
+                .connectionDetail(new SimpleConnectionDetail().serviceName("data-service"));
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.component.resource.repository;
+
+import akka.stream.Materializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.redis.DataRedisTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import uk.gov.gchq.palisade.contract.resource.redis.RedisInitialiser;
+import uk.gov.gchq.palisade.service.resource.config.ApplicationConfiguration;
+import uk.gov.gchq.palisade.service.resource.config.RedisConfiguration;
+import uk.gov.gchq.palisade.service.resource.repository.ReactivePersistenceLayer;
+import uk.gov.gchq.palisade.service.resource.stream.config.AkkaSystemConfig;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the {@link PersistenceBenchmark} against the Redis backend, using the same Redis testcontainer as the {@link RedisPersistenceLayerTest}.
+ * Only runs when the {@code benchmark} system property is set to true, eg. {@code mvn test -Dbenchmark=true -Dtest=*BenchmarkTest}
+ */
+@DataRedisTest(properties = {
+        "spring.data.redis.repositories.key-prefix=benchmark:"
+})
+@ContextConfiguration(initializers = {RedisInitialiser.class},
+        classes = {ApplicationConfiguration.class, RedisConfiguration.class, AkkaSystemConfig.class})
+@EnableAutoConfiguration
+@ActiveProfiles({"redis", "testcontainers"})
+@DirtiesContext(classMode = ClassMode.BEFORE_CLASS)
+@EnabledIfSystemProperty(named = PersistenceBenchmark.ENABLED_PROPERTY, matches = "true")
+class RedisPersistenceBenchmarkTest {
+
+    @Autowired
+    private ReactivePersistenceLayer persistenceLayer;
+    @Autowired
+    private Materializer materialiser;
+
+    @Test
+    void testBenchmarkRedisPersistence() {
+        // Given a benchmark of the Redis persistence layer
+        PersistenceBenchmark benchmark = new PersistenceBenchmark("redis", persistenceLayer, materialiser);
+
+        // When the benchmark is run
+        List<Map<String, Object>> results = benchmark.run();
+
+        // Then every operation was measured
+        assertThat(results)
+                .as("Check that the benchmark recorded results")
+                .isNotEmpty()
+                .extracting(result -> result.get("operation"))
+                .contains("write", "getById", "getByType", "getBySerialisedFormat");
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.component.resource.repository.h2;
+
+import akka.stream.Materializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import uk.gov.gchq.palisade.component.resource.repository.PersistenceBenchmark;
+import uk.gov.gchq.palisade.service.resource.config.ApplicationConfiguration;
+import uk.gov.gchq.palisade.service.resource.config.R2dbcConfiguration;
+import uk.gov.gchq.palisade.service.resource.repository.ReactivePersistenceLayer;
+import uk.gov.gchq.palisade.service.resource.stream.config.AkkaSystemConfig;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the {@link PersistenceBenchmark} against the H2 (R2DBC) backend.
+ * Only runs when the {@code benchmark} system property is set to true, eg. {@code mvn test -Dbenchmark=true -Dtest=*BenchmarkTest}
+ */
+@DataR2dbcTest
+@ContextConfiguration(classes = {ApplicationConfiguration.class, R2dbcConfiguration.class, AkkaSystemConfig.class})
+@EntityScan(basePackages = {"uk.gov.gchq.palisade.service.resource.domain"})
+@EnableR2dbcRepositories(basePackages = {"uk.gov.gchq.palisade.service.resource.repository"})
+@ActiveProfiles({"dbtest"})
+@DirtiesContext(classMode = ClassMode.BEFORE_CLASS)
+@EnabledIfSystemProperty(named = PersistenceBenchmark.ENABLED_PROPERTY, matches = "true")
+class H2PersistenceBenchmarkTest {
+
+    @Autowired
+    private ReactivePersistenceLayer persistenceLayer;
+    @Autowired
+    private Materializer materialiser;
+
+    @Test
+    void testBenchmarkH2Persistence() {
+        // Given a benchmark of the H2 persistence layer
+        PersistenceBenchmark benchmark = new PersistenceBenchmark("h2", persistenceLayer, materialiser);
+
+        // When the benchmark is run
+        List<Map<String, Object>> results = benchmark.run();
+
+        // Then every operation was measured
+        assertThat(results)
+                .as("Check that the benchmark recorded results")
+                .isNotEmpty()
+                .extracting(result -> result.get("operation"))
+                .contains("write", "getById", "getByType", "getBySerialisedFormat");
+    }
+}
@@ -22,6 +22,7 @@ import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
@@ -32,28 +33,43 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 
 import uk.gov.gchq.palisade.Context;
+import uk.gov.gchq.palisade.resource.ChildResource;
 import uk.gov.gchq.palisade.resource.LeafResource;
 import uk.gov.gchq.palisade.resource.impl.SimpleConnectionDetail;
 import uk.gov.gchq.palisade.service.resource.config.ApplicationConfiguration;
 import uk.gov.gchq.palisade.service.resource.config.R2dbcConfiguration;
+import uk.gov.gchq.palisade.service.resource.config.ResourceServiceConfigProperties;
 import uk.gov.gchq.palisade.service.resource.exception.NoSuchResourceException;
+import uk.gov.gchq.palisade.service.resource.exception.ResourceWalkException;
 import uk.gov.gchq.palisade.service.resource.model.AuditErrorMessage;
 import uk.gov.gchq.palisade.service.resource.model.AuditableResourceResponse;
 import uk.gov.gchq.palisade.service.resource.model.ResourceRequest;
 import uk.gov.gchq.palisade.service.resource.model.ResourceResponse;
 import uk.gov.gchq.palisade.service.resource.repository.ReactivePersistenceLayer;
+import uk.gov.gchq.palisade.service.resource.service.NegativeResourceCache;
+import uk.gov.gchq.palisade.service.resource.service.ResourceService;
 import uk.gov.gchq.palisade.service.resource.service.ResourceServicePersistenceProxy;
 import uk.gov.gchq.palisade.service.resource.stream.config.AkkaSystemConfig;
 import uk.gov.gchq.palisade.user.User;
 import uk.gov.gchq.palisade.util.AbstractResourceBuilder;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests to verify the handling of exceptions,and the population of audit objects during stream processing
@@ -77,13 +93,18 @@ class ResourceServicePersistenceProxyTest {
     @Autowired
     private ReactivePersistenceLayer persistenceLayer;
     @Autowired
+    private NegativeResourceCache negativeCache;
+    @Autowired
     private Materializer materializer;
+    @Autowired
+    private ResourceServiceConfigProperties properties;
 
-    private final Function<Integer, ResourceRequest> requestFactoryObj = i -> ResourceRequest.Builder.create()
+    private final Function<String, ResourceRequest> requestForId = resourceId -> ResourceRequest.Builder.create()
             .withUserId("user-id")
-            .withResourceId(String.format("file:/test/resourceId/data%d.txt", i))
+            .withResourceId(resourceId)
             .withContext(new Context().purpose("test-purpose"))
             .withUser(new User().userId("test-user"));
+    private final Function<Integer, ResourceRequest> requestFactoryObj = i -> requestForId.apply(String.format("file:/test/resourceId/data%d.txt", i));
 
     @BeforeEach
     void setup() throws InterruptedException {
@@ -155,4 +176,127 @@ class ResourceServicePersistenceProxyTest {
                 .extracting("Message")
                 .isEqualTo("Failed to walk path " + File.separator + "test" + File.separator + "resourceId" + File.separator + "data2.txt");
     }
+
+    @Test
+    void testGetResourceByIdFailureIsNegativelyCached(@TempDir final Path directory) throws IOException {
+        // Given a request for a resource that does not exist (yet)
+        final Path file = directory.resolve("data.txt");
+        final ResourceRequest resourceRequest = requestForId.apply(file.toFile().getCanonicalFile().toURI().toString());
+        final List<AuditableResourceResponse> first = this.resourceServiceAsyncProxy.getResourcesById(resourceRequest)
+                .runWith(Sink.seq(), materializer)
+                .toCompletableFuture().join();
+
+        // When the same resource is requested again
+        final List<AuditableResourceResponse> second = this.resourceServiceAsyncProxy.getResourcesById(resourceRequest)
+                .runWith(Sink.seq(), materializer)
+                .toCompletableFuture().join();
+
+        // Then the resource id was cached as unknown
+        assertThat(negativeCache.get(resourceRequest.getResourceId()))
+                .as("Check that the nonexistent resource id has been cached as unknown")
+                .isPresent();
+
+        // Then the same error is returned to both requests
+        assertThat(second)
+                .as("Check that the cached error is replayed for the second request")
+                .hasSameSizeAs(first)
+                .first()
+                .extracting(AuditableResourceResponse::getAuditErrorMessage)
+                .extracting(AuditErrorMessage::getError)
+                .isSameAs(first.get(0).getAuditErrorMessage().getError());
+
+        // When the resource is created, and then persisted by the proxy as part of a request for its parent directory
+        Files.createFile(file);
+        final ResourceRequest parentRequest = requestForId.apply(directory.toFile().getCanonicalFile().toURI().toString());
+        this.resourceServiceAsyncProxy.getResourcesById(parentRequest)
+                .runWith(Sink.seq(), materializer)
+                .toCompletableFuture().join();
+
+        // Then the resource id is no longer cached as unknown
+        assertThat(negativeCache.get(resourceRequest.getResourceId()))
+                .as("Check that persisting a resource under the unknown id invalidates the cache")
+                .isEmpty();
+
+        // Then the resource is now returned
+        final List<AuditableResourceResponse> third = this.resourceServiceAsyncProxy.getResourcesById(resourceRequest)
+                .runWith(Sink.seq(), materializer)
+                .toCompletableFuture().join();
+        assertThat(third)
+                .as("Check that the created resource is returned once it is no longer cached as unknown")
+                .extracting(AuditableResourceResponse::getResourceResponse)
+                .extracting(ResourceResponse::getResourceId)
+                .containsExactly(resourceRequest.getResourceId());
+    }
+
+    @Test
+    void testGetResourceByIdPermissionFailureIsNotNegativelyCached(@TempDir final Path directory) throws IOException {
+        // Given a request for a directory that exists, but cannot be listed
+        final Path unlistable = Files.createDirectory(directory.resolve("unlistable"));
+        Files.createFile(unlistable.resolve("data.txt"));
+        Files.setPosixFilePermissions(unlistable, PosixFilePermissions.fromString("---------"));
+        assumeFalse(Files.isReadable(unlistable), "Directory permissions are not enforced for this user");
+        final ResourceRequest resourceRequest = requestForId.apply(unlistable.toFile().getCanonicalFile().toURI().toString());
+
+        try {
+            // When the resource is requested
+            final List<AuditableResourceResponse> result = this.resourceServiceAsyncProxy.getResourcesById(resourceRequest)
+                    .runWith(Sink.seq(), materializer)
+                    .toCompletableFuture().join();
+
+            // Then the error is returned, caused by the failed walk rather than a missing resource
+            assertThat(result)
+                    .as("Check that the permission error is returned to the request")
+                    .extracting(AuditableResourceResponse::getAuditErrorMessage)
+                    .extracting(AuditErrorMessage::getError)
+                    .extracting(Throwable::getCause)
+                    .hasOnlyElementsOfType(ResourceWalkException.class)
+                    .isNotEmpty();
+
+            // Then the resource id is not cached as unknown, as the resource does exist
+            assertThat(negativeCache.get(resourceRequest.getResourceId()))
+                    .as("Check that a resource id failing for reasons other than not existing is not cached as unknown")
+                    .isEmpty();
+        } finally {
+            Files.setPosixFilePermissions(unlistable, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    @Test
+    void testFailedWalkInvalidatesEveryPersistedParent() {
+        // Given a delegate that returns a resource some way under the requested id, then fails part-way through the walk
+        final LeafResource leaf = ((LeafResource) AbstractResourceBuilder.create("file:/test/failedWalk/directory/data1.txt"))
+                .type("data")
+                .serialisedFormat("txt")
+                .connectionDetail(DETAIL);
+        final String directoryId = ((ChildResource) leaf).getParent().getId();
+        final ResourceService delegate = mock(ResourceService.class);
+        when(delegate.getResourcesById("file:/test/failedWalk/")).thenAnswer(invocation -> Stream.<Supplier<LeafResource>>of(
+                () -> leaf,
+                () -> {
+                    throw new ResourceWalkException("Failed to list directory");
+                })
+                .map(Supplier::get)
+                .iterator());
+        final ResourceServicePersistenceProxy proxy = new ResourceServicePersistenceProxy(persistenceLayer, delegate, materializer,
+                new NegativeResourceCache(Duration.ofMinutes(1), 100), properties);
+
+        // When the requested id is walked
+        final List<AuditableResourceResponse> result = proxy.getResourcesById(requestForId.apply("file:/test/failedWalk/"))
+                .runWith(Sink.seq(), materializer)
+                .toCompletableFuture().join();
+        assertThat(result)
+                .as("Check that the walk returned the resource, followed by the error")
+                .extracting(AuditableResourceResponse::getAuditErrorMessage)
+                .hasSize(2)
+                .last()
+                .isNotNull();
+
+        // Then neither the requested id nor the directory between it and the resource are served from persistence
+        assertThat(persistenceLayer.getResourcesById("file:/test/failedWalk/").join())
+                .as("Check that the requested id is no longer complete after a failed walk")
+                .isEmpty();
+        assertThat(persistenceLayer.getResourcesById(directoryId).join())
+                .as("Check that an intermediate directory persisted during a failed walk is no longer complete")
+                .isEmpty();
+    }
 }
@@ -32,6 +32,7 @@ import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -55,6 +56,7 @@ import uk.gov.gchq.palisade.service.resource.ResourceApplication;
 import uk.gov.gchq.palisade.service.resource.model.ResourceRequest;
 import uk.gov.gchq.palisade.service.resource.model.StreamMarker;
 import uk.gov.gchq.palisade.service.resource.model.Token;
+import uk.gov.gchq.palisade.service.resource.service.ResourcePrepopulationService;
 import uk.gov.gchq.palisade.service.resource.stream.ConsumerTopicConfiguration;
 import uk.gov.gchq.palisade.service.resource.stream.ProducerTopicConfiguration;
 import uk.gov.gchq.palisade.service.resource.stream.SerDesConfig;
@@ -101,6 +103,14 @@ class KafkaContractTest {
     private ConsumerTopicConfiguration consumerTopicConfiguration;
     @Autowired
     private ProducerTopicConfiguration producerTopicConfiguration;
+    @Autowired
+    private ResourcePrepopulationService prepopulationService;
+
+    @BeforeEach
+    void setUp() {
+        // Prepopulation runs in the background, so wait for the test resources to be persisted before making requests
+        prepopulationService.prepopulate().toCompletableFuture().join();
+    }
 
     @Test
     @DirtiesContext
@@ -16,11 +16,8 @@
 
 package uk.gov.gchq.palisade.service.resource;
 
-import akka.Done;
 import akka.stream.Materializer;
 import akka.stream.javadsl.RunnableGraph;
-import akka.stream.javadsl.Sink;
-import akka.stream.javadsl.Source;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -31,22 +28,16 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.event.EventListener;
 
-import uk.gov.gchq.palisade.resource.LeafResource;
-import uk.gov.gchq.palisade.resource.Resource;
-import uk.gov.gchq.palisade.service.resource.repository.PersistenceLayer;
+import uk.gov.gchq.palisade.service.resource.service.ResourcePrepopulationService;
 import uk.gov.gchq.palisade.service.resource.stream.ConsumerTopicConfiguration;
 import uk.gov.gchq.palisade.service.resource.stream.ProducerTopicConfiguration;
 
 import javax.annotation.PreDestroy;
 
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -60,30 +51,25 @@ public class ResourceApplication {
     private final Set<RunnableGraph<?>> runners;
     private final Materializer materialiser;
     private final Executor executor;
-    private final PersistenceLayer persistence;
-    private final Supplier<List<Entry<Resource, LeafResource>>> resourceBuilder;
+    private final ResourcePrepopulationService prepopulationService;
     private final Set<CompletableFuture<?>> runnerThreads = new HashSet<>();
 
     /**
      * Autowire Akka objects in constructor for application ready event
      *
-     * @param runners         collection of all Akka {@link RunnableGraph}s discovered for the application
-     * @param materialiser    the Akka {@link Materializer} configured to be used
-     * @param persistence     a {@link PersistenceLayer} for persisting resources in, as if it were a cache
-     * @param executor        an executor for any {@link CompletableFuture}s (preferably the application task executor)
-     * @param resourceBuilder a {@link Supplier} of resources as built by a ResourcePrepopulationFactory,
-     *                        but with a connection detail attached
+     * @param runners              collection of all Akka {@link RunnableGraph}s discovered for the application
+     * @param materialiser         the Akka {@link Materializer} configured to be used
+     * @param prepopulationService a {@link ResourcePrepopulationService} for prepopulating persistence with configured resources
+     * @param executor             an executor for any {@link CompletableFuture}s (preferably the application task executor)
      */
     public ResourceApplication(final Set<RunnableGraph<?>> runners,
                                final Materializer materialiser,
-                               final PersistenceLayer persistence,
-                               @Qualifier("configuredResourceBuilder") final Supplier<List<Entry<Resource, LeafResource>>> resourceBuilder,
+                               final ResourcePrepopulationService prepopulationService,
                                @Qualifier("threadPoolTaskExecutor") final Executor executor) {
         this.runners = Set.copyOf(runners);
         this.materialiser = materialiser;
-        this.persistence = persistence;
+        this.prepopulationService = prepopulationService;
         this.executor = executor;
-        this.resourceBuilder = resourceBuilder;
     }
 
     /**
@@ -103,26 +89,15 @@ public class ResourceApplication {
      *     <li>Adds resource(s) from a configuration file to the persistence of the {@link uk.gov.gchq.palisade.service.resource.service.ResourceService}</li>
      *     <li>Runs all available Akka {@link RunnableGraph}s until completion.</li>
      * </ol>
+     * Prepopulation continues in the background while the runners start, with the 'prepopulation' health indicator
+     * reporting the service as out-of-service until it has completed.
      * The 'main' threads of the application during runtime are the completable futures spawned here.
      */
     @EventListener(ApplicationReadyEvent.class)
     public void serverForever() {
-        // Add resources to persistence
-        LOGGER.info("Pre-populating using resource builder: {}", resourceBuilder);
-
-        resourceBuilder.get()
-                .forEach((Entry<Resource, LeafResource> entry) -> {
-                    Resource rootResource = entry.getKey();
-                    LeafResource leafResource = entry.getValue();
-                    Sink<LeafResource, CompletionStage<Done>> loggingSink = Sink.foreach(
-                            persistedResource -> LOGGER.info("Persistence add for {} -> {}", rootResource.getId(), persistedResource.getId()));
-                    Source.single(leafResource)
-                            .via(persistence.withPersistenceById(rootResource.getId()))
-                            .via(persistence.withPersistenceByType(leafResource.getType()))
-                            .via(persistence.withPersistenceBySerialisedFormat(leafResource.getSerialisedFormat()))
-                            .runWith(loggingSink, materialiser)
-                            .toCompletableFuture().join();
-                });
+        // Add resources to persistence in the background
+        // Each root is only marked complete once all of its resources are persisted, so requests are never served a partial root
+        prepopulationService.prepopulate();
 
         // Then start up all runners
         runnerThreads.addAll(runners.stream()
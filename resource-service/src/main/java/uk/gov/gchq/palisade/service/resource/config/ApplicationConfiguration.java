@@ -16,10 +16,12 @@
 
 package uk.gov.gchq.palisade.service.resource.config;
 
+import akka.stream.Materializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -37,11 +39,17 @@ import uk.gov.gchq.palisade.resource.Resource;
 import uk.gov.gchq.palisade.resource.impl.SimpleConnectionDetail;
 import uk.gov.gchq.palisade.service.resource.exception.ApplicationAsyncExceptionHandler;
 import uk.gov.gchq.palisade.service.resource.repository.CompletenessRepository;
+import uk.gov.gchq.palisade.service.resource.repository.IndexedPersistenceLayer;
+import uk.gov.gchq.palisade.service.resource.repository.ParentResourceCache;
 import uk.gov.gchq.palisade.service.resource.repository.PersistenceLayer;
 import uk.gov.gchq.palisade.service.resource.repository.ReactivePersistenceLayer;
 import uk.gov.gchq.palisade.service.resource.repository.ResourceRepository;
 import uk.gov.gchq.palisade.service.resource.repository.SerialisedFormatRepository;
 import uk.gov.gchq.palisade.service.resource.repository.TypeRepository;
+import uk.gov.gchq.palisade.service.resource.service.FileSystemResourceWatcher;
+import uk.gov.gchq.palisade.service.resource.service.NegativeResourceCache;
+import uk.gov.gchq.palisade.service.resource.service.ParallelFileWalker;
+import uk.gov.gchq.palisade.service.resource.service.ResourcePrepopulationService;
 import uk.gov.gchq.palisade.service.resource.service.ResourceService;
 import uk.gov.gchq.palisade.service.resource.service.ResourceServicePersistenceProxy;
 import uk.gov.gchq.palisade.service.resource.service.SimpleResourceService;
@@ -68,6 +76,15 @@ public class ApplicationConfiguration implements AsyncConfigurer {
     @Value("${web.client.data-service:data-service}")
     private String dataServiceName;
 
+    @Value("${population.manifest:}")
+    private String populationManifest;
+
+    @Value("${population.parallelism:4}")
+    private int populationParallelism;
+
+    @Value("${population.batchSize:1000}")
+    private int populationBatchSize;
+
     /**
      * Spring dependency-injection for dependant configs
      *
@@ -85,13 +102,35 @@ public class ApplicationConfiguration implements AsyncConfigurer {
      */
     @Bean
     public Supplier<List<Entry<Resource, LeafResource>>> configuredResourceBuilder(final ResourceConfiguration resourceConfig) {
-        Function<String, ConnectionDetail> connectionDetailMapper = serviceName -> new SimpleConnectionDetail()
-                .serviceName(serviceName);
+        Function<String, ConnectionDetail> connectionDetailMapper = connectionDetailMapper();
         return () -> resourceConfig.getResources().stream()
                 .map(factory -> factory.build(connectionDetailMapper))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Prepopulates persistence in the background with the configured resources, and any resources in the configured manifest file.
+     * This is also the 'prepopulation' health indicator, so readiness can be gated on prepopulation completing.
+     *
+     * @param persistenceLayer    the {@link PersistenceLayer} to prepopulate
+     * @param materialiser        the Akka {@link Materializer} used to run the prepopulation graph
+     * @param configuredResources a getter for a list of configured {@link Resource}s, each paired with an associated {@link LeafResource}
+     * @return a {@link ResourcePrepopulationService} for the configured resources and manifest
+     */
+    @Bean("prepopulation")
+    public ResourcePrepopulationService resourcePrepopulationService(
+            final PersistenceLayer persistenceLayer,
+            final Materializer materialiser,
+            final @Qualifier("configuredResourceBuilder") Supplier<List<Entry<Resource, LeafResource>>> configuredResources) {
+        return new ResourcePrepopulationService(persistenceLayer, materialiser, configuredResources, connectionDetailMapper(),
+                populationManifest, populationParallelism, populationBatchSize);
+    }
+
+    private static Function<String, ConnectionDetail> connectionDetailMapper() {
+        return serviceName -> new SimpleConnectionDetail()
+                .serviceName(serviceName);
+    }
+
     /**
      * A container for a number of {@link StdResourcePrepopulationFactory} builders used for creating {@link uk.gov.gchq.palisade.resource.Resource}s
      * These resources will be used for prepopulating the {@link ResourceService}
@@ -117,6 +156,18 @@ public class ApplicationConfiguration implements AsyncConfigurer {
         return new StdResourcePrepopulationFactory();
     }
 
+    /**
+     * An interning cache of {@link uk.gov.gchq.palisade.resource.ParentResource}s, used to rebuild the parents of resources
+     * read from persistence, since each resource is stored with only the id of its parent
+     *
+     * @param resourceRepository the resource repository to read uncached parents from
+     * @return a {@link ParentResourceCache} shared between all resources read from persistence
+     */
+    @Bean
+    public ParentResourceCache parentResourceCache(final ResourceRepository resourceRepository) {
+        return new ParentResourceCache(resourceRepository);
+    }
+
     /**
      * An implementation of the {@link PersistenceLayer} interface to be used by the {@link ResourceService} as if it were a cache
      * See the {@link ReactivePersistenceLayer} for an in-depth description of how and why each part is used
@@ -126,6 +177,7 @@ public class ApplicationConfiguration implements AsyncConfigurer {
      * @param resourceRepository         the resource repository to use, a store of each available {@link LeafResource} and its parents
      * @param typeRepository             the type repository to use, a one-to-many relation of types to resource ids
      * @param serialisedFormatRepository the serialisedFormat repository to use, a one-to-many relation of serialisedFormats to resource ids
+     * @param parentResourceCache        the cache of parents used to rebuild resources read from the resource repository
      * @return a {@link ReactivePersistenceLayer} object with the appropriate repositories configured for storing resource (meta)data
      */
     @Bean
@@ -133,37 +185,103 @@ public class ApplicationConfiguration implements AsyncConfigurer {
             final CompletenessRepository completenessRepository,
             final ResourceRepository resourceRepository,
             final TypeRepository typeRepository,
-            final SerialisedFormatRepository serialisedFormatRepository) {
-        return new ReactivePersistenceLayer(completenessRepository, resourceRepository, typeRepository, serialisedFormatRepository);
+            final SerialisedFormatRepository serialisedFormatRepository,
+            final ParentResourceCache parentResourceCache) {
+        return new ReactivePersistenceLayer(completenessRepository, resourceRepository, typeRepository, serialisedFormatRepository, parentResourceCache);
+    }
+
+    /**
+     * An optional in-memory index in front of the {@link ReactivePersistenceLayer}, serving requests by id for fully-persisted
+     * subtrees without a database round trip.
+     * When enabled, this is the primary {@link PersistenceLayer}, so all reads and writes by the rest of the service go through the index.
+     * Metrics for the index are registered with the application's meter registry, if there is one.
+     *
+     * @param persistenceLayer       the {@link ReactivePersistenceLayer} to index, which remains the source of truth
+     * @param completenessRepository the completeness repository, read at startup to warm the index
+     * @param materialiser           the Akka {@link Materializer} used to warm the index
+     * @return an {@link IndexedPersistenceLayer} over the persistence layer, warmed in the background on startup
+     */
+    @Bean(initMethod = "warm")
+    @Primary
+    @ConditionalOnProperty(prefix = "resource", name = "indexEnabled", havingValue = "true")
+    public IndexedPersistenceLayer indexedPersistenceLayer(
+            final ReactivePersistenceLayer persistenceLayer,
+            final CompletenessRepository completenessRepository,
+            final Materializer materialiser) {
+        return new IndexedPersistenceLayer(persistenceLayer, completenessRepository, materialiser, resourceServiceConfigProperties.getIndexMaximumSize());
+    }
+
+    /**
+     * A bounded, short-lived cache of resource ids for which the {@link ResourceService} returned no resources.
+     * Metrics for this cache are registered with the application's meter registry, if there is one.
+     *
+     * @return a {@link NegativeResourceCache} with the configured time-to-live and maximum size
+     */
+    @Bean
+    public NegativeResourceCache negativeResourceCache() {
+        return new NegativeResourceCache(resourceServiceConfigProperties.getNegativeCacheTimeToLive(), resourceServiceConfigProperties.getNegativeCacheMaximumSize());
     }
 
     /**
      * A proxy-like object for a {@link ResourceService} using {@link akka.stream.javadsl.Source}s.
-     * This includes providing cache like behaviour and wrapping stream elements in success/error objects
+     * This includes providing cache like behaviour and wrapping stream elements in success/error objects.
+     * Persisted resources are refreshed-ahead from the delegate once older than {@code resource.refreshAfter}, if set.
      *
      * @param persistenceLayer a {@link PersistenceLayer} for persisting resources in, as if it were a cache
      * @param delegate         a 'real' {@link ResourceService} to delegate requests to when not found in the persistenceLayer
      *                         This must be marked 'impl' to designate that it is the backing implementation to use as there may be multiple proxies, services etc.
+     * @param materialiser     the Akka {@link Materializer} used to run requests to the delegate shared between concurrent cache misses
+     * @param negativeCache    a {@link NegativeResourceCache} of resource ids recently found not to exist
      * @return a {@link ResourceServicePersistenceProxy} to handle the streams produced by the persistenceLayer and delegate {@link ResourceService}
      */
     @Bean
     public ResourceServicePersistenceProxy resourceServicePersistenceProxy(
             final PersistenceLayer persistenceLayer,
-            final ResourceService delegate) {
-        return new ResourceServicePersistenceProxy(persistenceLayer, delegate);
+            final ResourceService delegate,
+            final Materializer materialiser,
+            final NegativeResourceCache negativeCache) {
+        return new ResourceServicePersistenceProxy(persistenceLayer, delegate, materialiser, negativeCache, resourceServiceConfigProperties);
+    }
+
+    /**
+     * A walker of filesystem directory trees for the SimpleResourceService, sharing a single pool of threads between all walks
+     *
+     * @return a new instance of ParallelFileWalker with the configured level of parallelism, closed with the application context
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "resource", name = "implementation", havingValue = "simple", matchIfMissing = true)
+    public ParallelFileWalker parallelFileWalker() {
+        return new ParallelFileWalker(resourceServiceConfigProperties.getWalkParallelism());
     }
 
     /**
      * A bean for the implementation of the SimpleResourceService which is a simple implementation of {@link ResourceService}
      *
+     * @param fileWalker the {@link ParallelFileWalker} used to walk directories
      * @return a new instance of SimpleResourceService with a string value dataServiceName retrieved from the relevant profiles yaml
      */
     @Bean("simpleResourceService")
     @ConditionalOnProperty(prefix = "resource", name = "implementation", havingValue = "simple", matchIfMissing = true)
-    public ResourceService simpleResourceService() {
-        return new SimpleResourceService(dataServiceName, resourceServiceConfigProperties.getDefaultType(), resourceServiceConfigProperties.getDefaultFormats());
+    public ResourceService simpleResourceService(final ParallelFileWalker fileWalker) {
+        return new SimpleResourceService(dataServiceName, resourceServiceConfigProperties.getDefaultType(), resourceServiceConfigProperties.getDefaultFormats(),
+                fileWalker);
     }
 
+    /**
+     * An optional watcher of the configured filesystem directories, keeping the {@link PersistenceLayer} up-to-date as files
+     * are created and deleted, rather than serving complete resource ids from persistence forever
+     *
+     * @param persistenceLayer the {@link PersistenceLayer} to apply filesystem changes to
+     * @param delegate         the {@link ResourceService} used to build resources for newly-created files
+     * @param negativeCache    the {@link NegativeResourceCache} of resource ids recently found not to exist, invalidated by newly-created files
+     * @return a {@link FileSystemResourceWatcher} for the configured watch roots, started and stopped with the application context
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "resource", name = "watchEnabled", havingValue = "true")
+    public FileSystemResourceWatcher fileSystemResourceWatcher(final PersistenceLayer persistenceLayer, final ResourceService delegate,
+                                                               final NegativeResourceCache negativeCache) {
+        return new FileSystemResourceWatcher(delegate, persistenceLayer, negativeCache, resourceServiceConfigProperties.getWatchRoots());
+    }
 
     /**
      * Used so that you can create custom mapper by starting with the default and then modifying if needed
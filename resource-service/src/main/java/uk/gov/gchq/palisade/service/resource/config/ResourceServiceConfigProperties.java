@@ -19,7 +19,12 @@ package uk.gov.gchq.palisade.service.resource.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import uk.gov.gchq.palisade.Generated;
+import uk.gov.gchq.palisade.service.resource.stream.util.PrefetchingSource;
+import uk.gov.gchq.palisade.service.resource.stream.util.ReplayingBroadcast;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -33,6 +38,16 @@ public class ResourceServiceConfigProperties {
     private String implementation;
     private String defaultType;
     private Map<String, String> defaultFormats;
+    private int walkParallelism = Runtime.getRuntime().availableProcessors();
+    private List<String> watchRoots = Collections.emptyList();
+    private Duration negativeCacheTimeToLive = Duration.ofSeconds(10);
+    private long negativeCacheMaximumSize = 10_000L;
+    private int prefetchBufferSize = 256;
+    private String prefetchDispatcher = PrefetchingSource.BLOCKING_IO_DISPATCHER;
+    private long indexMaximumSize = 1_000_000L;
+    private Duration refreshAfter;
+    private long refreshMaximumSize = 100_000L;
+    private int replayBufferSize = ReplayingBroadcast.DEFAULT_MAX_BUFFER_SIZE;
 
     @Generated
     public String getImplementation() {
@@ -65,6 +80,106 @@ public class ResourceServiceConfigProperties {
                 .orElseThrow(() -> new IllegalArgumentException("defaultFormats cannot be null"));
     }
 
+    @Generated
+    public int getWalkParallelism() {
+        return walkParallelism;
+    }
+
+    @Generated
+    public void setWalkParallelism(final int walkParallelism) {
+        this.walkParallelism = walkParallelism;
+    }
+
+    @Generated
+    public List<String> getWatchRoots() {
+        return watchRoots;
+    }
+
+    @Generated
+    public void setWatchRoots(final List<String> watchRoots) {
+        this.watchRoots = Optional.ofNullable(watchRoots).orElseGet(Collections::emptyList);
+    }
+
+    @Generated
+    public Duration getNegativeCacheTimeToLive() {
+        return negativeCacheTimeToLive;
+    }
+
+    @Generated
+    public void setNegativeCacheTimeToLive(final Duration negativeCacheTimeToLive) {
+        this.negativeCacheTimeToLive = negativeCacheTimeToLive;
+    }
+
+    @Generated
+    public long getNegativeCacheMaximumSize() {
+        return negativeCacheMaximumSize;
+    }
+
+    @Generated
+    public void setNegativeCacheMaximumSize(final long negativeCacheMaximumSize) {
+        this.negativeCacheMaximumSize = negativeCacheMaximumSize;
+    }
+
+    @Generated
+    public int getPrefetchBufferSize() {
+        return prefetchBufferSize;
+    }
+
+    @Generated
+    public void setPrefetchBufferSize(final int prefetchBufferSize) {
+        this.prefetchBufferSize = prefetchBufferSize;
+    }
+
+    @Generated
+    public String getPrefetchDispatcher() {
+        return prefetchDispatcher;
+    }
+
+    @Generated
+    public void setPrefetchDispatcher(final String prefetchDispatcher) {
+        this.prefetchDispatcher = prefetchDispatcher;
+    }
+
+    @Generated
+    public long getIndexMaximumSize() {
+        return indexMaximumSize;
+    }
+
+    @Generated
+    public void setIndexMaximumSize(final long indexMaximumSize) {
+        this.indexMaximumSize = indexMaximumSize;
+    }
+
+    @Generated
+    public Duration getRefreshAfter() {
+        return refreshAfter;
+    }
+
+    @Generated
+    public void setRefreshAfter(final Duration refreshAfter) {
+        this.refreshAfter = refreshAfter;
+    }
+
+    @Generated
+    public long getRefreshMaximumSize() {
+        return refreshMaximumSize;
+    }
+
+    @Generated
+    public void setRefreshMaximumSize(final long refreshMaximumSize) {
+        this.refreshMaximumSize = refreshMaximumSize;
+    }
+
+    @Generated
+    public int getReplayBufferSize() {
+        return replayBufferSize;
+    }
+
+    @Generated
+    public void setReplayBufferSize(final int replayBufferSize) {
+        this.replayBufferSize = replayBufferSize;
+    }
+
     @Override
     @Generated
     public boolean equals(final Object o) {
@@ -77,13 +192,24 @@ public class ResourceServiceConfigProperties {
         final ResourceServiceConfigProperties that = (ResourceServiceConfigProperties) o;
         return Objects.equals(implementation, that.implementation) &&
                 Objects.equals(defaultType, that.defaultType) &&
-                Objects.equals(defaultFormats, that.defaultFormats);
+                Objects.equals(defaultFormats, that.defaultFormats) &&
+                walkParallelism == that.walkParallelism &&
+                Objects.equals(watchRoots, that.watchRoots) &&
+                Objects.equals(negativeCacheTimeToLive, that.negativeCacheTimeToLive) &&
+                negativeCacheMaximumSize == that.negativeCacheMaximumSize &&
+                prefetchBufferSize == that.prefetchBufferSize &&
+                Objects.equals(prefetchDispatcher, that.prefetchDispatcher) &&
+                indexMaximumSize == that.indexMaximumSize &&
+                Objects.equals(refreshAfter, that.refreshAfter) &&
+                refreshMaximumSize == that.refreshMaximumSize &&
+                replayBufferSize == that.replayBufferSize;
     }
 
     @Override
     @Generated
     public int hashCode() {
-        return Objects.hash(implementation, defaultType, defaultFormats);
+        return Objects.hash(implementation, defaultType, defaultFormats, walkParallelism, watchRoots, negativeCacheTimeToLive, negativeCacheMaximumSize,
+                prefetchBufferSize, prefetchDispatcher, indexMaximumSize, refreshAfter, refreshMaximumSize, replayBufferSize);
     }
 
     @Override
@@ -93,6 +219,16 @@ public class ResourceServiceConfigProperties {
                 .add("implementation='" + implementation + "'")
                 .add("defaultType='" + defaultType + "'")
                 .add("defaultFormats='" + defaultFormats + "'")
+                .add("walkParallelism=" + walkParallelism)
+                .add("watchRoots=" + watchRoots)
+                .add("negativeCacheTimeToLive=" + negativeCacheTimeToLive)
+                .add("negativeCacheMaximumSize=" + negativeCacheMaximumSize)
+                .add("prefetchBufferSize=" + prefetchBufferSize)
+                .add("prefetchDispatcher='" + prefetchDispatcher + "'")
+                .add("indexMaximumSize=" + indexMaximumSize)
+                .add("refreshAfter=" + refreshAfter)
+                .add("refreshMaximumSize=" + refreshMaximumSize)
+                .add("replayBufferSize=" + replayBufferSize)
                 .add(super.toString())
                 .toString();
     }
@@ -15,6 +15,7 @@
  */
 package uk.gov.gchq.palisade.service.resource.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
@@ -24,21 +25,32 @@ import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.convert.WritingConverter;
 import org.springframework.lang.NonNull;
 
+import uk.gov.gchq.palisade.resource.ChildResource;
 import uk.gov.gchq.palisade.resource.Resource;
 
 import java.io.IOException;
 
 /**
  * Contains classes to help with converting {@link Resource} objects to and from {@link String} values
+ * The parent of a {@link ChildResource} is not serialised, as each parent is stored once in its own {@link ResourceEntity}
+ * and referred to only by its id, see {@link ResourceEntity#getParentId()}
  */
 public final class ResourceConverter {
     private static final Logger LOGGER = LoggerFactory.getLogger(ResourceConverter.class);
-    public static final ObjectMapper MAPPER = new ObjectMapper();
+    public static final ObjectMapper MAPPER = new ObjectMapper()
+            .addMixIn(ChildResource.class, ParentlessChildResource.class);
 
     private ResourceConverter() {
         // Utility class
     }
 
+    /**
+     * Mixin to omit the parent of a {@link ChildResource} when writing, and to ignore any (previously stored) parent when reading
+     */
+    @JsonIgnoreProperties("parent")
+    private abstract static class ParentlessChildResource {
+    }
+
     /**
      * Converts the {@link String} value to a {@link Resource}
      */
@@ -40,6 +40,8 @@ import java.util.StringJoiner;
  * The Database uses this as the object that will be stored in the backing store linked by an ID
  * In this case the ResourceID and ResourceEntity make up the key
  * This contains all objects that will be go into the database, including how they are serialised and indexed
+ * Each resource is stored without its parent, which is instead referenced by its parentId and rebuilt on read,
+ * see {@link uk.gov.gchq.palisade.service.resource.repository.ParentResourceCache}
  */
 @Table("resources")
 public class ResourceEntity implements Serializable, Persistable<String> {
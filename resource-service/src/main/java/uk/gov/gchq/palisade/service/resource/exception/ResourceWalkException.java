@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.exception;
+
+/**
+ * A {@code ResourceWalkException} is a {@link RuntimeException} thrown by a
+ * {@link uk.gov.gchq.palisade.service.resource.service.ResourceService} implementation to
+ * indicate that the requested resource exists, but could not be fully read, such as a directory
+ * that could not be listed due to its permissions, or an I/O error part-way through a walk.
+ * Unlike a {@link NoSuchResourceException}, this may be transient and says nothing about whether the resource exists.
+ */
+public class ResourceWalkException extends RuntimeException {
+
+    /**
+     * Initialises this exception with the given message.
+     *
+     * @param message message for the exception
+     */
+    public ResourceWalkException(final String message) {
+        super(message);
+    }
+
+    /**
+     * Initialises this exception with the given message and cause.
+     *
+     * @param message   message to report
+     * @param throwable the underlying cause of this exception
+     */
+    public ResourceWalkException(final String message, final Throwable throwable) {
+        super(message, throwable);
+    }
+}
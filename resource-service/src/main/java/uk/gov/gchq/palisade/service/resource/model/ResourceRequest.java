@@ -18,6 +18,8 @@ package uk.gov.gchq.palisade.service.resource.model;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -37,6 +39,10 @@ import java.util.StringJoiner;
  * Note there are two classes that effectively represent the same data but represent a different stage of the process.
  * uk.gov.gchq.palisade.service.palisade.response.UserResponse is the response with the data from user-service included.
  * uk.gov.gchq.palisade.service.resource.model.ResourceRequest is the input for the resource-service.
+ * <p>
+ * A request may optionally be paged, with a limit on the number of resources returned and a resource id to resume after.
+ * Paged requests return resources in order of resource id, so the id of the last resource returned can be used to resume
+ * a following request, with fewer resources than the limit returned once all resources have been listed.
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 public final class ResourceRequest {
@@ -50,6 +56,13 @@ public final class ResourceRequest {
     // Json Node representation of the User
     private final JsonNode user;
 
+    // Maximum number of resources to return, or null for all resources
+    @JsonInclude(Include.NON_NULL)
+    private final Integer limit;
+    // Resource id of the last resource returned by a previous page, or null to start from the first resource
+    @JsonInclude(Include.NON_NULL)
+    private final String resumeAfter;
+
     /**
      * Resource Id of the resource requested
      */
@@ -60,12 +73,19 @@ public final class ResourceRequest {
             final @JsonProperty("userId") String userId,
             final @JsonProperty("resourceId") String resourceId,
             final @JsonProperty("context") JsonNode context,
-            final @JsonProperty("user") JsonNode user) {
+            final @JsonProperty("user") JsonNode user,
+            final @JsonProperty("limit") Integer limit,
+            final @JsonProperty("resumeAfter") String resumeAfter) {
 
         this.userId = Optional.ofNullable(userId).orElseThrow(() -> new RuntimeException("User ID cannot be null"));
         this.resourceId = Optional.ofNullable(resourceId).orElseThrow(() -> new RuntimeException("Resource ID  cannot be null"));
         this.context = Optional.ofNullable(context).orElseThrow(() -> new RuntimeException("Context cannot be null"));
         this.user = Optional.ofNullable(user).orElseThrow(() -> new RuntimeException("User cannot be null"));
+        if (limit != null && limit <= 0) {
+            throw new RuntimeException("Limit must be positive");
+        }
+        this.limit = limit;
+        this.resumeAfter = resumeAfter;
     }
 
     @Generated
@@ -100,6 +120,46 @@ public final class ResourceRequest {
         return user;
     }
 
+    @Generated
+    public Integer getLimit() {
+        return limit;
+    }
+
+    @Generated
+    public String getResumeAfter() {
+        return resumeAfter;
+    }
+
+    /**
+     * Whether this request is for a single page of resources, rather than all resources for the resource id
+     *
+     * @return true if either a limit or a resource id to resume after was given
+     */
+    @JsonIgnore
+    public boolean isPaged() {
+        return limit != null || resumeAfter != null;
+    }
+
+    /**
+     * Copy this request, limiting the number of resources returned
+     *
+     * @param limit the maximum number of resources to return, or null for all resources
+     * @return a new {@link ResourceRequest} with the given limit
+     */
+    public ResourceRequest withLimit(final Integer limit) {
+        return new ResourceRequest(userId, resourceId, context, user, limit, resumeAfter);
+    }
+
+    /**
+     * Copy this request, resuming after the last resource returned by a previous page
+     *
+     * @param resumeAfter the resource id of the last resource returned, or null to start from the first resource
+     * @return a new {@link ResourceRequest} resuming after the given resource id
+     */
+    public ResourceRequest withResumeAfter(final String resumeAfter) {
+        return new ResourceRequest(userId, resourceId, context, user, limit, resumeAfter);
+    }
+
     /**
      * Builder class for the creation of instances of the ResourceRequest.  This is a variant of the Fluent Builder
      * which will use Java Objects or JsonNodes equivalents for the components in the build.
@@ -113,7 +173,7 @@ public final class ResourceRequest {
          */
         public static IUserId create() {
             return userId -> resourceId -> context -> user ->
-                    new ResourceRequest(userId, resourceId, context, user);
+                    new ResourceRequest(userId, resourceId, context, user, null, null);
         }
 
         /**
@@ -202,13 +262,15 @@ public final class ResourceRequest {
         return userId.equals(that.userId) &&
                 resourceId.equals(that.resourceId) &&
                 context.equals(that.context) &&
-                user.equals(that.user);
+                user.equals(that.user) &&
+                Objects.equals(limit, that.limit) &&
+                Objects.equals(resumeAfter, that.resumeAfter);
     }
 
     @Override
     @Generated
     public int hashCode() {
-        return Objects.hash(userId, resourceId, context, user);
+        return Objects.hash(userId, resourceId, context, user, limit, resumeAfter);
     }
 
     @Override
@@ -219,6 +281,8 @@ public final class ResourceRequest {
                 .add("resourceId='" + resourceId + "'")
                 .add("context=" + context)
                 .add("user=" + user)
+                .add("limit=" + limit)
+                .add("resumeAfter='" + resumeAfter + "'")
                 .add(super.toString())
                 .toString();
     }
@@ -323,11 +323,21 @@ public abstract class AbstractReactiveRepositoryRedisAdapter<V, K> implements Re
                     .flatMap(this::findById);
         }
 
+        @Override
+        public Flux<ResourceEntity> findPageByParentIdAfterResourceId(final String parentId, final String resourceId, final int limit) {
+            // Children are held as an unordered set of ids, so the page is chosen by id before any of the entities are read
+            return this.setOps.members(this.table + PARENT_SEPARATOR + parentId)
+                    .filter(childId -> childId.compareTo(resourceId) > 0)
+                    .sort()
+                    .take(limit)
+                    .concatMap(this::findById);
+        }
+
         @Override
         @NonNull
         public Mono<Void> deleteById(final @NonNull String key) {
             return this.findById(key)
-                    .map(entity -> this.setOps.remove(this.table + PARENT_SEPARATOR + entity.getParentId()))
+                    .flatMap(entity -> this.setOps.remove(this.table + PARENT_SEPARATOR + entity.getParentId(), entity.getId()))
                     .then(this.deleteByIdDefault(key));
         }
     }
@@ -371,7 +381,7 @@ public abstract class AbstractReactiveRepositoryRedisAdapter<V, K> implements Re
         @NonNull
         public Mono<Void> deleteById(final @NonNull String key) {
             return this.findById(key)
-                    .map(entity -> this.setOps.remove(this.table + SERIALISED_FORMAT_SEPARATOR + entity.getSerialisedFormat()))
+                    .flatMap(entity -> this.setOps.remove(this.table + SERIALISED_FORMAT_SEPARATOR + entity.getSerialisedFormat(), entity.getId()))
                     .then(this.deleteByIdDefault(key));
         }
     }
@@ -416,7 +426,7 @@ public abstract class AbstractReactiveRepositoryRedisAdapter<V, K> implements Re
         @NonNull
         public Mono<Void> deleteById(final @NonNull String key) {
             return this.findById(key)
-                    .map(entity -> this.setOps.remove(this.table + TYPE_SEPARATOR + entity.getType()))
+                    .flatMap(entity -> this.setOps.remove(this.table + TYPE_SEPARATOR + entity.getType(), entity.getId()))
                     .then(super.deleteByIdDefault(key));
         }
     }
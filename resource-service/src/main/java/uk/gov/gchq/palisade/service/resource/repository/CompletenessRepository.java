@@ -97,4 +97,15 @@ public interface CompletenessRepository extends ReactiveCrudRepository<Completen
         return Source.fromPublisher(this.save(new CompletenessEntity(entityType, entityId)));
     }
 
+    /**
+     * Delete a {@link CompletenessEntity} given its entityType and entityId
+     *
+     * @param entityType Information about the resource Object
+     * @param entityId   The Id of the entity
+     * @return a {@link CompletableFuture} of a {@link Void} once deleted
+     */
+    default CompletableFuture<Void> futureDeleteByEntityTypeAndEntityId(EntityType entityType, String entityId) {
+        return this.deleteById(CompletenessEntity.idFor(entityType, entityId)).toFuture();
+    }
+
 }
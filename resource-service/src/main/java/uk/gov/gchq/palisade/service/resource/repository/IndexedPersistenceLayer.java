@@ -0,0 +1,403 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.repository;
+
+import akka.Done;
+import akka.NotUsed;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.service.resource.domain.CompletenessEntity;
+import uk.gov.gchq.palisade.service.resource.domain.EntityType;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link PersistenceLayer} holding an in-memory index of the persisted resource hierarchy in front of another (database-backed)
+ * persistence layer, such that requests by id for hot, fully-persisted subtrees are served without any database round trip.
+ * Persisted {@link LeafResource}s are held in a {@link ResourceIdTrie} by id, alongside the set of resource ids that the index
+ * holds every leaf for.
+ * <ul>
+ *     <li>The index is warmed from persistence at startup, and read-through from persistence on an index miss</li>
+ *     <li>All writes go to persistence first, then to the index, so the index never holds resources that persistence does not</li>
+ *     <li>A resource id is only marked complete in the index once every leaf under it has been indexed</li>
+ *     <li>A leaf that could not be indexed (once the index is full) un-marks every complete id above it</li>
+ *     <li>Leaves read from persistence are not indexed, nor their id marked complete, if anything was removed from the
+ *     index while they were being read, as they may since have been removed from persistence</li>
+ * </ul>
+ * Requests by type and serialisedFormat are always passed straight through to persistence.
+ * The number of indexed leaves and complete ids, and the index hits and misses, are reported to the application's metrics.
+ */
+public class IndexedPersistenceLayer implements PersistenceLayer, MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedPersistenceLayer.class);
+    private static final String METRIC_PREFIX = "resource.index";
+    private static final char SEPARATOR = '/';
+
+    private final PersistenceLayer delegate;
+    private final CompletenessRepository completenessRepository;
+    private final Materializer materialiser;
+    private final long maximumSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ResourceIdTrie<LeafResource> leaves = new ResourceIdTrie<>();
+    private final Set<String> completeIds = new HashSet<>();
+    // Incremented whenever resources are removed from the index or ids marked incomplete, guarded by the lock
+    private long generation;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a new index over the given persistence layer
+     *
+     * @param delegate               the {@link PersistenceLayer} to index, which remains the source of truth for all resources
+     * @param completenessRepository the completeness repository used by the delegate, read at startup to find the complete resource ids
+     * @param materialiser           the Akka {@link Materializer} used to warm the index
+     * @param maximumSize            the maximum number of leaves to index, after which further subtrees are served by the delegate
+     */
+    public IndexedPersistenceLayer(final PersistenceLayer delegate, final CompletenessRepository completenessRepository,
+                                   final Materializer materialiser, final long maximumSize) {
+        this.delegate = requireNonNull(delegate, "PersistenceLayer cannot be null");
+        this.completenessRepository = requireNonNull(completenessRepository, "CompletenessRepository cannot be null");
+        this.materialiser = requireNonNull(materialiser, "Materializer cannot be null");
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Warm the index with every complete resource id in persistence, running in the background.
+     * Only the top-most complete ids are read, as all their children are read along with them.
+     *
+     * @return a {@link CompletionStage} of {@link Done} once the index has been warmed
+     */
+    public CompletionStage<Done> warm() {
+        LOGGER.info("Warming resource index from persistence");
+        CompletionStage<Done> warming = Source.fromPublisher(completenessRepository.findAll()
+                .filter(entity -> entity.getEntityType() == EntityType.RESOURCE)
+                .map(CompletenessEntity::getEntityId)
+                // Sorted, a directory's id comes immediately before the ids of everything under it
+                .sort())
+                .statefulMapConcat(() -> {
+                    String[] lastRoot = {null};
+                    return (String resourceId) -> {
+                        if (lastRoot[0] != null && lastRoot[0].charAt(lastRoot[0].length() - 1) == SEPARATOR && resourceId.startsWith(lastRoot[0])) {
+                            return Collections.<String>emptyList();
+                        }
+                        lastRoot[0] = resourceId;
+                        return List.of(resourceId);
+                    };
+                })
+                .mapAsync(1, (String resourceId) -> {
+                    long readGeneration = currentGeneration();
+                    return delegate.getResourcesById(resourceId)
+                            .thenCompose(persisted -> persisted
+                                    .map(source -> readThrough(resourceId, source, readGeneration).runWith(Sink.ignore(), materialiser))
+                                    .orElseGet(() -> CompletableFuture.completedFuture(Done.done())));
+                })
+                .runWith(Sink.ignore(), materialiser);
+        warming.whenComplete((Done done, Throwable ex) -> {
+            if (ex == null) {
+                LOGGER.info("Warmed resource index with {} leaves", indexSize());
+            } else {
+                LOGGER.warn("Failed to warm resource index, resources will be indexed as they are read", ex);
+            }
+        });
+        return warming;
+    }
+
+    @Override
+    public CompletableFuture<Optional<Source<LeafResource, NotUsed>>> getResourcesById(final String resourceId) {
+        Optional<List<LeafResource>> indexed = withReadLock(() -> indexedLeavesOf(resourceId));
+        if (indexed.isPresent()) {
+            LOGGER.debug("Index hit for resourceId '{}'", resourceId);
+            hits.increment();
+            return CompletableFuture.completedFuture(Optional.of(Source.from(indexed.get())));
+        }
+        LOGGER.debug("Index miss for resourceId '{}'", resourceId);
+        misses.increment();
+        long readGeneration = currentGeneration();
+        return delegate.getResourcesById(resourceId)
+                .thenApply(persisted -> persisted.map(source -> readThrough(resourceId, source, readGeneration)));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Source<LeafResource, NotUsed>>> getResourcesById(final String resourceId, final String resumeAfter) {
+        Optional<List<LeafResource>> indexed = withReadLock(() -> indexedLeavesOf(resourceId));
+        if (indexed.isPresent()) {
+            LOGGER.debug("Index hit for resourceId '{}' after '{}'", resourceId, resumeAfter);
+            hits.increment();
+            // The index lists leaves in order of id, the same order as the delegate
+            return CompletableFuture.completedFuture(Optional.of(Source.from(indexed.get())
+                    .filter(leaf -> resumeAfter == null || leaf.getId().compareTo(resumeAfter) > 0)));
+        }
+        LOGGER.debug("Index miss for resourceId '{}' after '{}'", resourceId, resumeAfter);
+        misses.increment();
+        return delegate.getResourcesById(resourceId, resumeAfter);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Source<LeafResource, NotUsed>>> getResourcesByType(final String type) {
+        return delegate.getResourcesByType(type);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Source<LeafResource, NotUsed>>> getResourcesBySerialisedFormat(final String serialisedFormat) {
+        return delegate.getResourcesBySerialisedFormat(serialisedFormat);
+    }
+
+    @Override
+    public <T extends LeafResource> Flow<T, T, NotUsed> withPersistenceById(final String rootResourceId) {
+        return this.<T>indexAndMarkComplete(rootResourceId, delegate.withPersistenceById(rootResourceId), currentGeneration());
+    }
+
+    @Override
+    public <T extends LeafResource> Flow<T, T, NotUsed> withPartialPersistenceById(final String rootResourceId) {
+        return delegate.<T>withPartialPersistenceById(rootResourceId)
+                .map(this::index);
+    }
+
+    @Override
+    public CompletableFuture<Void> completeResourceById(final String rootResourceId) {
+        // Leaves may have been removed from the index between batches, so leave the next request to index the resource id by reading through
+        return delegate.completeResourceById(rootResourceId);
+    }
+
+    @Override
+    public <T extends LeafResource> Flow<T, T, NotUsed> withPersistenceByType(final String type) {
+        return delegate.<T>withPersistenceByType(type)
+                .map(this::index);
+    }
+
+    @Override
+    public <T extends LeafResource> Flow<T, T, NotUsed> withPersistenceBySerialisedFormat(final String serialisedFormat) {
+        return delegate.<T>withPersistenceBySerialisedFormat(serialisedFormat)
+                .map(this::index);
+    }
+
+    @Override
+    public CompletableFuture<Void> putResource(final LeafResource leafResource) {
+        return delegate.putResource(leafResource)
+                .thenRun(() -> index(leafResource));
+    }
+
+    @Override
+    public CompletableFuture<Void> removeResourceById(final String resourceId) {
+        return delegate.removeResourceById(resourceId)
+                .thenRun(() -> withWriteLock(() -> {
+                    generation++;
+                    // Remove this resource, and everything under it if it was a directory
+                    if (isDirectory(resourceId)) {
+                        leaves.removePrefix(resourceId);
+                        completeIds.removeIf(completeId -> completeId.startsWith(resourceId));
+                    } else {
+                        leaves.remove(resourceId);
+                        completeIds.remove(resourceId);
+                    }
+                    return null;
+                }));
+    }
+
+    @Override
+    public CompletableFuture<Void> invalidateResourceById(final String resourceId) {
+        return delegate.invalidateResourceById(resourceId)
+                .thenRun(() -> withWriteLock(() -> {
+                    generation++;
+                    return completeIds.remove(resourceId);
+                }));
+    }
+
+    @Override
+    public CompletableFuture<Void> replaceResourcesById(final String rootResourceId, final List<LeafResource> leafResources) {
+        return delegate.replaceResourcesById(rootResourceId, leafResources)
+                // Swap the whole subtree at once, so readers of the index see either the old or the new resources, never a mix
+                .thenRun(() -> withWriteLock(() -> {
+                    generation++;
+                    if (isDirectory(rootResourceId)) {
+                        leaves.removePrefix(rootResourceId);
+                        completeIds.removeIf(completeId -> completeId.startsWith(rootResourceId));
+                    } else {
+                        leaves.remove(rootResourceId);
+                        completeIds.remove(rootResourceId);
+                    }
+                    boolean indexedAll = true;
+                    for (LeafResource leafResource : leafResources) {
+                        if (!putLeaf(leafResource)) {
+                            indexedAll = false;
+                            break;
+                        }
+                    }
+                    if (indexedAll) {
+                        completeIds.add(rootResourceId);
+                    } else {
+                        // Neither this id nor anything above it can be answered by the index without these leaves
+                        LOGGER.info("Resource index is full, not indexing resourceId '{}'", rootResourceId);
+                        completeIds.removeIf(rootResourceId::startsWith);
+                    }
+                    return null;
+                }));
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder(METRIC_PREFIX + ".size", this, IndexedPersistenceLayer::indexSize)
+                .description("The number of leaf resources held in the index")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + ".complete", this, index -> index.withReadLock(index.completeIds::size))
+                .description("The number of resource ids for which the index holds every leaf")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + ".requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("The number of requests by id served by the index")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + ".requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("The number of requests by id passed through to persistence")
+                .register(registry);
+    }
+
+    /**
+     * Get every indexed leaf for a resource id, if the index can answer for this id.
+     * This is only the case if the id, or one of its parents, is complete in the index, and the id is either an indexed
+     * leaf or a directory. Anything else (such as an id that does not exist) is left to the delegate to answer.
+     * Must be called while holding the read lock.
+     *
+     * @param resourceId the resource id requested
+     * @return every indexed leaf under this id in order of id, or empty if the index cannot answer for this id
+     */
+    private Optional<List<LeafResource>> indexedLeavesOf(final String resourceId) {
+        if (!isComplete(resourceId)) {
+            return Optional.empty();
+        }
+        LeafResource leaf = leaves.get(resourceId);
+        if (leaf != null) {
+            return Optional.of(List.of(leaf));
+        }
+        if (isDirectory(resourceId) && (completeIds.contains(resourceId) || leaves.containsPrefix(resourceId))) {
+            return Optional.of(leaves.valuesWithPrefix(resourceId));
+        }
+        return Optional.empty();
+    }
+
+    private boolean isComplete(final String resourceId) {
+        if (completeIds.contains(resourceId)) {
+            return true;
+        }
+        for (int i = resourceId.indexOf(SEPARATOR); i >= 0; i = resourceId.indexOf(SEPARATOR, i + 1)) {
+            if (completeIds.contains(resourceId.substring(0, i + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDirectory(final String resourceId) {
+        return !resourceId.isEmpty() && resourceId.charAt(resourceId.length() - 1) == SEPARATOR;
+    }
+
+    private Source<LeafResource, NotUsed> readThrough(final String resourceId, final Source<LeafResource, NotUsed> persisted, final long readGeneration) {
+        // Index each leaf as it is read from persistence, so the next request for this id is served by the index
+        return persisted.via(indexAndMarkComplete(resourceId, Flow.<LeafResource>create(), readGeneration));
+    }
+
+    private <T extends LeafResource> Flow<T, T, NotUsed> indexAndMarkComplete(final String resourceId, final Flow<T, T, NotUsed> flow, final long readGeneration) {
+        // Set if any leaf could not be indexed, in which case the resource id cannot be marked complete
+        AtomicBoolean indexedAll = new AtomicBoolean(true);
+        return flow
+                .map((T leafResource) -> {
+                    // If anything was removed since the read started, this leaf may be one of them, so must not be (re-)indexed
+                    if (!withWriteLock(() -> generation == readGeneration && putLeaf(leafResource))) {
+                        indexedAll.set(false);
+                    }
+                    return leafResource;
+                })
+                // Only once every leaf has been indexed (and not if the stream failed or was cancelled), mark the id as complete
+                .concat(Source.lazySource(() -> {
+                    boolean markedComplete = withWriteLock(() -> indexedAll.get() && generation == readGeneration && completeIds.add(resourceId));
+                    if (!markedComplete) {
+                        LOGGER.info("Resource index is full or was modified while indexing, not marking resourceId '{}' as complete", resourceId);
+                    }
+                    return Source.<T>empty();
+                }).mapMaterializedValue(ignored -> NotUsed.notUsed()));
+    }
+
+    private <T extends LeafResource> T index(final T leafResource) {
+        withWriteLock(() -> putLeaf(leafResource));
+        return leafResource;
+    }
+
+    /**
+     * Index a leaf, if there is space in the index.
+     * If not, then none of the complete ids above the leaf can be answered by the index any longer, so are marked incomplete.
+     * Must be called while holding the write lock.
+     *
+     * @param leafResource the leaf to index
+     * @return true if the leaf was indexed, otherwise false
+     */
+    private boolean putLeaf(final LeafResource leafResource) {
+        if (leaves.size() >= maximumSize && leaves.get(leafResource.getId()) == null) {
+            completeIds.removeIf(leafResource.getId()::startsWith);
+            return false;
+        }
+        leaves.put(leafResource.getId(), leafResource);
+        return true;
+    }
+
+    private long currentGeneration() {
+        return withReadLock(() -> generation);
+    }
+
+    private int indexSize() {
+        return withReadLock(leaves::size);
+    }
+
+    private <R> R withReadLock(final Supplier<R> supplier) {
+        lock.readLock().lock();
+        try {
+            return supplier.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <R> R withWriteLock(final Supplier<R> supplier) {
+        lock.writeLock().lock();
+        try {
+            return supplier.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.resource.ChildResource;
+import uk.gov.gchq.palisade.resource.ParentResource;
+import uk.gov.gchq.palisade.resource.Resource;
+import uk.gov.gchq.palisade.service.resource.domain.ResourceEntity;
+import uk.gov.gchq.palisade.service.resource.exception.NoSuchResourceException;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An interning cache of {@link ParentResource}s, used by the {@link ReactivePersistenceLayer} to rebuild parent chains.
+ * Each {@link ResourceEntity} is stored without its parents, holding only the id of its immediate parent, so resources read
+ * from persistence must have their parents reattached.
+ * Rather than deserialising the same parents once per leaf, every child of a parent shares a single {@link ParentResource}
+ * instance (with its own parents resolved in the same way), so a wide tree costs one object per directory, not one per leaf.
+ * <p>
+ * Cached instances are shared between many children and must not be modified.
+ * Values are weakly held, so a parent is only kept while some resource still refers to it (or the cache is below its maximum size).
+ */
+public class ParentResourceCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParentResourceCache.class);
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+
+    private final ResourceRepository resourceRepository;
+    private final Cache<String, ParentResource> parents;
+
+    /**
+     * Create a new cache with a default maximum size
+     *
+     * @param resourceRepository the repository to read parents from when not already cached
+     */
+    public ParentResourceCache(final ResourceRepository resourceRepository) {
+        this(resourceRepository, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Create a new cache with the given maximum size
+     *
+     * @param resourceRepository the repository to read parents from when not already cached
+     * @param maximumSize        the maximum number of parents to hold
+     */
+    public ParentResourceCache(final ResourceRepository resourceRepository, final long maximumSize) {
+        this.resourceRepository = requireNonNull(resourceRepository, "ResourceRepository cannot be null");
+        this.parents = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .weakValues()
+                .build();
+    }
+
+    /**
+     * Get the shared instance of this parent, adding it to the cache if there is not one already
+     *
+     * @param parent a {@link ParentResource} with all of its own parents resolved
+     * @return the shared instance for this parent's id, which may or may not be the same object as the one given
+     */
+    public ParentResource intern(final ParentResource parent) {
+        return parents.get(parent.getId(), id -> parent);
+    }
+
+    /**
+     * Remove a parent from the cache, such that it is read again from persistence the next time it is needed
+     *
+     * @param resourceId the id of the parent to remove
+     */
+    public void invalidate(final String resourceId) {
+        parents.invalidate(resourceId);
+    }
+
+    /**
+     * Get the resource stored in this entity, with its parents attached
+     *
+     * @param entity the {@link ResourceEntity} read from persistence
+     * @return a {@link CompletableFuture} of the stored {@link Resource}, with all of its parents resolved
+     */
+    public CompletableFuture<Resource> withParents(final ResourceEntity entity) {
+        Resource resource = entity.getResource();
+        if (resource instanceof ChildResource && entity.getParentId() != null) {
+            return getParent(entity.getParentId())
+                    .thenApply((ParentResource parent) -> {
+                        ((ChildResource) resource).setParent(parent);
+                        return resource;
+                    });
+        } else {
+            return CompletableFuture.completedFuture(resource);
+        }
+    }
+
+    /**
+     * Get the shared instance of a parent by id, reading it (and any of its uncached parents) from persistence if required
+     *
+     * @param parentId the id of the parent to get
+     * @return a {@link CompletableFuture} of the {@link ParentResource}, with all of its parents resolved
+     * @throws NoSuchResourceException (as the cause of the future) if the parent was not found in persistence
+     */
+    public CompletableFuture<ParentResource> getParent(final String parentId) {
+        return Optional.ofNullable(parents.getIfPresent(parentId))
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> {
+                    LOGGER.debug("Parent '{}' not cached, reading from persistence", parentId);
+                    return resourceRepository.findOneByResourceId(parentId).toFuture()
+                            .thenCompose((ResourceEntity entity) -> Optional.ofNullable(entity)
+                                    .map(this::withParents)
+                                    .orElseThrow(() -> new NoSuchResourceException(String.format("Parent resource '%s' was not found in persistence", parentId))))
+                            .thenApply(parent -> intern((ParentResource) parent));
+                });
+    }
+}
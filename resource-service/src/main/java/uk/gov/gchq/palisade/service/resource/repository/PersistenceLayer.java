@@ -21,6 +21,7 @@ import akka.stream.javadsl.Source;
 
 import uk.gov.gchq.palisade.resource.LeafResource;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -41,6 +42,17 @@ public interface PersistenceLayer {
      */
     CompletableFuture<Optional<Source<LeafResource, NotUsed>>> getResourcesById(String resourceId);
 
+    /**
+     * Given a resource id, return the {@link LeafResource}s underneath it in order of resource id, starting after the given id.
+     * A large set of resources can then be returned incrementally, with each request resuming after the last resource
+     * returned by the previous request.
+     *
+     * @param resourceId  the resource id to query
+     * @param resumeAfter the id of the last resource already returned, or null to start from the first resource
+     * @return {@link Source} of {@link LeafResource}s ordered by resource id if the persistence store is aware of these resources
+     */
+    CompletableFuture<Optional<Source<LeafResource, NotUsed>>> getResourcesById(String resourceId, String resumeAfter);
+
     /**
      * Given a type, return all leaf resources of that type
      *
@@ -60,6 +72,7 @@ public interface PersistenceLayer {
     /**
      * Add a {@link LeafResource} to persistence for a given resourceId
      * Used for updating the persistence store from a given source of 'truth' - ie. a real resource-service
+     * The resourceId is only marked as complete once every resource has been persisted and the {@link Flow} has completed.
      *
      * @param <T>            the type for the {@link Flow}
      * @param rootResourceId the resource id that was queried to return this {@link Flow} of resources
@@ -67,6 +80,25 @@ public interface PersistenceLayer {
      */
     <T extends LeafResource> Flow<T, T, NotUsed> withPersistenceById(String rootResourceId);
 
+    /**
+     * Add a {@link LeafResource} to persistence for a given resourceId, without marking the resourceId as complete
+     * Used where the resources for a resourceId are persisted as a number of separate batches - ie. prepopulation
+     * Once every batch has been persisted, the resourceId should be marked complete with {@link #completeResourceById(String)}.
+     *
+     * @param <T>            the type for the {@link Flow}
+     * @param rootResourceId the resource id that these resources are (part of) the complete set of resources for
+     * @return an {@link Flow} of {@link LeafResource}s added to the persistence
+     */
+    <T extends LeafResource> Flow<T, T, NotUsed> withPartialPersistenceById(String rootResourceId);
+
+    /**
+     * Mark a resourceId as complete, once all of its resources have been added by {@link #withPartialPersistenceById(String)}
+     *
+     * @param rootResourceId the resource id to mark complete
+     * @return a {@link CompletableFuture} completing once the resource has been marked complete
+     */
+    CompletableFuture<Void> completeResourceById(String rootResourceId);
+
     /**
      * Add a {@link LeafResource} to persistence for a given type
      * Used for updating the persistence store from a given source of 'truth' - ie. a real resource-service
@@ -87,4 +119,45 @@ public interface PersistenceLayer {
      */
     <T extends LeafResource> Flow<T, T, NotUsed> withPersistenceBySerialisedFormat(String serialisedFormat);
 
+    /**
+     * Add a single {@link LeafResource} to persistence, such as a resource discovered outside of any request
+     * (eg. a newly-created file under a watched directory).
+     * Any complete parents of this resource will now also return this resource, as will any complete type or serialised format.
+     *
+     * @param leafResource the {@link LeafResource} to add
+     * @return a {@link CompletableFuture} completing once the resource has been added
+     */
+    CompletableFuture<Void> putResource(LeafResource leafResource);
+
+    /**
+     * Remove a resource and all of its children from persistence, such as a deleted file or directory.
+     * Any complete parents of this resource will remain complete, and will no longer return this resource.
+     *
+     * @param resourceId the id of the resource to remove
+     * @return a {@link CompletableFuture} completing once the resource and its children have been removed
+     */
+    CompletableFuture<Void> removeResourceById(String resourceId);
+
+    /**
+     * Mark a resource as incomplete, such that persistence will no longer report this resource id as a 'cache hit'
+     * and requests for it must be served by the real resource-service.
+     * Any persisted resources are left in place to be overwritten by the next request.
+     *
+     * @param resourceId the id of the resource to mark incomplete
+     * @return a {@link CompletableFuture} completing once the resource has been marked incomplete
+     */
+    CompletableFuture<Void> invalidateResourceById(String resourceId);
+
+    /**
+     * Replace every persisted resource under a resource id with a fresh set of {@link LeafResource}s, such as from
+     * re-walking the real resource-service, and mark the resource id and everything under it as complete again.
+     * Any persisted resources under this resource id that are not in the fresh set are removed.
+     * The resource id is never marked incomplete along the way, so is never reported as a 'cache miss'.
+     *
+     * @param rootResourceId the resource id that was queried to return these resources
+     * @param leafResources  every {@link LeafResource} now under the resource id
+     * @return a {@link CompletableFuture} completing once persistence holds only the fresh set of resources
+     */
+    CompletableFuture<Void> replaceResourcesById(String rootResourceId, List<LeafResource> leafResources);
+
 }
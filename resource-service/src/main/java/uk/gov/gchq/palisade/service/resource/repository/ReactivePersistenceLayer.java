@@ -16,10 +16,13 @@
 package uk.gov.gchq.palisade.service.resource.repository;
 
 import akka.NotUsed;
+import akka.japi.Pair;
 import akka.stream.javadsl.Flow;
 import akka.stream.javadsl.Source;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import uk.gov.gchq.palisade.resource.ChildResource;
 import uk.gov.gchq.palisade.resource.LeafResource;
@@ -32,11 +35,19 @@ import uk.gov.gchq.palisade.service.resource.domain.TypeEntity;
 import uk.gov.gchq.palisade.service.resource.exception.UnknownResourceTypeException;
 import uk.gov.gchq.palisade.service.resource.service.FunctionalIterator;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
@@ -47,6 +58,8 @@ import static java.util.Objects.requireNonNull;
 public class ReactivePersistenceLayer implements PersistenceLayer {
     private static final Logger LOGGER = LoggerFactory.getLogger(ReactivePersistenceLayer.class);
     private static final int PARALLELISM = 1;
+    // The number of children of a parent read at once when listing resources in order of id
+    private static final int CHILD_PAGE_SIZE = 256;
     private static final String RESOURCE_IS = "Resource '{}' is {}";
     private static final String TYPE_IS = "Type '{}' is {}";
     private static final String FORMAT_IS = "SerialisedFormat '{}' is {}";
@@ -57,9 +70,10 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
     private final ResourceRepository resourceRepository;
     private final TypeRepository typeRepository;
     private final SerialisedFormatRepository serialisedFormatRepository;
+    private final ParentResourceCache parentResourceCache;
 
     /**
-     * Constructor for {@link ReactivePersistenceLayer}
+     * Constructor for {@link ReactivePersistenceLayer}, with a new {@link ParentResourceCache} over the resource repository
      *
      * @param completenessRepository     the completeness repository
      * @param resourceRepository         the resource repository
@@ -68,10 +82,26 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
      */
     public ReactivePersistenceLayer(final CompletenessRepository completenessRepository, final ResourceRepository resourceRepository,
                                     final TypeRepository typeRepository, final SerialisedFormatRepository serialisedFormatRepository) {
+        this(completenessRepository, resourceRepository, typeRepository, serialisedFormatRepository, new ParentResourceCache(resourceRepository));
+    }
+
+    /**
+     * Constructor for {@link ReactivePersistenceLayer}
+     *
+     * @param completenessRepository     the completeness repository
+     * @param resourceRepository         the resource repository
+     * @param typeRepository             the type repository
+     * @param serialisedFormatRepository the serialisedFormat repository
+     * @param parentResourceCache        the cache of parents used to rebuild resources read from the resource repository
+     */
+    public ReactivePersistenceLayer(final CompletenessRepository completenessRepository, final ResourceRepository resourceRepository,
+                                    final TypeRepository typeRepository, final SerialisedFormatRepository serialisedFormatRepository,
+                                    final ParentResourceCache parentResourceCache) {
         this.completenessRepository = requireNonNull(completenessRepository, "CompletenessRepository cannot be null");
         this.resourceRepository = requireNonNull(resourceRepository, "ResourceRepository cannot be null");
         this.typeRepository = requireNonNull(typeRepository, "TypeRepository cannot be null");
         this.serialisedFormatRepository = requireNonNull(serialisedFormatRepository, "SerialisedFormatRepository cannot be null");
+        this.parentResourceCache = requireNonNull(parentResourceCache, "ParentResourceCache cannot be null");
     }
 
     // ~~~ A large number of helper methods for safely manipulating the various repositories ~~~ //
@@ -192,6 +222,30 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
 
     }
 
+    /**
+     * Recover from a failed save if an equivalent entity has since been saved by another writer
+     * This happens when concurrent requests (or prepopulation) share a parent, type or serialisedFormat, and both try to
+     * save it at once - a unique key violation for one of them is not an error, as the same information was saved by the other
+     * Any other failure is propagated as before
+     *
+     * @param save      the save to the repository
+     * @param isSaved   check whether the entity is now present in the repository
+     * @param entityId  the id of the entity being saved, used for logging
+     * @return a {@link CompletableFuture} of type {@link Void}, failing only if the save failed and the entity is not present
+     */
+    private static CompletableFuture<Void> recoverConcurrentSave(final CompletableFuture<?> save, final Supplier<CompletableFuture<Boolean>> isSaved, final String entityId) {
+        return save.handle((Object saved, Throwable ex) -> Optional.ofNullable(ex))
+                .thenCompose((Optional<Throwable> failure) -> failure
+                        .map(ex -> isSaved.get().thenApply((Boolean alreadySaved) -> {
+                            if (alreadySaved.equals(Boolean.FALSE)) {
+                                throw new CompletionException(ex);
+                            }
+                            LOGGER.debug("Entity '{}' was concurrently saved elsewhere, ignoring failed save", entityId);
+                            return (Void) null;
+                        }))
+                        .orElseGet(() -> CompletableFuture.completedFuture(null)));
+    }
+
     /**
      * Iterate over each parent-child pair, with the parent resolved by getting from the child resource
      * Apply the callback function to each parent-child pair
@@ -225,17 +279,22 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
      * Collect from persistence all {@link LeafResource}s 'underneath' this resource.
      * This may be the resource itself, or all resources that have this as a parent, or grand*parent
      *
-     * @param resource the top-level resource to get the leaves of
+     * @param resource the top-level resource to get the leaves of, with all parents resolved
      * @return a {@link Stream} of {@link LeafResource}s from the resource repository persistence store
      */
     private Source<LeafResource, NotUsed> collectLeaves(final Resource resource) {
         if (resource instanceof ParentResource) {
-            // Treat resource as a ParentResource
-            ParentResource parentResource = (ParentResource) resource;
+            // Treat resource as a ParentResource, shared between all of its children
+            ParentResource parentResource = parentResourceCache.intern((ParentResource) resource);
             // Get the children
             LOGGER.debug("Get leaves for {}", resource.getId());
             return resourceRepository.streamFindAllByParentId(parentResource.getId())
                     .map(ResourceEntity::getResource)
+                    // Children are stored without parents, but we already have the parent, so no need to look it up again
+                    .map((Resource child) -> {
+                        ((ChildResource) child).setParent(parentResource);
+                        return child;
+                    })
                     // Recurse over further children
                     .flatMapConcat(this::collectLeaves);
         } else if (resource instanceof LeafResource) {
@@ -248,6 +307,91 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
         }
     }
 
+    /**
+     * Collect from persistence, in order of resource id, all {@link LeafResource}s 'underneath' this resource with an id after the given id.
+     * Each parent's children are read in order of id before recursing into them, and as every resource under a parent has the
+     * parent's id as a prefix, this lists leaves in the same order as sorting every leaf by id.
+     * Children are read a page at a time, starting from the resume point, so any children before the resume point, and any
+     * after the last leaf consumed, are never read.
+     *
+     * @param resource    the top-level resource to get the leaves of, with all parents resolved
+     * @param resumeAfter the id of the last resource already returned, or null to start from the first resource
+     * @return a {@link Source} of {@link LeafResource}s from the resource repository persistence store, ordered by resource id
+     */
+    private Source<LeafResource, NotUsed> collectLeavesAfter(final Resource resource, final String resumeAfter) {
+        if (resource instanceof ParentResource) {
+            ParentResource parentResource = parentResourceCache.intern((ParentResource) resource);
+            LOGGER.debug("Get leaves for {} after {}", resource.getId(), resumeAfter);
+            return findChildrenAfter(parentResource.getId(), resumeAfter)
+                    .map(ResourceEntity::getResource)
+                    .map((Resource child) -> {
+                        ((ChildResource) child).setParent(parentResource);
+                        return child;
+                    })
+                    .flatMapConcat(child -> collectLeavesAfter(child, resumeAfter));
+        } else if (resource instanceof LeafResource) {
+            // A leaf is only returned if strictly after the resume point, the resume point itself was already returned
+            return resumeAfter == null || resource.getId().compareTo(resumeAfter) > 0
+                    ? Source.single((LeafResource) resource)
+                    : Source.empty();
+        } else {
+            LOGGER.warn("Got resource that was neither Parent nor Leaf: {}", resource.getClass());
+            throw new UnknownResourceTypeException(String.format("Resource '%s' is neither Parent nor Leaf", resource.getId()));
+        }
+    }
+
+    /**
+     * Find the children of a parent that may contain leaves after the resume point, in order of resource id.
+     * This is the child the resume point is underneath (if any), followed by every child after the resume point.
+     *
+     * @param parentId    the id of the parent
+     * @param resumeAfter the id of the last resource already returned, or null to start from the first child
+     * @return a {@link Source} of child {@link ResourceEntity}s, ordered by resource id
+     */
+    private Source<ResourceEntity, NotUsed> findChildrenAfter(final String parentId, final String resumeAfter) {
+        if (resumeAfter == null || !resumeAfter.startsWith(parentId)) {
+            // Every child of this parent is after the resume point
+            return findChildPagesAfter(parentId, "");
+        }
+        int separator = resumeAfter.indexOf('/', parentId.length());
+        if (separator < 0 || separator == resumeAfter.length() - 1) {
+            // The resume point is itself a child of this parent
+            return findChildPagesAfter(parentId, resumeAfter);
+        }
+        // The resume point is underneath one of the children, which must be resumed part-way through
+        String resumeChildId = resumeAfter.substring(0, separator + 1);
+        return resourceRepository.streamFindOneByResourceId(resumeChildId)
+                .concat(findChildPagesAfter(parentId, resumeChildId));
+    }
+
+    /**
+     * Read the children of a parent with an id after the given id, in order of resource id, a page at a time.
+     * Each page is only read once the previous one has been consumed.
+     *
+     * @param parentId the id of the parent
+     * @param afterId  the resource id to start after, exclusive
+     * @return a {@link Source} of child {@link ResourceEntity}s, ordered by resource id
+     */
+    private Source<ResourceEntity, NotUsed> findChildPagesAfter(final String parentId, final String afterId) {
+        return Source.unfoldAsync(Optional.of(afterId), (Optional<String> pageAfterId) -> findChildPage(parentId, pageAfterId))
+                .mapConcat(page -> page);
+    }
+
+    private CompletableFuture<Optional<Pair<Optional<String>, List<ResourceEntity>>>> findChildPage(final String parentId, final Optional<String> pageAfterId) {
+        if (pageAfterId.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return resourceRepository.findPageByParentIdAfterResourceId(parentId, pageAfterId.get(), CHILD_PAGE_SIZE)
+                .collectList().toFuture()
+                .thenApply((List<ResourceEntity> page) -> {
+                    // A short page is the last page, otherwise continue after the last child of this page
+                    Optional<String> nextAfterId = page.size() < CHILD_PAGE_SIZE
+                            ? Optional.empty()
+                            : Optional.of(page.get(page.size() - 1).getResourceId());
+                    return Optional.of(Pair.create(nextAfterId, page));
+                });
+    }
+
     /**
      * Save the given resource to persistence as an incomplete entity
      * ie. there are missing children of this resource
@@ -268,9 +412,10 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
                         return CompletableFuture.completedFuture(null);
                     }
                 }).thenCompose((Void ignored) -> {
+                    parentResourceCache.invalidate(resource.getId());
                     ResourceEntity entity = new ResourceEntity(resource);
                     // Save to db
-                    return resourceRepository.futureSave(entity)
+                    return recoverConcurrentSave(resourceRepository.futureSave(entity), () -> isResourceIdPersisted(entity.getResourceId()), entity.getResourceId())
                             .thenRun(() -> LOGGER.debug("Persistence save for incomplete resource entity '{}' with parent '{}'", entity.getResourceId(), entity.getParentId()));
 
                 });
@@ -293,7 +438,7 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
                 .thenCompose((Boolean result) -> {
                     if (result.equals(Boolean.FALSE)) {
                         // Mark resource entity as complete
-                        return completenessRepository.futureSave(EntityType.RESOURCE, resource.getId())
+                        return recoverConcurrentSave(completenessRepository.futureSave(EntityType.RESOURCE, resource.getId()), () -> isResourceIdComplete(resource.getId()), resource.getId())
                                 .thenRun(() -> LOGGER.debug("Persistence save for complete entity '{}' with id '{}'", EntityType.RESOURCE, resource.getId()));
                     } else {
                         return CompletableFuture.completedFuture(null);
@@ -339,10 +484,19 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
         // Persist higher parents as incomplete once above the root resource, but don't overwrite resources
         // Subsequently, as soon as a persisted resource is found, stop as all of its further parents will also already be persisted
         return saveCompleteResource(resource)
-                .thenCombine(traverseParentsByResource(resource,
-                        (parent, child) -> isResourceIdPersisted(parent.getId())
-                                .thenCombine(saveIncompleteResource(parent), (resourceIdPersisted, savedParent) -> !resourceIdPersisted)),
-                        (ignored, alsoIgnored) -> null);
+                .thenCombine(saveIncompleteParents(resource), (ignored, alsoIgnored) -> null);
+    }
+
+    /**
+     * Save the parents of the given resource to persistence as incomplete, stopping at the first already-persisted parent
+     *
+     * @param resource the resource to save the parents of
+     * @return a {@link CompletableFuture} of type {@link Void}
+     */
+    private CompletableFuture<Void> saveIncompleteParents(final Resource resource) {
+        return traverseParentsByResource(resource,
+                (parent, child) -> isResourceIdPersisted(parent.getId())
+                        .thenCombine(saveIncompleteResource(parent), (resourceIdPersisted, savedParent) -> !resourceIdPersisted));
     }
 
     /**
@@ -367,7 +521,7 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
                     }
                 }).thenCompose((Void ignored) -> {
                     TypeEntity entity = new TypeEntity(type, leafResource.getId());
-                    return typeRepository.futureSave(entity)
+                    return recoverConcurrentSave(typeRepository.futureSave(entity), () -> typeRepository.futureExistsByResourceId(entity.getResourceId()), entity.getResourceId())
                             .thenRun(() -> LOGGER.debug("Persistence save for type entity '{}' with type '{}'",
                                     entity.getResourceId(), entity.getType()));
                 });
@@ -395,7 +549,7 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
                     }
                 }).thenCompose((Void ignored) -> {
                     SerialisedFormatEntity entity = new SerialisedFormatEntity(serialisedFormat, leafResource.getId());
-                    return serialisedFormatRepository.futureSave(entity)
+                    return recoverConcurrentSave(serialisedFormatRepository.futureSave(entity), () -> serialisedFormatRepository.futureExistsByResourceId(entity.getResourceId()), entity.getResourceId())
                             .thenRun(() -> LOGGER.debug("Persistence save for serialisedFormat entity '{}' with serialisedFormat '{}'",
                                     entity.getResourceId(), entity.getSerialisedFormat()));
                 });
@@ -410,8 +564,67 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
     private Source<Resource, NotUsed> getResourceById(final String resourceId) {
         // Get resource entity from db
         return resourceRepository.streamFindOneByResourceId(resourceId)
-                // Get resource from db entity
-                .map(ResourceEntity::getResource);
+                // Get resource from db entity, with all parents resolved
+                .mapAsync(PARALLELISM, parentResourceCache::withParents);
+    }
+
+    /**
+     * Save the given {@link Resource} to persistence as a complete entity, always re-saving its completeness
+     * Unlike {@link #saveCompleteResource}, an already-complete entity is saved again, restarting any expiry of the entity
+     * (eg. with the Redis time-to-live), and the resource is overwritten with the (possibly changed) given resource
+     *
+     * @param resource the (complete) resource to save
+     * @return a {@link CompletableFuture} of type {@link Void}
+     */
+    private CompletableFuture<Void> refreshCompleteResource(final Resource resource) {
+        return recoverConcurrentSave(completenessRepository.futureSave(EntityType.RESOURCE, resource.getId()), () -> isResourceIdComplete(resource.getId()), resource.getId())
+                .thenCompose(ignored -> saveIncompleteResource(resource));
+    }
+
+    /**
+     * Collect a leaf resource and each of its parents up to (and including) the root resource id, keyed by resource id.
+     * Any parents not already collected are added before their children, so iterating the collected resources visits
+     * each parent before anything under it.
+     *
+     * @param rootResourceId the id of the root resource to stop at
+     * @param leafResource   the {@link LeafResource} to start from
+     * @param resources      the resources collected so far, to add to
+     */
+    private static void collectUpToRootId(final String rootResourceId, final LeafResource leafResource, final Map<String, Resource> resources) {
+        // The leaf and each of its uncollected parents, with the top-most parent first
+        Deque<Resource> uncollected = new ArrayDeque<>();
+        Resource resource = leafResource;
+        uncollected.push(resource);
+        boolean reachedCollectedParent = false;
+        while (!resource.getId().equals(rootResourceId) && resource instanceof ChildResource) {
+            resource = ((ChildResource) resource).getParent();
+            // Parents already collected have already had their own parents collected
+            if (resources.containsKey(resource.getId())) {
+                reachedCollectedParent = true;
+                break;
+            }
+            uncollected.push(resource);
+        }
+        if (!reachedCollectedParent && !resource.getId().equals(rootResourceId)) {
+            LOGGER.warn("Resource {} was never found to be under the apparent root {}", leafResource.getId(), rootResourceId);
+        }
+        uncollected.forEach(parentOrLeaf -> resources.put(parentOrLeaf.getId(), parentOrLeaf));
+    }
+
+    /**
+     * Find the ids of the top-most persisted resources under a parent that are not in the given set of ids
+     * Removing each of these (and everything under them) leaves only the given resources under the parent
+     *
+     * @param parentResourceId the id of the parent to search under
+     * @param keepResourceIds  the ids of every resource to be kept under the parent
+     * @return a {@link Flux} of the ids of resources to be removed
+     */
+    private Flux<String> findResourceIdsNotIn(final String parentResourceId, final Set<String> keepResourceIds) {
+        return resourceRepository.findAllByParentId(parentResourceId)
+                .map(ResourceEntity::getResourceId)
+                .concatMap(resourceId -> keepResourceIds.contains(resourceId)
+                        ? findResourceIdsNotIn(resourceId, keepResourceIds)
+                        : Flux.just(resourceId));
     }
 
     // ~~~ Actual method implementations/overrides for PersistenceLayer interface ~~~ //
@@ -427,8 +640,8 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
                         LOGGER.info("Persistence hit for resourceId '{}'", resourceId);
                         // Get resource entity from db
                         return Optional.of(resourceRepository.streamFindOneByResourceId(resourceId)
-                                // Get resource from db entity
-                                .map(ResourceEntity::getResource)
+                                // Get resource from db entity, with all parents resolved
+                                .mapAsync(PARALLELISM, parentResourceCache::withParents)
                                 // Get all leaves of this resource with parents resolved up to this resource
                                 // See above, all parents are now resolved
                                 .flatMapConcat(this::collectLeaves));
@@ -440,6 +653,24 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
                 });
     }
 
+    // Given a resource, return leaf resources underneath it in order of id, after the given id, with all parents resolved
+    @Override
+    public CompletableFuture<Optional<Source<LeafResource, NotUsed>>> getResourcesById(final String resourceId, final String resumeAfter) {
+        LOGGER.info("Getting resources by id '{}' after '{}'", resourceId, resumeAfter);
+        return isResourceIdComplete(resourceId)
+                .thenApply((Boolean isIdComplete) -> {
+                    if (isIdComplete.equals(Boolean.TRUE)) {
+                        LOGGER.info("Persistence hit for resourceId '{}'", resourceId);
+                        return Optional.of(resourceRepository.streamFindOneByResourceId(resourceId)
+                                .mapAsync(PARALLELISM, parentResourceCache::withParents)
+                                .flatMapConcat(resource -> collectLeavesAfter(resource, resumeAfter)));
+                    } else {
+                        LOGGER.info("Persistence miss for resourceId '{}'", resourceId);
+                        return Optional.empty();
+                    }
+                });
+    }
+
     // Given a type, return all leaf resources of that type with all parents resolved
     @Override
     public CompletableFuture<Optional<Source<LeafResource, NotUsed>>> getResourcesByType(final String type) {
@@ -498,23 +729,33 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
 
     // Add a leaf resource and mark it and its parents as complete up to a given root resource id
     // Used for updating the persistence store from a given source of 'truth' - ie. a real resource-service
+    // The root is only marked as complete once every leaf has been persisted, so a partially-persisted root is never served
     @Override
     public <T extends LeafResource> Flow<T, T, NotUsed> withPersistenceById(final String rootResourceId) {
+        return this.<T>withPartialPersistenceById(rootResourceId)
+                // Only once every leaf has been persisted (and not if the stream failed or was cancelled), mark the root as complete
+                .concat(Source.lazyCompletionStageSource(() -> completeResourceById(rootResourceId)
+                        .thenApply(ignored -> Source.<T>empty())));
+    }
+
+    // Add a leaf resource and mark it and its parents as complete up to (but not including) a given root resource id
+    // Used for updating the persistence store in batches from a given source of 'truth' - ie. prepopulation
+    @Override
+    public <T extends LeafResource> Flow<T, T, NotUsed> withPartialPersistenceById(final String rootResourceId) {
         LOGGER.info("Persistence add for resources by id '{}'", rootResourceId);
         final AtomicBoolean persistedRootAndParents = new AtomicBoolean(false);
-        // Persist that this resource id has (a potentially empty stream of) persisted info
-        // Next time it is requested, it will be handled by persistence
-        Flow<T, T, NotUsed> flow = Flow.<T>create().mapAsync(PARALLELISM, (T leafResource) ->
+        return Flow.<T>create().mapAsync(PARALLELISM, (T leafResource) ->
                 // Persist each leaf resource, with each being complete up-to the root resource id
                 saveChildrenOfCompleteResource(rootResourceId, leafResource)
                         // Persist the root resource and its parents
                         .thenCompose(rootResource -> rootResource
                                 // If the root reference was found (ie. the leafResource had a grand*parent with id matching the root resource id)
-                                // Then persist the root as the final complete entity, with all further parents marked as incomplete
+                                // Then persist the root, left incomplete until all of its leaves are persisted, with all further parents marked as incomplete
                                 .map((Resource resource) -> {
-                                    // This only needs to be done once per withPersistenceById call
+                                    // This only needs to be done once per withPartialPersistenceById call
                                     if (persistedRootAndParents.compareAndSet(false, true)) {
-                                        return saveResourceWithIncompleteParents(resource);
+                                        return saveIncompleteResource(resource)
+                                                .thenCombine(saveIncompleteParents(resource), (ignored, alsoIgnored) -> (Void) null);
                                     } else {
                                         return CompletableFuture.completedFuture((Void) null);
                                     }
@@ -529,19 +770,20 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
                         )
                         .thenApply(ignored -> leafResource)
         );
+    }
 
-        return Flow.completionStageFlow(isResourceIdComplete(rootResourceId)
-                // First save this root resource as complete
+    // Mark a root resource id as complete, once all of its leaves have been persisted
+    @Override
+    public CompletableFuture<Void> completeResourceById(final String rootResourceId) {
+        LOGGER.info("Persistence complete for resources by id '{}'", rootResourceId);
+        return isResourceIdComplete(rootResourceId)
                 .thenCompose((Boolean idAlreadyComplete) -> {
                     if (idAlreadyComplete.equals(Boolean.FALSE)) {
-                        return completenessRepository.futureSave(EntityType.RESOURCE, rootResourceId).thenApply(ignored -> null);
+                        return recoverConcurrentSave(completenessRepository.futureSave(EntityType.RESOURCE, rootResourceId), () -> isResourceIdComplete(rootResourceId), rootResourceId);
                     } else {
                         return CompletableFuture.completedFuture(null);
                     }
-                })
-                // Then return each child LeafResource as they are persisted
-                .thenApply(ignored -> flow))
-                .mapMaterializedValue(future -> NotUsed.notUsed());
+                });
     }
 
     // Add a leaf resource, (mark the leaf as complete,) and mark the leaf as a given type
@@ -554,7 +796,7 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
         return Flow.lazyCompletionStageFlow(() -> isTypeComplete(type)
                 .thenCompose((Boolean typeAlreadyComplete) -> {
                     if (typeAlreadyComplete.equals(Boolean.FALSE)) {
-                        return completenessRepository.futureSave(EntityType.TYPE, type);
+                        return recoverConcurrentSave(completenessRepository.futureSave(EntityType.TYPE, type), () -> isTypeComplete(type), type);
                     } else {
                         return CompletableFuture.completedFuture(null);
                     }
@@ -578,7 +820,7 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
         return Flow.lazyCompletionStageFlow(() -> isSerialisedFormatComplete(serialisedFormat)
                 .thenCompose((Boolean formatAlreadyComplete) -> {
                     if (formatAlreadyComplete.equals(Boolean.FALSE)) {
-                        return completenessRepository.futureSave(EntityType.FORMAT, serialisedFormat);
+                        return recoverConcurrentSave(completenessRepository.futureSave(EntityType.FORMAT, serialisedFormat), () -> isSerialisedFormatComplete(serialisedFormat), serialisedFormat);
                     } else {
                         return CompletableFuture.completedFuture(null);
                     }
@@ -591,4 +833,69 @@ public class ReactivePersistenceLayer implements PersistenceLayer {
                 )
         ).mapMaterializedValue(ignored -> NotUsed.notUsed());
     }
+
+    // Add a single leaf resource, (mark the leaf as complete,) and add it to its type and serialisedFormat
+    // Used for applying changes to the persistence store from outside of any request - ie. a filesystem watcher
+    @Override
+    public CompletableFuture<Void> putResource(final LeafResource leafResource) {
+        LOGGER.info("Persistence put for resource '{}'", leafResource.getId());
+        // Save the leaf and link it to its parents, stopping at the first already-persisted parent
+        // Complete parents remain complete, and will now include this leaf
+        return saveResourceWithIncompleteParents(leafResource)
+                .thenCompose(ignored -> saveType(leafResource.getType(), leafResource))
+                .thenCompose(ignored -> saveSerialisedFormat(leafResource.getSerialisedFormat(), leafResource));
+    }
+
+    // Remove a resource and all of its children, along with any completeness, type and serialisedFormat entities
+    // Used for applying changes to the persistence store from outside of any request - ie. a filesystem watcher
+    @Override
+    public CompletableFuture<Void> removeResourceById(final String resourceId) {
+        LOGGER.info("Persistence remove for resource '{}'", resourceId);
+        // Remove all children first, so that they are not orphaned if this fails part-way through
+        return resourceRepository.findAllByParentId(resourceId)
+                .map(ResourceEntity::getResourceId)
+                .collectList().toFuture()
+                .thenCompose(childIds -> CompletableFuture.allOf(childIds.stream()
+                        .map(this::removeResourceById)
+                        .toArray(CompletableFuture[]::new)))
+                // Then remove this resource, starting with its completeness so it is never partially returned
+                .thenCompose(ignored -> completenessRepository.futureDeleteByEntityTypeAndEntityId(EntityType.RESOURCE, resourceId))
+                .thenCompose((Void ignored) -> {
+                    parentResourceCache.invalidate(resourceId);
+                    return CompletableFuture.allOf(
+                            resourceRepository.futureDeleteByResourceId(resourceId),
+                            typeRepository.futureDeleteByResourceId(resourceId),
+                            serialisedFormatRepository.futureDeleteByResourceId(resourceId));
+                })
+                .thenRun(() -> LOGGER.debug("Persistence remove for resource '{}' and its children", resourceId));
+    }
+
+    // Mark a resource as incomplete, leaving any persisted entities to be overwritten by the next request
+    // Used for applying changes to the persistence store from outside of any request - ie. a filesystem watcher
+    @Override
+    public CompletableFuture<Void> invalidateResourceById(final String resourceId) {
+        LOGGER.info("Persistence invalidate for resource '{}'", resourceId);
+        return completenessRepository.futureDeleteByEntityTypeAndEntityId(EntityType.RESOURCE, resourceId);
+    }
+
+    // Replace all resources under a complete resource with a fresh set, removing any that are no longer present
+    // Used for refreshing the persistence store from a given source of 'truth' - ie. a real resource-service
+    @Override
+    public CompletableFuture<Void> replaceResourcesById(final String rootResourceId, final List<LeafResource> leafResources) {
+        LOGGER.info("Persistence replace for resources by id '{}' with {} resources", rootResourceId, leafResources.size());
+        // Every fresh resource, from each leaf up to and including the root, with parents before their children
+        Map<String, Resource> freshResources = new LinkedHashMap<>();
+        leafResources.forEach(leafResource -> collectUpToRootId(rootResourceId, leafResource, freshResources));
+        // Re-save the root first, so that it remains complete throughout (the root may not be persisted if it has no leaves)
+        return recoverConcurrentSave(completenessRepository.futureSave(EntityType.RESOURCE, rootResourceId), () -> isResourceIdComplete(rootResourceId), rootResourceId)
+                .thenCompose(ignored -> Flux.fromIterable(freshResources.values())
+                        // Overwrite each fresh resource, re-saving its completeness
+                        .concatMap(resource -> Mono.fromFuture(refreshCompleteResource(resource)))
+                        // Then remove anything persisted that was not found by the fresh walk
+                        .thenMany(findResourceIdsNotIn(rootResourceId, freshResources.keySet()))
+                        .concatMap(staleResourceId -> Mono.fromFuture(removeResourceById(staleResourceId)))
+                        .then()
+                        .toFuture())
+                .thenRun(() -> LOGGER.debug("Persistence replace for resources by id '{}' complete", rootResourceId));
+    }
 }
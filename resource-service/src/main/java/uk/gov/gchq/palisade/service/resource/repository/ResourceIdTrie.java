@@ -0,0 +1,298 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * A compressed prefix trie (radix tree) of resource ids, used by the {@link IndexedPersistenceLayer}.
+ * Resource ids are hierarchical and share long common prefixes (the ids of their parents), so each edge of the trie is
+ * labelled with a whole run of characters, and a prefix shared by many ids is only stored once.
+ * All values under a given prefix can then be found without scanning any ids outside of it, in order of id.
+ * <p>
+ * This class is not thread-safe, callers must synchronise access to it.
+ *
+ * @param <V> the type of the values stored against each id
+ */
+public class ResourceIdTrie<V> {
+    private final Node<V> root = new Node<>("", null);
+    private int size;
+
+    private static final class Node<V> {
+        private String label;
+        private V value;
+        // Children keyed by the first character of their label, created only when needed
+        private TreeMap<Character, Node<V>> children;
+
+        private Node(final String label, final V value) {
+            this.label = label;
+            this.value = value;
+        }
+
+        private Node<V> child(final char first) {
+            return children == null ? null : children.get(first);
+        }
+
+        private void putChild(final Node<V> child) {
+            if (children == null) {
+                children = new TreeMap<>();
+            }
+            children.put(child.label.charAt(0), child);
+        }
+
+        private void removeChild(final char first) {
+            children.remove(first);
+            if (children.isEmpty()) {
+                children = null;
+            }
+        }
+
+        private boolean hasChildren() {
+            return children != null;
+        }
+    }
+
+    /**
+     * Put a value against an id, replacing any existing value
+     *
+     * @param id    the resource id
+     * @param value the value to store
+     * @return the value previously stored against this id, or null if there was none
+     */
+    public V put(final String id, final V value) {
+        Node<V> node = root;
+        int index = 0;
+        while (index < id.length()) {
+            Node<V> child = node.child(id.charAt(index));
+            if (child == null) {
+                node.putChild(new Node<>(id.substring(index), value));
+                size++;
+                return null;
+            }
+            int common = commonPrefixLength(child.label, id, index);
+            if (common < child.label.length()) {
+                // The id diverges part-way along this edge, so split the edge at the point of divergence
+                Node<V> split = new Node<>(child.label.substring(0, common), null);
+                child.label = child.label.substring(common);
+                split.putChild(child);
+                node.putChild(split);
+                child = split;
+            }
+            node = child;
+            index += common;
+        }
+        V previous = node.value;
+        node.value = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    /**
+     * Get the value stored against an id
+     *
+     * @param id the resource id
+     * @return the value stored against exactly this id, or null if there is none
+     */
+    public V get(final String id) {
+        Node<V> node = root;
+        int index = 0;
+        while (index < id.length()) {
+            Node<V> child = node.child(id.charAt(index));
+            if (child == null || !id.startsWith(child.label, index)) {
+                return null;
+            }
+            node = child;
+            index += child.label.length();
+        }
+        return node.value;
+    }
+
+    /**
+     * Whether any values are stored against ids starting with the given prefix
+     *
+     * @param prefix the prefix of resource ids
+     * @return true if there is at least one value under this prefix
+     */
+    public boolean containsPrefix(final String prefix) {
+        return findPrefix(prefix)
+                .filter(node -> node.value != null || node.hasChildren())
+                .isPresent();
+    }
+
+    /**
+     * Get all values stored against ids starting with the given prefix
+     *
+     * @param prefix the prefix of resource ids
+     * @return a list of the values under this prefix, in order of their ids
+     */
+    public List<V> valuesWithPrefix(final String prefix) {
+        List<V> values = new ArrayList<>();
+        findPrefix(prefix).ifPresent(node -> collectValues(node, values));
+        return values;
+    }
+
+    /**
+     * Remove the value stored against exactly this id
+     *
+     * @param id the resource id
+     * @return the number of values removed, either zero or one
+     */
+    public int remove(final String id) {
+        return remove(id, false);
+    }
+
+    /**
+     * Remove all values stored against ids starting with the given prefix
+     *
+     * @param prefix the prefix of resource ids
+     * @return the number of values removed
+     */
+    public int removePrefix(final String prefix) {
+        return remove(prefix, true);
+    }
+
+    /**
+     * Get the number of values stored
+     *
+     * @return the number of ids with a value
+     */
+    public int size() {
+        return size;
+    }
+
+    private Optional<Node<V>> findPrefix(final String prefix) {
+        Node<V> node = root;
+        int index = 0;
+        while (index < prefix.length()) {
+            Node<V> child = node.child(prefix.charAt(index));
+            if (child == null) {
+                return Optional.empty();
+            }
+            int remaining = prefix.length() - index;
+            if (remaining <= child.label.length()) {
+                // The prefix ends on this edge, so everything under it matches if the edge starts with the rest of the prefix
+                return child.label.startsWith(prefix.substring(index)) ? Optional.of(child) : Optional.empty();
+            }
+            if (!prefix.startsWith(child.label, index)) {
+                return Optional.empty();
+            }
+            node = child;
+            index += child.label.length();
+        }
+        return Optional.of(node);
+    }
+
+    private int remove(final String key, final boolean wholeSubtree) {
+        int removed;
+        if (key.isEmpty()) {
+            removed = wholeSubtree ? size : removeValue(root);
+            if (wholeSubtree) {
+                root.value = null;
+                root.children = null;
+            }
+        } else {
+            removed = remove(root, key, 0, wholeSubtree);
+        }
+        size -= removed;
+        return removed;
+    }
+
+    private int remove(final Node<V> parent, final String key, final int index, final boolean wholeSubtree) {
+        char first = key.charAt(index);
+        Node<V> child = parent.child(first);
+        if (child == null) {
+            return 0;
+        }
+        int remaining = key.length() - index;
+        if (remaining < child.label.length() || !key.startsWith(child.label, index)) {
+            // The key ends part-way along (or diverges from) this edge, which only a prefix removal can match
+            if (wholeSubtree && remaining < child.label.length() && child.label.startsWith(key.substring(index))) {
+                parent.removeChild(first);
+                return countValues(child);
+            }
+            return 0;
+        }
+        int removed;
+        if (remaining == child.label.length()) {
+            if (wholeSubtree) {
+                parent.removeChild(first);
+                return countValues(child);
+            }
+            removed = removeValue(child);
+        } else {
+            removed = remove(child, key, index + child.label.length(), wholeSubtree);
+        }
+        compact(parent, child);
+        return removed;
+    }
+
+    private int removeValue(final Node<V> node) {
+        if (node.value == null) {
+            return 0;
+        }
+        node.value = null;
+        return 1;
+    }
+
+    private static <V> void compact(final Node<V> parent, final Node<V> child) {
+        if (child.value == null && !child.hasChildren()) {
+            // Nothing left under this edge
+            parent.removeChild(child.label.charAt(0));
+        } else if (child.value == null && child.children.size() == 1) {
+            // A single remaining grandchild, so merge the two edges back together
+            Node<V> grandchild = child.children.firstEntry().getValue();
+            grandchild.label = child.label + grandchild.label;
+            parent.putChild(grandchild);
+        }
+    }
+
+    private static <V> void collectValues(final Node<V> node, final List<V> values) {
+        if (node.value != null) {
+            values.add(node.value);
+        }
+        if (node.hasChildren()) {
+            for (Map.Entry<Character, Node<V>> child : node.children.entrySet()) {
+                collectValues(child.getValue(), values);
+            }
+        }
+    }
+
+    private static <V> int countValues(final Node<V> node) {
+        int count = node.value != null ? 1 : 0;
+        if (node.hasChildren()) {
+            for (Node<V> child : node.children.values()) {
+                count += countValues(child);
+            }
+        }
+        return count;
+    }
+
+    private static int commonPrefixLength(final String label, final String id, final int offset) {
+        int length = Math.min(label.length(), id.length() - offset);
+        int common = 0;
+        while (common < length && label.charAt(common) == id.charAt(offset + common)) {
+            common++;
+        }
+        return common;
+    }
+}
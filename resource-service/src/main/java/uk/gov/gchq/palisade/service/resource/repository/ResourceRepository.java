@@ -17,7 +17,9 @@ package uk.gov.gchq.palisade.service.resource.repository;
 
 import akka.NotUsed;
 import akka.stream.javadsl.Source;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -78,6 +80,18 @@ public interface ResourceRepository extends ReactiveCrudRepository<ResourceEntit
      */
     Flux<ResourceEntity> findAllByParentId(String parentId);
 
+    /**
+     * A {@link Flux} of a page of resources by parentId, in order of resourceId, starting after the given resourceId
+     * Successive pages can be read by passing the resourceId of the last resource of the previous page
+     *
+     * @param parentId   the parent id of the Resource
+     * @param resourceId the resource id to start after, exclusive
+     * @param limit      the maximum number of resources to return
+     * @return a {@link Flux} of at most limit ResourceEntity resources from the backing store, ordered by resource id
+     */
+    @Query("SELECT * FROM resources WHERE parent_id = :parentId AND resource_id > :resourceId ORDER BY resource_id LIMIT :limit")
+    Flux<ResourceEntity> findPageByParentIdAfterResourceId(@Param("parentId") String parentId, @Param("resourceId") String resourceId, @Param("limit") int limit);
+
     /**
      * Converts the {@code findAllByParentId} result to an akka {@link Source}
      *
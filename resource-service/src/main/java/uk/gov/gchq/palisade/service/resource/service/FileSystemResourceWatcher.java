@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.service.resource.repository.PersistenceLayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Watches the filesystem directories served by a {@link SimpleResourceService}, applying any changes incrementally to the
+ * {@link PersistenceLayer}, so that persistence remains authoritative for complete resource ids without a full re-walk.
+ * <ul>
+ *     <li>Created files (and all files under created directories) are put into persistence, under their already-persisted parents</li>
+ *     <li>Deleted files and directories are removed from persistence, along with all of their children</li>
+ *     <li>If events were lost (the watch overflowed), the affected directory is removed and re-walked</li>
+ * </ul>
+ * If a change could not be applied, the affected directory and all its parents are marked as incomplete, so that the next
+ * request for any of them is served by the {@link ResourceService} rather than returning stale results from persistence.
+ */
+public class FileSystemResourceWatcher implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemResourceWatcher.class);
+
+    private final ResourceService delegate;
+    private final PersistenceLayer persistenceLayer;
+    private final NegativeResourceCache negativeCache;
+    private final List<Path> roots;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private WatchService watchService;
+
+    /**
+     * Create a new watcher for the given directories
+     *
+     * @param delegate         the {@link ResourceService} used to build resources for newly-created files
+     * @param persistenceLayer the {@link PersistenceLayer} to apply changes to
+     * @param negativeCache    the {@link NegativeResourceCache} of unknown resource ids, which are invalidated by created files
+     * @param roots            the filesystem directories to watch (recursively) for changes
+     */
+    public FileSystemResourceWatcher(final ResourceService delegate, final PersistenceLayer persistenceLayer,
+                                     final NegativeResourceCache negativeCache, final List<String> roots) {
+        this.delegate = requireNonNull(delegate, "ResourceService cannot be null");
+        this.persistenceLayer = requireNonNull(persistenceLayer, "PersistenceLayer cannot be null");
+        this.negativeCache = requireNonNull(negativeCache, "NegativeResourceCache cannot be null");
+        this.roots = requireNonNull(roots, "Roots cannot be null").stream()
+                .map(root -> canonicalOf(new File(root)).toPath())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Register all roots with a new {@link WatchService} and begin processing events on a background thread
+     *
+     * @throws IOException if the watch service could not be created or a root could not be registered
+     */
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path root : roots) {
+            registerAll(root);
+        }
+        Thread watchThread = new Thread(this::processEvents, "resource-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        LOGGER.info("Watching {} for resource changes", roots);
+    }
+
+    /**
+     * Stop watching the filesystem, any events not yet processed are discarded
+     *
+     * @throws IOException if the underlying {@link WatchService} could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void registerAll(final Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void processEvents() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                Path directory = watchedDirectories.get(key);
+                if (directory != null) {
+                    key.pollEvents().forEach(event -> handleEvent(directory, event));
+                }
+                if (!key.reset()) {
+                    // The directory is no longer accessible (most likely deleted), a delete event for it is handled by its parent
+                    watchedDirectories.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException ex) {
+            LOGGER.info("Stopped watching {} for resource changes", roots);
+        } catch (InterruptedException ex) {
+            LOGGER.warn("Interrupted while watching {} for resource changes", roots);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleEvent(final Path directory, final WatchEvent<?> event) {
+        try {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                LOGGER.warn("Events were lost while watching {}, re-walking directory", directory);
+                removePath(directory);
+                putPath(directory);
+            } else {
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    putPath(path);
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    removePath(path);
+                }
+            }
+        } catch (RuntimeException | IOException ex) {
+            LOGGER.warn("Failed to apply {} event in {} to persistence, marking directory and parents as incomplete", event.kind(), directory, ex);
+            invalidatePathAndParents(directory);
+        }
+    }
+
+    private void putPath(final Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            // Register before walking, so that any files created during the walk are not missed
+            registerAll(path);
+        }
+        LOGGER.debug("Putting resources for created path {}", path);
+        Iterator<LeafResource> leaves = delegate.getResourcesById(resourceIdOf(path));
+        while (leaves.hasNext()) {
+            LeafResource leaf = leaves.next();
+            persistenceLayer.putResource(leaf).join();
+            negativeCache.invalidate(leaf.getId());
+        }
+    }
+
+    private void removePath(final Path path) {
+        LOGGER.debug("Removing resources for deleted path {}", path);
+        // A deleted directory no longer has a trailing slash on its URI, so remove both forms of the id
+        String resourceId = resourceIdOf(path);
+        String directoryId = resourceId.endsWith("/") ? resourceId : resourceId + "/";
+        persistenceLayer.removeResourceById(resourceId)
+                .thenCompose(ignored -> persistenceLayer.removeResourceById(directoryId))
+                .join();
+    }
+
+    private void invalidatePathAndParents(final Path path) {
+        Path current = path;
+        while (current != null) {
+            String resourceId = resourceIdOf(current);
+            persistenceLayer.invalidateResourceById(resourceId)
+                    .exceptionally((Throwable ex) -> {
+                        LOGGER.error("Failed to invalidate resource {}, persistence may return stale results", resourceId, ex);
+                        return null;
+                    })
+                    .join();
+            current = current.getParent();
+        }
+    }
+
+    private static String resourceIdOf(final Path path) {
+        // Match the resource ids produced by the SimpleResourceService, which uses File URIs rather than Path URIs
+        return path.toFile().toURI().toString();
+    }
+
+    private static File canonicalOf(final File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to get canonical file for {}, falling back to absolute file", file, ex);
+            return file.getAbsoluteFile();
+        }
+    }
+}
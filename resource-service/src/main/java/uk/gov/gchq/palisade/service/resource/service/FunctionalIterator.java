@@ -131,8 +131,11 @@ public interface FunctionalIterator<T> extends Iterator<T>, AutoCloseable {
         }
 
         @Override
-        public void close() {
-            // Do nothing
+        public void close() throws Exception {
+            // Close the delegate if it holds any resources (such as a directory walk), otherwise do nothing
+            if (this.delegate instanceof AutoCloseable) {
+                ((AutoCloseable) this.delegate).close();
+            }
         }
     }
 
@@ -356,7 +359,9 @@ public interface FunctionalIterator<T> extends Iterator<T>, AutoCloseable {
     }
 
     /**
-     * A {@link FunctionalIterator} implementation that allows an iterator to catch thrown exceptions
+     * A {@link FunctionalIterator} implementation that allows an iterator to catch thrown exceptions.
+     * If the delegate throws from {@code hasNext}, the exception is returned (once) as a final element,
+     * so that a failed iterator is never mistaken for one that has simply run out of elements.
      *
      * @param <T> the type of the iterator
      */
@@ -364,6 +369,8 @@ public interface FunctionalIterator<T> extends Iterator<T>, AutoCloseable {
         private static final Logger LOGGER = LoggerFactory.getLogger(ExceptionallyIterator.class);
         private final FunctionalIterator<T> delegate;
         private final Function<Throwable, T> exceptionally;
+        private RuntimeException failure;
+        private boolean failed;
 
         public ExceptionallyIterator(final FunctionalIterator<T> delegate, final Function<Throwable, T> exceptionally) {
             this.delegate = delegate;
@@ -372,16 +379,29 @@ public interface FunctionalIterator<T> extends Iterator<T>, AutoCloseable {
 
         @Override
         public boolean hasNext() {
+            if (failed) {
+                return failure != null;
+            }
             try {
                 return this.delegate.hasNext();
             } catch (RuntimeException throwable) {
                 LOGGER.warn("ExceptionallyIterator caught a Throwable while calling delegate.hasNext() ", throwable);
-                return false;
+                failure = throwable;
+                failed = true;
+                return true;
             }
         }
 
         @Override
         public T next() {
+            if (failed) {
+                if (failure == null) {
+                    throw new NoSuchElementException();
+                }
+                RuntimeException throwable = failure;
+                failure = null;
+                return exceptionally.apply(throwable);
+            }
             try {
                 return this.delegate.next();
             } catch (RuntimeException throwable) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.service.resource.model.AuditableResourceResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A bounded, short-lived cache of resource ids for which the {@link ResourceService} returned no resources, used by the
+ * {@link ResourceServicePersistenceProxy} to avoid repeatedly walking (and failing to find) the same nonexistent resource.
+ * Each id is stored with the (possibly empty) list of error responses to replay to any further requests.
+ * <p>
+ * Any write of a resource under a cached id (ie. the cached id is a prefix of the written resource's id) removes that id
+ * from the cache, so a resource that has since been created will be found.
+ * Hits, misses, evictions and size are reported to the application's metrics under the {@code resource.negative} cache name.
+ */
+public class NegativeResourceCache implements MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NegativeResourceCache.class);
+    private static final String CACHE_NAME = "resource.negative";
+
+    private final Cache<String, List<AuditableResourceResponse>> unknownResourceIds;
+
+    /**
+     * Create a new negative cache
+     *
+     * @param timeToLive  how long a resource id is considered unknown for before the service is asked again
+     * @param maximumSize the maximum number of unknown resource ids to hold
+     */
+    public NegativeResourceCache(final Duration timeToLive, final long maximumSize) {
+        this.unknownResourceIds = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get the responses recorded for an unknown resource id, if it is still cached
+     *
+     * @param resourceId the resource id requested
+     * @return the error responses to replay for this id, or empty if the id is not known to be missing
+     */
+    public Optional<List<AuditableResourceResponse>> get(final String resourceId) {
+        return Optional.ofNullable(unknownResourceIds.getIfPresent(resourceId));
+    }
+
+    /**
+     * Record a resource id as unknown, such that further requests for it are answered from the cache
+     *
+     * @param resourceId the resource id that returned no resources
+     * @param errors     the error responses returned by the service for this id, which may be empty
+     */
+    public void put(final String resourceId, final List<AuditableResourceResponse> errors) {
+        LOGGER.debug("Caching resource id '{}' as unknown with {} errors", resourceId, errors.size());
+        unknownResourceIds.put(resourceId, List.copyOf(errors));
+    }
+
+    /**
+     * Remove any cached ids that the given resource is under, as they may now return this resource.
+     * This is the resource id itself, along with each of its parents (with and without the trailing separator).
+     *
+     * @param resourceId the id of a resource that has been written to persistence
+     */
+    public void invalidate(final String resourceId) {
+        List<String> prefixes = new ArrayList<>();
+        prefixes.add(resourceId);
+        for (int i = resourceId.indexOf('/'); i >= 0; i = resourceId.indexOf('/', i + 1)) {
+            prefixes.add(resourceId.substring(0, i));
+            prefixes.add(resourceId.substring(0, i + 1));
+        }
+        unknownResourceIds.invalidateAll(prefixes);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, unknownResourceIds, CACHE_NAME);
+    }
+}
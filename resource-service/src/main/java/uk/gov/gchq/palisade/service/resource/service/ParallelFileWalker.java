@@ -0,0 +1,336 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.service.resource.exception.NoSuchResourceException;
+import uk.gov.gchq.palisade.service.resource.exception.ResourceWalkException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A parallel, fork-join based walker of a filesystem directory tree, used by the {@link SimpleResourceService}.
+ * Each subdirectory is listed as a separate task, with idle threads stealing work from busy ones, so deep or wide trees
+ * (particularly on network filesystems) are listed with a configurable level of concurrency.
+ * Files are streamed to the returned {@link FunctionalIterator} through a bounded buffer as soon as they are found, so
+ * the walk is backpressured by the consumer and results are available before the walk has finished.
+ * All walks share a single {@link ForkJoinPool}, bounded to the configured level of concurrency. A thread blocked on a
+ * slow consumer is compensated for by the pool (up to the same number of threads again), so that one slow consumer does
+ * not hold up every other walk. The pool is shut down once the walker is closed.
+ * <p>
+ * Only the root of the walk is canonicalised, all children are resolved against their (canonical) parent directory.
+ * Symbolic links to files are canonicalised and returned, symbolic links to directories are not followed.
+ * Files or directories deleted while the walk is running are skipped, but any other failure to read the tree fails the
+ * walk, and the returned iterator throws a {@link ResourceWalkException} rather than returning a partial listing.
+ * Only a root path that does not exist throws a {@link NoSuchResourceException}.
+ * Note that, unlike {@link Files#walk}, there is no guarantee of the order in which files are returned.
+ */
+public class ParallelFileWalker implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelFileWalker.class);
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+    // If a consumer stops consuming without closing the iterator, give up rather than hold the pool's threads forever
+    private static final long ABANDONED_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // Markers placed on the queue once all tasks have completed, compared by reference
+    private static final File END_OF_WALK = new File("");
+    private static final File WALK_FAILED = new File("");
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private final int bufferSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a new walker with the given concurrency level and a default buffer size
+     *
+     * @param parallelism the maximum number of directories to list concurrently across all walks
+     */
+    public ParallelFileWalker(final int parallelism) {
+        this(parallelism, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new walker with the given concurrency level and buffer size
+     *
+     * @param parallelism the maximum number of directories to list concurrently across all walks
+     * @param bufferSize  the maximum number of files found but not yet consumed, before the walk blocks
+     */
+    public ParallelFileWalker(final int parallelism, final int bufferSize) {
+        this.bufferSize = bufferSize;
+        // Allow as many threads again to compensate for those blocked on a slow consumer, then block rather than reject
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false,
+                0, 2 * parallelism, 1, saturatedPool -> true, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Walk the filesystem tree under the given path, returning all regular files found.
+     * If the path is a file, then that file alone is returned.
+     *
+     * @param path the path to walk
+     * @return a {@link FunctionalIterator} of (canonical) {@link File}s, which cancels the walk when closed
+     * @throws NoSuchResourceException if the path does not exist
+     * @throws ResourceWalkException    if the path could not be read, or later from the iterator if the walk failed
+     */
+    public FunctionalIterator<File> walk(final Path path) {
+        BasicFileAttributes rootAttributes;
+        Path root;
+        try {
+            rootAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+            root = canonicalOf(path.toFile()).toPath();
+        } catch (NoSuchFileException ex) {
+            throw new NoSuchResourceException("Failed to walk path " + path, ex);
+        } catch (IOException ex) {
+            throw new ResourceWalkException("Failed to walk path " + path, ex);
+        }
+
+        if (rootAttributes.isDirectory()) {
+            WalkIterator iterator = new WalkIterator(root, bufferSize);
+            pool.execute(() -> {
+                try {
+                    new WalkTask(root, iterator).invoke();
+                } catch (RuntimeException ex) {
+                    iterator.fail(ex);
+                } finally {
+                    iterator.finish();
+                }
+            });
+            return iterator;
+        } else if (rootAttributes.isRegularFile()) {
+            return FunctionalIterator.fromIterator(Collections.singletonList(root.toFile()).iterator());
+        } else {
+            return FunctionalIterator.fromIterator(Collections.emptyIterator());
+        }
+    }
+
+    /**
+     * Shut down the pool shared by all walks, stopping any walks still running
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static File canonicalOf(final File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to get canonical file", e);
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * A {@link RecursiveAction} listing a single directory, emitting any files and forking a new task per subdirectory
+     */
+    private static final class WalkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path directory;
+        private final transient WalkIterator results;
+
+        private WalkTask(final Path directory, final WalkIterator results) {
+            this.directory = directory;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (results.isStopped()) {
+                return;
+            }
+            List<WalkTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (results.isStopped()) {
+                        return;
+                    }
+                    visit(entry, subdirectories);
+                }
+            } catch (NoSuchFileException ex) {
+                LOGGER.debug("Directory {} was deleted during the walk, skipping", directory, ex);
+            } catch (IOException ex) {
+                results.fail(new ResourceWalkException("Failed to list directory " + directory, ex));
+            } catch (DirectoryIteratorException ex) {
+                results.fail(new ResourceWalkException("Failed to list directory " + directory, ex.getCause()));
+            }
+            invokeAll(subdirectories);
+        }
+
+        private void visit(final Path entry, final List<WalkTask> subdirectories) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attributes.isDirectory()) {
+                    subdirectories.add(new WalkTask(entry, results));
+                } else if (attributes.isRegularFile()) {
+                    // Resolved against a canonical directory, so this is already canonical
+                    results.offer(entry.toFile());
+                } else if (attributes.isSymbolicLink()) {
+                    File target = canonicalOf(entry.toFile());
+                    if (target.isFile()) {
+                        results.offer(target);
+                    }
+                }
+            } catch (NoSuchFileException ex) {
+                LOGGER.debug("File {} was deleted during the walk, skipping", entry, ex);
+            } catch (IOException ex) {
+                results.fail(new ResourceWalkException("Failed to read attributes for " + entry, ex));
+            }
+        }
+    }
+
+    /**
+     * A {@link FunctionalIterator} consuming the files found by the {@link WalkTask}s through a bounded buffer.
+     * Closing the iterator stops any outstanding tasks, leaving the shared pool to other walks.
+     * If the walk failed, the iterator throws the failure in place of any further files.
+     */
+    private static final class WalkIterator implements FunctionalIterator<File> {
+        private final Path root;
+        private final BlockingQueue<File> buffer;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private volatile boolean closed;
+        private boolean finished;
+        private File next;
+
+        private WalkIterator(final Path root, final int bufferSize) {
+            this.root = root;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private boolean isStopped() {
+            return closed || failure.get() != null;
+        }
+
+        // Record the first failure of the walk, stopping any outstanding tasks
+        // Once closed, tasks stop and any failures are of no interest to the consumer
+        private void fail(final RuntimeException ex) {
+            if (!closed && failure.compareAndSet(null, ex)) {
+                LOGGER.warn("Exception encountered while walking path {}", root, ex);
+            }
+        }
+
+        private void offer(final File file) {
+            try {
+                ForkJoinPool.managedBlock(new BufferOffer(file));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                fail(new ResourceWalkException("Interrupted while walking path " + root, ex));
+            }
+        }
+
+        // Called once all tasks have completed, placing either the end or failure marker on the queue
+        private void finish() {
+            offer(END_OF_WALK);
+            if (failure.get() != null && !closed) {
+                // The consumer will only see the failure, so make room for the marker rather than wait for the consumer
+                buffer.clear();
+                buffer.add(WALK_FAILED);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            if (next == null && !finished) {
+                try {
+                    next = buffer.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new ResourceWalkException("Interrupted while waiting for results of walk of path " + root, ex);
+                }
+                if (next == END_OF_WALK || next == WALK_FAILED) {
+                    finished = true;
+                    next = null;
+                }
+            }
+            if (next == null && failure.get() != null) {
+                throw new ResourceWalkException("Failed to walk path " + root, failure.get());
+            }
+            return next != null;
+        }
+
+        @Override
+        public File next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            File file = next;
+            next = null;
+            return file;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            buffer.clear();
+        }
+
+        /**
+         * Offer a file to the buffer, blocking while the buffer is full such that the pool may compensate for the
+         * blocked thread, until the file is offered or the walk is stopped
+         */
+        private final class BufferOffer implements ForkJoinPool.ManagedBlocker {
+            private final File file;
+            private boolean offered;
+            private long waited;
+
+            private BufferOffer(final File file) {
+                this.file = file;
+            }
+
+            @Override
+            public boolean block() throws InterruptedException {
+                offered = buffer.offer(file, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (!offered) {
+                    waited += OFFER_TIMEOUT_MILLIS;
+                    if (waited >= ABANDONED_TIMEOUT_MILLIS) {
+                        fail(new ResourceWalkException(String.format("Walk results have not been consumed for %dms, assuming the iterator was abandoned", waited)));
+                    }
+                }
+                return isReleasable();
+            }
+
+            @Override
+            public boolean isReleasable() {
+                if (!offered && !isStopped()) {
+                    offered = buffer.offer(file);
+                }
+                return offered || isStopped();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides when a complete set of persisted resources for a resource id is old enough to be refreshed-ahead by the
+ * {@link ResourceServicePersistenceProxy}, re-walking the {@link ResourceService} in the background while the persisted
+ * resources continue to be served.
+ * <p>
+ * The time each resource id was last walked is held in memory, bounded in size. An id that has not been seen since
+ * startup (such as one persisted by a previous instance of the service) is treated as having just been walked, so its age
+ * is counted from the first request for it.
+ * Once due, an id is only reported as due to a single caller, and is not due again until the refresh after time has passed.
+ */
+public class RefreshAheadPolicy {
+    private final Duration refreshAfter;
+    private final Clock clock;
+    private final Cache<String, Instant> lastWalked;
+
+    /**
+     * Create a new refresh-ahead policy
+     *
+     * @param refreshAfter the age after which the resources for an id are refreshed, or null or zero to never refresh
+     * @param maximumSize  the maximum number of resource ids to track the age of
+     */
+    public RefreshAheadPolicy(final Duration refreshAfter, final long maximumSize) {
+        this(refreshAfter, maximumSize, Clock.systemUTC());
+    }
+
+    /**
+     * Create a new refresh-ahead policy, using the given clock to tell the age of resources
+     *
+     * @param refreshAfter the age after which the resources for an id are refreshed, or null or zero to never refresh
+     * @param maximumSize  the maximum number of resource ids to track the age of
+     * @param clock        the clock used to tell the time each resource id was walked
+     */
+    public RefreshAheadPolicy(final Duration refreshAfter, final long maximumSize, final Clock clock) {
+        this.refreshAfter = Optional.ofNullable(refreshAfter)
+                .filter(duration -> !duration.isZero() && !duration.isNegative())
+                .orElse(null);
+        this.clock = clock;
+        this.lastWalked = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * Create a policy that never refreshes
+     *
+     * @return a {@link RefreshAheadPolicy} for which no resource id is ever due
+     */
+    public static RefreshAheadPolicy never() {
+        return new RefreshAheadPolicy(null, 0L);
+    }
+
+    /**
+     * Whether this policy will ever report a resource id as due for refresh
+     *
+     * @return true if refresh-ahead is enabled
+     */
+    public boolean isEnabled() {
+        return refreshAfter != null;
+    }
+
+    /**
+     * Record that a resource id has just been walked, such as after a persistence miss, restarting its age
+     *
+     * @param resourceId the resource id walked
+     */
+    public void recordWalk(final String resourceId) {
+        if (isEnabled()) {
+            lastWalked.put(resourceId, clock.instant());
+        }
+    }
+
+    /**
+     * Check whether the persisted resources for a resource id are due to be refreshed.
+     * If they are, the id is recorded as walked, so that any concurrent or further checks do not also report it as due.
+     *
+     * @param resourceId the resource id requested
+     * @return true if the caller should refresh the resources for this id
+     */
+    public boolean claimIfDue(final String resourceId) {
+        if (!isEnabled()) {
+            return false;
+        }
+        Instant now = clock.instant();
+        AtomicBoolean due = new AtomicBoolean(false);
+        lastWalked.asMap().compute(resourceId, (String id, Instant walked) -> {
+            if (walked == null) {
+                // Not seen since startup, so start counting its age from now
+                return now;
+            }
+            if (walked.plus(refreshAfter).isAfter(now)) {
+                return walked;
+            }
+            due.set(true);
+            return now;
+        });
+        return due.get();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.service;
+
+import akka.Done;
+import akka.NotUsed;
+import akka.stream.Materializer;
+import akka.stream.javadsl.FileIO;
+import akka.stream.javadsl.Framing;
+import akka.stream.javadsl.FramingTruncation;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import uk.gov.gchq.palisade.resource.ConnectionDetail;
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.resource.Resource;
+import uk.gov.gchq.palisade.service.resource.config.StdResourcePrepopulationFactory;
+import uk.gov.gchq.palisade.service.resource.repository.PersistenceLayer;
+
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Prepopulates the {@link PersistenceLayer} with resources from configuration and (optionally) an external manifest file.
+ * All resources are streamed through a single graph, batched by root resource, type and serialisedFormat such that each
+ * batch is persisted by one flow, with batches for different roots persisted in parallel.
+ * <p>
+ * Manifest files may be either JSON-lines (a {@code .jsonl} or {@code .json} extension), with each line a JSON object of the
+ * same form as a {@link StdResourcePrepopulationFactory}, or CSV (any other extension), with each line of the form
+ * {@code resourceId,rootId,connectionDetail,type,serialisedFormat}. Blank lines, lines starting with {@code #} and a CSV
+ * header line are skipped, as are any lines that could not be parsed.
+ * <p>
+ * A root resource may be split across many batches, so roots are only marked as complete once every batch has been
+ * persisted, and requests may be served while prepopulation runs in the background. If prepopulation fails, no root is
+ * marked complete, and every root it had started persisting is marked incomplete, so that a partially-persisted tree is
+ * never served as if it were complete.
+ * <p>
+ * This is also a {@link HealthIndicator}, reporting {@code OUT_OF_SERVICE} until prepopulation has completed, so the
+ * service's readiness can be gated on prepopulation.
+ */
+public class ResourcePrepopulationService implements HealthIndicator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourcePrepopulationService.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAXIMUM_LINE_LENGTH = 64 * 1024;
+    private static final String CSV_HEADER = "resourceId,rootId,connectionDetail,type,serialisedFormat";
+
+    private final PersistenceLayer persistence;
+    private final Materializer materialiser;
+    private final Supplier<List<Entry<Resource, LeafResource>>> configuredResources;
+    private final Function<String, ConnectionDetail> connectionDetailMapper;
+    private final Optional<Path> manifest;
+    private final int parallelism;
+    private final int batchSize;
+    private final Set<String> persistedRootIds = ConcurrentHashMap.newKeySet();
+    private volatile CompletableFuture<Long> prepopulation;
+
+    /**
+     * Create a new prepopulation service
+     *
+     * @param persistence            the {@link PersistenceLayer} to prepopulate
+     * @param materialiser           the Akka {@link Materializer} used to run the prepopulation graph
+     * @param configuredResources    a {@link Supplier} of resources from configuration, each paired with its root resource
+     * @param connectionDetailMapper a function mapping the connection detail {@link String}s of a manifest to proper {@link ConnectionDetail}s
+     * @param manifest               the path to a manifest file of further resources, or null or blank for configured resources only
+     * @param parallelism            the maximum number of batches (for different root resources) to persist concurrently
+     * @param batchSize              the maximum number of resources to group together by root, type and serialisedFormat
+     */
+    public ResourcePrepopulationService(final PersistenceLayer persistence, final Materializer materialiser,
+                                        final Supplier<List<Entry<Resource, LeafResource>>> configuredResources,
+                                        final Function<String, ConnectionDetail> connectionDetailMapper,
+                                        final String manifest, final int parallelism, final int batchSize) {
+        this.persistence = persistence;
+        this.materialiser = materialiser;
+        this.configuredResources = configuredResources;
+        this.connectionDetailMapper = connectionDetailMapper;
+        this.manifest = Optional.ofNullable(manifest)
+                .filter(path -> !path.isBlank())
+                .map(Path::of);
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Start prepopulating persistence in the background, if not already started
+     *
+     * @return a {@link CompletionStage} of {@link Done} once all resources have been persisted
+     */
+    public synchronized CompletionStage<Done> prepopulate() {
+        if (prepopulation == null) {
+            LOGGER.info("Pre-populating using configured resources and manifest {}", manifest);
+            CompletableFuture<Long> population = entries()
+                    // Batch resources, then regroup each batch by root, type and serialisedFormat, which are persisted together
+                    .grouped(batchSize)
+                    .mapConcat(ResourcePrepopulationService::groupByRootTypeAndFormat)
+                    // Batches for the same root are always persisted by the same substream, so a root is never persisted concurrently
+                    .groupBy(parallelism, (Entry<List<String>, List<LeafResource>> batch) -> Math.floorMod(batch.getKey().get(0).hashCode(), parallelism))
+                    .flatMapConcat(this::persistBatch)
+                    .mergeSubstreams()
+                    .runWith(Sink.fold(0L, (Long count, LeafResource resource) -> count + 1), materialiser)
+                    .toCompletableFuture();
+            // Only report prepopulation as finished once every root has been marked complete, or any partially-persisted roots have been invalidated
+            prepopulation = population
+                    .handle((Long count, Throwable ex) -> {
+                        if (ex == null) {
+                            LOGGER.info("Pre-population complete, persisted {} resources, marking {} root resources as complete", count, persistedRootIds.size());
+                            return CompletableFuture.allOf(persistedRootIds.stream()
+                                    .map(persistence::completeResourceById)
+                                    .toArray(CompletableFuture[]::new))
+                                    .thenApply(ignored -> count);
+                        }
+                        LOGGER.error("Pre-population failed, marking {} root resources as incomplete", persistedRootIds.size(), ex);
+                        return CompletableFuture.allOf(persistedRootIds.stream()
+                                .map(rootId -> persistence.invalidateResourceById(rootId)
+                                        .exceptionally((Throwable invalidateEx) -> {
+                                            LOGGER.error("Failed to invalidate root resource {}, persistence may return partial results", rootId, invalidateEx);
+                                            return null;
+                                        }))
+                                .toArray(CompletableFuture[]::new))
+                                .<Long>thenCompose(ignored -> CompletableFuture.failedFuture(ex));
+                    })
+                    .thenCompose(Function.identity());
+        }
+        return prepopulation.thenApply(count -> Done.done());
+    }
+
+    @Override
+    public Health health() {
+        CompletableFuture<Long> current = prepopulation;
+        if (current == null) {
+            return Health.outOfService().withDetail("state", "not started").build();
+        } else if (!current.isDone()) {
+            return Health.outOfService().withDetail("state", "in progress").build();
+        } else if (current.isCompletedExceptionally()) {
+            return Health.down().withDetail("state", "failed").build();
+        } else {
+            return Health.up().withDetail("state", "complete").withDetail("count", current.join()).build();
+        }
+    }
+
+    private Source<Entry<Resource, LeafResource>, NotUsed> entries() {
+        return Source.lazySource(() -> Source.from(configuredResources.get()))
+                .concat(manifest.map(this::manifestEntries).orElseGet(Source::empty))
+                .mapMaterializedValue(ignored -> NotUsed.notUsed());
+    }
+
+    private Source<Entry<Resource, LeafResource>, NotUsed> manifestEntries(final Path path) {
+        boolean isJson = path.getFileName().toString().endsWith(".jsonl") || path.getFileName().toString().endsWith(".json");
+        return FileIO.fromPath(path)
+                .via(Framing.delimiter(ByteString.fromString("\n"), MAXIMUM_LINE_LENGTH, FramingTruncation.ALLOW))
+                .map(ByteString::utf8String)
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#") && !line.equals(CSV_HEADER))
+                .map(line -> isJson ? parseJson(line) : parseCsv(line))
+                .filter(Optional::isPresent)
+                .map(factory -> factory.get().build(connectionDetailMapper))
+                .mapMaterializedValue(ignored -> NotUsed.notUsed());
+    }
+
+    private static Optional<StdResourcePrepopulationFactory> parseJson(final String line) {
+        try {
+            return Optional.of(MAPPER.readValue(line, StdResourcePrepopulationFactory.class));
+        } catch (JsonProcessingException ex) {
+            LOGGER.warn("Skipping malformed manifest line: {}", line, ex);
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<StdResourcePrepopulationFactory> parseCsv(final String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 5) {
+            LOGGER.warn("Skipping malformed manifest line, expected '{}' but got: {}", CSV_HEADER, line);
+            return Optional.empty();
+        }
+        return Optional.of(new StdResourcePrepopulationFactory(fields[0].strip(), fields[1].strip(), fields[2].strip(),
+                Map.of("type", fields[3].strip(), "serialisedFormat", fields[4].strip())));
+    }
+
+    private static List<Entry<List<String>, List<LeafResource>>> groupByRootTypeAndFormat(final List<Entry<Resource, LeafResource>> batch) {
+        Map<List<String>, List<LeafResource>> groups = new LinkedHashMap<>();
+        batch.forEach((Entry<Resource, LeafResource> entry) -> {
+            LeafResource leafResource = entry.getValue();
+            List<String> key = List.of(entry.getKey().getId(), leafResource.getType(), leafResource.getSerialisedFormat());
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(leafResource);
+        });
+        List<Entry<List<String>, List<LeafResource>>> grouped = new ArrayList<>(groups.size());
+        groups.forEach((key, leaves) -> grouped.add(new SimpleImmutableEntry<>(key, leaves)));
+        return grouped;
+    }
+
+    private Source<LeafResource, NotUsed> persistBatch(final Entry<List<String>, List<LeafResource>> batch) {
+        String rootId = batch.getKey().get(0);
+        String type = batch.getKey().get(1);
+        String serialisedFormat = batch.getKey().get(2);
+        LOGGER.debug("Persistence add for {} resources under {} with type {} and serialisedFormat {}", batch.getValue().size(), rootId, type, serialisedFormat);
+        persistedRootIds.add(rootId);
+        return Source.from(batch.getValue())
+                .via(persistence.withPartialPersistenceById(rootId))
+                .via(persistence.withPersistenceByType(type))
+                .via(persistence.withPersistenceBySerialisedFormat(serialisedFormat))
+                .map((LeafResource persistedResource) -> {
+                    LOGGER.debug("Persistence add for {} -> {}", rootId, persistedResource.getId());
+                    return persistedResource;
+                });
+    }
+}
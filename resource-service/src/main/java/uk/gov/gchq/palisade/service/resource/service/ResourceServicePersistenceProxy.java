@@ -16,14 +16,20 @@
 
 package uk.gov.gchq.palisade.service.resource.service;
 
+import akka.Done;
 import akka.NotUsed;
 import akka.japi.pf.PFBuilder;
+import akka.stream.Materializer;
 import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.gov.gchq.palisade.resource.ChildResource;
 import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.resource.Resource;
+import uk.gov.gchq.palisade.service.resource.config.ResourceServiceConfigProperties;
 import uk.gov.gchq.palisade.service.resource.exception.NoSuchResourceException;
 import uk.gov.gchq.palisade.service.resource.model.AuditErrorMessage;
 import uk.gov.gchq.palisade.service.resource.model.AuditableResourceResponse;
@@ -32,16 +38,39 @@ import uk.gov.gchq.palisade.service.resource.model.ResourceRequest;
 import uk.gov.gchq.palisade.service.resource.model.ResourceResponse;
 import uk.gov.gchq.palisade.service.resource.repository.PersistenceLayer;
 import uk.gov.gchq.palisade.service.resource.stream.util.ConditionalGraph;
+import uk.gov.gchq.palisade.service.resource.stream.util.PrefetchingSource;
+import uk.gov.gchq.palisade.service.resource.stream.util.ReplayingBroadcast;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * A proxy of (wrapper around) an instance of a {@link ResourceService}.
  * This adds a cache-like behaviour to the service by persisting requests/responses in a database.
  * Additionally, this is expected to be used by an asynchronous REST streaming response, so has further considerations
  * to properly support the callback.
+ * Concurrent cache misses for the same resourceId are coalesced, such that only the first performs a call to the
+ * delegate service, with any further requests attaching to (and replaying) the in-flight results.
+ * Resource ids for which the delegate service returned no resources are held in a {@link NegativeResourceCache}, so that
+ * repeated requests for a nonexistent resource are answered without querying either persistence or the delegate.
+ * Iterators returned by the delegate are read ahead of demand on a blocking dispatcher using a {@link PrefetchingSource},
+ * so slow listing of resources overlaps with persisting and returning them.
+ * Paged requests (see {@link ResourceRequest#isPaged()}) are always served from persistence, in order of resource id,
+ * so that a client can resume listing a large set of resources from where a previous page finished.
+ * Once the persisted resources for an id are older than allowed by the {@link RefreshAheadPolicy}, they continue to be served
+ * while the delegate is walked again in the background, after which persistence is swapped over to the fresh resources.
  */
 public class ResourceServicePersistenceProxy {
     private static final Logger LOGGER = LoggerFactory.getLogger(ResourceServicePersistenceProxy.class);
@@ -49,16 +78,33 @@ public class ResourceServicePersistenceProxy {
 
     private final PersistenceLayer persistence;
     private final ResourceService delegate;
+    private final Materializer materialiser;
+    private final NegativeResourceCache negativeCache;
+    private final int prefetchBufferSize;
+    private final String prefetchDispatcher;
+    private final RefreshAheadPolicy refreshPolicy;
+    private final int replayBufferSize;
+    private final ConcurrentMap<String, ReplayingBroadcast<AuditableResourceResponse>> inFlightRequests = new ConcurrentHashMap<>();
 
     /**
      * Construct a new instance of the proxy
      *
-     * @param persistence a {@link PersistenceLayer} for persisting resources in, as if it were a cache
-     * @param delegate    a 'real' {@link ResourceService} to delegate requests to when not found in the persistence layer
+     * @param persistence   a {@link PersistenceLayer} for persisting resources in, as if it were a cache
+     * @param delegate      a 'real' {@link ResourceService} to delegate requests to when not found in the persistence layer
+     * @param materialiser  the Akka {@link Materializer} used to run calls to the delegate that are shared between concurrent requests
+     * @param negativeCache a {@link NegativeResourceCache} of resource ids for which the delegate returned no resources
+     * @param properties    the {@link ResourceServiceConfigProperties} containing the prefetch, refresh-ahead and replay settings
      */
-    public ResourceServicePersistenceProxy(final PersistenceLayer persistence, final ResourceService delegate) {
+    public ResourceServicePersistenceProxy(final PersistenceLayer persistence, final ResourceService delegate, final Materializer materialiser,
+                                           final NegativeResourceCache negativeCache, final ResourceServiceConfigProperties properties) {
         this.persistence = persistence;
         this.delegate = delegate;
+        this.materialiser = materialiser;
+        this.negativeCache = negativeCache;
+        this.prefetchBufferSize = properties.getPrefetchBufferSize();
+        this.prefetchDispatcher = properties.getPrefetchDispatcher();
+        this.refreshPolicy = new RefreshAheadPolicy(properties.getRefreshAfter(), properties.getRefreshMaximumSize());
+        this.replayBufferSize = properties.getReplayBufferSize();
     }
 
     /**
@@ -78,51 +124,40 @@ public class ResourceServicePersistenceProxy {
      * @return a {@link Source} of {@link LeafResource}s associated with the resourceId
      */
     public Source<AuditableResourceResponse, NotUsed> getResourcesById(final ResourceRequest request) {
+        if (request.isPaged()) {
+            return getPageOfResourcesById(request);
+        }
+
+        // If another request is already walking the delegate for this id, join it rather than going to persistence
+        // Persistence may have been marked complete for this id before all of the resources have been persisted
+        Optional<ReplayingBroadcast<AuditableResourceResponse>> inFlight = Optional.ofNullable(inFlightRequests.get(request.resourceId));
+        if (inFlight.isPresent()) {
+            LOGGER.info("Joining in-flight request for resourcesById for id {}", request.getResourceId());
+            LOGGER.debug(REQUEST_WAS, request);
+            return joinInFlightRequest(request, inFlight.get());
+        }
+
+        // If the delegate recently returned nothing for this id, replay the same (empty or error) response
+        Optional<List<AuditableResourceResponse>> unknown = negativeCache.get(request.resourceId);
+        if (unknown.isPresent()) {
+            LOGGER.info("Negative cache hit for resourcesById for id {}", request.getResourceId());
+            LOGGER.debug(REQUEST_WAS, request);
+            return Source.from(unknown.get())
+                    .map(shared -> readdressResponse(request, shared));
+        }
+
         LOGGER.info("Trying to get resourcesById for id {} from persistence", request.getResourceId());
         LOGGER.debug(REQUEST_WAS, request);
         // Try first from persistence
         return Source.completionStageSource(persistence.getResourcesById(request.resourceId)
                 .thenApply(persistenceHit -> persistenceHit
-                        // If persistence returned a "cache hit"
-                        .map(persisted -> persisted
-                                // Wrap with a success
-                                .map(leafResource -> AuditableResourceResponse.Builder.create()
-                                        .withResourceResponse(ResourceResponse.Builder.create(request)
-                                                .withResource(leafResource)))
-                                // Persistence threw an error, create an AuditErrorMessage
-                                .recover(new PFBuilder<Throwable, AuditableResourceResponse>()
-                                        .match(Exception.class, ex -> AuditableResourceResponse.Builder.create()
-                                                .withAuditErrorMessage(AuditErrorMessage.Builder.create(request,
-                                                        Collections.singletonMap(ExceptionSource.ATTRIBUTE_KEY, ExceptionSource.PERSISTENCE.toString()))
-                                                        .withError(new NoSuchResourceException("Exception thrown while querying persistence", ex)))).build())
-                        )
-                        // If persistence is empty, a "cache miss"
-                        .orElseGet(() -> Source.fromIterator(() -> this.delegateGetResourcesById(request))
-
-                                // Catch any errors that where thrown from the delegateGetResourcesById
-                                .recover(new PFBuilder<Throwable, AuditableResourceResponse>()
-                                        .match(Exception.class, ex -> AuditableResourceResponse.Builder.create()
-                                                .withAuditErrorMessage(AuditErrorMessage.Builder.create(request,
-                                                        Collections.singletonMap(ExceptionSource.ATTRIBUTE_KEY, ExceptionSource.SERVICE.toString()))
-                                                        .withError(new NoSuchResourceException("Exception thrown while querying service implementation", ex)))).build())
-
-
-                                // Persist newly-discovered resources before they are returned, return errors without persisting
-                                .via(ConditionalGraph.map((AuditableResourceResponse response) -> {
-                                    if (response.getAuditErrorMessage() != null) {
-                                        // If we get an error from the service, don't persist the error response
-                                        return 0;
-                                    } else {
-                                        // If we get a resource from the service, do persist
-                                        return 1;
-                                    }
-                                }, Map.of(
-                                        // Errors are untouched and returned for auditing
-                                        0, Flow.create(),
-                                        // Resources are persisted
-                                        1, persistNewResources(request)
-                                )))
-                        )
+                        // If persistence returned a "cache hit", refreshing in the background if the persisted resources are old
+                        .map((Source<LeafResource, NotUsed> persisted) -> {
+                            refreshAheadIfDue(request);
+                            return wrapPersistedResources(request, persisted);
+                        })
+                        // If persistence is empty, a "cache miss", so start (or join) a single shared request to the delegate
+                        .orElseGet(() -> startOrJoinInFlightRequest(request))
                 ))
                 .map((AuditableResourceResponse resource) -> {
                     LOGGER.debug("Got resource {} for id {}", resource, request.getResourceId());
@@ -132,13 +167,350 @@ public class ResourceServicePersistenceProxy {
                 .mapMaterializedValue(ignored -> NotUsed.notUsed());
     }
 
+    /**
+     * Start a new request to the delegate for this resourceId, or join one already in-flight.
+     * Only one request for a given resourceId will walk the delegate and persist the results at a time,
+     * any concurrent requests will receive a replay of the same results.
+     * Once the walk has completed, the resourceId is removed from the in-flight requests, and subsequent requests
+     * will be served by persistence.
+     *
+     * @param request the {@link ResourceRequest} that contains the resourceId used to retrieve resources
+     * @return a {@link Source} of {@link AuditableResourceResponse}s for this request
+     */
+    private Source<AuditableResourceResponse, NotUsed> startOrJoinInFlightRequest(final ResourceRequest request) {
+        return joinInFlightRequest(request, startOrGetInFlightRequest(request));
+    }
+
+    /**
+     * Start a new request to the delegate for this resourceId, or get the one already in-flight, without subscribing to it
+     *
+     * @param request the {@link ResourceRequest} that contains the resourceId used to retrieve resources
+     * @return the shared results of the in-flight request
+     */
+    private ReplayingBroadcast<AuditableResourceResponse> startOrGetInFlightRequest(final ResourceRequest request) {
+        ReplayingBroadcast<AuditableResourceResponse> inFlight = inFlightRequests.computeIfAbsent(request.resourceId, (String resourceId) -> {
+            LOGGER.info("Starting new request to delegate for resourcesById for id {}", resourceId);
+            refreshPolicy.recordWalk(resourceId);
+            return ReplayingBroadcast.runWith(recordUnknownResourceId(request, delegateAndPersistResourcesById(request)), materialiser, replayBufferSize);
+        });
+        // Once the walk is finished (and persisted), let persistence serve any further requests
+        inFlight.completion().whenComplete((done, ex) -> inFlightRequests.remove(request.resourceId, inFlight));
+        return inFlight;
+    }
+
+    /**
+     * If the persisted resources for this resourceId are due to be refreshed, walk the delegate again in the background.
+     * Persistence continues to serve the old resources while the walk is running. Once the walk has completed without
+     * errors, the fresh resources are served to any further requests for this resourceId (as if they were in-flight)
+     * while persistence is swapped over to them.
+     * Requests for resource ids under this one, and requests already reading from persistence when the swap starts,
+     * are still served by persistence, so may see a mix of old and fresh resources until the swap has finished.
+     * <p>
+     * The swap only happens after a walk known to have succeeded. If the walk returned any errors, or failed, persistence
+     * is left as it was, to be refreshed again later.
+     * The fresh resources are held in memory until the swap, so a walk returning more resources than the replay buffer
+     * size is abandoned, and resource ids that large are never refreshed-ahead.
+     *
+     * @param request the {@link ResourceRequest} that was served from persistence
+     */
+    private void refreshAheadIfDue(final ResourceRequest request) {
+        if (!refreshPolicy.claimIfDue(request.resourceId)) {
+            return;
+        }
+        LOGGER.info("Refreshing persisted resourcesById for id {} in the background", request.getResourceId());
+        PrefetchingSource.fromIterator(() -> this.delegateGetResourcesById(request), prefetchBufferSize, prefetchDispatcher)
+                // Stop walking as soon as there are too many resources to hold in memory
+                .take(replayBufferSize + 1L)
+                .runWith(Sink.seq(), materialiser)
+                .whenComplete((List<AuditableResourceResponse> responses, Throwable ex) -> {
+                    if (ex != null || responses.stream().anyMatch(response -> response.getAuditErrorMessage() != null)) {
+                        LOGGER.warn("Failed to refresh resourcesById for id {}, continuing to serve persisted resources", request.getResourceId(), ex);
+                        return;
+                    }
+                    if (responses.size() > replayBufferSize) {
+                        LOGGER.info("More than {} resources for id {}, too many to refresh ahead, continuing to serve persisted resources",
+                                replayBufferSize, request.getResourceId());
+                        return;
+                    }
+                    List<LeafResource> leafResources = responses.stream()
+                            .map(response -> response.getResourceResponse().getResource())
+                            .collect(Collectors.toList());
+                    leafResources.forEach(leafResource -> negativeCache.invalidate(leafResource.getId()));
+                    // Serve the fresh resources while persistence is swapped over, only finishing once the swap is complete
+                    Source<AuditableResourceResponse, NotUsed> swap = Source.from(responses)
+                            .concat(Source.lazyCompletionStageSource(() -> persistence.replaceResourcesById(request.resourceId, leafResources)
+                                    .handle((Void ignored, Throwable swapEx) -> Optional.ofNullable(swapEx))
+                                    .thenCompose((Optional<Throwable> failure) -> failure
+                                            .map((Throwable swapEx) -> {
+                                                // Persistence may be part-way between the old and fresh resources, so the next request must walk the delegate
+                                                LOGGER.error("Failed to replace persisted resourcesById for id {}, invalidating", request.getResourceId(), swapEx);
+                                                return persistence.invalidateResourceById(request.resourceId);
+                                            })
+                                            .orElseGet(() -> {
+                                                LOGGER.info("Refreshed persisted resourcesById for id {} with {} resources", request.getResourceId(), leafResources.size());
+                                                return CompletableFuture.completedFuture(null);
+                                            }))
+                                    .thenApply(ignored -> Source.<AuditableResourceResponse>empty())));
+                    // If a walk of the delegate is already in-flight for this id (eg. it was invalidated meanwhile), let that one win
+                    ReplayingBroadcast<AuditableResourceResponse> inFlight = inFlightRequests.computeIfAbsent(request.resourceId,
+                            (String resourceId) -> ReplayingBroadcast.runWith(swap, materialiser, replayBufferSize));
+                    inFlight.completion().whenComplete((done, swapEx) -> inFlightRequests.remove(request.resourceId, inFlight));
+                });
+    }
+
+    /**
+     * Get a single page of resources for a resourceId, in order of resource id, starting after the request's resumeAfter id.
+     * The delegate does not return resources in any order, so on a persistence miss the whole resourceId is walked (and
+     * persisted) before the page is served from persistence.
+     * Only the resources for this page are returned to the client, however large the whole listing is.
+     *
+     * @param request the paged {@link ResourceRequest} that contains the resourceId used to retrieve resources
+     * @return a {@link Source} of at most the request's limit of {@link AuditableResourceResponse}s
+     */
+    private Source<AuditableResourceResponse, NotUsed> getPageOfResourcesById(final ResourceRequest request) {
+        Optional<List<AuditableResourceResponse>> unknown = negativeCache.get(request.resourceId);
+        if (unknown.isPresent()) {
+            LOGGER.info("Negative cache hit for page of resourcesById for id {}", request.getResourceId());
+            LOGGER.debug(REQUEST_WAS, request);
+            return Source.from(unknown.get())
+                    .map(shared -> readdressResponse(request, shared));
+        }
+
+        LOGGER.info("Trying to get page of resourcesById for id {} after {} from persistence", request.getResourceId(), request.getResumeAfter());
+        LOGGER.debug(REQUEST_WAS, request);
+        // If another request is already walking the delegate for this id, wait for it to finish before going to persistence
+        // Persistence may have been marked complete for this id before all of the resources have been persisted
+        CompletionStage<Done> inFlightFinished = Optional.ofNullable(inFlightRequests.get(request.resourceId))
+                .map(inFlight -> inFlight.completion().handle((Done done, Throwable ex) -> Done.done()))
+                .orElseGet(() -> CompletableFuture.completedFuture(Done.done()));
+        Source<AuditableResourceResponse, NotUsed> page = Source.completionStageSource(inFlightFinished
+                .thenCompose(ignored -> persistence.getResourcesById(request.resourceId, request.getResumeAfter()))
+                .thenCompose(persistenceHit -> persistenceHit
+                        .map(persisted -> CompletableFuture.completedFuture(wrapPersistedResources(request, persisted)))
+                        // If persistence is empty, a "cache miss", so wait for a (single, shared) walk of the delegate to complete
+                        .orElseGet(() -> {
+                            ReplayingBroadcast<AuditableResourceResponse> inFlight = startOrGetInFlightRequest(request);
+                            return inFlight.completion()
+                                    .handle((Done done, Throwable ex) -> Done.done())
+                                    .thenCompose(ignored -> persistence.getResourcesById(request.resourceId, request.getResumeAfter()))
+                                    .thenApply(persistenceRetry -> persistenceRetry
+                                            .map(persisted -> wrapPersistedResources(request, persisted))
+                                            // If still not persisted, the walk must have failed, so return only the errors from the walk
+                                            .orElseGet(() -> joinInFlightRequest(request, inFlight)
+                                                    .filter(response -> response.getAuditErrorMessage() != null)))
+                                    .toCompletableFuture();
+                        })))
+                .mapMaterializedValue(ignored -> NotUsed.notUsed());
+        return Optional.ofNullable(request.getLimit())
+                .map(page::take)
+                .orElse(page);
+    }
+
+    /**
+     * Wrap each resource from persistence as a response to this request, or an error if persistence failed
+     *
+     * @param request   the {@link ResourceRequest} that contains the resourceId used to retrieve resources
+     * @param persisted the {@link LeafResource}s returned by persistence
+     * @return a {@link Source} of {@link AuditableResourceResponse}s for this request
+     */
+    private static Source<AuditableResourceResponse, NotUsed> wrapPersistedResources(final ResourceRequest request, final Source<LeafResource, NotUsed> persisted) {
+        return persisted
+                // Wrap with a success
+                .map(leafResource -> AuditableResourceResponse.Builder.create()
+                        .withResourceResponse(ResourceResponse.Builder.create(request)
+                                .withResource(leafResource)))
+                // Persistence threw an error, create an AuditErrorMessage
+                .recover(new PFBuilder<Throwable, AuditableResourceResponse>()
+                        .match(Exception.class, ex -> AuditableResourceResponse.Builder.create()
+                                .withAuditErrorMessage(AuditErrorMessage.Builder.create(request,
+                                        Collections.singletonMap(ExceptionSource.ATTRIBUTE_KEY, ExceptionSource.PERSISTENCE.toString()))
+                                        .withError(new NoSuchResourceException("Exception thrown while querying persistence", ex)))).build());
+    }
+
+    /**
+     * Subscribe to an in-flight request, re-addressing each response to this request's user and context.
+     * If the in-flight request has already returned more resources than can be replayed, this request makes its own
+     * call to the delegate instead, without persisting the results (the in-flight request is already persisting them).
+     *
+     * @param request  the {@link ResourceRequest} that is joining the in-flight request
+     * @param inFlight the shared results of the in-flight request
+     * @return a {@link Source} of {@link AuditableResourceResponse}s for this request
+     */
+    private Source<AuditableResourceResponse, NotUsed> joinInFlightRequest(final ResourceRequest request,
+                                                                           final ReplayingBroadcast<AuditableResourceResponse> inFlight) {
+        Supplier<Source<AuditableResourceResponse, NotUsed>> fallback = () -> {
+            LOGGER.info("In-flight request for resourcesById for id {} can no longer be replayed, calling delegate", request.getResourceId());
+            return delegateResourcesById(request);
+        };
+        return inFlight.subscribe(fallback)
+                .map(shared -> readdressResponse(request, shared));
+    }
+
+    /**
+     * Re-address a response created for another request to this request's user and context
+     *
+     * @param request the {@link ResourceRequest} to re-address the response to
+     * @param shared  the response created for another request for the same resourceId
+     * @return an equivalent {@link AuditableResourceResponse} for this request
+     */
+    private static AuditableResourceResponse readdressResponse(final ResourceRequest request, final AuditableResourceResponse shared) {
+        return Optional.ofNullable(shared.getAuditErrorMessage())
+                // Errors are re-created for this request, keeping the same error and attributes
+                .map(audit -> AuditableResourceResponse.Builder.create()
+                        .withAuditErrorMessage(AuditErrorMessage.Builder.create(request, audit.getAttributes())
+                                .withError(audit.getError())))
+                // Resources are re-wrapped for this request
+                .orElseGet(() -> AuditableResourceResponse.Builder.create()
+                        .withResourceResponse(ResourceResponse.Builder.create(request)
+                                .withResource(shared.getResourceResponse().getResource())));
+    }
+
+    /**
+     * Watch the responses from the delegate, and if no resources were returned (and any errors were because the resource
+     * could not be found), record the resourceId in the {@link NegativeResourceCache} along with the errors returned.
+     * Any other errors are assumed to be transient, and are not cached.
+     * The returned {@link Source} should be materialised only once, as it is in {@link #startOrJoinInFlightRequest}.
+     *
+     * @param request  the {@link ResourceRequest} that contains the resourceId used to retrieve resources
+     * @param upstream the responses from the delegate for this request
+     * @return the same responses, unchanged
+     */
+    private Source<AuditableResourceResponse, NotUsed> recordUnknownResourceId(final ResourceRequest request,
+                                                                               final Source<AuditableResourceResponse, NotUsed> upstream) {
+        // The errors seen so far, or empty once a response has been seen that means the id cannot be cached as unknown
+        AtomicReference<Optional<List<AuditableResourceResponse>>> unknownErrors = new AtomicReference<>(Optional.of(List.of()));
+        return upstream
+                .map((AuditableResourceResponse response) -> {
+                    unknownErrors.updateAndGet(errors -> errors
+                            .filter(ignored -> isUnknownResourceError(response))
+                            .map((List<AuditableResourceResponse> list) -> {
+                                List<AuditableResourceResponse> appended = new ArrayList<>(list);
+                                appended.add(response);
+                                return appended;
+                            }));
+                    return response;
+                })
+                // Once the upstream has finished, but before the stream completes, cache the id if it was unknown
+                // This way the id is always cached before it is removed from the in-flight requests
+                .concat(Source.lazySource(() -> {
+                    unknownErrors.get().ifPresent((List<AuditableResourceResponse> errors) -> {
+                        LOGGER.info("Delegate returned no resources for id {}, caching as unknown", request.getResourceId());
+                        negativeCache.put(request.resourceId, errors);
+                    });
+                    return Source.<AuditableResourceResponse>empty();
+                }));
+    }
+
+    private static boolean isUnknownResourceError(final AuditableResourceResponse response) {
+        // Errors from the delegate are wrapped, so check the cause for whether the resource itself could not be found
+        return Optional.ofNullable(response.getAuditErrorMessage())
+                .map(AuditErrorMessage::getError)
+                .map(Throwable::getCause)
+                .filter(NoSuchResourceException.class::isInstance)
+                .isPresent();
+    }
+
+    /**
+     * Get resources from the delegate, persisting any successful responses, for a persistence "cache miss".
+     * If the delegate returned any errors, the persisted resources may be only part of the full set, so the resourceId,
+     * along with every resource id between it and the persisted resources (each of which persistence marks complete as
+     * the resources are persisted), is marked incomplete once the walk has finished, and the next request will call the
+     * delegate again.
+     *
+     * @param request the {@link ResourceRequest} that contains the resourceId used to retrieve resources
+     * @return a {@link Source} of {@link AuditableResourceResponse}s from the delegate service
+     */
+    private Source<AuditableResourceResponse, NotUsed> delegateAndPersistResourcesById(final ResourceRequest request) {
+        AtomicBoolean failed = new AtomicBoolean(false);
+        // Every parent resource id persistence may mark complete for this walk, to be marked incomplete again if the walk fails
+        Set<String> persistedIds = ConcurrentHashMap.newKeySet();
+        persistedIds.add(request.resourceId);
+        return delegateResourcesById(request)
+                .map((AuditableResourceResponse response) -> {
+                    if (response.getAuditErrorMessage() != null) {
+                        failed.set(true);
+                    } else {
+                        collectIdsUpToRootId(request.resourceId, response.getResourceResponse().getResource(), persistedIds);
+                    }
+                    return response;
+                })
+                // Persist newly-discovered resources before they are returned, return errors without persisting
+                .via(ConditionalGraph.map((AuditableResourceResponse response) -> {
+                    if (response.getAuditErrorMessage() != null) {
+                        // If we get an error from the service, don't persist the error response
+                        return 0;
+                    } else {
+                        // If we get a resource from the service, do persist
+                        return 1;
+                    }
+                }, Map.of(
+                        // Errors are untouched and returned for auditing
+                        0, Flow.create(),
+                        // Resources are persisted
+                        1, persistNewResources(request)
+                )))
+                // Once the walk has finished, but before the stream completes, make sure a failed walk is never served from persistence
+                .concat(Source.lazyCompletionStageSource(() -> {
+                    if (!failed.get()) {
+                        return CompletableFuture.completedFuture(Source.<AuditableResourceResponse>empty());
+                    }
+                    LOGGER.warn("Delegate returned errors for resourcesById for id {}, invalidating {} persisted resource ids", request.getResourceId(), persistedIds.size());
+                    return CompletableFuture.allOf(persistedIds.stream()
+                            .map(persistence::invalidateResourceById)
+                            .toArray(CompletableFuture[]::new))
+                            .handle((Void ignored, Throwable ex) -> {
+                                if (ex != null) {
+                                    LOGGER.error("Failed to invalidate resourcesById for id {}", request.getResourceId(), ex);
+                                }
+                                return Source.<AuditableResourceResponse>empty();
+                            });
+                }));
+    }
+
+    /**
+     * Collect the ids of each parent of a resource, up to (but not above) the root resource id of a request.
+     * These are the ids persistence marks complete when persisting the resource by id, other than the resource itself,
+     * which is still complete even if the walk failed.
+     * Once an already-collected parent is found, all of its further parents have also already been collected.
+     *
+     * @param rootResourceId the resource id of the request, which must already be in the set of ids
+     * @param resource       a resource returned for the request
+     * @param ids            the set of ids to add to
+     */
+    private static void collectIdsUpToRootId(final String rootResourceId, final Resource resource, final Set<String> ids) {
+        Resource current = resource;
+        while (!current.getId().equals(rootResourceId) && current instanceof ChildResource) {
+            current = ((ChildResource) current).getParent();
+            if (!ids.add(current.getId())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get resources from the delegate, without persisting them
+     *
+     * @param request the {@link ResourceRequest} that contains the resourceId used to retrieve resources
+     * @return a {@link Source} of {@link AuditableResourceResponse}s from the delegate service
+     */
+    private Source<AuditableResourceResponse, NotUsed> delegateResourcesById(final ResourceRequest request) {
+        return PrefetchingSource.fromIterator(() -> this.delegateGetResourcesById(request), prefetchBufferSize, prefetchDispatcher)
+
+                // Catch any errors that where thrown from the delegateGetResourcesById
+                .recover(new PFBuilder<Throwable, AuditableResourceResponse>()
+                        .match(Exception.class, ex -> AuditableResourceResponse.Builder.create()
+                                .withAuditErrorMessage(AuditErrorMessage.Builder.create(request,
+                                        Collections.singletonMap(ExceptionSource.ATTRIBUTE_KEY, ExceptionSource.SERVICE.toString()))
+                                        .withError(new NoSuchResourceException("Exception thrown while querying service implementation", ex)))).build());
+    }
+
     /**
      * Delegate call out to the 'real' resource-service as there was a cache miss
      *
      * @param request the the {@link ResourceRequest} that contains the resourceId used to retrieve resources
-     * @return an {@link Iterator} of auditable responses, containing {@link LeafResource}s associated with the resourceId
+     * @return a {@link FunctionalIterator} of auditable responses, containing {@link LeafResource}s associated with the resourceId
      */
-    private Iterator<AuditableResourceResponse> delegateGetResourcesById(final ResourceRequest request) {
+    private FunctionalIterator<AuditableResourceResponse> delegateGetResourcesById(final ResourceRequest request) {
         try {
             // Try to call out to implemented delegate service
             return FunctionalIterator.fromIterator(delegate.getResourcesById(request.resourceId))
@@ -157,11 +529,11 @@ public class ResourceServicePersistenceProxy {
         } catch (RuntimeException ex) {
             LOGGER.error("Exception encountered connecting to the service", ex);
             // If the initial request to the service fails, audit as a service error rather than a request error
-            return Collections.singleton(AuditableResourceResponse.Builder.create()
+            return FunctionalIterator.fromIterator(Collections.singleton(AuditableResourceResponse.Builder.create()
                     .withAuditErrorMessage(AuditErrorMessage.Builder.create(request,
                             Collections.singletonMap(ExceptionSource.ATTRIBUTE_KEY, ExceptionSource.SERVICE.toString()))
                             .withError(new NoSuchResourceException(ex.getMessage(), ex))))
-                    .iterator();
+                    .iterator());
         }
     }
 
@@ -178,8 +550,10 @@ public class ResourceServicePersistenceProxy {
         LOGGER.debug(REQUEST_WAS, request);
         return Source.completionStageSource(persistence.getResourcesByType(type)
                 .thenApply(persistenceHit -> persistenceHit
-                        .orElseGet(() -> Source.fromIterator(() -> delegate.getResourcesByType(type))
-                                .via(persistence.withPersistenceByType(type)))
+                        .orElseGet(() -> PrefetchingSource.fromIterator(() -> FunctionalIterator.fromIterator(delegate.getResourcesByType(type)),
+                                        prefetchBufferSize, prefetchDispatcher)
+                                .via(persistence.withPersistenceByType(type))
+                                .via(invalidateUnknownResourceIds()))
                         // Wrap with a success
                         .map(leafResource -> AuditableResourceResponse.Builder.create()
                                 .withResourceResponse(ResourceResponse.Builder.create(request)
@@ -206,8 +580,10 @@ public class ResourceServicePersistenceProxy {
         LOGGER.debug(REQUEST_WAS, request);
         return Source.completionStageSource(persistence.getResourcesBySerialisedFormat(serialisedFormat)
                 .thenApply(persistenceHit -> persistenceHit
-                        .orElseGet(() -> Source.fromIterator(() -> delegate.getResourcesBySerialisedFormat(serialisedFormat))
-                                .via(persistence.withPersistenceBySerialisedFormat(serialisedFormat)))
+                        .orElseGet(() -> PrefetchingSource.fromIterator(() -> FunctionalIterator.fromIterator(delegate.getResourcesBySerialisedFormat(serialisedFormat)),
+                                        prefetchBufferSize, prefetchDispatcher)
+                                .via(persistence.withPersistenceBySerialisedFormat(serialisedFormat))
+                                .via(invalidateUnknownResourceIds()))
                         // Wrap with a success
                         .map(leafResource -> AuditableResourceResponse.Builder.create()
                                 .withResourceResponse(ResourceResponse.Builder.create(request)
@@ -230,6 +606,7 @@ public class ResourceServicePersistenceProxy {
                 .map(ResourceResponse::getResource)
                 // Persist the leaf resource
                 .via(persistence.withPersistenceById(request.resourceId))
+                .via(invalidateUnknownResourceIds())
                 .map(leafResource -> AuditableResourceResponse.Builder.create()
                         .withResourceResponse(ResourceResponse.Builder.create(request)
                                 .withResource(leafResource)))
@@ -238,4 +615,13 @@ public class ResourceServicePersistenceProxy {
                     return resource;
                 });
     }
+
+    private Flow<LeafResource, LeafResource, NotUsed> invalidateUnknownResourceIds() {
+        // Each persisted resource now exists, so any cached unknown ids it is under are out-of-date
+        return Flow.<LeafResource>create()
+                .map((LeafResource leafResource) -> {
+                    negativeCache.invalidate(leafResource.getId());
+                    return leafResource;
+                });
+    }
 }
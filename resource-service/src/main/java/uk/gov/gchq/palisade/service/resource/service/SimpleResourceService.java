@@ -22,20 +22,16 @@ import org.slf4j.LoggerFactory;
 import uk.gov.gchq.palisade.resource.LeafResource;
 import uk.gov.gchq.palisade.resource.Resource;
 import uk.gov.gchq.palisade.resource.impl.SimpleConnectionDetail;
-import uk.gov.gchq.palisade.service.resource.exception.NoSuchResourceException;
-import uk.gov.gchq.palisade.service.resource.service.FunctionalIterator.PlainIterator;
 import uk.gov.gchq.palisade.util.AbstractResourceBuilder;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 
 /**
  * The Simple implementation of type {@link ResourceService}
@@ -45,9 +41,10 @@ public class SimpleResourceService implements ResourceService {
     private final String dataServiceName;
     private final String resourceType;
     private final Map<String, String> formatConversion;
+    private final ParallelFileWalker fileWalker;
 
     /**
-     * Instantiates a new Simple resource service.
+     * Instantiates a new Simple resource service, walking directories with one thread per available processor.
      *
      * @param dataServiceName  the data service name used in the connection detail to contain the location,
      *                         either URL or hostname for the data service associated with this resource
@@ -57,29 +54,29 @@ public class SimpleResourceService implements ResourceService {
      * @param formatConversion Map of a file extension to a resource serialised format
      */
     public SimpleResourceService(final String dataServiceName, final String resourceType, final Map<String, String> formatConversion) {
+        this(dataServiceName, resourceType, formatConversion, new ParallelFileWalker(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Instantiates a new Simple resource service.
+     *
+     * @param dataServiceName  the data service name used in the connection detail to contain the location,
+     *                         either URL or hostname for the data service associated with this resource
+     * @param resourceType     the type of resource returned by the service, a string representation of a
+     *                         java class - the class itself does not need to be available to the service,
+     *                         as it is only passed around as a String
+     * @param formatConversion Map of a file extension to a resource serialised format
+     * @param fileWalker       the {@link ParallelFileWalker} used to walk directory trees, which remains owned by the caller
+     */
+    public SimpleResourceService(final String dataServiceName, final String resourceType, final Map<String, String> formatConversion, final ParallelFileWalker fileWalker) {
         this.dataServiceName = dataServiceName;
         this.resourceType = resourceType;
         this.formatConversion = formatConversion;
+        this.fileWalker = fileWalker;
     }
 
-    @SuppressWarnings("java:S2095") // resource is closed
-    private static FunctionalIterator<File> filesOf(final Path path) {
-        try {
-            Stream<Path> filesWalk = Files.walk(path);
-            return new StreamClosingIterator<>(filesWalk)
-                    .map(Path::toFile)
-                    .map((File file) -> {
-                        try {
-                            return file.getCanonicalFile();
-                        } catch (IOException e) {
-                            LOGGER.warn("Failed to get canonical file", e);
-                            return file.getAbsoluteFile();
-                        }
-                    })
-                    .filter(File::isFile);
-        } catch (IOException ex) {
-            throw new NoSuchResourceException("Failed to walk path " + path, ex);
-        }
+    private FunctionalIterator<File> filesOf(final Path path) {
+        return this.fileWalker.walk(path);
     }
 
     private LeafResource asFileResource(final File file) {
@@ -149,25 +146,4 @@ public class SimpleResourceService implements ResourceService {
     public Boolean addResource(final LeafResource leafResource) {
         return false;
     }
-
-    /**
-     * A {@link FunctionalIterator} implementation wrapping a stream.
-     * Avoid using unless essential, which in this case is because of {@link Files#walk}.
-     *
-     * @param <T> iterator and stream type
-     */
-    private static class StreamClosingIterator<T> extends PlainIterator<T> {
-
-        private final Stream<T> closeableStream;
-
-        StreamClosingIterator(final Stream<T> stream) {
-            super(stream.iterator());
-            this.closeableStream = stream;
-        }
-
-        @Override
-        public void close() {
-            this.closeableStream.close();
-        }
-    }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.stream.util;
+
+import akka.NotUsed;
+import akka.japi.function.Creator;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.service.resource.service.FunctionalIterator;
+
+import java.util.Optional;
+
+/**
+ * An asynchronous, prefetching adapter from a (blocking) {@link FunctionalIterator} to a {@link Source}, used in the
+ * {@link uk.gov.gchq.palisade.service.resource.service.ResourceServicePersistenceProxy} to read from the delegate service.
+ * Unlike {@link Source#fromIterator}, the iterator's {@code hasNext} and {@code next} are called on a dedicated blocking
+ * dispatcher, never on the dispatcher running the rest of the stream.
+ * The iterator is drained ahead of demand into a bounded buffer, so a slow backend (e.g. listing a filesystem) overlaps
+ * with any slow downstream stages (e.g. persistence and kafka), while backpressure stops it from running unboundedly ahead.
+ * The iterator is closed once exhausted, if the stream fails, or if the stream is cancelled by the downstream.
+ */
+public final class PrefetchingSource {
+    /**
+     * Akka's default dispatcher for blocking IO, separate from the default dispatcher used by the rest of the stream
+     */
+    public static final String BLOCKING_IO_DISPATCHER = "akka.actor.default-blocking-io-dispatcher";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingSource.class);
+
+    private PrefetchingSource() {
+        // Static utility class
+    }
+
+    /**
+     * Create a {@link Source} reading from the iterator on Akka's default blocking IO dispatcher
+     *
+     * @param create     a factory for the iterator, called once the source is materialised (and on the blocking dispatcher)
+     * @param bufferSize the maximum number of elements to read ahead of downstream demand
+     * @param <T>        the type of the elements of the iterator
+     * @return a {@link Source} of all elements of the iterator
+     */
+    public static <T> Source<T, NotUsed> fromIterator(final Creator<FunctionalIterator<T>> create, final int bufferSize) {
+        return fromIterator(create, bufferSize, BLOCKING_IO_DISPATCHER);
+    }
+
+    /**
+     * Create a {@link Source} reading from the iterator on the given dispatcher
+     *
+     * @param create     a factory for the iterator, called once the source is materialised (and on the given dispatcher)
+     * @param bufferSize the maximum number of elements to read ahead of downstream demand
+     * @param dispatcher the name of the (blocking) dispatcher to call the iterator on
+     * @param <T>        the type of the elements of the iterator
+     * @return a {@link Source} of all elements of the iterator
+     */
+    public static <T> Source<T, NotUsed> fromIterator(final Creator<FunctionalIterator<T>> create, final int bufferSize, final String dispatcher) {
+        return Source.unfoldResource(
+                create,
+                (FunctionalIterator<T> iterator) -> iterator.hasNext() ? Optional.of(iterator.next()) : Optional.<T>empty(),
+                (FunctionalIterator<T> iterator) -> {
+                    LOGGER.debug("Closing prefetched iterator {}", iterator);
+                    iterator.close();
+                })
+                // Run the iterator on its own dispatcher, with an async boundary so reading and the downstream stages run concurrently
+                .async(dispatcher)
+                // Read ahead of demand, up to the buffer size
+                .buffer(bufferSize, OverflowStrategy.backpressure());
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.stream.util;
+
+import akka.Done;
+import akka.NotUsed;
+import akka.japi.Pair;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * A broadcast hub with replay, used in the {@link uk.gov.gchq.palisade.service.resource.service.ResourceServicePersistenceProxy}.
+ * The upstream {@link Source} is materialised exactly once, and the elements it emits are kept in a bounded replay buffer.
+ * Any number of subscribers may attach while the upstream is running (or after it has finished), each receiving every
+ * element from the start of the upstream, followed by any further elements as they arrive.
+ * Unlike Akka's {@link akka.stream.javadsl.BroadcastHub}, late subscribers do not miss elements emitted before they attached.
+ * <p>
+ * The replay buffer holds at most {@code maxBufferSize} elements. Once it is full, the oldest element is discarded for each
+ * new element, but only once every attached subscriber has received it, so the upstream is backpressured by the slowest subscriber.
+ * While no subscriber is attached, the upstream keeps running (so that, for example, a walk of the delegate is still
+ * fully persisted), discarding the oldest elements.
+ * Once any element has been discarded, the start of the upstream can no longer be replayed, so any later subscriber
+ * is given its fallback instead. A subscriber that cancels stops holding back the upstream.
+ *
+ * @param <T> the type of the elements broadcast to subscribers
+ */
+public final class ReplayingBroadcast<T> {
+    /**
+     * The default maximum number of elements held in the replay buffer
+     */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 10_000;
+
+    private final Object lock = new Object();
+    // The replay buffer, holding the elements with indexes (from the start of the upstream) bufferStart until bufferEnd
+    private final Object[] replayBuffer;
+    private final Set<Subscriber> subscribers = new HashSet<>();
+    private final CompletionStage<Done> completion;
+    private long bufferStart;
+    private long bufferEnd;
+    private CompletableFuture<Void> nextElement = new CompletableFuture<>();
+    private CompletableFuture<Void> bufferSpace;
+    private boolean finished;
+    private Throwable failure;
+
+    private static final class Subscriber {
+        // The index (from the start of the upstream) of the next element this subscriber will receive
+        private long position;
+    }
+
+    private ReplayingBroadcast(final Source<T, ?> upstream, final Materializer materialiser, final int maxBufferSize) {
+        if (maxBufferSize < 1) {
+            throw new IllegalArgumentException("maxBufferSize must be positive");
+        }
+        this.replayBuffer = new Object[maxBufferSize];
+        this.completion = upstream.runWith(Sink.foreachAsync(1, this::offer), materialiser);
+        this.completion.whenComplete((Done done, Throwable ex) -> this.finish(ex));
+    }
+
+    /**
+     * Materialise the upstream {@link Source} and begin buffering its elements for any subscribers, with the default buffer size
+     *
+     * @param upstream     the source to run exactly once
+     * @param materialiser the Akka {@link Materializer} used to run the upstream
+     * @param <T>          the type of the elements broadcast to subscribers
+     * @return a running {@link ReplayingBroadcast} of the upstream elements
+     */
+    public static <T> ReplayingBroadcast<T> runWith(final Source<T, ?> upstream, final Materializer materialiser) {
+        return runWith(upstream, materialiser, DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * Materialise the upstream {@link Source} and begin buffering up to the given number of its elements for any subscribers
+     *
+     * @param upstream      the source to run exactly once
+     * @param materialiser  the Akka {@link Materializer} used to run the upstream
+     * @param maxBufferSize the maximum number of elements held for replay to subscribers
+     * @param <T>           the type of the elements broadcast to subscribers
+     * @return a running {@link ReplayingBroadcast} of the upstream elements
+     */
+    public static <T> ReplayingBroadcast<T> runWith(final Source<T, ?> upstream, final Materializer materialiser, final int maxBufferSize) {
+        return new ReplayingBroadcast<>(upstream, materialiser, maxBufferSize);
+    }
+
+    /**
+     * Attach a new subscriber to this broadcast.
+     * The returned {@link Source} first replays all elements seen so far, then follows the live upstream until it completes.
+     * If the upstream failed, the returned source will fail in the same way once all replayed elements have been emitted.
+     * If the start of the upstream can no longer be replayed, the returned source fails with an {@link IllegalStateException}.
+     *
+     * @return a {@link Source} of all elements of the upstream
+     */
+    public Source<T, NotUsed> subscribe() {
+        return subscribe(() -> Source.failed(new IllegalStateException("Replay buffer has been exceeded, the upstream can no longer be replayed")));
+    }
+
+    /**
+     * Attach a new subscriber to this broadcast.
+     * The returned {@link Source} first replays all elements seen so far, then follows the live upstream until it completes.
+     * If the upstream failed, the returned source will fail in the same way once all replayed elements have been emitted.
+     * The subscriber is attached when the returned source is materialised, and if by then the start of the upstream can no
+     * longer be replayed, the fallback is materialised instead (such as a fresh, unshared, call for the same elements).
+     *
+     * @param fallback a supplier of a {@link Source} of the same elements, used if the upstream can no longer be replayed
+     * @return a {@link Source} of all elements of the upstream
+     */
+    public Source<T, NotUsed> subscribe(final Supplier<Source<T, NotUsed>> fallback) {
+        return Source.lazySource(() -> attach()
+                .map((Subscriber subscriber) -> Source.unfoldAsync(subscriber, this::next)
+                        .watchTermination((NotUsed notUsed, CompletionStage<Done> done) -> {
+                            done.whenComplete((Done ignored, Throwable ex) -> detach(subscriber));
+                            return notUsed;
+                        }))
+                .orElseGet(fallback))
+                .mapMaterializedValue(ignored -> NotUsed.notUsed());
+    }
+
+    /**
+     * Get a {@link CompletionStage} that completes once the upstream has finished, successfully or otherwise
+     *
+     * @return a {@link CompletionStage} of the upstream {@link Done} signal
+     */
+    public CompletionStage<Done> completion() {
+        return completion;
+    }
+
+    private Optional<Subscriber> attach() {
+        synchronized (lock) {
+            if (bufferStart > 0) {
+                return Optional.empty();
+            }
+            Subscriber subscriber = new Subscriber();
+            subscribers.add(subscriber);
+            return Optional.of(subscriber);
+        }
+    }
+
+    private void detach(final Subscriber subscriber) {
+        CompletableFuture<Void> space;
+        synchronized (lock) {
+            subscribers.remove(subscriber);
+            space = takeBufferSpaceSignal();
+        }
+        Optional.ofNullable(space).ifPresent(signal -> signal.complete(null));
+    }
+
+    private CompletionStage<Optional<Pair<Subscriber, T>>> next(final Subscriber subscriber) {
+        CompletableFuture<Void> space;
+        T element;
+        synchronized (lock) {
+            if (subscriber.position < bufferEnd) {
+                // Element is buffered, replay it
+                element = elementAt(subscriber.position);
+                subscriber.position++;
+                space = takeBufferSpaceSignal();
+            } else if (finished) {
+                // Subscriber has caught up with a finished upstream
+                return failure == null
+                        ? CompletableFuture.completedFuture(Optional.empty())
+                        : CompletableFuture.failedFuture(failure);
+            } else {
+                // Otherwise wait for the upstream to emit (or finish) before trying again
+                return nextElement.thenCompose(ignored -> next(subscriber));
+            }
+        }
+        Optional.ofNullable(space).ifPresent(signal -> signal.complete(null));
+        return CompletableFuture.completedFuture(Optional.of(Pair.create(subscriber, element)));
+    }
+
+    private CompletionStage<Void> offer(final T element) {
+        CompletableFuture<Void> signal;
+        synchronized (lock) {
+            if (bufferEnd - bufferStart == replayBuffer.length) {
+                // Elements are only discarded once the buffer is full, so that short upstreams can always be replayed in full
+                long slowest = subscribers.stream()
+                        .mapToLong(subscriber -> subscriber.position)
+                        .min()
+                        .orElse(bufferEnd);
+                if (slowest == bufferStart) {
+                    // The slowest subscriber has not yet received the oldest element, so wait for it before accepting this one
+                    bufferSpace = new CompletableFuture<>();
+                    return bufferSpace.thenCompose(ignored -> offer(element));
+                }
+                replayBuffer[index(bufferStart)] = null;
+                bufferStart++;
+            }
+            replayBuffer[index(bufferEnd)] = element;
+            bufferEnd++;
+            signal = nextElement;
+            nextElement = new CompletableFuture<>();
+        }
+        signal.complete(null);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(final long position) {
+        return (T) replayBuffer[index(position)];
+    }
+
+    private int index(final long position) {
+        return (int) (position % replayBuffer.length);
+    }
+
+    // Called while holding the lock, returns the signal (if any) to complete outside of the lock to wake a waiting upstream
+    private CompletableFuture<Void> takeBufferSpaceSignal() {
+        CompletableFuture<Void> space = bufferSpace;
+        bufferSpace = null;
+        return space;
+    }
+
+    private void finish(final Throwable ex) {
+        CompletableFuture<Void> signal;
+        synchronized (lock) {
+            finished = true;
+            failure = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            signal = nextElement;
+        }
+        signal.complete(null);
+    }
+}
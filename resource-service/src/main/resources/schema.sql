@@ -27,6 +27,7 @@ CREATE TABLE IF NOT EXISTS resources
     `parent_id`   VARCHAR(255),
     `resource`    VARCHAR
 );
+CREATE INDEX IF NOT EXISTS resources_parent_id_resource_id ON resources (`parent_id`, `resource_id`);
 CREATE TABLE IF NOT EXISTS types
 (
     `id`          INTEGER PRIMARY KEY AUTO_INCREMENT,
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.resource.repository;
+
+import akka.NotUsed;
+import akka.actor.ActorSystem;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.testkit.javadsl.TestKit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.gov.gchq.palisade.resource.LeafResource;
+import uk.gov.gchq.palisade.resource.impl.SimpleConnectionDetail;
+import uk.gov.gchq.palisade.util.AbstractResourceBuilder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test the functionality of the {@link IndexedPersistenceLayer}
+ */
+class IndexedPersistenceLayerTest {
+    private static final String ROOT = "file:/data/";
+    private static final LeafResource FILE_1 = leafOf("file:/data/a/1");
+    private static final LeafResource FILE_2 = leafOf("file:/data/a/2");
+    private static final LeafResource FILE_3 = leafOf("file:/data/b/3");
+
+    private ActorSystem system;
+    private Materializer materialiser;
+    private PersistenceLayer delegate;
+    private IndexedPersistenceLayer index;
+
+    private static LeafResource leafOf(final String resourceId) {
+        return ((LeafResource) AbstractResourceBuilder.create(resourceId))
+                .type("data")
+                .serialisedFormat("txt")
+                .connectionDetail(new SimpleConnectionDetail().serviceName("data-service"));
+    }
+
+    @BeforeEach
+    void setUp() {
+        system = ActorSystem.create("IndexedPersistenceLayerTest");
+        materialiser = Materializer.createMaterializer(system);
+        delegate = mock(PersistenceLayer.class);
+        when(delegate.<LeafResource>withPersistenceById(anyString())).thenAnswer(invocation -> Flow.<LeafResource>create());
+        when(delegate.getResourcesById(anyString())).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(delegate.putResource(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(delegate.removeResourceById(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        when(delegate.replaceResourcesById(anyString(), anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        index = new IndexedPersistenceLayer(delegate, mock(CompletenessRepository.class), materialiser, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestKit.shutdownActorSystem(system);
+    }
+
+    private void persist(final String rootResourceId, final LeafResource... leafResources) {
+        Source.from(List.of(leafResources))
+                .via(index.withPersistenceById(rootResourceId))
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+    }
+
+    private Optional<List<LeafResource>> getById(final String resourceId) {
+        return index.getResourcesById(resourceId).join()
+                .map(source -> source.runWith(Sink.seq(), materialiser).toCompletableFuture().join());
+    }
+
+    @Test
+    void testReadThroughIsServedByIndex() {
+        // Given persistence holds resources that are not yet indexed
+        when(delegate.getResourcesById(ROOT))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(Optional.of(Source.from(List.of(FILE_1, FILE_2)))));
+
+        // When the resources are requested twice
+        Optional<List<LeafResource>> first = getById(ROOT);
+        Optional<List<LeafResource>> second = getById(ROOT);
+
+        // Then both requests got the resources, but only the first went to persistence
+        assertThat(first)
+                .as("Check that the first request was read through from persistence")
+                .contains(List.of(FILE_1, FILE_2));
+        assertThat(second)
+                .as("Check that the second request was served the same resources by the index")
+                .isEqualTo(first);
+        verify(delegate, times(1)).getResourcesById(ROOT);
+    }
+
+    @Test
+    void testIdOnlyCompleteOnceEveryLeafIsIndexed() {
+        // Given a walk that was cancelled after its first resource
+        Source.from(List.of(FILE_1, FILE_2))
+                .via(index.withPersistenceById(ROOT))
+                .take(1)
+                .runWith(Sink.ignore(), materialiser)
+                .toCompletableFuture().join();
+
+        // When the resources are requested
+        // Then the index does not answer, as it may not hold every resource
+        assertThat(getById(ROOT))
+                .as("Check that an id is not complete in the index after a cancelled walk")
+                .isEmpty();
+        verify(delegate, times(1)).getResourcesById(ROOT);
+
+        // When the walk is run to completion
+        persist(ROOT, FILE_1, FILE_2);
+
+        // Then the index answers for the id
+        assertThat(getById(ROOT))
+                .as("Check that an id is complete in the index once every leaf has been indexed")
+                .contains(List.of(FILE_1, FILE_2));
+        verify(delegate, times(1)).getResourcesById(ROOT);
+    }
+
+    @Test
+    void testFullIndexIsNotMarkedComplete() {
+        // Given a walk of more resources than the index can hold
+        persist(ROOT, FILE_1, FILE_2, FILE_3);
+
+        // When the resources are requested
+        // Then the index does not answer, as it could not hold every resource
+        assertThat(getById(ROOT))
+                .as("Check that an id is not complete in the index if the index was full")
+                .isEmpty();
+        verify(delegate, times(1)).getResourcesById(ROOT);
+    }
+
+    @Test
+    void testPutIntoFullIndexMarksParentsIncomplete() {
+        // Given a complete directory that fills the index
+        persist(ROOT, FILE_1, FILE_2);
+
+        // When a new resource is created under that directory
+        index.putResource(FILE_3).join();
+
+        // Then the index no longer answers for the directory, as it could not hold the new resource
+        assertThat(getById(ROOT))
+                .as("Check that a complete id is marked incomplete when a leaf under it could not be indexed")
+                .isEmpty();
+        verify(delegate, times(1)).getResourcesById(ROOT);
+    }
+
+    @Test
+    void testRemoveAndReplaceAreApplied() {
+        // Given a complete directory
+        persist(ROOT, FILE_1, FILE_2);
+
+        // When a resource under it is removed
+        index.removeResourceById(FILE_1.getId()).join();
+
+        // Then the index answers without the removed resource
+        assertThat(getById(ROOT))
+                .as("Check that a removed resource is no longer returned by the index")
+                .contains(List.of(FILE_2));
+
+        // When the directory is replaced with a fresh set of resources
+        index.replaceResourcesById(ROOT, List.of(FILE_3)).join();
+
+        // Then the index answers with only the fresh resources
+        assertThat(getById(ROOT))
+                .as("Check that a replaced directory returns only the fresh resources from the index")
+                .contains(List.of(FILE_3));
+        verify(delegate, never()).getResourcesById(ROOT);
+    }
+
+    @Test
+    void testReadThroughRacingRemovalIsNotIndexed() {
+        // Given a read from persistence that started before a resource was removed
+        when(delegate.getResourcesById(ROOT))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(Optional.of(Source.from(List.of(FILE_1, FILE_2)))));
+        Source<LeafResource, NotUsed> stale = index.getResourcesById(ROOT).join().orElseThrow();
+        index.removeResourceById(FILE_1.getId()).join();
+
+        // When the read finishes after the removal
+        stale.runWith(Sink.ignore(), materialiser).toCompletableFuture().join();
+
+        // Then the removed resource was not re-indexed, and the id was not marked complete
+        getById(ROOT);
+        verify(delegate, times(2)).getResourcesById(ROOT);
+    }
+}
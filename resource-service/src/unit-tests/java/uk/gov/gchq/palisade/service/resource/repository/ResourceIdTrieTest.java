@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class to test the functionality of the {@link ResourceIdTrie}
+ */
+class ResourceIdTrieTest {
+    private static final List<String> IDS = List.of(
+            "file:/data/b/2", "file:/data/a-file", "file:/data/b/1", "file:/data/a/2", "file:/data/a/1", "file:/other/1");
+
+    private final ResourceIdTrie<String> trie = new ResourceIdTrie<>();
+
+    @BeforeEach
+    void setUp() {
+        IDS.forEach(id -> trie.put(id, id));
+    }
+
+    @Test
+    void testValuesWithPrefixAreInOrderOfId() {
+        // Given the trie has ids added out of order
+
+        // When getting the values under a directory
+        List<String> values = trie.valuesWithPrefix("file:/data/");
+
+        // Then only the values under that directory are returned, in order of id
+        assertThat(values)
+                .as("Check that values under the prefix are returned in order of id")
+                .containsExactly("file:/data/a-file", "file:/data/a/1", "file:/data/a/2", "file:/data/b/1", "file:/data/b/2");
+        assertThat(trie.get("file:/data/a/1"))
+                .as("Check that a value can be got by its exact id")
+                .isEqualTo("file:/data/a/1");
+        assertThat(trie.get("file:/data/a/"))
+                .as("Check that a prefix with no value of its own returns null")
+                .isNull();
+    }
+
+    @Test
+    void testRemovePrefixRemovesOnlyValuesUnderPrefix() {
+        // Given the trie has ids in several directories
+
+        // When a directory is removed
+        int removed = trie.removePrefix("file:/data/a/");
+
+        // Then only the values under that directory are removed
+        assertThat(removed)
+                .as("Check that both values under the directory were removed")
+                .isEqualTo(2);
+        assertThat(trie.valuesWithPrefix(""))
+                .as("Check that all other values remain")
+                .containsExactly("file:/data/a-file", "file:/data/b/1", "file:/data/b/2", "file:/other/1");
+        assertThat(trie.size())
+                .as("Check that the size of the trie has been updated")
+                .isEqualTo(4);
+    }
+
+    @Test
+    void testRemoveAndReAddKeepsTrieConsistent() {
+        // Given the trie has ids in several directories
+
+        // When a single id is removed and another added sharing part of its prefix
+        trie.remove("file:/data/a-file");
+        trie.put("file:/data/a-other", "file:/data/a-other");
+
+        // Then the trie holds exactly the expected values
+        assertThat(trie.containsPrefix("file:/data/a-f"))
+                .as("Check that the removed id is no longer found by prefix")
+                .isFalse();
+        assertThat(trie.valuesWithPrefix("file:/data/a"))
+                .as("Check that the remaining and added ids are found by prefix")
+                .containsExactly("file:/data/a-other", "file:/data/a/1", "file:/data/a/2");
+    }
+}
@@ -115,6 +115,36 @@ class FunctionalIteratorTest {
                 .isEqualTo(6);
     }
 
+    @Test
+    void testExceptionallyReturnsFailedHasNext() {
+        // Given an iterator that fails part-way through, rather than running out of elements
+        FunctionalIterator<Integer> failing = FunctionalIterator.fromIterator(new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (next == 2) {
+                    throw new IllegalStateException("test failure");
+                }
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+        });
+
+        // When the failure is caught
+        FunctionalIterator<Integer> dslTest = failing
+                .exceptionally(ex -> -1);
+
+        // Then the failure is returned once, after the elements before it
+        assertThat(listOf(dslTest))
+                .as("Check that a failure in hasNext is returned as a final element")
+                .isEqualTo(List.of(0, 1, -1));
+    }
+
     @Test
     void testWholeDSLTwice() {
         AtomicInteger firstSum = new AtomicInteger(0);
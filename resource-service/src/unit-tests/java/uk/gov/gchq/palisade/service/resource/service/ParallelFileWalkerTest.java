@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import uk.gov.gchq.palisade.service.resource.exception.NoSuchResourceException;
+import uk.gov.gchq.palisade.service.resource.exception.ResourceWalkException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * A class to test the functionality of the {@link ParallelFileWalker}
+ */
+class ParallelFileWalkerTest {
+    private static final int FAN_OUT = 4;
+    private static final int DEPTH = 3;
+
+    // Use a small buffer to exercise the walk blocking on a slow consumer
+    private final ParallelFileWalker walker = new ParallelFileWalker(4, 2);
+
+    @TempDir
+    Path root;
+
+    @AfterEach
+    void tearDown() {
+        walker.close();
+    }
+
+    private void createTree(final Path directory, final int depth) throws IOException {
+        for (int i = 0; i < FAN_OUT; i++) {
+            Files.createFile(directory.resolve(String.format("file-%d.txt", i)));
+            if (depth > 0) {
+                Path subdirectory = Files.createDirectory(directory.resolve(String.format("dir-%d", i)));
+                createTree(subdirectory, depth - 1);
+            }
+        }
+    }
+
+    @Test
+    void testWalkReturnsSameFilesAsFilesWalk() throws IOException {
+        // Given a directory tree
+        createTree(root, DEPTH);
+        Set<File> expected;
+        try (Stream<Path> walk = Files.walk(root)) {
+            expected = walk.filter(Files::isRegularFile)
+                    .map(path -> {
+                        try {
+                            return path.toFile().getCanonicalFile();
+                        } catch (IOException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    })
+                    .collect(Collectors.toSet());
+        }
+
+        // When the tree is walked in parallel
+        Set<File> actual = new HashSet<>();
+        walker.walk(root).forEachRemaining(actual::add);
+
+        // Then the same (canonical) files were found
+        assertThat(actual)
+                .as("Check that the parallel walk found every file exactly as Files.walk did")
+                .hasSize(expected.size())
+                .isEqualTo(expected);
+    }
+
+    @Test
+    void testWalkOfFileReturnsFile() throws IOException {
+        // Given a single file
+        Path file = Files.createFile(root.resolve("single.txt"));
+
+        // When the file is walked
+        Set<File> actual = new HashSet<>();
+        walker.walk(file).forEachRemaining(actual::add);
+
+        // Then the file alone is returned
+        assertThat(actual)
+                .as("Check that walking a file returns only that file")
+                .containsOnly(file.toFile().getCanonicalFile());
+    }
+
+    @Test
+    void testWalkOfMissingPathThrows() {
+        // Given a path that does not exist
+        Path missing = root.resolve("missing");
+
+        // When the path is walked
+        // Then an exception is thrown
+        assertThatThrownBy(() -> walker.walk(missing))
+                .as("Check that walking a missing path throws a NoSuchResourceException")
+                .isInstanceOf(NoSuchResourceException.class)
+                .hasMessage("Failed to walk path " + missing);
+    }
+
+    @Test
+    void testWalkOfUnreadablePathThrowsWalkException() throws IOException {
+        // Given a path that exists, but cannot be read (as one of its parents is a file)
+        Path file = Files.createFile(root.resolve("file.txt"));
+        Path unreadable = file.resolve("child");
+
+        // When the path is walked
+        // Then an exception is thrown, without claiming the path does not exist
+        assertThatThrownBy(() -> walker.walk(unreadable))
+                .as("Check that failing to read a path throws a ResourceWalkException")
+                .isInstanceOf(ResourceWalkException.class)
+                .isNotInstanceOf(NoSuchResourceException.class)
+                .hasMessage("Failed to walk path " + unreadable);
+    }
+
+    @Test
+    void testWalkOfUnlistableDirectoryFails() throws IOException {
+        // Given a directory tree, where one of the subdirectories cannot be listed
+        createTree(root, 1);
+        Path unlistable = root.resolve("dir-0");
+        Files.setPosixFilePermissions(unlistable, PosixFilePermissions.fromString("---------"));
+        assumeFalse(Files.isReadable(unlistable), "Directory permissions are not enforced for this user");
+
+        try {
+            // When the tree is walked
+            FunctionalIterator<File> files = walker.walk(root);
+
+            // Then the walk fails rather than returning a partial listing
+            assertThatThrownBy(() -> files.forEachRemaining(file -> { }))
+                    .as("Check that failing to list a subdirectory fails the walk with a ResourceWalkException")
+                    .isInstanceOf(ResourceWalkException.class)
+                    .hasMessage("Failed to walk path " + root.toFile().getCanonicalPath());
+        } finally {
+            Files.setPosixFilePermissions(unlistable, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    @Test
+    void testClosingIteratorStopsWalk() throws Exception {
+        // Given a directory tree
+        createTree(root, DEPTH);
+
+        // When the walk is closed after one file
+        FunctionalIterator<File> files = walker.walk(root);
+        files.next();
+        files.close();
+
+        // Then no more files are returned
+        assertThat(files.hasNext())
+                .as("Check that a closed walk has no more elements")
+                .isFalse();
+    }
+
+    @Test
+    void testClosingIteratorLeavesPoolForOtherWalks() throws IOException {
+        // Given a directory tree, and a walk of it that is closed part-way through
+        createTree(root, DEPTH);
+        FunctionalIterator<File> closed = walker.walk(root);
+        closed.next();
+        closed.close();
+        Set<File> expected = new HashSet<>();
+        walker.walk(root).forEachRemaining(expected::add);
+
+        // When the tree is walked again by further walks sharing the walker
+        // Then each walk finds every file
+        for (int i = 0; i < FAN_OUT; i++) {
+            Set<File> actual = new HashSet<>();
+            walker.walk(root).forEachRemaining(actual::add);
+            assertThat(actual)
+                    .as("Check that a walk sharing the pool with a closed walk found every file")
+                    .isEqualTo(expected);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class to test the functionality of the {@link RefreshAheadPolicy}
+ */
+class RefreshAheadPolicyTest {
+    private static final String RESOURCE_ID = "file:/data/";
+
+    /**
+     * A clock that only moves when told to
+     */
+    private static class SteppingClock extends Clock {
+        private Instant now = Instant.EPOCH;
+
+        void step(final Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final SteppingClock clock = new SteppingClock();
+    private final RefreshAheadPolicy policy = new RefreshAheadPolicy(Duration.ofMinutes(10), 100L, clock);
+
+    @Test
+    void testResourceIsDueOnceAfterRefreshTime() {
+        // Given a resource id has been walked
+        policy.recordWalk(RESOURCE_ID);
+
+        // When checked before the refresh time has passed
+        clock.step(Duration.ofMinutes(9));
+
+        // Then it is not yet due
+        assertThat(policy.claimIfDue(RESOURCE_ID))
+                .as("Check that a recently-walked resource id is not due for refresh")
+                .isFalse();
+
+        // When checked after the refresh time has passed
+        clock.step(Duration.ofMinutes(1));
+
+        // Then it is due for only the first caller, until the refresh time has passed again
+        assertThat(policy.claimIfDue(RESOURCE_ID))
+                .as("Check that an old resource id is due for refresh")
+                .isTrue();
+        assertThat(policy.claimIfDue(RESOURCE_ID))
+                .as("Check that a resource id already claimed for refresh is not due again")
+                .isFalse();
+        clock.step(Duration.ofMinutes(10));
+        assertThat(policy.claimIfDue(RESOURCE_ID))
+                .as("Check that a refreshed resource id is due again after the refresh time")
+                .isTrue();
+    }
+
+    @Test
+    void testUnseenResourceIsAgedFromFirstCheck() {
+        // Given a resource id that has not been walked since startup
+
+        // When checked for the first time
+        boolean firstCheck = policy.claimIfDue(RESOURCE_ID);
+        clock.step(Duration.ofMinutes(10));
+        boolean laterCheck = policy.claimIfDue(RESOURCE_ID);
+
+        // Then it is not due until the refresh time after it was first seen
+        assertThat(firstCheck)
+                .as("Check that a resource id of unknown age is not immediately due for refresh")
+                .isFalse();
+        assertThat(laterCheck)
+                .as("Check that a resource id of unknown age is due for refresh once aged from its first check")
+                .isTrue();
+    }
+
+    @Test
+    void testDisabledPolicyIsNeverDue() {
+        // Given a policy that never refreshes
+        RefreshAheadPolicy never = RefreshAheadPolicy.never();
+
+        // When a resource id is walked and checked much later
+        never.recordWalk(RESOURCE_ID);
+        never.claimIfDue(RESOURCE_ID);
+
+        // Then it is never due
+        assertThat(never.claimIfDue(RESOURCE_ID))
+                .as("Check that a disabled policy never reports a resource id as due for refresh")
+                .isFalse();
+    }
+}
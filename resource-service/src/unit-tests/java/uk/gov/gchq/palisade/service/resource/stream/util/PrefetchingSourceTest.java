@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.stream.util;
+
+import akka.actor.ActorSystem;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.testkit.javadsl.TestKit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.gov.gchq.palisade.service.resource.service.FunctionalIterator;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class to test the functionality of the {@link PrefetchingSource}
+ */
+class PrefetchingSourceTest {
+    private ActorSystem system;
+    private Materializer materialiser;
+
+    @BeforeEach
+    void setUp() {
+        system = ActorSystem.create("PrefetchingSourceTest");
+        materialiser = Materializer.createMaterializer(system);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestKit.shutdownActorSystem(system);
+    }
+
+    /**
+     * An iterator of integers, recording the thread it was read on and whether it was closed
+     */
+    private static class RecordingIterator implements FunctionalIterator<Integer> {
+        private final int size;
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        private int position;
+        private volatile String readThread;
+
+        RecordingIterator(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            readThread = Thread.currentThread().getName();
+            return position < size;
+        }
+
+        @Override
+        public Integer next() {
+            return position++;
+        }
+
+        @Override
+        public void close() {
+            closed.complete(null);
+        }
+    }
+
+    @Test
+    void testAllElementsAreReturnedInOrder() {
+        // Given an iterator
+        RecordingIterator iterator = new RecordingIterator(100);
+
+        // When the iterator is read through a prefetching source with a small buffer
+        List<Integer> elements = PrefetchingSource.fromIterator(() -> iterator, 4)
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+
+        // Then every element was returned in order
+        assertThat(elements)
+                .as("Check that all elements of the iterator were returned in order")
+                .isEqualTo(IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+
+        // Then the iterator was read on the blocking dispatcher and closed
+        assertThat(iterator.readThread)
+                .as("Check that the iterator was read on the blocking IO dispatcher")
+                .contains("default-blocking-io-dispatcher");
+        assertThat(iterator.closed)
+                .as("Check that the exhausted iterator was closed")
+                .isCompleted();
+    }
+
+    @Test
+    void testCancellationClosesIterator() throws Exception {
+        // Given an iterator
+        RecordingIterator iterator = new RecordingIterator(1000);
+
+        // When the downstream cancels after a few elements
+        List<Integer> elements = PrefetchingSource.fromIterator(() -> iterator, 4)
+                .take(3)
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture().join();
+
+        // Then only those elements were returned
+        assertThat(elements)
+                .as("Check that only the elements taken were returned")
+                .isEqualTo(List.of(0, 1, 2));
+
+        // Then the iterator was closed without being exhausted
+        iterator.closed.get(5, TimeUnit.SECONDS);
+        assertThat(iterator.position)
+                .as("Check that the iterator was not read unboundedly ahead of demand")
+                .isLessThan(1000);
+    }
+}
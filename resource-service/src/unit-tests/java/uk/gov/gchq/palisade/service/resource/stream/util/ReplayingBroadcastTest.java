@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.resource.stream.util;
+
+import akka.Done;
+import akka.actor.ActorSystem;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.testkit.javadsl.TestKit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class to test the functionality of the {@link ReplayingBroadcast}
+ */
+class ReplayingBroadcastTest {
+    private ActorSystem system;
+    private Materializer materialiser;
+
+    @BeforeEach
+    void setUp() {
+        system = ActorSystem.create("ReplayingBroadcastTest");
+        materialiser = Materializer.createMaterializer(system);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    void testUpstreamIsOnlyRunOnce() {
+        // Given an upstream that counts how many times it is materialised
+        AtomicInteger materialisations = new AtomicInteger();
+        Source<Integer, ?> upstream = Source.lazySource(() -> {
+            materialisations.incrementAndGet();
+            return Source.range(0, 9);
+        });
+
+        // When the upstream is broadcast to many subscribers
+        ReplayingBroadcast<Integer> broadcast = ReplayingBroadcast.runWith(upstream, materialiser);
+        List<Integer> first = broadcast.subscribe().runWith(Sink.seq(), materialiser).toCompletableFuture().join();
+        List<Integer> second = broadcast.subscribe().runWith(Sink.seq(), materialiser).toCompletableFuture().join();
+
+        // Then every subscriber saw every element
+        assertThat(first)
+                .as("Check that the first subscriber received all elements")
+                .isEqualTo(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        assertThat(second)
+                .as("Check that the second subscriber received all elements")
+                .isEqualTo(first);
+
+        // Then the upstream was only run once
+        assertThat(materialisations)
+                .as("Check that the upstream was only materialised once")
+                .hasValue(1);
+    }
+
+    @Test
+    void testLateSubscriberReceivesReplay() {
+        // Given a broadcast that has already finished
+        ReplayingBroadcast<Integer> broadcast = ReplayingBroadcast.runWith(Source.range(0, 4), materialiser);
+        broadcast.completion().toCompletableFuture().join();
+
+        // When a subscriber attaches after completion
+        List<Integer> late = broadcast.subscribe().runWith(Sink.seq(), materialiser).toCompletableFuture().join();
+
+        // Then all elements are replayed
+        assertThat(late)
+                .as("Check that a late subscriber still received all elements")
+                .isEqualTo(List.of(0, 1, 2, 3, 4));
+    }
+
+    @Test
+    void testUpstreamFailureIsPropagated() {
+        // Given an upstream that fails after one element
+        ReplayingBroadcast<Integer> broadcast = ReplayingBroadcast.runWith(
+                Source.single(0).concat(Source.failed(new IllegalStateException("test failure"))), materialiser);
+
+        // When a subscriber attaches
+        // Then the failure is propagated to the subscriber
+        assertThatThrownBy(() -> broadcast.subscribe().runWith(Sink.seq(), materialiser).toCompletableFuture().join())
+                .as("Check that the upstream failure is propagated to subscribers")
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testLateSubscriberFallsBackOnceBufferExceeded() {
+        // Given a broadcast with a replay buffer smaller than the upstream, which has already finished
+        ReplayingBroadcast<Integer> broadcast = ReplayingBroadcast.runWith(Source.range(0, 9), materialiser, 4);
+        broadcast.completion().toCompletableFuture().join();
+
+        // When a subscriber attaches after completion
+        List<Integer> late = broadcast.subscribe(() -> Source.single(-1)).runWith(Sink.seq(), materialiser).toCompletableFuture().join();
+
+        // Then the fallback is used, as the start of the upstream has been discarded
+        assertThat(late)
+                .as("Check that a late subscriber received the fallback once the buffer was exceeded")
+                .isEqualTo(List.of(-1));
+    }
+
+    @Test
+    void testUpstreamIsBackpressuredBySlowestSubscriber() throws Exception {
+        // Given an upstream larger than the replay buffer, which only starts emitting most of its elements when told to
+        AtomicInteger emitted = new AtomicInteger();
+        CompletableFuture<Done> start = new CompletableFuture<>();
+        Source<Integer, ?> upstream = Source.range(0, 2)
+                .concat(Source.completionStage(start).flatMapConcat(ignored -> Source.range(3, 99)))
+                .map((Integer element) -> {
+                    emitted.incrementAndGet();
+                    return element;
+                });
+        ReplayingBroadcast<Integer> broadcast = ReplayingBroadcast.runWith(upstream, materialiser, 4);
+
+        // Given a subscriber that stalls after receiving its first element
+        CompletableFuture<Void> received = new CompletableFuture<>();
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        CompletableFuture<List<Integer>> subscriber = broadcast.subscribe()
+                .mapAsync(1, (Integer element) -> {
+                    received.complete(null);
+                    return release.thenApply(ignored -> element);
+                })
+                .runWith(Sink.seq(), materialiser)
+                .toCompletableFuture();
+        received.join();
+
+        // When the upstream is started
+        start.complete(Done.done());
+
+        // Then the upstream is held back by the stalled subscriber
+        assertThatThrownBy(() -> broadcast.completion().toCompletableFuture().get(500, TimeUnit.MILLISECONDS))
+                .as("Check that the upstream cannot finish while a subscriber is stalled")
+                .isInstanceOf(TimeoutException.class);
+        assertThat(emitted.get())
+                .as("Check that the upstream only emitted a little more than the replay buffer")
+                .isLessThan(100);
+
+        // When the subscriber is released
+        release.complete(null);
+
+        // Then the subscriber received every element, and the upstream finished
+        assertThat(subscriber.join())
+                .as("Check that the stalled subscriber still received all elements")
+                .isEqualTo(IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+        assertThat(broadcast.completion().toCompletableFuture().get(5, TimeUnit.SECONDS))
+                .as("Check that the upstream finished once the subscriber was released")
+                .isEqualTo(Done.done());
+    }
+}
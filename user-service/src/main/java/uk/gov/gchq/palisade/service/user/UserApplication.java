@@ -31,6 +31,7 @@ import org.springframework.context.event.EventListener;
 
 import uk.gov.gchq.palisade.service.user.config.UserConfiguration;
 import uk.gov.gchq.palisade.service.user.config.UserPrepopulationFactory;
+import uk.gov.gchq.palisade.service.user.service.UserFileLoader;
 import uk.gov.gchq.palisade.service.user.service.UserService;
 import uk.gov.gchq.palisade.service.user.service.UserServiceCachingProxy;
 import uk.gov.gchq.palisade.service.user.stream.ConsumerTopicConfiguration;
@@ -41,6 +42,7 @@ import javax.annotation.PreDestroy;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
@@ -60,6 +62,7 @@ public class UserApplication {
     private final Executor executor;
     private final UserServiceCachingProxy service;
     private final UserConfiguration userConfig;
+    private final Optional<UserFileLoader> userFileLoader;
     private final Set<CompletableFuture<?>> runnerThreads = new HashSet<>();
 
     /**
@@ -68,17 +71,20 @@ public class UserApplication {
      * @param runners       collection of all Akka {@link RunnableGraph}s discovered for the application
      * @param materialiser  the Akka {@link Materializer} configured to be used
      * @param service       the specific {@link UserService} implementation
-     * @param configuration the {@link UserConfiguration} required for loading {@link User}s into the service
-     * @param executor      an executor for any {@link CompletableFuture}s (preferably the application task executor)
+     * @param configuration  the {@link UserConfiguration} required for loading {@link User}s into the service
+     * @param userFileLoader the (optional) {@link UserFileLoader} warming the cache from a file of {@link User}s
+     * @param executor       an executor for any {@link CompletableFuture}s (preferably the application task executor)
      */
     public UserApplication(
             final Collection<RunnableGraph<?>> runners,
             final Materializer materialiser,
             final UserServiceCachingProxy service,
             @Qualifier("userConfiguration") final UserConfiguration configuration,
+            final Optional<UserFileLoader> userFileLoader,
             @Qualifier("threadPoolTaskExecutor") final Executor executor) {
         this.service = service;
         this.userConfig = configuration;
+        this.userFileLoader = userFileLoader;
         this.runners = new HashSet<>(runners);
         this.materialiser = materialiser;
         this.executor = executor;
@@ -96,7 +102,7 @@ public class UserApplication {
     }
 
     /**
-     * First pre-populates the cache using a configuration yaml file
+     * First pre-populates the cache using a configuration yaml file, and waits for any warm-up from a file of users
      * Then runs all available Akka {@link RunnableGraph}s until completion.
      * The 'main' threads of the application during runtime are the completable futures spawned here.
      */
@@ -105,12 +111,17 @@ public class UserApplication {
         // First pre-populate the cache
         LOGGER.info("Pre-populating using user config: {}", userConfig.getClass());
         // Add example users to the user-service cache
-        userConfig.getUsers().stream()
+        userConfig.getUsers().parallelStream()
                 .map(UserPrepopulationFactory::build)
                 .forEach((User user) -> {
                     LOGGER.info("Cache add for {} -> {}", user.getUserId().getId(), user);
                     service.addUser(user);
                 });
+        // Don't start consuming requests until the cache is warm, the loader will not fail the warm-up
+        userFileLoader.ifPresent((UserFileLoader loader) -> {
+            LOGGER.info("Waiting for user cache warm-up to complete");
+            loader.getWarmUp().join();
+        });
 
         // Then start up all runners
         runnerThreads.addAll(runners.stream()
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.user.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Optional;
+
+/**
+ * Configuration for a two-tier cache, with an in-process Caffeine L1 in front of a shared Redis L2.
+ * Enabled by the tiered profile, replacing the cache manager that would otherwise be created for {@code spring.cache.type}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cache.tiered", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(CacheProperties.class)
+public class TieredCacheConfiguration {
+
+    /**
+     * The two-tier cache manager, used by the caching proxy's {@code @Cacheable} and {@code @CachePut} methods
+     *
+     * @param connectionFactory the {@link RedisConnectionFactory} for the shared L2 and for pub/sub invalidations
+     * @param cacheProperties   the spring cache properties, from which the L2 time-to-live is taken
+     * @param l1Spec            the Caffeine spec for each L1 cache
+     * @param channel           the Redis pub/sub channel for invalidations
+     * @return a new {@link TieredCacheManager}
+     */
+    @Bean
+    public TieredCacheManager cacheManager(
+            final RedisConnectionFactory connectionFactory,
+            final CacheProperties cacheProperties,
+            final @Value("${cache.tiered.l1Spec:expireAfterWrite=5m, maximumSize=500}") String l1Spec,
+            final @Value("${cache.tiered.channel:user-service:cache-invalidation}") String channel) {
+        RedisCacheConfiguration l2Configuration = Optional.ofNullable(cacheProperties.getRedis().getTimeToLive())
+                .map(RedisCacheConfiguration.defaultCacheConfig()::entryTtl)
+                .orElseGet(RedisCacheConfiguration::defaultCacheConfig);
+        RedisCacheManager l2Manager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(l2Configuration)
+                .build();
+        l2Manager.initializeCaches();
+        return new TieredCacheManager(l2Manager, Caffeine.from(l1Spec), new StringRedisTemplate(connectionFactory), channel);
+    }
+
+    /**
+     * Listens for invalidations published by other instances, dropping changed keys from the L1 caches
+     *
+     * @param connectionFactory the {@link RedisConnectionFactory} to subscribe with
+     * @param cacheManager      the {@link TieredCacheManager} to notify of invalidations
+     * @param channel           the Redis pub/sub channel for invalidations
+     * @return a {@link RedisMessageListenerContainer} subscribed to the channel
+     */
+    @Bean
+    public RedisMessageListenerContainer tieredCacheInvalidationListener(
+            final RedisConnectionFactory connectionFactory,
+            final TieredCacheManager cacheManager,
+            final @Value("${cache.tiered.channel:user-service:cache-invalidation}") String channel) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(channel));
+        return container;
+    }
+}
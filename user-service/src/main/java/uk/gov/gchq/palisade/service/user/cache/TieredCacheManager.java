@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.user.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A {@link CacheManager} of {@link TieredCache}s, each an in-process Caffeine L1 in front of a cache from a shared L2 {@link CacheManager} (such as Redis).
+ * Every write to a cache is published on a Redis pub/sub channel, and on receiving a write from another instance the key
+ * is dropped from this instance's L1, so that L1s never serve values older than the write, beyond the pub/sub delivery delay.
+ * The L1 should also expire entries after a short time, as a safety net against any missed messages.
+ * Keys are published in their string form, so caches must be keyed by strings (such as user ids).
+ */
+public class TieredCacheManager implements CacheManager, MessageListener, MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TieredCacheManager.class);
+    private static final String SEPARATOR = "\n";
+    private static final String METRIC_NAME = "cache.tiered.gets";
+
+    private final CacheManager l2Manager;
+    private final Caffeine<Object, Object> l1Builder;
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, TieredCache> caches = new ConcurrentHashMap<>();
+    private MeterRegistry registry;
+
+    /**
+     * Create a new TieredCacheManager
+     *
+     * @param l2Manager     the {@link CacheManager} for the shared L2 caches
+     * @param l1Builder     the {@link Caffeine} builder for each L1 cache, which should be small and expire entries quickly
+     * @param redisTemplate the {@link StringRedisTemplate} used to publish invalidations
+     * @param channel       the Redis pub/sub channel for invalidations, shared by every instance of this service
+     */
+    public TieredCacheManager(final CacheManager l2Manager, final Caffeine<Object, Object> l1Builder, final StringRedisTemplate redisTemplate, final String channel) {
+        this.l2Manager = l2Manager;
+        this.l1Builder = l1Builder;
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+    }
+
+    @Override
+    public Cache getCache(final String name) {
+        TieredCache cache = caches.get(name);
+        if (cache == null) {
+            cache = Optional.ofNullable(l2Manager.getCache(name))
+                    .map(l2 -> createCache(name, l2))
+                    .orElse(null);
+        }
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    private synchronized TieredCache createCache(final String name, final Cache l2) {
+        return caches.computeIfAbsent(name, (String cacheName) -> {
+            LOGGER.info("Creating tiered cache {}", cacheName);
+            TieredCache cache = new TieredCache(cacheName, l1Builder.build(), l2, this);
+            Optional.ofNullable(registry).ifPresent(meterRegistry -> bindCache(meterRegistry, cache));
+            return cache;
+        });
+    }
+
+    void publishEvict(final String cacheName, final Object key) {
+        publish(instanceId + SEPARATOR + cacheName + SEPARATOR + key);
+    }
+
+    void publishClear(final String cacheName) {
+        publish(instanceId + SEPARATOR + cacheName);
+    }
+
+    private void publish(final String message) {
+        try {
+            redisTemplate.convertAndSend(channel, message);
+        } catch (RuntimeException ex) {
+            // The write itself has succeeded, other instances will see it once their L1 entry expires
+            LOGGER.warn("Failed to publish cache invalidation on channel {}", channel, ex);
+        }
+    }
+
+    @Override
+    public void onMessage(final Message message, final byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        if (parts.length < 2 || instanceId.equals(parts[0])) {
+            // Malformed, or our own write which has already been applied to our L1
+            return;
+        }
+        Optional.ofNullable(caches.get(parts[1])).ifPresent((TieredCache cache) -> {
+            if (parts.length == 3) {
+                LOGGER.debug("Evicting key {} from L1 of cache {} after a write by another instance", parts[2], parts[1]);
+                cache.evictLocal(parts[2]);
+            } else {
+                LOGGER.debug("Clearing L1 of cache {} after a clear by another instance", parts[1]);
+                cache.clearLocal();
+            }
+        });
+    }
+
+    @Override
+    public synchronized void bindTo(final MeterRegistry meterRegistry) {
+        this.registry = meterRegistry;
+        caches.values().forEach(cache -> bindCache(meterRegistry, cache));
+    }
+
+    private static void bindCache(final MeterRegistry meterRegistry, final TieredCache cache) {
+        bindCounter(meterRegistry, cache, "l1Hit", TieredCache::getL1Hits);
+        bindCounter(meterRegistry, cache, "l2Hit", TieredCache::getL2Hits);
+        bindCounter(meterRegistry, cache, "miss", TieredCache::getMisses);
+    }
+
+    private static void bindCounter(final MeterRegistry meterRegistry, final TieredCache cache, final String result, final ToDoubleFunction<TieredCache> count) {
+        FunctionCounter.builder(METRIC_NAME, cache, count)
+                .tag("cache", cache.getName())
+                .tag("result", result)
+                .description("The number of gets from a tiered cache, by the tier that served them")
+                .register(meterRegistry);
+    }
+}
@@ -16,10 +16,12 @@
 package uk.gov.gchq.palisade.service.user.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -30,11 +32,14 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import uk.gov.gchq.palisade.service.user.exception.ApplicationAsyncExceptionHandler;
 import uk.gov.gchq.palisade.service.user.service.NullUserService;
+import uk.gov.gchq.palisade.service.user.service.UserFileLoader;
+import uk.gov.gchq.palisade.service.user.service.UserLoadingCache;
 import uk.gov.gchq.palisade.service.user.service.UserService;
 import uk.gov.gchq.palisade.service.user.service.UserServiceAsyncProxy;
 import uk.gov.gchq.palisade.service.user.service.UserServiceCachingProxy;
 import uk.gov.gchq.palisade.user.User;
 
+import java.time.Duration;
 import java.util.concurrent.Executor;
 
 /**
@@ -72,27 +77,79 @@ public class ApplicationConfiguration implements AsyncConfigurer {
     /**
      * A bean to instantiate a {@link UserService} implementation
      *
-     * @param userService a {@link UserService}
+     * @param userService                  a {@link UserService}
+     * @param unknownUsersMaximumSize      the maximum number of unknown userIds to remember
+     * @param unknownUsersExpireAfterWrite the time after which an unknown userId is looked up again
      * @return an instance of the {@link UserServiceAsyncProxy}
      */
     @Bean
-    public UserServiceCachingProxy cacheableUserServiceProxy(final UserService userService) {
+    public UserServiceCachingProxy cacheableUserServiceProxy(final UserService userService,
+                                                             final @Value("${user-service.unknownUsers.maximumSize:10000}") long unknownUsersMaximumSize,
+                                                             final @Value("${user-service.unknownUsers.expireAfterWrite:5s}") Duration unknownUsersExpireAfterWrite) {
         LOGGER.info("Instantiated UserServiceCachingProxy with {}", userService.getClass().getName());
-        return new UserServiceCachingProxy(userService);
+        return new UserServiceCachingProxy(userService, unknownUsersMaximumSize, unknownUsersExpireAfterWrite);
+    }
+
+    /**
+     * Metrics for the unknown userIds remembered by the {@link UserServiceCachingProxy}
+     *
+     * @param service the {@link UserServiceCachingProxy}
+     * @return a {@link MeterBinder} reporting the unknown userIds cache
+     */
+    @Bean
+    public MeterBinder unknownUserMetrics(final UserServiceCachingProxy service) {
+        return service::bindUnknownUserMetrics;
+    }
+
+    /**
+     * A bean for the loading cache in front of the {@link UserServiceCachingProxy}, coalescing concurrent requests
+     * for the same user and refreshing users in the background
+     *
+     * @param service           the {@link UserServiceCachingProxy} used to load users
+     * @param executor          an async {@link Executor} used to load and refresh users
+     * @param maximumSize       the maximum number of users to cache
+     * @param refreshAfterWrite the time after which a user is reloaded in the background on its next request
+     * @param expireAfterWrite  the time after which a user that has not been reloaded is discarded
+     * @return an instance of the {@link UserLoadingCache}
+     */
+    @Bean
+    public UserLoadingCache userLoadingCache(final UserServiceCachingProxy service,
+                                             final @Qualifier("threadPoolTaskExecutor") Executor executor,
+                                             final @Value("${user-service.loadingCache.maximumSize:10000}") long maximumSize,
+                                             final @Value("${user-service.loadingCache.refreshAfterWrite:1m}") Duration refreshAfterWrite,
+                                             final @Value("${user-service.loadingCache.expireAfterWrite:1h}") Duration expireAfterWrite) {
+        LOGGER.info("Instantiated UserLoadingCache with refreshAfterWrite {} and expireAfterWrite {}", refreshAfterWrite, expireAfterWrite);
+        return new UserLoadingCache(service, executor, maximumSize, refreshAfterWrite, expireAfterWrite);
+    }
+
+    /**
+     * Warms the user cache at startup from a file (or directory of files) of users, if one is configured
+     *
+     * @param cache       the {@link UserLoadingCache} to cache the loaded users in
+     * @param userFile    the path to the file or directory of users
+     * @param parallelism the number of users to add in parallel, or 0 for the number of available processors
+     * @return a {@link UserFileLoader} for the configured path, reporting the service as out of service (to the readiness group) until warm-up completes
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "population", name = "userFile")
+    public UserFileLoader userFileLoader(final UserLoadingCache cache,
+                                         final @Value("${population.userFile}") String userFile,
+                                         final @Value("${population.warmUpParallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        LOGGER.info("Instantiated UserFileLoader for {} with parallelism {}", userFile, threads);
+        return new UserFileLoader(cache, userFile, threads);
     }
 
     /**
      * A bean for the creation of the {@link UserServiceAsyncProxy}
      *
-     * @param service  the {@link UserService} implementation
-     * @param executor an async {@link Executor}
-     * @return an instance of the {@link UserServiceCachingProxy}
+     * @param cache the {@link UserLoadingCache} in front of the {@link UserServiceCachingProxy}
+     * @return an instance of the {@link UserServiceAsyncProxy}
      */
     @Bean
-    public UserServiceAsyncProxy asyncUserServiceProxy(final UserServiceCachingProxy service,
-                                                       final @Qualifier("threadPoolTaskExecutor") Executor executor) {
-        LOGGER.info("Instantiated AsyncUserServiceProxy with {}", service.getClass());
-        return new UserServiceAsyncProxy(service, executor);
+    public UserServiceAsyncProxy asyncUserServiceProxy(final UserLoadingCache cache) {
+        LOGGER.info("Instantiated AsyncUserServiceProxy with {}", cache.getClass());
+        return new UserServiceAsyncProxy(cache);
     }
 
     /**
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.exception;
+
+import uk.gov.gchq.palisade.service.user.service.UserService;
+
+/**
+ * A {@code UserServiceUnavailableException} is a {@link RuntimeException} thrown by a {@link UserService} implementation
+ * when it could not look up a user at all, such as when the directory behind it is down or too busy.
+ * Unlike a {@link NoSuchUserIdException}, this says nothing about whether the user exists, so it is never remembered
+ * by the {@link uk.gov.gchq.palisade.service.user.service.UserServiceCachingProxy}, and the next request tries again.
+ */
+public class UserServiceUnavailableException extends RuntimeException {
+
+    /**
+     * Initializes this exception with the given message and cause.
+     *
+     * @param message   message to report
+     * @param throwable the underlying cause of this exception
+     */
+    public UserServiceUnavailableException(final String message, final Throwable throwable) {
+        super(message, throwable);
+    }
+}
@@ -15,15 +15,19 @@
  */
 package uk.gov.gchq.palisade.service.user.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.gov.gchq.palisade.service.user.exception.NoSuchUserIdException;
+import uk.gov.gchq.palisade.service.user.exception.UserServiceUnavailableException;
 import uk.gov.gchq.palisade.service.user.service.UserService;
 import uk.gov.gchq.palisade.user.User;
 import uk.gov.gchq.palisade.user.UserId;
 
 import javax.naming.NamingEnumeration;
+import javax.naming.NameNotFoundException;
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
@@ -37,11 +41,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
 
@@ -65,20 +73,47 @@ import static java.util.Objects.requireNonNull;
  * <p>
  * This implementation does not allow you to add users.
  * </p>
+ * <p>
+ * JNDI contexts are not thread-safe, so each user lookup borrows an {@link LdapContext} from a bounded {@link LdapContextPool},
+ * which is passed to {@link #getAuths(UserId, Map, LdapContext)} and {@link #getRoles(UserId, Map, LdapContext)},
+ * and is reused by any {@link #getAttributes(UserId)} or {@link #basicSearch(UserId, String, String, String[])} made during the lookup.
+ * </p>
+ * <p>
+ * Rather than searching LDAP for a user's groups in {@code getAuths} and {@code getRoles}, implementations may instead resolve
+ * groups with {@link #getGroups(UserId, Map)}. This reads {@code memberOf}-style attributes (see {@link #getGroupAttributeNames()})
+ * fetched in the same request as the user's other attributes, along with any groups preloaded by {@link #preloadGroups(Collection, String, Duration)},
+ * so a user is fetched in a single LDAP round trip.
+ * </p>
  */
-public abstract class AbstractLdapUserService implements UserService {
+public abstract class AbstractLdapUserService implements UserService, MeterBinder, AutoCloseable {
     protected static final String[] ESCAPED_CHARS = new String[]{"\\", "#", "+", "<", ">", ";", "\"", "@", "(", ")", "*", "="};
+    protected static final int DEFAULT_POOL_SIZE = 8;
+    protected static final Duration DEFAULT_BORROW_TIMEOUT = Duration.ofSeconds(5);
+    protected static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+    protected static final Duration DEFAULT_OPERATION_TIMEOUT = Duration.ofSeconds(10);
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractLdapUserService.class);
-    protected final LdapContext context;
+    private static final String CONNECT_TIMEOUT_PROPERTY = "com.sun.jndi.ldap.connect.timeout";
+    private static final String READ_TIMEOUT_PROPERTY = "com.sun.jndi.ldap.read.timeout";
+    protected final LdapContextPool pool;
+    private volatile LdapGroupResolver groupResolver;
 
     /**
      * Constructs a {@link AbstractLdapUserService} with a given {@link LdapContext}.
-     * The cache time to live with be set the default or previously set value.
+     * The context is shared, so is only used by one lookup at a time.
      *
      * @param context the {@link LdapContext} for making calls to LDAP.
      */
     protected AbstractLdapUserService(final LdapContext context) {
-        this.context = context;
+        this.pool = LdapContextPool.singleContext(context);
+    }
+
+    /**
+     * Constructs a {@link AbstractLdapUserService} with a given {@link LdapContextPool}.
+     *
+     * @param pool the {@link LdapContextPool} of contexts for making calls to LDAP.
+     */
+    protected AbstractLdapUserService(final LdapContextPool pool) {
+        this.pool = requireNonNull(pool, "LdapContextPool cannot be null");
     }
 
     /**
@@ -92,6 +127,29 @@ public abstract class AbstractLdapUserService implements UserService {
      */
     protected AbstractLdapUserService(final String ldapConfigPath)
             throws IOException, NamingException {
+        this(ldapConfigPath, DEFAULT_POOL_SIZE, DEFAULT_BORROW_TIMEOUT, DEFAULT_IDLE_TIMEOUT, DEFAULT_OPERATION_TIMEOUT);
+    }
+
+    /**
+     * <p>
+     * Constructs a {@link AbstractLdapUserService} with a given path to {@link LdapContext}, and a pool of up to the given number of contexts.
+     * </p>
+     * <p>
+     * Unless already set in the config, the JNDI connect and read timeouts are set to the operation timeout, so that no single
+     * LDAP operation can hold a pooled context indefinitely.
+     * </p>
+     *
+     * @param ldapConfigPath   the path to config for initializing {@link LdapContext} for making calls to LDAP. This can be a path to a file or a resource.
+     * @param poolSize         the maximum number of {@link LdapContext}s open at once
+     * @param borrowTimeout    the maximum time to wait for a free {@link LdapContext}
+     * @param idleTimeout      the time after which an idle {@link LdapContext} is closed
+     * @param operationTimeout the maximum time to wait to connect to LDAP, or for a response to an LDAP operation
+     * @throws IOException     if an IOException issue occurs whilst loading the LDAP config.
+     * @throws NamingException if a NamingException is encountered whilst constructing the first LDAP context
+     */
+    protected AbstractLdapUserService(final String ldapConfigPath, final int poolSize, final Duration borrowTimeout,
+                                      final Duration idleTimeout, final Duration operationTimeout)
+            throws IOException, NamingException {
         requireNonNull(ldapConfigPath, "ldapConfigPath is required");
 
         // Create the LDAP config
@@ -104,8 +162,13 @@ public abstract class AbstractLdapUserService implements UserService {
             config.load(getClass().getResourceAsStream(ldapConfigPath));
         }
 
-        this.context = new InitialLdapContext(config, null);
-        requireNonNull(context, "Unable to construct ldap context from: " + ldapConfigPath);
+        config.putIfAbsent(CONNECT_TIMEOUT_PROPERTY, String.valueOf(operationTimeout.toMillis()));
+        config.putIfAbsent(READ_TIMEOUT_PROPERTY, String.valueOf(operationTimeout.toMillis()));
+        Hashtable<Object, Object> environment = new Hashtable<>(config);
+
+        this.pool = new LdapContextPool(() -> new InitialLdapContext(environment, null), poolSize, borrowTimeout, idleTimeout, operationTimeout);
+        // Open the first context now, so that invalid config fails at startup rather than on the first lookup
+        this.pool.execute(context -> requireNonNull(context, "Unable to construct ldap context from: " + ldapConfigPath));
     }
 
     @Override
@@ -113,13 +176,57 @@ public abstract class AbstractLdapUserService implements UserService {
         requireNonNull(userId, "userId is null");
         LOGGER.debug("User {} was not in the cache. Fetching details from LDAP.", userId);
         try {
-            Map<String, Object> userAttrs = getAttributes(new UserId().id(userId));
-            return new User().userId(new UserId().id(userId))
-                    .auths(getAuths(new UserId().id(userId), userAttrs, context))
-                    .roles(getRoles(new UserId().id(userId), userAttrs, context));
+            return pool.execute((LdapContext context) -> {
+                Map<String, Object> userAttrs = getAttributes(new UserId().id(userId));
+                return new User().userId(new UserId().id(userId))
+                        .auths(getAuths(new UserId().id(userId), userAttrs, context))
+                        .roles(getRoles(new UserId().id(userId), userAttrs, context));
+            });
+        } catch (NameNotFoundException ex) {
+            // Only a user genuinely missing from LDAP is reported as unknown, as that may be remembered by the caching proxy
+            throw new NoSuchUserIdException(String.format("No userId matching %s found in LDAP", userId), ex);
         } catch (NamingException ex) {
-            throw new NoSuchUserIdException("Unable to get user from LDAP", ex);
+            // Connection failures and pool timeouts say nothing about whether the user exists, so the next request should try again
+            throw new UserServiceUnavailableException("Unable to get user from LDAP", ex);
+        }
+    }
+
+    /**
+     * Preload the members of the given (commonly-used) groups, and periodically reload them in the background, so that
+     * {@link #getGroups(UserId, Map)} can resolve membership of these groups locally.
+     * This is usually called from the constructor of an implementation, and replaces any groups previously preloaded.
+     *
+     * @param groupNames      the names (distinguished names) of the groups to preload
+     * @param memberAttribute the attribute of each group listing its members, such as {@code member} or {@code memberUid}
+     * @param refreshInterval the time between reloading the members of every group
+     * @return the {@link LdapGroupResolver} holding the preloaded groups
+     */
+    protected LdapGroupResolver preloadGroups(final Collection<String> groupNames, final String memberAttribute, final Duration refreshInterval) {
+        LdapGroupResolver previous = groupResolver;
+        groupResolver = new LdapGroupResolver(pool, groupNames, memberAttribute, refreshInterval);
+        if (previous != null) {
+            previous.close();
+        }
+        return groupResolver;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        pool.bindTo(registry);
+        if (groupResolver != null) {
+            groupResolver.bindTo(registry);
+        }
+    }
+
+    /**
+     * Stop reloading any preloaded groups, and close all idle contexts in the pool
+     */
+    @Override
+    public void close() {
+        if (groupResolver != null) {
+            groupResolver.close();
         }
+        pool.close();
     }
 
     @Override
@@ -138,6 +245,68 @@ public abstract class AbstractLdapUserService implements UserService {
      */
     protected abstract String[] getAttributeNames();
 
+    /**
+     * Returns an array of {@code memberOf}-style attribute names, listing every group the user is a member of.
+     * These are fetched from LDAP in the same request as {@link #getAttributeNames()}, and every value of each is
+     * returned as a {@link Set} of {@link String}s in the user attributes, for use by {@link #getGroups(UserId, Map)}.
+     * By default, no group attributes are fetched.
+     *
+     * @return the group membership attributes to be fetched from LDAP.
+     */
+    protected String[] getGroupAttributeNames() {
+        return new String[0];
+    }
+
+    /**
+     * Returns the value identifying a user in the member attribute of a preloaded group.
+     * By default this is the userId, as in a {@code memberUid} attribute, but should be overridden to return the user's
+     * distinguished name if groups list their members by a {@code member} or {@code uniqueMember} attribute.
+     *
+     * @param userId the user ID
+     * @return the value identifying this user as a member of a group
+     */
+    protected String getGroupMember(final UserId userId) {
+        return userId.getId();
+    }
+
+    /**
+     * Gets the groups a user is a member of without any further calls to LDAP, from the group attributes fetched with
+     * the user (see {@link #getGroupAttributeNames()}) and from any preloaded groups (see {@link #preloadGroups(Collection, String, Duration)}).
+     * Groups from the user's attributes are returned as they appear in LDAP, while preloaded groups are returned in lower-case.
+     *
+     * @param userId    the user ID
+     * @param userAttrs the user attributes fetched from LDAP
+     * @return the {@link Set} of group names
+     */
+    protected Set<String> getGroups(final UserId userId, final Map<String, Object> userAttrs) {
+        Set<String> groups = new HashSet<>();
+        final String[] groupAttrs = getGroupAttributeNames();
+        if (null != groupAttrs) {
+            for (final String groupAttr : groupAttrs) {
+                Object values = userAttrs.get(groupAttr);
+                if (values instanceof Collection) {
+                    ((Collection<?>) values).forEach(value -> groups.add(String.valueOf(value)));
+                }
+            }
+        }
+        LdapGroupResolver resolver = groupResolver;
+        if (null != resolver) {
+            groups.addAll(resolver.getGroups(getGroupMember(userId)));
+        }
+        return groups;
+    }
+
+    /**
+     * Whether a user's membership of a group is known without any further calls to LDAP, as the group's members have been preloaded
+     *
+     * @param groupName the name of the group
+     * @return true if the group has been preloaded
+     */
+    protected boolean isGroupPreloaded(final String groupName) {
+        LdapGroupResolver resolver = groupResolver;
+        return null != resolver && resolver.isPreloaded(groupName);
+    }
+
     /**
      * <p>
      * Gets the user auths from LDAP.
@@ -172,18 +341,51 @@ public abstract class AbstractLdapUserService implements UserService {
 
     protected Map<String, Object> getAttributes(final UserId userId) throws NamingException {
         Map<String, Object> attributes = new HashMap<>();
-        final String[] requestAttrs = getAttributeNames();
-        if (null != requestAttrs && requestAttrs.length > 0) {
-            final Attributes userAttrs = context.getAttributes(formatInput(userId.getId()), requestAttrs);
+        final String[] attributeNames = getAttributeNames();
+        final String[] groupAttrs = getGroupAttributeNames();
+        final String[] requestAttrs = concat(attributeNames, groupAttrs);
+        if (requestAttrs.length > 0) {
+            final Attributes userAttrs = pool.execute(context -> context.getAttributes(formatInput(userId.getId()), requestAttrs));
             if (null != userAttrs) {
-                for (final String requestAttr : requestAttrs) {
-                    attributes = addAttribute(attributes, userAttrs, requestAttr);
+                if (null != attributeNames) {
+                    for (final String requestAttr : attributeNames) {
+                        attributes = addAttribute(attributes, userAttrs, requestAttr);
+                    }
+                }
+                if (null != groupAttrs) {
+                    for (final String groupAttr : groupAttrs) {
+                        attributes = addAllAttributeValues(attributes, userAttrs, groupAttr);
+                    }
                 }
             }
         }
         return attributes;
     }
 
+    private static String[] concat(final String[] attributeNames, final String[] groupAttrs) {
+        if (null == groupAttrs || groupAttrs.length == 0) {
+            return null == attributeNames ? new String[0] : attributeNames;
+        }
+        if (null == attributeNames || attributeNames.length == 0) {
+            return groupAttrs;
+        }
+        return Stream.concat(Stream.of(attributeNames), Stream.of(groupAttrs)).distinct().toArray(String[]::new);
+    }
+
+    protected Map<String, Object> addAllAttributeValues(final Map<String, Object> attributes, final Attributes userAttrs,
+                                                        final String requestAttr) throws NamingException {
+        final Attribute attribute = userAttrs.get(requestAttr);
+        Set<String> values = new HashSet<>();
+        if (null != attribute) {
+            NamingEnumeration<?> all = attribute.getAll();
+            while (all.hasMore()) {
+                values.add(String.valueOf(all.next()));
+            }
+        }
+        attributes.put(requestAttr, values);
+        return attributes;
+    }
+
     protected Map<String, Object> addAttribute(final Map<String, Object> attributes, final Attributes userAttrs,
                                                final String requestAttr) throws NamingException {
         final Attribute attribute = userAttrs.get(requestAttr);
@@ -210,21 +412,24 @@ public abstract class AbstractLdapUserService implements UserService {
                                       final String name, final String attrIdForUserId,
                                       final String[] attrs) throws NamingException {
         LOGGER.debug("Performing basic search using {}, {}, {}, {}", userId, name, attrIdForUserId, attrs);
-        final NamingEnumeration<SearchResult> attrResults = context.search(
-                name,
-                new BasicAttributes(attrIdForUserId, formatInput(userId.getId())),
-                attrs
-        );
-
-        Set<Object> results = new HashSet<>();
-        while (attrResults.hasMore()) {
-            final SearchResult result = attrResults.next();
-            final Attributes resultAttrs = result.getAttributes();
-            if (null != resultAttrs) {
-                results = getValues(resultAttrs, results);
+        // The results are read while the context is still borrowed, as they may be fetched lazily
+        return pool.execute((LdapContext context) -> {
+            final NamingEnumeration<SearchResult> attrResults = context.search(
+                    name,
+                    new BasicAttributes(attrIdForUserId, formatInput(userId.getId())),
+                    attrs
+            );
+
+            Set<Object> results = new HashSet<>();
+            while (attrResults.hasMore()) {
+                final SearchResult result = attrResults.next();
+                final Attributes resultAttrs = result.getAttributes();
+                if (null != resultAttrs) {
+                    results = getValues(resultAttrs, results);
+                }
             }
-        }
-        return results;
+            return results;
+        });
     }
 
     protected Set<Object> getValues(final Attributes resultAttrs, final Set<Object> values) throws NamingException {
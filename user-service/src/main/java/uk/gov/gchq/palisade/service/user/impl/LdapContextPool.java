@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.LdapContext;
+
+import java.time.Duration;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A bounded pool of {@link LdapContext}s. JNDI contexts are not thread-safe, so each LDAP operation borrows a context
+ * for its sole use, and returns it to the pool once complete.
+ * <ul>
+ *     <li>At most {@code maxSize} contexts are open at once, and an operation waits up to {@code borrowTimeout} for one to become free</li>
+ *     <li>A context that has been idle for longer than {@code validateAfterIdle} is health-checked (by reading the root DSE) before it is reused</li>
+ *     <li>A context that fails with a connection error is discarded rather than returned to the pool</li>
+ *     <li>Contexts idle for longer than {@code idleTimeout} are closed in the background</li>
+ * </ul>
+ * Operations are reentrant, so an operation run while the current thread already holds a context reuses that context,
+ * rather than borrowing a second one (which could otherwise deadlock a pool of size one).
+ */
+public class LdapContextPool implements AutoCloseable, MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LdapContextPool.class);
+    private static final String[] HEALTH_CHECK_ATTRIBUTES = new String[]{"supportedLDAPVersion"};
+
+    private final ContextFactory factory;
+    private final int maxSize;
+    private final Duration borrowTimeout;
+    private final Duration idleTimeout;
+    private final Duration validateAfterIdle;
+    private final boolean shared;
+    private final Semaphore permits;
+    // Most-recently used contexts are at the head, so the least-recently used are left idle to be evicted
+    private final Deque<PooledContext> idleContexts = new ConcurrentLinkedDeque<>();
+    private final ThreadLocal<PooledContext> currentContext = new ThreadLocal<>();
+    private final ScheduledExecutorService evictor;
+    private volatile Timer borrowTimer;
+    private volatile Timer operationTimer;
+
+    /**
+     * Creates new {@link LdapContext}s for the pool, such as a new {@link javax.naming.ldap.InitialLdapContext} for some config
+     */
+    @FunctionalInterface
+    public interface ContextFactory {
+        /**
+         * Create a new, connected, {@link LdapContext}
+         *
+         * @return a new {@link LdapContext}
+         * @throws NamingException if the context could not be created
+         */
+        LdapContext create() throws NamingException;
+    }
+
+    /**
+     * An operation to run against LDAP using a borrowed {@link LdapContext}
+     *
+     * @param <T> the type of the operation's result
+     */
+    @FunctionalInterface
+    public interface LdapOperation<T> {
+        /**
+         * Run the operation using the given context, which must not be used once the operation is complete
+         *
+         * @param context the {@link LdapContext} borrowed for this operation
+         * @return the result of the operation
+         * @throws NamingException if the operation failed
+         */
+        T apply(LdapContext context) throws NamingException;
+    }
+
+    private static final class PooledContext {
+        private final LdapContext context;
+        private long lastUsedNanos = System.nanoTime();
+
+        private PooledContext(final LdapContext context) {
+            this.context = context;
+        }
+
+        private long idleNanos() {
+            return System.nanoTime() - lastUsedNanos;
+        }
+    }
+
+    /**
+     * Create a new pool of contexts
+     *
+     * @param factory           the {@link ContextFactory} used to open new contexts
+     * @param maxSize           the maximum number of contexts open at once
+     * @param borrowTimeout     the maximum time to wait for a context to become free
+     * @param idleTimeout       the time after which an idle context is closed
+     * @param validateAfterIdle the time after which an idle context is health-checked before it is reused
+     */
+    public LdapContextPool(final ContextFactory factory, final int maxSize, final Duration borrowTimeout,
+                           final Duration idleTimeout, final Duration validateAfterIdle) {
+        this(factory, maxSize, borrowTimeout, idleTimeout, validateAfterIdle, false);
+    }
+
+    private LdapContextPool(final ContextFactory factory, final int maxSize, final Duration borrowTimeout,
+                            final Duration idleTimeout, final Duration validateAfterIdle, final boolean shared) {
+        this.factory = requireNonNull(factory, "ContextFactory cannot be null");
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.borrowTimeout = requireNonNull(borrowTimeout, "borrowTimeout cannot be null");
+        this.idleTimeout = requireNonNull(idleTimeout, "idleTimeout cannot be null");
+        this.validateAfterIdle = requireNonNull(validateAfterIdle, "validateAfterIdle cannot be null");
+        this.shared = shared;
+        this.permits = new Semaphore(maxSize, true);
+        if (shared) {
+            this.evictor = null;
+        } else {
+            this.evictor = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+                Thread thread = new Thread(runnable, "ldap-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long evictionPeriod = Math.max(1L, idleTimeout.toMillis() / 2);
+            this.evictor.scheduleWithFixedDelay(this::evictIdleContexts, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Create a pool around a single existing context, which is used by one operation at a time, and is never closed by the pool
+     *
+     * @param context the {@link LdapContext} to share
+     * @return a pool of size one, always lending the given context
+     */
+    public static LdapContextPool singleContext(final LdapContext context) {
+        requireNonNull(context, "LdapContext cannot be null");
+        return new LdapContextPool(() -> context, 1, Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO, true);
+    }
+
+    /**
+     * Run an operation with a context borrowed from the pool, returning the context to the pool afterwards.
+     * If the current thread is already running an operation, its context is reused.
+     *
+     * @param operation the {@link LdapOperation} to run
+     * @param <T>       the type of the operation's result
+     * @return the result of the operation
+     * @throws NamingException if no context could be borrowed in time, or if the operation failed
+     */
+    public <T> T execute(final LdapOperation<T> operation) throws NamingException {
+        PooledContext current = currentContext.get();
+        if (current != null) {
+            return operation.apply(current.context);
+        }
+
+        PooledContext pooled = borrow();
+        currentContext.set(pooled);
+        long start = System.nanoTime();
+        boolean broken = false;
+        try {
+            return operation.apply(pooled.context);
+        } catch (CommunicationException | ServiceUnavailableException ex) {
+            broken = true;
+            throw ex;
+        } finally {
+            currentContext.remove();
+            record(operationTimer, System.nanoTime() - start);
+            release(pooled, broken);
+        }
+    }
+
+    private PooledContext borrow() throws NamingException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new ServiceUnavailableException(String.format("Timed out after %s waiting for one of %d LDAP contexts", borrowTimeout, maxSize));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted waiting for an LDAP context");
+        }
+        try {
+            PooledContext pooled;
+            while ((pooled = idleContexts.pollFirst()) != null) {
+                if (isHealthy(pooled)) {
+                    record(borrowTimer, System.nanoTime() - start);
+                    return pooled;
+                }
+                closeQuietly(pooled);
+            }
+            pooled = new PooledContext(factory.create());
+            record(borrowTimer, System.nanoTime() - start);
+            return pooled;
+        } catch (NamingException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private void release(final PooledContext pooled, final boolean broken) {
+        if (broken && !shared) {
+            LOGGER.warn("Discarding LDAP context after a connection error");
+            closeQuietly(pooled);
+        } else {
+            pooled.lastUsedNanos = System.nanoTime();
+            idleContexts.offerFirst(pooled);
+        }
+        permits.release();
+    }
+
+    private boolean isHealthy(final PooledContext pooled) {
+        if (shared || pooled.idleNanos() < validateAfterIdle.toNanos()) {
+            return true;
+        }
+        try {
+            pooled.context.getAttributes("", HEALTH_CHECK_ATTRIBUTES);
+            return true;
+        } catch (NamingException | RuntimeException ex) {
+            LOGGER.warn("Idle LDAP context failed its health check, discarding", ex);
+            return false;
+        }
+    }
+
+    private void evictIdleContexts() {
+        // Oldest contexts are at the tail, so stop at the first context that has not been idle for long enough
+        PooledContext pooled;
+        while ((pooled = idleContexts.peekLast()) != null && pooled.idleNanos() > idleTimeout.toNanos()) {
+            if (idleContexts.removeLastOccurrence(pooled)) {
+                LOGGER.debug("Closing LDAP context idle for longer than {}", idleTimeout);
+                closeQuietly(pooled);
+            }
+        }
+    }
+
+    private void closeQuietly(final PooledContext pooled) {
+        if (shared) {
+            return;
+        }
+        try {
+            pooled.context.close();
+        } catch (NamingException | RuntimeException ex) {
+            LOGGER.debug("Failed to close LDAP context", ex);
+        }
+    }
+
+    private static void record(final Timer timer, final long nanos) {
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Get the number of contexts currently lent out to operations
+     *
+     * @return the number of active contexts
+     */
+    public int getActive() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Get the number of open contexts waiting in the pool to be borrowed
+     *
+     * @return the number of idle contexts
+     */
+    public int getIdle() {
+        return idleContexts.size();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("ldap.pool.active", this, LdapContextPool::getActive)
+                .description("The number of LDAP contexts lent out to operations")
+                .register(registry);
+        Gauge.builder("ldap.pool.idle", this, LdapContextPool::getIdle)
+                .description("The number of open LDAP contexts waiting to be borrowed")
+                .register(registry);
+        Gauge.builder("ldap.pool.max", this, pool -> pool.maxSize)
+                .description("The maximum number of LDAP contexts open at once")
+                .register(registry);
+        borrowTimer = Timer.builder("ldap.pool.borrow")
+                .description("Time spent waiting for an LDAP context")
+                .register(registry);
+        operationTimer = Timer.builder("ldap.operation")
+                .description("Time spent running operations against LDAP")
+                .register(registry);
+    }
+
+    /**
+     * Stop evicting idle contexts and close every idle context, contexts currently lent out are left open
+     */
+    @Override
+    public void close() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        PooledContext pooled;
+        while ((pooled = idleContexts.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+}
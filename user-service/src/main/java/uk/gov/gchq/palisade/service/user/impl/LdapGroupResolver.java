@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.ldap.LdapContext;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Resolves which of a fixed set of (commonly-used) LDAP groups a user is a member of, without a round trip to LDAP.
+ * The members of each group are read from the group's member attribute (such as {@code member} or {@code memberUid})
+ * and held locally as a member to groups map, which is periodically reloaded in the background.
+ * Membership of any group that is not preloaded must still be resolved from LDAP, see {@link #isPreloaded(String)}.
+ * <p>
+ * Members and groups are compared ignoring case, as LDAP distinguished names and user ids usually are.
+ * If a group fails to reload, the members from its last successful load are kept.
+ */
+public class LdapGroupResolver implements AutoCloseable, MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LdapGroupResolver.class);
+
+    private final LdapContextPool pool;
+    private final List<String> groupNames;
+    private final String memberAttribute;
+    private final ScheduledExecutorService refresher;
+    private volatile Map<String, Set<String>> membersByGroup = Collections.emptyMap();
+    private volatile Map<String, Set<String>> groupsByMember = Collections.emptyMap();
+    private volatile Timer preloadTimer;
+
+    /**
+     * Create a new resolver for the given groups, loading their members in the background now and after every refresh interval.
+     * If the refresh interval is zero, members are only loaded when {@link #preload()} is called.
+     *
+     * @param pool            the {@link LdapContextPool} used to read the members of each group
+     * @param groupNames      the names (distinguished names) of the groups to preload
+     * @param memberAttribute the attribute of each group listing its members
+     * @param refreshInterval the time between reloading the members of every group
+     */
+    public LdapGroupResolver(final LdapContextPool pool, final Collection<String> groupNames, final String memberAttribute,
+                             final Duration refreshInterval) {
+        this.pool = requireNonNull(pool, "LdapContextPool cannot be null");
+        this.groupNames = List.copyOf(groupNames);
+        this.memberAttribute = requireNonNull(memberAttribute, "memberAttribute cannot be null");
+        if (refreshInterval.isZero()) {
+            this.refresher = null;
+        } else {
+            this.refresher = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+                Thread thread = new Thread(runnable, "ldap-group-preloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.refresher.scheduleWithFixedDelay(this::preload, 0L, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reload the members of every group, then replace the local member to groups map in one step
+     */
+    public void preload() {
+        long start = System.nanoTime();
+        Map<String, Set<String>> previous = membersByGroup;
+        Map<String, Set<String>> loaded = new LinkedHashMap<>();
+        for (String groupName : groupNames) {
+            String group = normalise(groupName);
+            try {
+                loaded.put(group, pool.execute(context -> readMembers(context, groupName)));
+            } catch (NamingException | RuntimeException ex) {
+                LOGGER.warn("Failed to preload the members of LDAP group {}", groupName, ex);
+                if (previous.containsKey(group)) {
+                    loaded.put(group, previous.get(group));
+                }
+            }
+        }
+
+        Map<String, Set<String>> inverted = new HashMap<>();
+        loaded.forEach((String group, Set<String> members) -> members
+                .forEach(member -> inverted.computeIfAbsent(member, key -> new HashSet<>()).add(group)));
+        membersByGroup = loaded;
+        groupsByMember = inverted;
+        LOGGER.debug("Preloaded {} members of {} LDAP groups", inverted.size(), loaded.size());
+        if (preloadTimer != null) {
+            preloadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Set<String> readMembers(final LdapContext context, final String groupName) throws NamingException {
+        Set<String> members = new HashSet<>();
+        Attributes attributes = context.getAttributes(groupName, new String[]{memberAttribute});
+        Attribute attribute = attributes == null ? null : attributes.get(memberAttribute);
+        if (attribute != null) {
+            NamingEnumeration<?> values = attribute.getAll();
+            while (values.hasMore()) {
+                members.add(normalise(String.valueOf(values.next())));
+            }
+        }
+        return members;
+    }
+
+    private static String normalise(final String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Whether the members of a group have been preloaded, so that {@link #getGroups(String)} is authoritative for this group
+     *
+     * @param groupName the name of the group
+     * @return true if membership of this group can be resolved locally
+     */
+    public boolean isPreloaded(final String groupName) {
+        return membersByGroup.containsKey(normalise(groupName));
+    }
+
+    /**
+     * Get the preloaded groups a member belongs to
+     *
+     * @param member the member, as it appears in each group's member attribute (such as a user's distinguished name or id)
+     * @return the (lower-case) names of every preloaded group that lists this member
+     */
+    public Set<String> getGroups(final String member) {
+        return groupsByMember.getOrDefault(normalise(member), Collections.emptySet());
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("ldap.groups.preloaded", this, resolver -> resolver.membersByGroup.size())
+                .description("The number of LDAP groups whose members are held locally")
+                .register(registry);
+        Gauge.builder("ldap.groups.members", this, resolver -> resolver.groupsByMember.size())
+                .description("The number of distinct members of the preloaded LDAP groups")
+                .register(registry);
+        preloadTimer = Timer.builder("ldap.groups.preload")
+                .description("Time spent reloading the members of the preloaded LDAP groups")
+                .register(registry);
+    }
+
+    /**
+     * Stop reloading the members of each group
+     */
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+}
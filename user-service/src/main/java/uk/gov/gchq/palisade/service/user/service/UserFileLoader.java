@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import uk.gov.gchq.palisade.service.user.config.StdUserPrepopulationFactory;
+import uk.gov.gchq.palisade.user.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Warms the user cache at startup by loading users in bulk from a file, or from every file in a directory (such as an export of a directory service).
+ * Each file has one user per line, each a JSON object with the same fields as a {@link StdUserPrepopulationFactory}, eg.
+ * <pre>{@code {"userId": "Alice", "auths": ["public", "private"], "roles": ["HR"]}}</pre>
+ * Blank lines and lines starting with {@code #} are ignored, and malformed lines are logged, counted and skipped.
+ * <p>
+ * Files are read lazily and their users cached in parallel, so large user sets need not fit in memory.
+ * Users are only put in the caches, never added to the underlying {@link UserService}, which already holds them and may not support adding users.
+ * Until warm-up has completed, this reports the service as out of service, so that traffic is not routed to an instance
+ * whose cache is still cold. It should only be part of the readiness health group, so a long warm-up does not fail the liveness probe.
+ * A failed warm-up is logged and then treated as complete, as the service still works with a cold cache.
+ */
+public class UserFileLoader implements HealthIndicator, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserFileLoader.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final UserLoadingCache cache;
+    private final Path userPath;
+    private final ForkJoinPool pool;
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final CompletableFuture<Long> warmUp = new CompletableFuture<>();
+
+    /**
+     * Create a new loader for the given file or directory of users
+     *
+     * @param cache       the {@link UserLoadingCache} to cache the loaded users in
+     * @param userPath    the path to a file of users, or a directory of such files
+     * @param parallelism the number of users to cache in parallel
+     */
+    public UserFileLoader(final UserLoadingCache cache, final String userPath, final int parallelism) {
+        this.cache = requireNonNull(cache, "UserLoadingCache cannot be null");
+        this.userPath = Path.of(requireNonNull(userPath, "User file cannot be null")).toAbsolutePath().normalize();
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Begin loading users in the background
+     *
+     * @return a {@link CompletableFuture} of the number of users loaded, completing once warm-up has finished
+     */
+    public CompletableFuture<Long> start() {
+        LOGGER.info("Warming user cache from {}", userPath);
+        pool.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                load();
+                LOGGER.info("Warmed user cache with {} users from {} in {}ms, skipping {} malformed lines",
+                        loaded.get(), userPath, (System.nanoTime() - start) / 1_000_000, skipped.get());
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.error("Failed to warm user cache from {} after {} users, continuing with a cold cache", userPath, loaded.get(), ex);
+            } finally {
+                warmUp.complete(loaded.get());
+            }
+        });
+        return warmUp;
+    }
+
+    /**
+     * Get the warm-up of the cache
+     *
+     * @return a {@link CompletableFuture} of the number of users loaded, completing once warm-up has finished
+     */
+    public CompletableFuture<Long> getWarmUp() {
+        return warmUp;
+    }
+
+    private void load() throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(userPath)) {
+            try (Stream<Path> children = Files.list(userPath)) {
+                files = children.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        } else {
+            files = List.of(userPath);
+        }
+        for (Path file : files) {
+            // Lines of a file are split between the threads of the pool, rather than read into memory first
+            try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                long added = cache.cacheUsers(lines.parallel()
+                        .map(String::strip)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .map(line -> parse(file, line))
+                        .flatMap(Optional::stream));
+                loaded.addAndGet(added);
+                LOGGER.debug("Loaded {} users from {}", added, file);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    private Optional<User> parse(final Path file, final String line) {
+        try {
+            return Optional.of(MAPPER.readValue(line, StdUserPrepopulationFactory.class).build());
+        } catch (IOException | RuntimeException ex) {
+            // One bad line should not stop every other user from being loaded
+            skipped.incrementAndGet();
+            LOGGER.warn("Skipping malformed user in {}: {}", file, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = warmUp.isDone() ? Health.up() : Health.outOfService();
+        return health.withDetail("users", loaded.get())
+                .withDetail("skipped", skipped.get())
+                .build();
+    }
+
+    /**
+     * Stop loading users, any users already loaded are left in the cache
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
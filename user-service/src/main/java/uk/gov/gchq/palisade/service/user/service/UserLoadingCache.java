@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.gov.gchq.palisade.service.user.exception.NoSuchUserIdException;
+import uk.gov.gchq.palisade.service.user.exception.UserServiceUnavailableException;
+import uk.gov.gchq.palisade.user.User;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * An asynchronous loading cache of {@link User}s in front of the {@link UserServiceCachingProxy}.
+ * Concurrent requests for the same userId that miss this cache share a single load, so an expired popular user causes
+ * one lookup through the caching proxy rather than one per in-flight request.
+ * <p>
+ * Once a user has been cached for longer than the refresh interval, the next request for them is served the cached user
+ * while the user is reloaded in the background (stale-while-revalidate). If the reload fails because the underlying
+ * service is unavailable ({@link UserServiceUnavailableException}), the stale user continues to be served until it is
+ * older than the expiry time. If the reload fails for any other reason, such as the user no longer existing
+ * ({@link NoSuchUserIdException}), the stale user is dropped, and the next request loads it afresh.
+ * Reloads go through the caching proxy, so will pick up any users added to a shared cache (such as redis) by other
+ * instances, and only reach the underlying {@link UserService} once the caching proxy's own entry has expired.
+ */
+public class UserLoadingCache implements MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserLoadingCache.class);
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+    private static final Duration DEFAULT_REFRESH_AFTER_WRITE = Duration.ofMinutes(1);
+    private static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.ofHours(1);
+
+    private final UserServiceCachingProxy service;
+    private final AsyncLoadingCache<String, User> users;
+
+    /**
+     * Instantiates a new loading cache in front of the caching proxy with the default bounds.
+     *
+     * @param service  the {@link UserServiceCachingProxy} used to load users
+     * @param executor the {@link Executor} used to load and refresh users
+     */
+    public UserLoadingCache(final UserServiceCachingProxy service, final Executor executor) {
+        this(service, executor, DEFAULT_MAXIMUM_SIZE, DEFAULT_REFRESH_AFTER_WRITE, DEFAULT_EXPIRE_AFTER_WRITE);
+    }
+
+    /**
+     * Instantiates a new loading cache in front of the caching proxy.
+     * The refresh interval should be shorter than the expiry time, which bounds how stale a user may become while the
+     * underlying service is unavailable.
+     *
+     * @param service           the {@link UserServiceCachingProxy} used to load users
+     * @param executor          the {@link Executor} used to load and refresh users
+     * @param maximumSize       the maximum number of users to cache
+     * @param refreshAfterWrite the time after which a user is reloaded in the background on its next request
+     * @param expireAfterWrite  the time after which a user that has not been reloaded is discarded
+     */
+    public UserLoadingCache(final UserServiceCachingProxy service, final Executor executor,
+                            final long maximumSize, final Duration refreshAfterWrite, final Duration expireAfterWrite) {
+        this.service = service;
+        this.users = Caffeine.newBuilder()
+                .executor(executor)
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshAfterWrite)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync(new UserLoader());
+    }
+
+    private User loadUser(final String userId) {
+        LOGGER.debug("Loading userId {} through the caching proxy", userId);
+        return service.getUser(userId);
+    }
+
+    /**
+     * Loads users through the caching proxy, only keeping a stale user when its refresh fails because the service is unavailable
+     */
+    private final class UserLoader implements CacheLoader<String, User> {
+        @Override
+        public User load(final String userId) {
+            return loadUser(userId);
+        }
+
+        @Override
+        public User reload(final String userId, final User oldUser) {
+            try {
+                return loadUser(userId);
+            } catch (UserServiceUnavailableException ex) {
+                // A failed refresh leaves the stale user in the cache, until it expires
+                throw ex;
+            } catch (RuntimeException ex) {
+                // Returning null removes the stale user, such as one that has since been deleted
+                LOGGER.info("Dropping cached userId {} after its refresh failed: {}", userId, ex.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Get a {@link User} from the cache, loading it through the caching proxy if it is not already cached or being loaded.
+     * Failed loads are not cached, so the returned future completes exceptionally (usually with a
+     * {@link uk.gov.gchq.palisade.service.user.exception.NoSuchUserIdException}) and the next request will try again.
+     *
+     * @param userId the id of the user to get
+     * @return a {@link CompletableFuture} of the {@link User}
+     */
+    public CompletableFuture<User> getUser(final String userId) {
+        return users.get(userId);
+    }
+
+    /**
+     * Add a {@link User} to the caching proxy, and replace any cached or in-flight load of that user with the added user.
+     *
+     * @param user the {@link User} to add
+     * @return the {@link User} that was added to the caching proxy
+     */
+    public User addUser(final User user) {
+        User added = service.addUser(user);
+        users.put(added.getUserId().getId(), CompletableFuture.completedFuture(added));
+        return added;
+    }
+
+    /**
+     * Add every {@link User} in a stream, as by {@link #addUser(User)}.
+     * The stream is consumed lazily, so may be backed by a large file, and a parallel stream will add users in parallel.
+     *
+     * @param users a {@link Stream} of the {@link User}s to add
+     * @return the number of users added
+     */
+    public long addUsers(final Stream<User> users) {
+        return users.mapToLong((User user) -> {
+            addUser(user);
+            return 1L;
+        }).sum();
+    }
+
+    /**
+     * Cache a {@link User} in the caching proxy and in this cache, without adding it to the underlying {@link UserService}.
+     *
+     * @param user the {@link User} to cache
+     * @return the {@link User} that was cached
+     */
+    public User cacheUser(final User user) {
+        User cached = service.cacheUser(user);
+        users.put(cached.getUserId().getId(), CompletableFuture.completedFuture(cached));
+        return cached;
+    }
+
+    /**
+     * Cache every {@link User} in a stream, as by {@link #cacheUser(User)}, such as when warming the caches at startup.
+     * The stream is consumed lazily, so may be backed by a large file, and a parallel stream will cache users in parallel.
+     *
+     * @param users a {@link Stream} of the {@link User}s to cache
+     * @return the number of users cached
+     */
+    public long cacheUsers(final Stream<User> users) {
+        return users.mapToLong((User user) -> {
+            cacheUser(user);
+            return 1L;
+        }).sum();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, users.synchronous(), "usersLoading");
+    }
+}
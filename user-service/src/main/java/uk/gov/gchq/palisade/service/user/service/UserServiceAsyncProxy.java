@@ -28,29 +28,38 @@ import uk.gov.gchq.palisade.user.User;
 import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  * An asynchronous service for processing a cacheable method.
  */
 public class UserServiceAsyncProxy {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserServiceAsyncProxy.class);
-    private final Executor executor;
-    private final UserServiceCachingProxy service;
+    private final UserLoadingCache cache;
 
     /**
-     * Constructor for the {@link UserServiceAsyncProxy}
+     * Constructor for the {@link UserServiceAsyncProxy}, loading users through a {@link UserLoadingCache} with the default bounds
      *
      * @param service  the {@link UserService} implementation
      * @param executor the {@link Executor} for the service
      */
     public UserServiceAsyncProxy(final UserServiceCachingProxy service,
                                  final Executor executor) {
-        this.service = service;
-        this.executor = executor;
+        this(new UserLoadingCache(service, executor));
+    }
+
+    /**
+     * Constructor for the {@link UserServiceAsyncProxy}
+     *
+     * @param cache the {@link UserLoadingCache} used to load users, coalescing concurrent requests for the same user
+     */
+    public UserServiceAsyncProxy(final UserLoadingCache cache) {
+        this.cache = cache;
     }
 
     /**
      * Takes the {@link String} value of the userId from the {@link UserRequest} and attempts to get the User from the caching layer.
+     * Concurrent requests for the same user share a single load, and a recently-expired user may be served while it is refreshed.
      * If the user is successfully retrieved then a {@link UserResponse} is created and added to the {@link AuditableUserResponse}
      * class with no error attached.
      * If any errors are thrown in the service, then the CompletableFuture.exceptionally will return a new completable future,
@@ -63,7 +72,7 @@ public class UserServiceAsyncProxy {
      */
     public CompletableFuture<AuditableUserResponse> getUser(final UserRequest userRequest) {
         LOGGER.info("Getting user '{}' from cache", userRequest.getUserId());
-        return CompletableFuture.supplyAsync(() -> service.getUser(userRequest.getUserId()), executor)
+        return cache.getUser(userRequest.getUserId())
                 .thenApply(user -> AuditableUserResponse.Builder.create()
                         .withUserResponse(UserResponse.Builder.create(userRequest).withUser(user)))
                 .exceptionally(ex -> AuditableUserResponse.Builder.create()
@@ -71,13 +80,25 @@ public class UserServiceAsyncProxy {
     }
 
     /**
-     * Adds a {@link User} to the cache, via the {@link UserServiceCachingProxy}
+     * Adds a {@link User} to the cache, via the {@link UserLoadingCache} and {@link UserServiceCachingProxy}
      *
      * @param user the {@link User} to be added to the cache of the service
      * @return the {@link User} that was added to the service cache
      */
     public User addUser(final User user) {
         LOGGER.info("Adding user '{}' to cache", user.getUserId().getId());
-        return service.addUser(user);
+        return cache.addUser(user);
+    }
+
+    /**
+     * Adds a stream of {@link User}s to the cache, via the {@link UserLoadingCache} and {@link UserServiceCachingProxy}.
+     * A parallel stream will add users in parallel.
+     *
+     * @param users a {@link Stream} of the {@link User}s to be added to the cache of the service
+     * @return the number of users added to the service cache
+     */
+    public long addUsers(final Stream<User> users) {
+        LOGGER.info("Adding a stream of users to cache");
+        return cache.addUsers(users);
     }
 }
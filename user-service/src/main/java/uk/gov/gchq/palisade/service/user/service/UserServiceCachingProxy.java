@@ -16,21 +16,36 @@
 
 package uk.gov.gchq.palisade.service.user.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 
+import uk.gov.gchq.palisade.service.user.exception.NoSuchUserIdException;
 import uk.gov.gchq.palisade.user.User;
 
+import java.time.Duration;
+
 /**
  * This acts as a caching layer on top of an implementation of the user-service.
+ * Unknown userIds are also remembered for a short time, so that repeated requests for a user that does not exist
+ * do not each reach the service implementation (and the directory behind it).
+ * Only a {@link NoSuchUserIdException} is remembered, any other failure (such as the directory being unavailable) is not.
+ * Unknown userIds are remembered by each instance separately, so a user added through one instance may still be reported
+ * as unknown by another until its entry expires, hence the default expiry is only a few seconds.
  */
 @CacheConfig(cacheNames = {"users"})
 public class UserServiceCachingProxy {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserServiceCachingProxy.class);
+    private static final long DEFAULT_UNKNOWN_USERS_MAXIMUM_SIZE = 10_000L;
+    private static final Duration DEFAULT_UNKNOWN_USERS_EXPIRE_AFTER_WRITE = Duration.ofSeconds(5);
     private final UserService service;
+    private final Cache<String, String> unknownUsers;
 
     /**
      * Default constructor used to create the UserServiceCachingProxy
@@ -38,26 +53,55 @@ public class UserServiceCachingProxy {
      * @param service an implementation of the {@link UserService}
      */
     public UserServiceCachingProxy(final UserService service) {
+        this(service, DEFAULT_UNKNOWN_USERS_MAXIMUM_SIZE, DEFAULT_UNKNOWN_USERS_EXPIRE_AFTER_WRITE);
+    }
+
+    /**
+     * Constructor used to create the UserServiceCachingProxy, remembering up to the given number of unknown userIds.
+     * An unknown userId should expire soon, as the user may since have been created in the underlying directory.
+     *
+     * @param service                      an implementation of the {@link UserService}
+     * @param unknownUsersMaximumSize      the maximum number of unknown userIds to remember
+     * @param unknownUsersExpireAfterWrite the time after which an unknown userId is looked up again
+     */
+    public UserServiceCachingProxy(final UserService service, final long unknownUsersMaximumSize, final Duration unknownUsersExpireAfterWrite) {
         this.service = service;
+        this.unknownUsers = Caffeine.newBuilder()
+                .maximumSize(unknownUsersMaximumSize)
+                .expireAfterWrite(unknownUsersExpireAfterWrite)
+                .recordStats()
+                .build();
     }
 
     /**
      * Using the userId as the key, retrieves the {@link User} from the cache. If the User doesn't exist
      * then a message is Logged, and the request is passed to the service implementation.
      * This will either return a user or an error if there was an issue.
+     * If the service implementation recently reported that there is no such user, the error is repeated without asking it again.
      *
      * @param userId of the user wants to retrieve from the cache
      * @return the user returned from the cache
      */
     @Cacheable(key = "#userId")
     public User getUser(final String userId) {
+        String unknownUserMessage = unknownUsers.getIfPresent(userId);
+        if (unknownUserMessage != null) {
+            LOGGER.debug("Cache miss for recently unknown userId {}", userId);
+            throw new NoSuchUserIdException(unknownUserMessage);
+        }
         LOGGER.info("Cache miss for userId {}", userId);
-        return service.getUser(userId);
+        try {
+            return service.getUser(userId);
+        } catch (NoSuchUserIdException ex) {
+            unknownUsers.put(userId, String.valueOf(ex.getMessage()));
+            throw ex;
+        }
     }
 
     /**
      * Using the userId from the User object as they key, adds the User, and any attributes about the user,
      * such as roles and auths, to the cache.
+     * If the userId was recently unknown, it is forgotten, so that the added user is returned by the next request.
      *
      * @param user the user that the client wants to request resources with
      * @return the user that was successfully added to the cache
@@ -66,7 +110,34 @@ public class UserServiceCachingProxy {
     public User addUser(final User user) {
         LOGGER.info("Cache add for userId {}", user.getUserId().getId());
         LOGGER.debug("Added user {} to cache (key=userId)", user);
-        return service.addUser(user);
+        User addedUser = service.addUser(user);
+        unknownUsers.invalidate(user.getUserId().getId());
+        return addedUser;
+    }
+
+    /**
+     * Using the userId from the User object as the key, adds the User to the cache, without adding it to the service implementation.
+     * This warms the cache with users the service implementation already holds (such as an export of its directory),
+     * which may not support adding users at all.
+     * If the userId was recently unknown, it is forgotten, so that the cached user is returned by the next request.
+     *
+     * @param user the user to cache
+     * @return the cached user
+     */
+    @CachePut(key = "#user.userId.id")
+    public User cacheUser(final User user) {
+        LOGGER.debug("Cache add for userId {} without adding to the service", user.getUserId().getId());
+        unknownUsers.invalidate(user.getUserId().getId());
+        return user;
+    }
+
+    /**
+     * Report the size, hits and misses of the unknown userIds remembered by this proxy as the {@code unknownUsers} cache metrics
+     *
+     * @param registry the {@link MeterRegistry} to report to
+     */
+    public void bindUnknownUserMetrics(final MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, unknownUsers, "unknownUsers");
     }
 
 }
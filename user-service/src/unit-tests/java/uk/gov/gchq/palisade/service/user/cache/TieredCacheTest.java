@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.gov.gchq.palisade.service.user.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredCacheTest {
+
+    private final ConcurrentMapCacheManager l2Manager = new ConcurrentMapCacheManager();
+    private final StringRedisTemplate mockTemplate = Mockito.mock(StringRedisTemplate.class);
+    private final TieredCacheManager cacheManager = new TieredCacheManager(l2Manager, Caffeine.newBuilder(), mockTemplate, "channel");
+
+    @Test
+    void testReadsAreServedFromEachTier() {
+        // Given - a value has been written by another instance, directly into the shared L2
+        TieredCache cache = (TieredCache) cacheManager.getCache("users");
+        ((ConcurrentMapCache) l2Manager.getCache("users")).put("alice", "user");
+
+        // When - the value is read twice, and a missing value read once
+        cache.get("alice");
+        cache.get("alice");
+        cache.get("bob");
+
+        // Then - the first read was served by L2, the second by L1
+        assertThat(new long[]{cache.getL1Hits(), cache.getL2Hits(), cache.getMisses()})
+                .as("Check that one read was served by each tier, and one missed")
+                .containsExactly(1L, 1L, 1L);
+    }
+
+    @Test
+    void testWritesByOtherInstancesAreEvictedFromL1() {
+        // Given - a value is in both tiers
+        TieredCache cache = (TieredCache) cacheManager.getCache("users");
+        cache.put("alice", "old user");
+        Mockito.verify(mockTemplate).convertAndSend(Mockito.eq("channel"), Mockito.anyString());
+
+        // When - another instance writes a new value, and publishes an invalidation
+        l2Manager.getCache("users").put("alice", "new user");
+        cacheManager.onMessage(new DefaultMessage("channel".getBytes(StandardCharsets.UTF_8),
+                "other-instance\nusers\nalice".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then - the new value is read from L2
+        assertThat(cache.get("alice").get())
+                .as("Check that the value written by the other instance is returned")
+                .isEqualTo("new user");
+    }
+
+    @Test
+    void testConcurrentLoadsOfAKeyAreCoalesced() throws InterruptedException {
+        // Given - a slow loader, counting how many times it is called
+        TieredCache cache = (TieredCache) cacheManager.getCache("users");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return "user";
+        };
+        Queue<String> results = new ConcurrentLinkedQueue<>();
+        Thread first = new Thread(() -> results.add(cache.get("alice", loader)));
+        Thread second = new Thread(() -> results.add(cache.get("alice", loader)));
+
+        // When - a second get of the same key is made while the first is still loading
+        first.start();
+        assertThat(loading.await(10, TimeUnit.SECONDS))
+                .as("Check that the first get started loading")
+                .isTrue();
+        second.start();
+        while (second.getState() != Thread.State.BLOCKED && second.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        first.join();
+        second.join();
+
+        // Then - the value was only loaded once, and returned to both
+        assertThat(loads.get())
+                .as("Check that the loader was only called once")
+                .isEqualTo(1);
+        assertThat(results)
+                .as("Check that both gets returned the loaded value")
+                .containsExactly("user", "user");
+        assertThat(l2Manager.getCache("users").get("alice").get())
+                .as("Check that the loaded value was written to L2")
+                .isEqualTo("user");
+    }
+}
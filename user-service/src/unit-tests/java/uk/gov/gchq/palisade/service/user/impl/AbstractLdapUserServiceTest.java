@@ -31,10 +31,14 @@ import org.springframework.boot.logging.LogLevel;
 import org.springframework.boot.logging.LoggingSystem;
 
 import uk.gov.gchq.palisade.Context;
+import uk.gov.gchq.palisade.service.user.exception.NoSuchUserIdException;
+import uk.gov.gchq.palisade.service.user.exception.UserServiceUnavailableException;
 import uk.gov.gchq.palisade.service.user.model.UserRequest;
 import uk.gov.gchq.palisade.user.User;
 import uk.gov.gchq.palisade.user.UserId;
 
+import javax.naming.CommunicationException;
+import javax.naming.NameNotFoundException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.Attributes;
@@ -54,6 +58,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -133,6 +138,43 @@ class AbstractLdapUserServiceTest {
     }
 
 
+    @Test
+    void testMissingUserIsReportedAsUnknown() throws NamingException {
+        // Given LDAP has no entry for the user
+        final AbstractLdapUserService mock = mock(AbstractLdapUserService.class);
+        final LdapContext context = mock(LdapContext.class);
+        final String[] attrNames = {"roles", "auths"};
+        given(mock.getAttributeNames()).willReturn(attrNames);
+        given(context.getAttributes("user\\#01", attrNames)).willThrow(new NameNotFoundException("No such entry"));
+        final MockLdapUserService service = new MockLdapUserService(context);
+        service.setMock(mock);
+
+        // When the user is requested
+        // Then the user is reported as unknown
+        assertThatThrownBy(() -> service.getUser("user#01"))
+                .as("Check that a user missing from LDAP is reported as unknown")
+                .isInstanceOf(NoSuchUserIdException.class);
+    }
+
+    @Test
+    void testConnectionFailureIsNotReportedAsUnknown() throws NamingException {
+        // Given LDAP cannot be reached
+        final AbstractLdapUserService mock = mock(AbstractLdapUserService.class);
+        final LdapContext context = mock(LdapContext.class);
+        final String[] attrNames = {"roles", "auths"};
+        given(mock.getAttributeNames()).willReturn(attrNames);
+        given(context.getAttributes("user\\#01", attrNames)).willThrow(new CommunicationException("Connection reset"));
+        final MockLdapUserService service = new MockLdapUserService(context);
+        service.setMock(mock);
+
+        // When the user is requested
+        // Then the failure is reported as the service being unavailable, rather than the user being unknown
+        assertThatThrownBy(() -> service.getUser("user#01"))
+                .as("Check that a connection failure is not reported as an unknown user")
+                .isInstanceOf(UserServiceUnavailableException.class)
+                .hasCauseInstanceOf(CommunicationException.class);
+    }
+
     @Test
     void testShouldPerformABasicSearch() throws NamingException {
         // Given
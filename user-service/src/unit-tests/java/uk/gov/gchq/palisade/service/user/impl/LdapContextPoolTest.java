@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.LdapContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LdapContextPoolTest {
+    private final List<LdapContext> created = new CopyOnWriteArrayList<>();
+    private final LdapContextPool pool = new LdapContextPool(this::createContext, 1, Duration.ofMillis(100), Duration.ofMinutes(5), Duration.ofMinutes(1));
+
+    private LdapContext createContext() {
+        LdapContext context = mock(LdapContext.class);
+        created.add(context);
+        return context;
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void testContextsAreReusedBetweenOperations() throws NamingException {
+        // Given a pool of contexts
+
+        // When two operations are run one after the other, the second nested in an operation
+        LdapContext first = pool.execute(context -> context);
+        LdapContext second = pool.execute(context -> pool.execute(nested -> nested));
+
+        // Then only one context was ever opened
+        assertThat(created)
+                .as("Check that a single context was opened for all operations")
+                .hasSize(1);
+        assertThat(second)
+                .as("Check that the same context was reused")
+                .isSameAs(first);
+    }
+
+    @Test
+    void testBorrowingTimesOutWhenPoolIsExhausted() throws NamingException {
+        // Given the only context in the pool is in use
+        // When another thread tries to borrow a context
+        CompletableFuture<LdapContext> otherThread = pool.execute((LdapContext context) -> {
+            CompletableFuture<LdapContext> future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.execute(other -> other);
+                } catch (NamingException ex) {
+                    throw new CompletionException(ex);
+                }
+            });
+            // Hold on to this context until the other thread has finished trying to borrow one
+            future.exceptionally(ex -> null).join();
+            return future;
+        });
+
+        // Then it times out waiting for the context
+        assertThatThrownBy(otherThread::join)
+                .as("Check that the other thread timed out waiting for a context")
+                .hasCauseInstanceOf(ServiceUnavailableException.class);
+        assertThat(pool.getActive())
+                .as("Check that no contexts are still lent out")
+                .isZero();
+    }
+
+    @Test
+    void testBrokenContextsAreDiscarded() throws NamingException {
+        // Given an operation that fails with a connection error
+        assertThatThrownBy(() -> pool.execute(context -> {
+            throw new CommunicationException("test exception");
+        }))
+                .as("Check that the connection error is thrown to the caller")
+                .isInstanceOf(CommunicationException.class);
+
+        // When another operation is run
+        LdapContext next = pool.execute(context -> context);
+
+        // Then the broken context was closed, and a new one opened
+        verify(created.get(0), times(1)).close();
+        assertThat(next)
+                .as("Check that a new context was opened after the broken one was discarded")
+                .isSameAs(created.get(1));
+    }
+}
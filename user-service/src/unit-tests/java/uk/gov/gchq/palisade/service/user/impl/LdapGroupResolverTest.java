@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.impl;
+
+import org.junit.jupiter.api.Test;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.ldap.LdapContext;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LdapGroupResolverTest {
+    private static final String[] MEMBER_ATTRS = {"memberUid"};
+
+    private final LdapContext context = mock(LdapContext.class);
+    private final LdapContextPool pool = LdapContextPool.singleContext(context);
+
+    private static BasicAttributes members(final String... members) {
+        BasicAttribute attribute = new BasicAttribute("memberUid");
+        for (String member : members) {
+            attribute.add(member);
+        }
+        BasicAttributes attributes = new BasicAttributes();
+        attributes.put(attribute);
+        return attributes;
+    }
+
+    @Test
+    void testPreloadedGroupsAreResolvedLocally() throws NamingException {
+        // Given two groups with overlapping members
+        given(context.getAttributes("cn=admins", MEMBER_ATTRS)).willReturn(members("alice"));
+        given(context.getAttributes("cn=staff", MEMBER_ATTRS)).willReturn(members("Alice", "bob"));
+        LdapGroupResolver resolver = new LdapGroupResolver(pool, List.of("cn=admins", "cn=staff"), "memberUid", Duration.ZERO);
+
+        // When the groups are preloaded
+        resolver.preload();
+
+        // Then each user's groups are resolved without any further calls to LDAP
+        assertThat(resolver.getGroups("alice"))
+                .as("Check that a member of both groups is found in both, ignoring case")
+                .containsExactlyInAnyOrder("cn=admins", "cn=staff");
+        assertThat(resolver.getGroups("bob"))
+                .as("Check that a member of one group is found in only that group")
+                .containsExactly("cn=staff");
+        assertThat(resolver.getGroups("carol"))
+                .as("Check that a user in no preloaded group has no groups")
+                .isEmpty();
+        assertThat(resolver.isPreloaded("CN=Staff"))
+                .as("Check that a preloaded group is reported as preloaded")
+                .isTrue();
+        verify(context, times(1)).getAttributes("cn=admins", MEMBER_ATTRS);
+        verify(context, times(1)).getAttributes("cn=staff", MEMBER_ATTRS);
+    }
+
+    @Test
+    void testFailedReloadKeepsPreviousMembers() throws NamingException {
+        // Given a group has been preloaded
+        given(context.getAttributes("cn=staff", MEMBER_ATTRS)).willReturn(members("bob"));
+        LdapGroupResolver resolver = new LdapGroupResolver(pool, List.of("cn=staff"), "memberUid", Duration.ZERO);
+        resolver.preload();
+
+        // When LDAP is unavailable for the next reload
+        given(context.getAttributes("cn=staff", MEMBER_ATTRS)).willThrow(new CommunicationException("ldap is down"));
+        resolver.preload();
+
+        // Then the members from the last successful load are kept
+        assertThat(resolver.getGroups("bob"))
+                .as("Check that the group's members were kept after a failed reload")
+                .containsExactly("cn=staff");
+    }
+}
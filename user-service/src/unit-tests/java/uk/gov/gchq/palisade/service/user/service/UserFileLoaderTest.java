@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.actuate.health.Status;
+
+import uk.gov.gchq.palisade.user.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class UserFileLoaderTest {
+    @TempDir
+    Path tempDir;
+    UserServiceCachingProxy cachingProxy;
+    UserFileLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        cachingProxy = Mockito.mock(UserServiceCachingProxy.class);
+        Mockito.when(cachingProxy.cacheUser(any())).then(invocation -> invocation.getArgument(0));
+        loader = new UserFileLoader(new UserLoadingCache(cachingProxy, Runnable::run), tempDir.toString(), 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loader.close();
+    }
+
+    private static String user(final String userId) {
+        return String.format("{\"userId\": \"%s\", \"auths\": [\"auth\"], \"roles\": [\"role\"]}", userId);
+    }
+
+    @Test
+    void testUsersAreLoadedFromEveryFileInDirectory() throws IOException {
+        // Given a directory export of users split over two files, with comments and blank lines
+        Files.write(tempDir.resolve("users-1.jsonl"), List.of("# first file", user("alice"), "", user("bob")));
+        Files.write(tempDir.resolve("users-2.jsonl"), List.of(user("carol")));
+
+        // When the cache is warmed from the directory
+        long loaded = loader.start().join();
+
+        // Then every user was added to the cache, and the loader reports the service as ready
+        assertThat(loaded)
+                .as("Check that every user in every file was loaded")
+                .isEqualTo(3L);
+        ArgumentCaptor<User> users = ArgumentCaptor.forClass(User.class);
+        verify(cachingProxy, times(3)).cacheUser(users.capture());
+        assertThat(users.getAllValues().stream().map(user -> user.getUserId().getId()).collect(Collectors.toList()))
+                .as("Check that the added users were parsed from the files")
+                .containsExactlyInAnyOrder("alice", "bob", "carol");
+        assertThat(loader.health().getStatus())
+                .as("Check that the service is ready once warm-up has completed")
+                .isEqualTo(Status.UP);
+    }
+
+    @Test
+    void testFailedWarmUpStillCompletes() throws IOException {
+        // Given a file with an unparseable line between valid users
+        Files.write(tempDir.resolve("users.jsonl"), List.of(user("alice"), "not a user", user("bob")));
+
+        // When the cache is warmed from the directory
+        long loaded = loader.start().join();
+
+        // Then warm-up still completes, so the service can start with a cold cache
+        assertThat(loader.getWarmUp())
+                .as("Check that a failed warm-up completes normally")
+                .isCompleted();
+        assertThat(loader.health().getStatus())
+                .as("Check that the service is ready after a failed warm-up")
+                .isEqualTo(Status.UP);
+
+        // Then the malformed line is skipped, and every valid user is still loaded
+        assertThat(loaded)
+                .as("Check that the valid users either side of the malformed line were loaded")
+                .isEqualTo(2L);
+        ArgumentCaptor<User> users = ArgumentCaptor.forClass(User.class);
+        verify(cachingProxy, times(2)).cacheUser(users.capture());
+        assertThat(users.getAllValues().stream().map(user -> user.getUserId().getId()).collect(Collectors.toList()))
+                .as("Check that the valid users were added to the cache")
+                .containsExactlyInAnyOrder("alice", "bob");
+        assertThat(loader.health().getDetails())
+                .as("Check that the malformed line is reported as skipped")
+                .containsEntry("users", 2L)
+                .containsEntry("skipped", 1L);
+    }
+
+    @Test
+    void testWarmUpDoesNotAddUsersToTheService() throws IOException {
+        // Given a user service which does not support adding users, such as a directory service
+        UserService readOnlyService = Mockito.mock(UserService.class);
+        Mockito.when(readOnlyService.addUser(any())).thenThrow(new UnsupportedOperationException("Users cannot be added"));
+        UserLoadingCache cache = new UserLoadingCache(new UserServiceCachingProxy(readOnlyService), Runnable::run);
+        Files.write(tempDir.resolve("users.jsonl"), List.of(user("alice"), user("bob")));
+
+        // When the cache is warmed from an export of that service
+        long loaded;
+        try (UserFileLoader readOnlyLoader = new UserFileLoader(cache, tempDir.toString(), 4)) {
+            loaded = readOnlyLoader.start().join();
+        }
+
+        // Then every user was cached, without being added to the service
+        assertThat(loaded)
+                .as("Check that every user was loaded")
+                .isEqualTo(2L);
+        assertThat(cache.getUser("alice").join().getUserId().getId())
+                .as("Check that the loaded users are served from the cache")
+                .isEqualTo("alice");
+        verify(readOnlyService, never()).addUser(any());
+        verify(readOnlyService, never()).getUser(any());
+    }
+}
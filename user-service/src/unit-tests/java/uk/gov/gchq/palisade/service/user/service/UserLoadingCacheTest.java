@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import uk.gov.gchq.palisade.service.user.exception.NoSuchUserIdException;
+import uk.gov.gchq.palisade.service.user.exception.UserServiceUnavailableException;
+import uk.gov.gchq.palisade.user.User;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class UserLoadingCacheTest {
+    private static final User USER = new User().userId("test-user-id");
+
+    private final UserServiceCachingProxy service = Mockito.mock(UserServiceCachingProxy.class);
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws InterruptedException {
+        // Given the caching proxy is slow to return the user
+        CountDownLatch loading = new CountDownLatch(1);
+        Mockito.when(service.getUser(anyString())).then((invocation) -> {
+            loading.await();
+            return USER;
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        UserLoadingCache cache = new UserLoadingCache(service, executor);
+
+        // When the user is requested many times while the first load is in progress
+        CompletableFuture<User> first = cache.getUser("test-user-id");
+        CompletableFuture<User> second = cache.getUser("test-user-id");
+        CompletableFuture<User> third = cache.getUser("test-user-id");
+        loading.countDown();
+
+        // Then every request gets the user, but the caching proxy was only called once
+        assertThat(first.join())
+                .as("Check that the user was loaded")
+                .isEqualTo(USER);
+        assertThat(second.join())
+                .as("Check that concurrent requests were given the same user")
+                .isSameAs(first.join())
+                .isSameAs(third.join());
+        verify(service, times(1)).getUser("test-user-id");
+        executor.shutdown();
+    }
+
+    @Test
+    void testStaleUserServedWhenRefreshFails() {
+        // Given a user has been cached, and is due to be refreshed on its next request
+        UserLoadingCache cache = new UserLoadingCache(service, Runnable::run, 100, Duration.ofNanos(1), Duration.ofHours(1));
+        Mockito.when(service.addUser(USER)).thenReturn(USER);
+        cache.addUser(USER);
+
+        // When the underlying service is down
+        Mockito.when(service.getUser("test-user-id")).thenThrow(new UserServiceUnavailableException("service unavailable", new IOException("timed out")));
+
+        // Then the cached user is still returned, despite the refresh failing
+        assertThat(cache.getUser("test-user-id").join())
+                .as("Check that the stale user is served while the refresh fails")
+                .isEqualTo(USER);
+        assertThat(cache.getUser("test-user-id").join())
+                .as("Check that the stale user is kept after a failed refresh")
+                .isEqualTo(USER);
+        verify(service, atLeastOnce()).getUser("test-user-id");
+    }
+
+    @Test
+    void testStaleUserDroppedWhenUserNoLongerExists() {
+        // Given a user has been cached, and is due to be refreshed on its next request
+        UserLoadingCache cache = new UserLoadingCache(service, Runnable::run, 100, Duration.ofNanos(1), Duration.ofHours(1));
+        Mockito.when(service.addUser(USER)).thenReturn(USER);
+        cache.addUser(USER);
+
+        // When the user has since been removed from the underlying service
+        Mockito.when(service.getUser("test-user-id")).thenThrow(new NoSuchUserIdException("no such user"));
+
+        // Then the stale user is served while it is refreshed, but is then dropped
+        assertThat(cache.getUser("test-user-id").join())
+                .as("Check that the stale user is served while it is refreshed")
+                .isEqualTo(USER);
+        CompletionException thrown = assertThrows(CompletionException.class, () -> cache.getUser("test-user-id").join(),
+                "The next request should load the user afresh, and fail");
+        assertThat(thrown.getCause())
+                .as("Check that the removed user is no longer served")
+                .isInstanceOf(NoSuchUserIdException.class);
+    }
+}
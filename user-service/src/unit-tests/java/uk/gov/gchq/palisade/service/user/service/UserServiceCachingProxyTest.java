@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018-2021 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.gov.gchq.palisade.service.user.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import uk.gov.gchq.palisade.service.user.exception.NoSuchUserIdException;
+import uk.gov.gchq.palisade.service.user.exception.UserServiceUnavailableException;
+import uk.gov.gchq.palisade.user.User;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class UserServiceCachingProxyTest {
+    private static final String USER_ID = "test-user-id";
+
+    private final UserService service = Mockito.mock(UserService.class);
+    private final UserServiceCachingProxy cachingProxy = new UserServiceCachingProxy(service, 100, Duration.ofMinutes(1));
+
+    @Test
+    void testUnknownUserIsOnlyLookedUpOnce() {
+        // Given the service does not know the user
+        Mockito.when(service.getUser(USER_ID)).thenThrow(new NoSuchUserIdException("No userId matching test-user-id found in cache"));
+
+        // When the user is requested repeatedly
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> cachingProxy.getUser(USER_ID))
+                    .as("Check that every request for the unknown user fails with the original message")
+                    .isInstanceOf(NoSuchUserIdException.class)
+                    .hasMessage("No userId matching test-user-id found in cache");
+        }
+
+        // Then the service was only asked once
+        verify(service, times(1)).getUser(USER_ID);
+    }
+
+    @Test
+    void testAddedUserIsNoLongerUnknown() {
+        // Given the user was unknown
+        User user = new User().userId(USER_ID);
+        Mockito.when(service.getUser(USER_ID))
+                .thenThrow(new NoSuchUserIdException("No userId matching test-user-id found in cache"))
+                .thenReturn(user);
+        assertThatThrownBy(() -> cachingProxy.getUser(USER_ID))
+                .as("Check that the user is initially unknown")
+                .isInstanceOf(NoSuchUserIdException.class);
+
+        // When the user is added
+        Mockito.when(service.addUser(user)).thenReturn(user);
+        cachingProxy.addUser(user);
+
+        // Then the next request is passed to the service again
+        assertThat(cachingProxy.getUser(USER_ID))
+                .as("Check that the added user is returned")
+                .isEqualTo(user);
+        verify(service, times(2)).getUser(USER_ID);
+    }
+
+    @Test
+    void testUnavailableServiceIsNotRemembered() {
+        // Given the service fails to reach its directory, then recovers
+        User user = new User().userId(USER_ID);
+        Mockito.when(service.getUser(USER_ID))
+                .thenThrow(new UserServiceUnavailableException("Unable to get user from LDAP", new IllegalStateException("test exception")))
+                .thenReturn(user);
+        assertThatThrownBy(() -> cachingProxy.getUser(USER_ID))
+                .as("Check that the failure is returned to the first request")
+                .isInstanceOf(UserServiceUnavailableException.class);
+
+        // When the user is requested again
+        // Then the service is asked again, rather than the user being reported as unknown
+        assertThat(cachingProxy.getUser(USER_ID))
+                .as("Check that the user is returned once the service has recovered")
+                .isEqualTo(user);
+        verify(service, times(2)).getUser(USER_ID);
+    }
+}